@@ -24,7 +24,9 @@ import org.whispersystems.textsecuregcm.configuration.AwsAttachmentsConfiguratio
 import org.whispersystems.textsecuregcm.configuration.BadgesConfiguration;
 import org.whispersystems.textsecuregcm.configuration.BraintreeConfiguration;
 import org.whispersystems.textsecuregcm.configuration.CdnConfiguration;
+import org.whispersystems.textsecuregcm.configuration.ClientPresenceConfiguration;
 import org.whispersystems.textsecuregcm.configuration.ClientReleaseConfiguration;
+import org.whispersystems.textsecuregcm.configuration.ClientSideCacheConfiguration;
 import org.whispersystems.textsecuregcm.configuration.CommandStopListenerConfiguration;
 import org.whispersystems.textsecuregcm.configuration.DogstatsdConfiguration;
 import org.whispersystems.textsecuregcm.configuration.DirectoryV2Configuration;
@@ -300,6 +302,17 @@ public class WhisperServerConfiguration extends Configuration {
   @JsonProperty
   private LinkDeviceSecretConfiguration linkDevice;
 
+  @Valid
+  @NotNull
+  @JsonProperty
+  private ClientSideCacheConfiguration profilesClientSideCache =
+      new ClientSideCacheConfiguration(false, 100_000, Duration.ofMinutes(5));
+
+  @Valid
+  @NotNull
+  @JsonProperty
+  private ClientPresenceConfiguration clientPresence = new ClientPresenceConfiguration(Duration.ZERO);
+
   public AdminEventLoggingConfiguration getAdminEventLoggingConfiguration() {
     return adminEventLoggingConfiguration;
   }
@@ -498,4 +511,12 @@ public class WhisperServerConfiguration extends Configuration {
   public LinkDeviceSecretConfiguration getLinkDeviceSecretConfiguration() {
     return linkDevice;
   }
+
+  public ClientSideCacheConfiguration getProfilesClientSideCacheConfiguration() {
+    return profilesClientSideCache;
+  }
+
+  public ClientPresenceConfiguration getClientPresenceConfiguration() {
+    return clientPresence;
+  }
 }
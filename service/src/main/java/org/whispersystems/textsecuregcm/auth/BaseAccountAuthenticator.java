@@ -42,6 +42,8 @@ public class BaseAccountAuthenticator {
   private final AccountsManager accountsManager;
   private final Clock           clock;
 
+  private final VerifiedCredentialCache verifiedCredentialCache = new VerifiedCredentialCache();
+
   public BaseAccountAuthenticator(AccountsManager accountsManager) {
     this(accountsManager, Clock.systemUTC());
   }
@@ -118,7 +120,8 @@ public class BaseAccountAuthenticator {
       }
 
       SaltedTokenHash deviceSaltedTokenHash = device.get().getAuthTokenHash();
-      if (deviceSaltedTokenHash.verify(basicCredentials.getPassword())) {
+      if (verifiedCredentialCache.verify(accountUuid, deviceId, deviceSaltedTokenHash,
+          basicCredentials.getPassword())) {
         succeeded = true;
         Account authenticatedAccount = updateLastSeen(account.get(), device.get());
         if (deviceSaltedTokenHash.getVersion() != SaltedTokenHash.CURRENT_VERSION) {
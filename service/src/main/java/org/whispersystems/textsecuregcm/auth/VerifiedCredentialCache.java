@@ -0,0 +1,98 @@
+/*
+ * Copyright 2023 Signal Messenger, LLC
+ * SPDX-License-Identifier: AGPL-3.0-only
+ */
+
+package org.whispersystems.textsecuregcm.auth;
+
+import static com.codahale.metrics.MetricRegistry.name;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Metrics;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.util.UUID;
+
+/**
+ * A verified credential cache remembers recent successful password verifications so that repeated authentication
+ * attempts with the same credentials can skip the (comparatively expensive) key derivation performed by
+ * {@link SaltedTokenHash#verify(String)}.
+ * <p>
+ * Entries are keyed by account identifier, device ID, and a digest of the presented password, and record the stored
+ * {@link SaltedTokenHash} against which the password was verified. A cached verification only applies if the device's
+ * current stored hash is identical to the one recorded in the cache, so changing a device's credentials invalidates
+ * cached verifications immediately. Callers are still responsible for resolving the account and device for each
+ * request, which means deleted accounts and removed devices are rejected before the cache is consulted.
+ */
+class VerifiedCredentialCache {
+
+  private final Cache<CredentialKey, SaltedTokenHash> verifiedCredentials;
+
+  private static final Counter CACHE_HIT_COUNTER =
+      Metrics.counter(name(VerifiedCredentialCache.class, "verification"), "cached", "true");
+
+  private static final Counter CACHE_MISS_COUNTER =
+      Metrics.counter(name(VerifiedCredentialCache.class, "verification"), "cached", "false");
+
+  private static final long MAX_SIZE = 100_000;
+  private static final Duration TTL = Duration.ofMinutes(5);
+
+  private record CredentialKey(UUID accountIdentifier, long deviceId, ByteBuffer passwordDigest) {
+  }
+
+  VerifiedCredentialCache() {
+    this.verifiedCredentials = Caffeine.newBuilder()
+        .maximumSize(MAX_SIZE)
+        .expireAfterWrite(TTL)
+        .build();
+  }
+
+  /**
+   * Checks whether the given password matches the given device's stored credentials, using a cached result if the same
+   * password was recently verified against the same stored credentials.
+   *
+   * @param accountIdentifier the identifier of the account to which the device belongs
+   * @param deviceId the ID of the device
+   * @param storedTokenHash the device's current stored credentials
+   * @param password the password presented by the client
+   *
+   * @return {@code true} if the given password matches the device's stored credentials or {@code false} otherwise
+   */
+  boolean verify(final UUID accountIdentifier,
+      final long deviceId,
+      final SaltedTokenHash storedTokenHash,
+      final String password) {
+
+    final CredentialKey key = new CredentialKey(accountIdentifier, deviceId, ByteBuffer.wrap(digest(password)));
+
+    if (storedTokenHash.equals(verifiedCredentials.getIfPresent(key))) {
+      CACHE_HIT_COUNTER.increment();
+      return true;
+    }
+
+    CACHE_MISS_COUNTER.increment();
+
+    if (storedTokenHash.verify(password)) {
+      verifiedCredentials.put(key, storedTokenHash);
+      return true;
+    }
+
+    // Don't let a stale entry for superseded credentials linger until it expires
+    verifiedCredentials.invalidate(key);
+    return false;
+  }
+
+  private static byte[] digest(final String password) {
+    try {
+      return MessageDigest.getInstance("SHA-256").digest(password.getBytes(StandardCharsets.UTF_8));
+    } catch (final NoSuchAlgorithmException e) {
+      // All Java implementations are required to support SHA-256, so this should never happen
+      throw new AssertionError(e);
+    }
+  }
+}
@@ -3,26 +3,31 @@ package org.whispersystems.textsecuregcm.configuration;
 import com.fasterxml.jackson.annotation.JsonCreator;
 import com.fasterxml.jackson.annotation.JsonProperty;
 import org.whispersystems.textsecuregcm.configuration.DynamoDbTables.Table;
+import org.whispersystems.textsecuregcm.storage.AccountDataFormat;
 import javax.validation.constraints.NotBlank;
+import javax.validation.constraints.NotNull;
 
 public class AccountsTableConfiguration extends Table {
 
   private final String phoneNumberTableName;
   private final String phoneNumberIdentifierTableName;
   private final String usernamesTableName;
+  private final AccountDataFormat accountDataFormat;
 
   @JsonCreator
   public AccountsTableConfiguration(
       @JsonProperty("tableName") final String tableName,
       @JsonProperty("phoneNumberTableName") final String phoneNumberTableName,
       @JsonProperty("phoneNumberIdentifierTableName") final String phoneNumberIdentifierTableName,
-      @JsonProperty("usernamesTableName") final String usernamesTableName) {
+      @JsonProperty("usernamesTableName") final String usernamesTableName,
+      @JsonProperty("accountDataFormat") final AccountDataFormat accountDataFormat) {
 
     super(tableName);
 
     this.phoneNumberTableName = phoneNumberTableName;
     this.phoneNumberIdentifierTableName = phoneNumberIdentifierTableName;
     this.usernamesTableName = usernamesTableName;
+    this.accountDataFormat = accountDataFormat != null ? accountDataFormat : AccountDataFormat.JSON;
   }
 
   @NotBlank
@@ -39,4 +44,12 @@ public class AccountsTableConfiguration extends Table {
   public String getUsernamesTableName() {
     return usernamesTableName;
   }
+
+  /**
+   * @return the format in which to write serialized account data; accounts stored in any format remain readable
+   */
+  @NotNull
+  public AccountDataFormat getAccountDataFormat() {
+    return accountDataFormat;
+  }
 }
@@ -0,0 +1,19 @@
+/*
+ * Copyright 2023 Signal Messenger, LLC
+ * SPDX-License-Identifier: AGPL-3.0-only
+ */
+
+package org.whispersystems.textsecuregcm.configuration;
+
+import java.time.Duration;
+import javax.validation.constraints.NotNull;
+
+/**
+ * @param absenceCacheTtl the length of time for which a server will remember that a client was absent; if zero,
+ * absences will not be cached. A cached absence is only cleared early if the client connects to the same server, so
+ * clients that connect to other servers may be reported as absent for up to this long.
+ *
+ * @see org.whispersystems.textsecuregcm.push.ClientPresenceManager
+ */
+public record ClientPresenceConfiguration(@NotNull Duration absenceCacheTtl) {
+}
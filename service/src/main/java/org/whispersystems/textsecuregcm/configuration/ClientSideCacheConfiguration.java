@@ -0,0 +1,22 @@
+/*
+ * Copyright 2023 Signal Messenger, LLC
+ * SPDX-License-Identifier: AGPL-3.0-only
+ */
+
+package org.whispersystems.textsecuregcm.configuration;
+
+import java.time.Duration;
+import javax.validation.constraints.NotNull;
+import javax.validation.constraints.Positive;
+
+/**
+ * Configures a tracking-based client-side cache for values stored in a Redis cluster.
+ *
+ * @param enabled whether the client-side cache should be used at all
+ * @param maxSize the maximum number of keys for which to cache values
+ * @param ttl the maximum time for which a value may be cached, even if no invalidation message arrives
+ *
+ * @see org.whispersystems.textsecuregcm.redis.ClusterClientSideCache
+ */
+public record ClientSideCacheConfiguration(boolean enabled, @Positive long maxSize, @NotNull Duration ttl) {
+}
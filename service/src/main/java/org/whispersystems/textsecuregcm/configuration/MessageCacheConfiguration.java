@@ -7,6 +7,7 @@ package org.whispersystems.textsecuregcm.configuration;
 
 import com.fasterxml.jackson.annotation.JsonProperty;
 
+import java.time.Duration;
 import javax.validation.Valid;
 import javax.validation.constraints.NotNull;
 
@@ -20,6 +21,12 @@ public class MessageCacheConfiguration {
   @JsonProperty
   private int persistDelayMinutes = 10;
 
+  // How long to wait before telling a connected client about new messages so that messages arriving in quick
+  // succession produce a single notification; zero notifies clients immediately
+  @JsonProperty
+  @NotNull
+  private Duration newMessageNotificationDebounce = Duration.ZERO;
+
   public RedisClusterConfiguration getRedisClusterConfiguration() {
     return cluster;
   }
@@ -28,4 +35,8 @@ public class MessageCacheConfiguration {
     return persistDelayMinutes;
   }
 
+  public Duration getNewMessageNotificationDebounce() {
+    return newMessageNotificationDebounce;
+  }
+
 }
@@ -8,9 +8,11 @@ package org.whispersystems.textsecuregcm.configuration;
 import com.fasterxml.jackson.annotation.JsonProperty;
 
 import javax.validation.Valid;
+import javax.validation.constraints.Min;
 import javax.validation.constraints.NotEmpty;
 import javax.validation.constraints.NotNull;
 import java.time.Duration;
+import org.whispersystems.textsecuregcm.redis.RedisConnectionSelectionPolicy;
 
 public class RedisClusterConfiguration {
 
@@ -32,6 +34,33 @@ public class RedisClusterConfiguration {
   @Valid
   private RetryConfiguration retry = new RetryConfiguration();
 
+  /**
+   * The number of connections per codec over which interactive operations are spread
+   */
+  @JsonProperty
+  @Min(1)
+  private int connectionPoolSize = 1;
+
+  /**
+   * The number of connections per codec dedicated to bulk operations; if zero, bulk operations share connections with
+   * interactive operations
+   */
+  @JsonProperty
+  @Min(0)
+  private int bulkConnectionPoolSize = 0;
+
+  /**
+   * The maximum number of concurrent operations on keys owned by any single upstream node; if zero, the number of
+   * concurrent operations per node is unlimited
+   */
+  @JsonProperty
+  @Min(0)
+  private int maxConcurrentCallsPerNode = 0;
+
+  @JsonProperty
+  @NotNull
+  private RedisConnectionSelectionPolicy connectionSelectionPolicy = RedisConnectionSelectionPolicy.ROUND_ROBIN;
+
   public String getConfigurationUri() {
     return configurationUri;
   }
@@ -47,4 +76,20 @@ public class RedisClusterConfiguration {
   public RetryConfiguration getRetryConfiguration() {
     return retry;
   }
+
+  public int getConnectionPoolSize() {
+    return connectionPoolSize;
+  }
+
+  public int getBulkConnectionPoolSize() {
+    return bulkConnectionPoolSize;
+  }
+
+  public RedisConnectionSelectionPolicy getConnectionSelectionPolicy() {
+    return connectionSelectionPolicy;
+  }
+
+  public int getMaxConcurrentCallsPerNode() {
+    return maxConcurrentCallsPerNode;
+  }
 }
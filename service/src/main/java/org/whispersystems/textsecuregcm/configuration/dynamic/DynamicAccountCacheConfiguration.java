@@ -0,0 +1,14 @@
+/*
+ * Copyright 2023 Signal Messenger, LLC
+ * SPDX-License-Identifier: AGPL-3.0-only
+ */
+
+package org.whispersystems.textsecuregcm.configuration.dynamic;
+
+/**
+ * @param secondaryKeyCopiesEnabled whether to store copies of accounts alongside their secondary keys in the account
+ * cache and use them for lookups by secondary key. Servers that predate secondary key copies don't update or remove
+ * them, so this must only be enabled once no such servers remain.
+ */
+public record DynamicAccountCacheConfiguration(boolean secondaryKeyCopiesEnabled) {
+}
@@ -59,6 +59,14 @@ public class DynamicConfiguration {
   @Valid
   DynamicInboundMessageByteLimitConfiguration inboundMessageByteLimit = new DynamicInboundMessageByteLimitConfiguration(true);
 
+  @JsonProperty
+  @Valid
+  DynamicMultiRecipientMessageConfiguration multiRecipientMessage = new DynamicMultiRecipientMessageConfiguration();
+
+  @JsonProperty
+  @Valid
+  DynamicAccountCacheConfiguration accountCache = new DynamicAccountCacheConfiguration(false);
+
   public Optional<DynamicExperimentEnrollmentConfiguration> getExperimentEnrollmentConfiguration(
       final String experimentName) {
     return Optional.ofNullable(experiments.get(experimentName));
@@ -104,4 +112,12 @@ public class DynamicConfiguration {
   public DynamicInboundMessageByteLimitConfiguration getInboundMessageByteLimitConfiguration() {
     return inboundMessageByteLimit;
   }
+
+  public DynamicMultiRecipientMessageConfiguration getMultiRecipientMessageConfiguration() {
+    return multiRecipientMessage;
+  }
+
+  public DynamicAccountCacheConfiguration getAccountCacheConfiguration() {
+    return accountCache;
+  }
 }
@@ -6,13 +6,100 @@
 package org.whispersystems.textsecuregcm.configuration.dynamic;
 
 import com.fasterxml.jackson.annotation.JsonProperty;
+import java.time.Duration;
+import javax.validation.constraints.DecimalMax;
+import javax.validation.constraints.DecimalMin;
+import javax.validation.constraints.Min;
+import javax.validation.constraints.NotNull;
 
 public class DynamicMessagePersisterConfiguration {
 
   @JsonProperty
   private boolean persistenceEnabled = true;
 
+  /**
+   * The maximum number of queues each message persister worker may persist concurrently
+   */
+  @JsonProperty
+  @Min(1)
+  private int queuePersistenceConcurrency = 8;
+
+  /**
+   * If true, the message persister will shorten its persist delay and raise its concurrency when the message cache is
+   * under pressure
+   */
+  @JsonProperty
+  private boolean adaptivePersistenceEnabled = false;
+
+  /**
+   * The shortest persist delay the message persister may use when the message cache is under maximum pressure
+   */
+  @JsonProperty
+  @NotNull
+  private Duration minPersistDelay = Duration.ofMinutes(1);
+
+  /**
+   * The highest number of queues each worker may persist concurrently when the message cache is under maximum pressure
+   */
+  @JsonProperty
+  @Min(1)
+  private int maxQueuePersistenceConcurrency = 32;
+
+  /**
+   * The fraction of available memory in use by any message cache node below which that node is not considered to be
+   * under memory pressure
+   */
+  @JsonProperty
+  @DecimalMin("0")
+  @DecimalMax("1")
+  private double memoryPressureLowWatermark = 0.5;
+
+  /**
+   * The fraction of available memory in use by any message cache node at or above which that node is considered to be
+   * under maximum memory pressure
+   */
+  @JsonProperty
+  @DecimalMin("0")
+  @DecimalMax("1")
+  private double memoryPressureHighWatermark = 0.8;
+
+  /**
+   * The estimated number of queues awaiting persistence at or above which the message cache is considered to be under
+   * maximum pressure
+   */
+  @JsonProperty
+  @Min(1)
+  private long queueCountHighWatermark = 1_000_000;
+
   public boolean isPersistenceEnabled() {
     return persistenceEnabled;
   }
+
+  public int getQueuePersistenceConcurrency() {
+    return queuePersistenceConcurrency;
+  }
+
+  public boolean isAdaptivePersistenceEnabled() {
+    return adaptivePersistenceEnabled;
+  }
+
+  public Duration getMinPersistDelay() {
+    return minPersistDelay;
+  }
+
+  public int getMaxQueuePersistenceConcurrency() {
+    return maxQueuePersistenceConcurrency;
+  }
+
+  public double getMemoryPressureLowWatermark() {
+    return memoryPressureLowWatermark;
+  }
+
+  public double getMemoryPressureHighWatermark() {
+    return memoryPressureHighWatermark;
+  }
+
+  public long getQueueCountHighWatermark() {
+    return queueCountHighWatermark;
+  }
 }
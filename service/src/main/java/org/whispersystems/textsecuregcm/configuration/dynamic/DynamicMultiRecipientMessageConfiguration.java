@@ -0,0 +1,25 @@
+/*
+ * Copyright 2023 Signal Messenger, LLC
+ * SPDX-License-Identifier: AGPL-3.0-only
+ */
+
+package org.whispersystems.textsecuregcm.configuration.dynamic;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+import javax.validation.constraints.Min;
+
+public class DynamicMultiRecipientMessageConfiguration {
+
+  /**
+   * The maximum number of destination accounts to which a single multi-recipient message request may be delivering
+   * messages at any given time. Deliveries still occupy threads in the shared multi-recipient message executor, so this
+   * should stay well below that executor's size to keep a single request from starving all others.
+   */
+  @JsonProperty
+  @Min(1)
+  private int maxConcurrency = 8;
+
+  public int getMaxConcurrency() {
+    return maxConcurrency;
+  }
+}
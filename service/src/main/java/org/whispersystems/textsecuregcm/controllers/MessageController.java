@@ -13,9 +13,11 @@ import com.google.protobuf.ByteString;
 import io.dropwizard.auth.Auth;
 import io.dropwizard.util.DataSize;
 import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
 import io.micrometer.core.instrument.Metrics;
 import io.micrometer.core.instrument.Tag;
 import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.Timer;
 import java.security.MessageDigest;
 import java.time.Duration;
 import java.util.ArrayList;
@@ -32,7 +34,6 @@ import java.util.Objects;
 import java.util.Optional;
 import java.util.Set;
 import java.util.UUID;
-import java.util.concurrent.Callable;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.atomic.AtomicBoolean;
@@ -88,12 +89,14 @@ import org.whispersystems.textsecuregcm.entities.StaleDevices;
 import org.whispersystems.textsecuregcm.identity.AciServiceIdentifier;
 import org.whispersystems.textsecuregcm.identity.ServiceIdentifier;
 import org.whispersystems.textsecuregcm.limits.CardinalityEstimator;
+import org.whispersystems.textsecuregcm.limits.RateLimitCheck;
+import org.whispersystems.textsecuregcm.limits.RateLimiter;
 import org.whispersystems.textsecuregcm.limits.RateLimiters;
 import org.whispersystems.textsecuregcm.metrics.MessageMetrics;
+import org.whispersystems.textsecuregcm.metrics.MeterCache;
 import org.whispersystems.textsecuregcm.metrics.UserAgentTagUtil;
 import org.whispersystems.textsecuregcm.providers.MultiRecipientMessageProvider;
 import org.whispersystems.textsecuregcm.push.MessageSender;
-import org.whispersystems.textsecuregcm.push.NotPushRegisteredException;
 import org.whispersystems.textsecuregcm.push.PushNotificationManager;
 import org.whispersystems.textsecuregcm.push.ReceiptSender;
 import org.whispersystems.textsecuregcm.spam.FilterSpam;
@@ -110,6 +113,8 @@ import org.whispersystems.textsecuregcm.util.Pair;
 import org.whispersystems.textsecuregcm.util.Util;
 import org.whispersystems.textsecuregcm.websocket.WebSocketConnection;
 import org.whispersystems.websocket.Stories;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
 import reactor.core.scheduler.Scheduler;
 
 @SuppressWarnings("OptionalUsedAsFieldOrParameterType")
@@ -133,12 +138,30 @@ public class MessageController {
   private final ClientReleaseManager clientReleaseManager;
   private final DynamicConfigurationManager<DynamicConfiguration> dynamicConfigurationManager;
 
+  private final MeterCache<SentMessageCounterKey, Counter> sentMessageCounters = new MeterCache<>(100,
+      key -> Metrics.counter(SENT_MESSAGE_COUNTER_NAME, Tags.of(key.platformTag(),
+          Tag.of(EPHEMERAL_TAG_NAME, String.valueOf(key.ephemeral())),
+          Tag.of(SENDER_TYPE_TAG_NAME, key.senderType()))),
+      () -> Metrics.counter(SENT_MESSAGE_COUNTER_NAME, Tags.of(
+          UserAgentTagUtil.PLATFORM_TAG, MeterCache.OVERFLOW_TAG_VALUE,
+          EPHEMERAL_TAG_NAME, MeterCache.OVERFLOW_TAG_VALUE,
+          SENDER_TYPE_TAG_NAME, MeterCache.OVERFLOW_TAG_VALUE)));
+
+  private final MeterCache<Tag, DistributionSummary> contentSizeDistributions = new MeterCache<>(100,
+      platformTag -> Metrics.summary(CONTENT_SIZE_DISTRIBUTION_NAME, Tags.of(platformTag)),
+      () -> Metrics.summary(CONTENT_SIZE_DISTRIBUTION_NAME,
+          Tags.of(UserAgentTagUtil.PLATFORM_TAG, MeterCache.OVERFLOW_TAG_VALUE)));
+
+  private record SentMessageCounterKey(Tag platformTag, boolean ephemeral, String senderType) {
+  }
+
   private static final String REJECT_OVERSIZE_MESSAGE_COUNTER = name(MessageController.class, "rejectOversizeMessage");
   private static final String SENT_MESSAGE_COUNTER_NAME = name(MessageController.class, "sentMessages");
   private static final String CONTENT_SIZE_DISTRIBUTION_NAME = name(MessageController.class, "messageContentSize");
   private static final String OUTGOING_MESSAGE_LIST_SIZE_BYTES_DISTRIBUTION_NAME = name(MessageController.class, "outgoingMessageListSizeBytes");
   private static final String RATE_LIMITED_MESSAGE_COUNTER_NAME = name(MessageController.class, "rateLimitedMessage");
   private static final String RATE_LIMITED_STORIES_COUNTER_NAME = name(MessageController.class, "rateLimitedStory");
+  private static final String MULTI_RECIPIENT_ACCOUNT_LOOKUP_TIMER_NAME = name(MessageController.class, "multiRecipientAccountLookup");
 
   private static final String REJECT_INVALID_ENVELOPE_TYPE = name(MessageController.class, "rejectInvalidEnvelopeType");
 
@@ -301,30 +324,30 @@ public class MessageController {
           IncomingMessage::destinationRegistrationId,
           destination.get().getPhoneNumberIdentifier().equals(destinationIdentifier.uuid()));
 
-      final List<Tag> tags = List.of(UserAgentTagUtil.getPlatformTag(userAgent),
-          Tag.of(EPHEMERAL_TAG_NAME, String.valueOf(messages.online())),
-          Tag.of(SENDER_TYPE_TAG_NAME, senderType));
+      final Counter sentMessageCounter = sentMessageCounters.get(
+          new SentMessageCounterKey(UserAgentTagUtil.getPlatformTag(userAgent), messages.online(), senderType));
+
+      final Map<Device, Envelope> envelopesByDevice = new HashMap<>();
 
       for (IncomingMessage incomingMessage : messages.messages()) {
         Optional<Device> destinationDevice = destination.get().getDevice(incomingMessage.destinationDeviceId());
 
         if (destinationDevice.isPresent()) {
-          Metrics.counter(SENT_MESSAGE_COUNTER_NAME, tags).increment();
-          sendIndividualMessage(
+          sentMessageCounter.increment();
+          envelopesByDevice.put(destinationDevice.get(), buildIndividualMessageEnvelope(
               source,
-              destination.get(),
-              destinationDevice.get(),
               destinationIdentifier,
               messages.timestamp(),
-              messages.online(),
               isStory,
               messages.urgent(),
               incomingMessage,
               userAgent,
-              spamReportToken);
+              spamReportToken));
         }
       }
 
+      sendIndividualMessages(destination.get(), envelopesByDevice, messages.online());
+
       return Response.ok(new SendMessageResponse(needsSync)).build();
     } catch (NoSuchUserException e) {
       throw new WebApplicationException(Response.status(404).build());
@@ -382,20 +405,17 @@ public class MessageController {
       @QueryParam("story") boolean isStory,
       @NotNull @Valid MultiRecipientMessage multiRecipientMessage) {
 
-    final Map<ServiceIdentifier, Account> accountsByServiceIdentifier = new HashMap<>();
+    final Set<ServiceIdentifier> recipientIdentifiers = Arrays.stream(multiRecipientMessage.recipients())
+        .map(Recipient::uuid)
+        .collect(Collectors.toSet());
 
-    for (final Recipient recipient : multiRecipientMessage.recipients()) {
-      if (!accountsByServiceIdentifier.containsKey(recipient.uuid())) {
-        final Optional<Account> maybeAccount = accountsManager.getByServiceIdentifier(recipient.uuid());
-
-        if (maybeAccount.isPresent()) {
-          accountsByServiceIdentifier.put(recipient.uuid(), maybeAccount.get());
-        } else {
-          if (!isStory) {
-            throw new NotFoundException();
-          }
-        }
-      }
+    final Timer.Sample lookupSample = Timer.start();
+    final Map<ServiceIdentifier, Account> accountsByServiceIdentifier =
+        accountsManager.getByServiceIdentifiersAsync(recipientIdentifiers).join();
+    lookupSample.stop(Metrics.timer(MULTI_RECIPIENT_ACCOUNT_LOOKUP_TIMER_NAME));
+
+    if (!isStory && accountsByServiceIdentifier.size() != recipientIdentifiers.size()) {
+      throw new NotFoundException();
     }
 
     // Stories will be checked by the client; we bypass access checks here for stories.
@@ -412,14 +432,14 @@ public class MessageController {
       return Response.ok(new SendMultiRecipientMessageResponse(new LinkedList<>())).build();
     }
 
+    if (isStory) {
+      checkStoryRateLimits(accountsByServiceIdentifier.values(), userAgent);
+    }
+
     Collection<AccountMismatchedDevices> accountMismatchedDevices = new ArrayList<>();
     Collection<AccountStaleDevices> accountStaleDevices = new ArrayList<>();
     accountsByServiceIdentifier.forEach((serviceIdentifier, account) -> {
 
-      if (isStory) {
-        checkStoryRateLimit(account, userAgent);
-      }
-
       Set<Long> deviceIds = accountToDeviceIdAndRegistrationIdMap
         .getOrDefault(account, Collections.emptySet())
         .stream()
@@ -457,34 +477,48 @@ public class MessageController {
           .build();
     }
 
-    List<ServiceIdentifier> uuids404 = Collections.synchronizedList(new ArrayList<>());
+    final Counter sentMessageCounter = sentMessageCounters.get(
+        new SentMessageCounterKey(UserAgentTagUtil.getPlatformTag(userAgent), online, SENDER_TYPE_UNIDENTIFIED));
 
-    try {
-      final Counter sentMessageCounter = Metrics.counter(SENT_MESSAGE_COUNTER_NAME, Tags.of(
-          UserAgentTagUtil.getPlatformTag(userAgent),
-          Tag.of(EPHEMERAL_TAG_NAME, String.valueOf(online)),
-          Tag.of(SENDER_TYPE_TAG_NAME, SENDER_TYPE_UNIDENTIFIED)));
-
-      multiRecipientMessageExecutor.invokeAll(Arrays.stream(multiRecipientMessage.recipients())
-          .map(recipient -> (Callable<Void>) () -> {
-            Account destinationAccount = accountsByServiceIdentifier.get(recipient.uuid());
-
-            // we asserted this must exist in validateCompleteDeviceList
-            Device destinationDevice = destinationAccount.getDevice(recipient.deviceId()).orElseThrow();
-            sentMessageCounter.increment();
-            try {
-              sendCommonPayloadMessage(destinationAccount, destinationDevice, timestamp, online, isStory, isUrgent,
-                  recipient, multiRecipientMessage.commonPayload());
-            } catch (NoSuchUserException e) {
-              uuids404.add(recipient.uuid());
-            }
-            return null;
-          })
-          .collect(Collectors.toList()));
-    } catch (InterruptedException e) {
-      logger.error("interrupted while delivering multi-recipient messages", e);
-      return Response.serverError().entity("interrupted during delivery").build();
+    final Map<Account, ServiceIdentifier> serviceIdentifiersByAccount = new HashMap<>();
+    final Map<Account, Map<Device, Envelope>> envelopesByAccount = new HashMap<>();
+
+    for (final Recipient recipient : multiRecipientMessage.recipients()) {
+      final Account destinationAccount = accountsByServiceIdentifier.get(recipient.uuid());
+
+      // Story recipients that don't exist have already been filtered out and are skipped silently
+      if (destinationAccount == null) {
+        continue;
+      }
+
+      // we asserted this must exist in validateCompleteDeviceList
+      final Device destinationDevice = destinationAccount.getDevice(recipient.deviceId()).orElseThrow();
+      sentMessageCounter.increment();
+
+      serviceIdentifiersByAccount.put(destinationAccount, recipient.uuid());
+      envelopesByAccount.computeIfAbsent(destinationAccount, ignored -> new HashMap<>())
+          .put(destinationDevice, buildCommonPayloadEnvelope(destinationAccount, timestamp, isStory, isUrgent, recipient,
+              multiRecipientMessage.commonPayload()));
     }
+
+    // Deliver messages to each destination account asynchronously, but limit the number of accounts in flight for any
+    // single request so that very large group sends can't monopolize shared resources
+    final int maxConcurrency =
+        dynamicConfigurationManager.getConfiguration().getMultiRecipientMessageConfiguration().getMaxConcurrency();
+
+    final List<ServiceIdentifier> uuids404 = Flux.fromIterable(envelopesByAccount.entrySet())
+        .flatMap(entry -> Mono.fromFuture(() -> messageSender.sendMessagesAsync(entry.getKey(), entry.getValue(), online,
+                    multiRecipientMessageExecutor))
+                .filter(unreachableDevices -> unreachableDevices.stream().anyMatch(Device::isPrimary))
+                .map(ignored -> serviceIdentifiersByAccount.get(entry.getKey()))
+                .onErrorResume(throwable -> {
+                  logger.warn("Failed to deliver multi-recipient message", throwable);
+                  return Mono.empty();
+                }),
+            maxConcurrency)
+        .collectList()
+        .block();
+
     return Response.ok(new SendMultiRecipientMessageResponse(uuids404)).build();
   }
 
@@ -660,80 +694,76 @@ public class MessageController {
         .build();
   }
 
-  private void sendIndividualMessage(
+  private Envelope buildIndividualMessageEnvelope(
       Optional<AuthenticatedAccount> source,
-      Account destinationAccount,
-      Device destinationDevice,
       ServiceIdentifier destinationIdentifier,
       long timestamp,
-      boolean online,
       boolean story,
       boolean urgent,
       IncomingMessage incomingMessage,
       String userAgentString,
-      Optional<byte[]> spamReportToken)
-      throws NoSuchUserException {
+      Optional<byte[]> spamReportToken) {
+
     try {
-      final Envelope envelope;
+      Account sourceAccount = source.map(AuthenticatedAccount::getAccount).orElse(null);
+      Long sourceDeviceId = source.map(account -> account.getAuthenticatedDevice().getId()).orElse(null);
+      return incomingMessage.toEnvelope(
+          destinationIdentifier,
+          sourceAccount,
+          sourceDeviceId,
+          timestamp == 0 ? System.currentTimeMillis() : timestamp,
+          story,
+          urgent,
+          spamReportToken.orElse(null));
+    } catch (final IllegalArgumentException e) {
+      logger.warn("Received bad envelope type {} from {}", incomingMessage.type(), userAgentString);
+      throw new BadRequestException(e);
+    }
+  }
 
-      try {
-        Account sourceAccount = source.map(AuthenticatedAccount::getAccount).orElse(null);
-        Long sourceDeviceId = source.map(account -> account.getAuthenticatedDevice().getId()).orElse(null);
-        envelope = incomingMessage.toEnvelope(
-            destinationIdentifier,
-            sourceAccount,
-            sourceDeviceId,
-            timestamp == 0 ? System.currentTimeMillis() : timestamp,
-            story,
-            urgent,
-            spamReportToken.orElse(null));
-      } catch (final IllegalArgumentException e) {
-        logger.warn("Received bad envelope type {} from {}", incomingMessage.type(), userAgentString);
-        throw new BadRequestException(e);
-      }
+  private void sendIndividualMessages(
+      Account destinationAccount,
+      Map<Device, Envelope> envelopesByDevice,
+      boolean online)
+      throws NoSuchUserException {
+
+    if (envelopesByDevice.isEmpty()) {
+      return;
+    }
 
-      messageSender.sendMessage(destinationAccount, destinationDevice, envelope, online);
-    } catch (NotPushRegisteredException e) {
-      if (destinationDevice.isPrimary()) throw new NoSuchUserException(e);
-      else                              logger.debug("Not registered", e);
+    for (final Device unreachableDevice : messageSender.sendMessages(destinationAccount, envelopesByDevice, online)) {
+      if (unreachableDevice.isPrimary()) {
+        throw new NoSuchUserException(destinationAccount.getUuid());
+      } else {
+        logger.debug("Not registered: {}", unreachableDevice.getId());
+      }
     }
   }
 
-  private void sendCommonPayloadMessage(Account destinationAccount,
-      Device destinationDevice,
+  private Envelope buildCommonPayloadEnvelope(Account destinationAccount,
       long timestamp,
-      boolean online,
       boolean story,
       boolean urgent,
       Recipient recipient,
-      byte[] commonPayload) throws NoSuchUserException {
-    try {
-      Envelope.Builder messageBuilder = Envelope.newBuilder();
-      long serverTimestamp = System.currentTimeMillis();
-      byte[] recipientKeyMaterial = recipient.perRecipientKeyMaterial();
-
-      byte[] payload = new byte[1 + recipientKeyMaterial.length + commonPayload.length];
-      payload[0] = MultiRecipientMessageProvider.AMBIGUOUS_ID_VERSION_IDENTIFIER;
-      System.arraycopy(recipientKeyMaterial, 0, payload, 1, recipientKeyMaterial.length);
-      System.arraycopy(commonPayload, 0, payload, 1 + recipientKeyMaterial.length, commonPayload.length);
-
-      messageBuilder
-          .setType(Type.UNIDENTIFIED_SENDER)
-          .setTimestamp(timestamp == 0 ? serverTimestamp : timestamp)
-          .setServerTimestamp(serverTimestamp)
-          .setContent(ByteString.copyFrom(payload))
-          .setStory(story)
-          .setUrgent(urgent)
-          .setDestinationUuid(new AciServiceIdentifier(destinationAccount.getUuid()).toServiceIdentifierString());
-
-      messageSender.sendMessage(destinationAccount, destinationDevice, messageBuilder.build(), online);
-    } catch (NotPushRegisteredException e) {
-      if (destinationDevice.isPrimary()) {
-        throw new NoSuchUserException(e);
-      } else {
-        logger.debug("Not registered", e);
-      }
-    }
+      byte[] commonPayload) {
+
+    long serverTimestamp = System.currentTimeMillis();
+    byte[] recipientKeyMaterial = recipient.perRecipientKeyMaterial();
+
+    byte[] payload = new byte[1 + recipientKeyMaterial.length + commonPayload.length];
+    payload[0] = MultiRecipientMessageProvider.AMBIGUOUS_ID_VERSION_IDENTIFIER;
+    System.arraycopy(recipientKeyMaterial, 0, payload, 1, recipientKeyMaterial.length);
+    System.arraycopy(commonPayload, 0, payload, 1 + recipientKeyMaterial.length, commonPayload.length);
+
+    return Envelope.newBuilder()
+        .setType(Type.UNIDENTIFIED_SENDER)
+        .setTimestamp(timestamp == 0 ? serverTimestamp : timestamp)
+        .setServerTimestamp(serverTimestamp)
+        .setContent(ByteString.copyFrom(payload))
+        .setStory(story)
+        .setUrgent(urgent)
+        .setDestinationUuid(new AciServiceIdentifier(destinationAccount.getUuid()).toServiceIdentifierString())
+        .build();
   }
 
   private void checkStoryRateLimit(Account destination, String userAgent) {
@@ -744,6 +774,25 @@ public class MessageController {
     }
   }
 
+  /**
+   * Takes a story permit for each recipient of a multi-recipient story. Story rate limits are measured but not
+   * enforced, and each recipient's check is independent of the others, so all checks share a single round trip to the
+   * rate limiter cluster.
+   */
+  private void checkStoryRateLimits(final Collection<Account> destinations, final String userAgent) {
+    final long rateLimitedStories = RateLimiter.validateAll(destinations.stream()
+            .map(destination -> new RateLimitCheck(rateLimiters.getStoriesLimiter(), destination.getUuid(), 1))
+            .toList())
+        .stream()
+        .filter(Optional::isPresent)
+        .count();
+
+    if (rateLimitedStories > 0) {
+      Metrics.counter(RATE_LIMITED_STORIES_COUNTER_NAME, Tags.of(UserAgentTagUtil.getPlatformTag(userAgent)))
+          .increment(rateLimitedStories);
+    }
+  }
+
   private void checkMessageRateLimit(AuthenticatedAccount source, Account destination, String userAgent)
       throws RateLimitExceededException {
     final String senderCountryCode = Util.getCountryCode(source.getAccount().getNumber());
@@ -762,8 +811,7 @@ public class MessageController {
   }
 
   private void validateContentLength(final int contentLength, final String userAgent) {
-    Metrics.summary(CONTENT_SIZE_DISTRIBUTION_NAME, Tags.of(UserAgentTagUtil.getPlatformTag(userAgent)))
-        .record(contentLength);
+    contentSizeDistributions.get(UserAgentTagUtil.getPlatformTag(userAgent)).record(contentLength);
 
     if (contentLength > MAX_MESSAGE_SIZE) {
       Metrics.counter(REJECT_OVERSIZE_MESSAGE_COUNTER, Tags.of(UserAgentTagUtil.getPlatformTag(userAgent)))
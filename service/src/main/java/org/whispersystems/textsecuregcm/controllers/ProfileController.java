@@ -13,7 +13,6 @@ import io.micrometer.core.instrument.Counter;
 import io.micrometer.core.instrument.Metrics;
 import io.micrometer.core.instrument.Tags;
 import io.swagger.v3.oas.annotations.tags.Tag;
-import io.vavr.Tuple;
 import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
 import java.time.Clock;
@@ -29,6 +28,7 @@ import java.util.Locale;
 import java.util.Map;
 import java.util.Objects;
 import java.util.Optional;
+import java.util.Set;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.Executor;
 import java.util.function.Function;
@@ -317,42 +317,35 @@ public class ProfileController {
   @Produces(MediaType.APPLICATION_JSON)
   @Path("/identity_check/batch")
   public CompletableFuture<BatchIdentityCheckResponse> runBatchIdentityCheck(@NotNull @Valid BatchIdentityCheckRequest request) {
-    return CompletableFuture.supplyAsync(() -> {
-          List<BatchIdentityCheckResponse.Element> responseElements = Collections.synchronizedList(new ArrayList<>());
-
-          final int targetBatchCount = 10;
-          // clamp the amount per batch to be in the closed range [30, 100]
-          final int batchSize = Math.min(Math.max(request.elements().size() / targetBatchCount, 30), 100);
-          // add 1 extra batch if there is any remainder to consume the final non-full batch
-          final int batchCount =
-              request.elements().size() / batchSize + (request.elements().size() % batchSize != 0 ? 1 : 0);
-
-          @SuppressWarnings("rawtypes") CompletableFuture[] futures = new CompletableFuture[batchCount];
-          for (int i = 0; i < batchCount; ++i) {
-            List<BatchIdentityCheckRequest.Element> batch = request.elements()
-                .subList(i * batchSize, Math.min((i + 1) * batchSize, request.elements().size()));
-            futures[i] = CompletableFuture.runAsync(() -> {
-              MessageDigest sha256;
-              try {
-                sha256 = MessageDigest.getInstance("SHA-256");
-              } catch (NoSuchAlgorithmException e) {
-                throw new AssertionError(e);
-              }
-              for (final BatchIdentityCheckRequest.Element element : batch) {
-                checkFingerprintAndAdd(element, responseElements, sha256);
-              }
-            }, batchIdentityCheckExecutor);
+    final Set<ServiceIdentifier> identifiers = request.elements().stream()
+        .map(element -> Objects.requireNonNullElse(element.uuid(), element.aci()))
+        .collect(Collectors.toSet());
+
+    return accountsManager.getByServiceIdentifiersAsync(identifiers)
+        .thenApplyAsync(accountsByServiceIdentifier -> {
+          final List<BatchIdentityCheckResponse.Element> responseElements = new ArrayList<>();
+
+          final MessageDigest sha256;
+          try {
+            sha256 = MessageDigest.getInstance("SHA-256");
+          } catch (NoSuchAlgorithmException e) {
+            throw new AssertionError(e);
+          }
+
+          for (final BatchIdentityCheckRequest.Element element : request.elements()) {
+            checkFingerprintAndAdd(element, accountsByServiceIdentifier, responseElements, sha256);
           }
 
-          return Tuple.of(futures, responseElements);
-        }).thenCompose(tuple2 -> CompletableFuture.allOf(tuple2._1).thenApply((ignored) -> new BatchIdentityCheckResponse(tuple2._2)));
+          return new BatchIdentityCheckResponse(responseElements);
+        }, batchIdentityCheckExecutor);
   }
 
   private void checkFingerprintAndAdd(BatchIdentityCheckRequest.Element element,
+      Map<ServiceIdentifier, Account> accountsByServiceIdentifier,
       Collection<BatchIdentityCheckResponse.Element> responseElements, MessageDigest md) {
 
     final ServiceIdentifier identifier = Objects.requireNonNullElse(element.uuid(), element.aci());
-    final Optional<Account> maybeAccount = accountsManager.getByServiceIdentifier(identifier);
+    final Optional<Account> maybeAccount = Optional.ofNullable(accountsByServiceIdentifier.get(identifier));
 
     maybeAccount.ifPresent(account -> {
       final IdentityKey identityKey = account.getIdentityKey(identifier.identityType());
@@ -0,0 +1,135 @@
+/*
+ * Copyright 2023 Signal Messenger, LLC
+ * SPDX-License-Identifier: AGPL-3.0-only
+ */
+
+package org.whispersystems.textsecuregcm.limits;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.google.common.annotations.VisibleForTesting;
+import java.time.Clock;
+import java.time.Duration;
+
+/**
+ * Tracks permits that this server instance has leased in bulk from a shared rate limiter bucket. Once a key has been
+ * requested often enough to be considered "hot," callers may acquire a lease of several permits from the shared bucket
+ * at once and then hand them out locally until the lease runs out or expires.
+ * <p>
+ * Leased permits are removed from the shared bucket when they're acquired, so leasing can never allow more than the
+ * configured rate across all instances; instead, permits leased by one instance but not yet used are unavailable to
+ * other instances. The resulting error is bounded by the lease size per instance, and unused permits are discarded
+ * once a lease is older than the time it would take the shared bucket to regenerate them.
+ */
+class LocalPermitLeases {
+
+  private final int leaseSize;
+  private final Duration leaseDuration;
+  private final Clock clock;
+
+  private final Cache<String, Lease> leasesByKey;
+
+  @VisibleForTesting
+  static final int HOT_KEY_THRESHOLD = 3;
+
+  private static final long MAX_TRACKED_KEYS = 100_000;
+  private static final Duration KEY_IDLE_EXPIRATION = Duration.ofMinutes(1);
+
+  private static class Lease {
+
+    private int requests;
+    private long permitsRemaining;
+    private long expirationMillis;
+  }
+
+  LocalPermitLeases(final RateLimiterConfig config, final Clock clock) {
+    if (config.leaseSize() <= 0) {
+      throw new IllegalArgumentException("Lease size must be positive");
+    }
+
+    this.leaseSize = config.leaseSize();
+    this.leaseDuration = Duration.ofMillis((long) Math.ceil(leaseSize / config.leakRatePerMillis()));
+    this.clock = clock;
+
+    this.leasesByKey = Caffeine.newBuilder()
+        .maximumSize(MAX_TRACKED_KEYS)
+        .expireAfterAccess(KEY_IDLE_EXPIRATION.compareTo(leaseDuration) > 0 ? KEY_IDLE_EXPIRATION : leaseDuration)
+        .build();
+  }
+
+  /**
+   * Consumes the given number of permits from the local lease for the given key if the lease has enough permits
+   * remaining.
+   *
+   * @return {@code true} if the permits were consumed from the local lease or {@code false} if the caller must check the
+   * shared bucket
+   */
+  boolean tryConsume(final String key, final int amount) {
+    final Lease lease = leasesByKey.get(key, ignored -> new Lease());
+
+    synchronized (lease) {
+      lease.requests++;
+
+      if (getPermitsRemaining(lease) >= amount) {
+        lease.permitsRemaining -= amount;
+        return true;
+      }
+
+      return false;
+    }
+  }
+
+  /**
+   * Checks whether the local lease for the given key has at least the given number of permits remaining without
+   * consuming any permits.
+   */
+  boolean hasPermits(final String key, final int amount) {
+    final Lease lease = leasesByKey.getIfPresent(key);
+
+    if (lease == null) {
+      return false;
+    }
+
+    synchronized (lease) {
+      return getPermitsRemaining(lease) >= amount;
+    }
+  }
+
+  /**
+   * Returns the number of permits a caller should try to acquire from the shared bucket to satisfy a request for the
+   * given number of permits and refill the local lease for the given key, or zero if the key isn't requested often
+   * enough to justify a lease.
+   */
+  int getAcquisitionAmount(final String key, final int amount) {
+    final Lease lease = leasesByKey.getIfPresent(key);
+
+    if (lease == null) {
+      return 0;
+    }
+
+    synchronized (lease) {
+      return lease.requests >= HOT_KEY_THRESHOLD ? leaseSize + amount : 0;
+    }
+  }
+
+  /**
+   * Adds permits acquired from the shared bucket to the local lease for the given key and restarts the lease's
+   * expiration clock.
+   */
+  void addPermits(final String key, final int permits) {
+    final Lease lease = leasesByKey.get(key, ignored -> new Lease());
+
+    synchronized (lease) {
+      lease.permitsRemaining = getPermitsRemaining(lease) + permits;
+      lease.expirationMillis = clock.millis() + leaseDuration.toMillis();
+    }
+  }
+
+  void invalidate(final String key) {
+    leasesByKey.invalidate(key);
+  }
+
+  private long getPermitsRemaining(final Lease lease) {
+    return clock.millis() < lease.expirationMillis ? lease.permitsRemaining : 0;
+  }
+}
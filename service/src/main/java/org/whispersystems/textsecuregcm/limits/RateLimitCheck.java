@@ -0,0 +1,27 @@
+/*
+ * Copyright 2023 Signal Messenger, LLC
+ * SPDX-License-Identifier: AGPL-3.0-only
+ */
+
+package org.whispersystems.textsecuregcm.limits;
+
+import java.util.UUID;
+
+/**
+ * A request to take a number of permits for a key from a specific rate limiter as part of a batch of checks submitted
+ * via {@link RateLimiter#validateAll(java.util.List)}.
+ *
+ * @param rateLimiter the rate limiter from which to take permits
+ * @param key the key for which to take permits
+ * @param amount the number of permits to take
+ */
+public record RateLimitCheck(RateLimiter rateLimiter, String key, int amount) {
+
+  public RateLimitCheck(final RateLimiter rateLimiter, final UUID accountUuid, final int amount) {
+    this(rateLimiter, accountUuid.toString(), amount);
+  }
+
+  public RateLimitCheck(final RateLimiter rateLimiter, final UUID srcAccountUuid, final UUID dstAccountUuid) {
+    this(rateLimiter, srcAccountUuid.toString() + "__" + dstAccountUuid.toString(), 1);
+  }
+}
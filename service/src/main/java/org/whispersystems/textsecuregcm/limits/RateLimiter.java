@@ -5,9 +5,14 @@
 
 package org.whispersystems.textsecuregcm.limits;
 
+import java.util.List;
+import java.util.Optional;
 import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 import java.util.concurrent.CompletionStage;
 import org.whispersystems.textsecuregcm.controllers.RateLimitExceededException;
+import org.whispersystems.textsecuregcm.util.ExceptionUtils;
 import reactor.core.publisher.Mono;
 
 public interface RateLimiter {
@@ -90,6 +95,72 @@ public interface RateLimiter {
     }
   }
 
+  /**
+   * Takes permits from several rate limiters at once. All checks are dispatched concurrently rather than one after
+   * another, so a batch of checks costs roughly one round trip to the rate limiter backing store instead of one round
+   * trip per check. Each check takes permits independently of the others; a check that exceeds its limit does not
+   * prevent other checks in the same batch from taking permits.
+   *
+   * @param checks the checks to perform
+   *
+   * @return a future that yields, for each check and in the same order as the given checks, either an empty optional if
+   * the permits were granted or the exception describing the exceeded limit (including its retry-after duration)
+   * otherwise; the future fails if any check failed for a reason other than an exceeded limit
+   */
+  static CompletableFuture<List<Optional<RateLimitExceededException>>> validateAllAsync(
+      final List<RateLimitCheck> checks) {
+
+    final List<CompletableFuture<Optional<RateLimitExceededException>>> futures = checks.stream()
+        .map(check -> dispatch(check)
+            .thenApply(ignored -> Optional.<RateLimitExceededException>empty())
+            .exceptionally(throwable -> {
+              if (ExceptionUtils.unwrap(throwable) instanceof RateLimitExceededException e) {
+                return Optional.of(e);
+              }
+
+              throw ExceptionUtils.wrap(throwable);
+            }))
+        .toList();
+
+    return CompletableFuture.allOf(futures.toArray(CompletableFuture[]::new))
+        .thenApply(ignored -> futures.stream().map(CompletableFuture::join).toList());
+  }
+
+  /**
+   * Dispatches a single check, returning a failed future instead of throwing if the rate limiter rejects the check
+   * synchronously (for example, because a circuit breaker is open) so that the check's failure is handled like any
+   * other failure and doesn't prevent other checks in the same batch from being dispatched.
+   */
+  private static CompletableFuture<Void> dispatch(final RateLimitCheck check) {
+    try {
+      return check.rateLimiter().validateAsync(check.key(), check.amount()).toCompletableFuture();
+    } catch (final RuntimeException e) {
+      return CompletableFuture.failedFuture(e);
+    }
+  }
+
+  /**
+   * Synchronously takes permits from several rate limiters at once.
+   *
+   * @param checks the checks to perform
+   *
+   * @return for each check and in the same order as the given checks, either an empty optional if the permits were
+   * granted or the exception describing the exceeded limit otherwise
+   *
+   * @see #validateAllAsync(List)
+   */
+  static List<Optional<RateLimitExceededException>> validateAll(final List<RateLimitCheck> checks) {
+    try {
+      return validateAllAsync(checks).join();
+    } catch (final CompletionException e) {
+      if (ExceptionUtils.unwrap(e) instanceof RuntimeException runtimeException) {
+        throw runtimeException;
+      }
+
+      throw e;
+    }
+  }
+
   @FunctionalInterface
   interface RateLimitValidator {
 
@@ -8,7 +8,21 @@ package org.whispersystems.textsecuregcm.limits;
 import javax.validation.constraints.AssertTrue;
 import java.time.Duration;
 
-public record RateLimiterConfig(int bucketSize, Duration permitRegenerationDuration) {
+/**
+ * Configures a rate limiter.
+ *
+ * @param bucketSize the maximum number of permits that may accumulate in a bucket
+ * @param permitRegenerationDuration the time it takes to regenerate a single permit
+ * @param leaseSize the number of permits each server instance may lease in bulk from the shared bucket for a frequently
+ * used key and hand out locally; this is also the maximum number of permits per instance that may be leased but unused
+ * at any time, and so bounds how much stricter than configured a limiter may behave. If zero, every check consults the
+ * shared bucket.
+ */
+public record RateLimiterConfig(int bucketSize, Duration permitRegenerationDuration, int leaseSize) {
+
+  public RateLimiterConfig(final int bucketSize, final Duration permitRegenerationDuration) {
+    this(bucketSize, permitRegenerationDuration, 0);
+  }
 
   public double leakRatePerMillis() {
     return 1.0 / (permitRegenerationDuration.toNanos() / 1e6);
@@ -23,4 +37,9 @@ public record RateLimiterConfig(int bucketSize, Duration permitRegenerationDurat
       return true;
     }
   }
+
+  @AssertTrue
+  public boolean hasValidLeaseSize() {
+    return leaseSize >= 0 && leaseSize < bucketSize;
+  }
 }
@@ -12,10 +12,15 @@ import com.google.common.annotations.VisibleForTesting;
 import io.lettuce.core.RedisException;
 import io.micrometer.core.instrument.Counter;
 import io.micrometer.core.instrument.Metrics;
+import java.nio.charset.StandardCharsets;
 import java.time.Clock;
 import java.time.Duration;
-import java.util.List;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ConcurrentHashMap;
+import javax.annotation.Nullable;
 import org.whispersystems.textsecuregcm.configuration.dynamic.DynamicConfiguration;
 import org.whispersystems.textsecuregcm.controllers.RateLimitExceededException;
 import org.whispersystems.textsecuregcm.metrics.MetricsUtil;
@@ -32,6 +37,8 @@ public class StaticRateLimiter implements RateLimiter {
   private final RateLimiterConfig config;
 
   private final Counter counter;
+  private final Counter leaseAcquiredCounter;
+  private final Counter leasedPermitsUsedCounter;
   private final DynamicConfigurationManager<DynamicConfiguration> dynamicConfigurationManager;
 
   private final ClusterLuaScript validateScript;
@@ -40,6 +47,19 @@ public class StaticRateLimiter implements RateLimiter {
 
   private final Clock clock;
 
+  private final byte[] bucketNamePrefix;
+  private final byte[] bucketSizeArgument;
+  private final byte[] leakRatePerMillisArgument;
+
+  // Validation script arguments are pre-encoded where possible because the script runs for nearly every request
+  private static final byte[][] ENCODED_SMALL_VALUES = encodeSmallValues();
+  private static final byte[] TRUE_ARGUMENT = "true".getBytes(StandardCharsets.US_ASCII);
+  private static final byte[] FALSE_ARGUMENT = "false".getBytes(StandardCharsets.US_ASCII);
+
+  @Nullable
+  private final LocalPermitLeases localPermitLeases;
+
+  private final Map<String, CompletableFuture<Void>> pendingLeaseAcquisitions = new ConcurrentHashMap<>();
 
   public StaticRateLimiter(
       final String name,
@@ -54,13 +74,23 @@ public class StaticRateLimiter implements RateLimiter {
     this.cacheCluster = requireNonNull(cacheCluster);
     this.clock = requireNonNull(clock);
     this.counter = Metrics.counter(MetricsUtil.name(getClass(), "exceeded"), "name", name);
+    this.leaseAcquiredCounter = Metrics.counter(MetricsUtil.name(getClass(), "leaseAcquired"), "name", name);
+    this.leasedPermitsUsedCounter = Metrics.counter(MetricsUtil.name(getClass(), "leasedPermitsUsed"), "name", name);
     this.dynamicConfigurationManager = dynamicConfigurationManager;
+    this.localPermitLeases = config.leaseSize() > 0 ? new LocalPermitLeases(config, clock) : null;
+
+    this.bucketNamePrefix = bucketName(name, "").getBytes(StandardCharsets.UTF_8);
+    this.bucketSizeArgument = String.valueOf(config.bucketSize()).getBytes(StandardCharsets.US_ASCII);
+    this.leakRatePerMillisArgument = String.valueOf(config.leakRatePerMillis()).getBytes(StandardCharsets.US_ASCII);
   }
 
   @Override
   public void validate(final String key, final int amount) throws RateLimitExceededException {
     try {
-      final long deficitPermitsAmount = executeValidateScript(key, amount, true);
+      final long deficitPermitsAmount = localPermitLeases != null
+          ? validateWithLease(key, amount)
+          : executeValidateScript(key, amount, true);
+
       if (deficitPermitsAmount > 0) {
         counter.increment();
         final Duration retryAfter = Duration.ofMillis(
@@ -76,7 +106,11 @@ public class StaticRateLimiter implements RateLimiter {
 
   @Override
   public CompletionStage<Void> validateAsync(final String key, final int amount) {
-    return executeValidateScriptAsync(key, amount, true)
+    final CompletionStage<Long> deficitPermitsAmountFuture = localPermitLeases != null
+        ? validateWithLeaseAsync(key, amount)
+        : executeValidateScriptAsync(key, amount, true);
+
+    return deficitPermitsAmountFuture
         .thenCompose(deficitPermitsAmount -> {
           if (deficitPermitsAmount == 0) {
             return completedFuture((Void) null);
@@ -96,6 +130,10 @@ public class StaticRateLimiter implements RateLimiter {
 
   @Override
   public boolean hasAvailablePermits(final String key, final int amount) {
+    if (localPermitLeases != null && localPermitLeases.hasPermits(key, amount)) {
+      return true;
+    }
+
     try {
       final long deficitPermitsAmount = executeValidateScript(key, amount, false);
       return deficitPermitsAmount == 0;
@@ -110,6 +148,10 @@ public class StaticRateLimiter implements RateLimiter {
 
   @Override
   public CompletionStage<Boolean> hasAvailablePermitsAsync(final String key, final int amount) {
+    if (localPermitLeases != null && localPermitLeases.hasPermits(key, amount)) {
+      return completedFuture(true);
+    }
+
     return executeValidateScriptAsync(key, amount, false)
         .thenApply(deficitPermitsAmount -> deficitPermitsAmount == 0)
         .exceptionally(throwable -> {
@@ -122,11 +164,13 @@ public class StaticRateLimiter implements RateLimiter {
 
   @Override
   public void clear(final String key) {
+    invalidateLease(key);
     cacheCluster.useCluster(connection -> connection.sync().del(bucketName(name, key)));
   }
 
   @Override
   public CompletionStage<Void> clearAsync(final String key) {
+    invalidateLease(key);
     return cacheCluster.withCluster(connection -> connection.async().del(bucketName(name, key)))
         .thenRun(Util.NOOP);
   }
@@ -136,32 +180,246 @@ public class StaticRateLimiter implements RateLimiter {
     return config;
   }
 
+  /**
+   * Validates a request for permits using permits leased by this instance if possible. If the key is hot and has no
+   * leased permits left, tries to take the requested permits plus a new lease from the shared bucket in a single
+   * operation; the shared bucket grants as many lease permits as it has available once the request itself is covered.
+   * Only one lease acquisition per key is in flight at a time; concurrent requests wait for it and then use its permits
+   * if enough remain.
+   *
+   * @return the number of permits by which the request exceeded the shared bucket, or 0 if the request was permitted
+   */
+  private long validateWithLease(final String key, final int amount) {
+    if (tryConsumeLeasedPermits(key, amount)) {
+      return 0;
+    }
+
+    final int acquisitionAmount = localPermitLeases.getAcquisitionAmount(key, amount);
+
+    if (acquisitionAmount == 0) {
+      return executeValidateScript(key, amount, true);
+    }
+
+    final CompletableFuture<Void> leaseAcquisition = new CompletableFuture<>();
+    @Nullable final CompletableFuture<Void> pendingLeaseAcquisition =
+        pendingLeaseAcquisitions.putIfAbsent(key, leaseAcquisition);
+
+    if (pendingLeaseAcquisition != null) {
+      pendingLeaseAcquisition.join();
+      return tryConsumeLeasedPermits(key, amount) ? 0 : executeValidateScript(key, amount, true);
+    }
+
+    try {
+      return handleLeaseAcquisition(key, amount, executeLeaseScript(key, amount, acquisitionAmount));
+    } finally {
+      completeLeaseAcquisition(key, leaseAcquisition);
+    }
+  }
+
+  private CompletionStage<Long> validateWithLeaseAsync(final String key, final int amount) {
+    if (tryConsumeLeasedPermits(key, amount)) {
+      return completedFuture(0L);
+    }
+
+    final int acquisitionAmount = localPermitLeases.getAcquisitionAmount(key, amount);
+
+    if (acquisitionAmount == 0) {
+      return executeValidateScriptAsync(key, amount, true);
+    }
+
+    final CompletableFuture<Void> leaseAcquisition = new CompletableFuture<>();
+    @Nullable final CompletableFuture<Void> pendingLeaseAcquisition =
+        pendingLeaseAcquisitions.putIfAbsent(key, leaseAcquisition);
+
+    if (pendingLeaseAcquisition != null) {
+      return pendingLeaseAcquisition.thenCompose(ignored -> tryConsumeLeasedPermits(key, amount)
+          ? completedFuture(0L)
+          : executeValidateScriptAsync(key, amount, true));
+    }
+
+    return executeLeaseScriptAsync(key, amount, acquisitionAmount)
+        .thenApply(leaseScriptResult -> handleLeaseAcquisition(key, amount, leaseScriptResult))
+        .whenComplete((ignored, throwable) -> completeLeaseAcquisition(key, leaseAcquisition));
+  }
+
+  private boolean tryConsumeLeasedPermits(final String key, final int amount) {
+    if (localPermitLeases.tryConsume(key, amount)) {
+      leasedPermitsUsedCounter.increment(amount);
+      return true;
+    }
+
+    return false;
+  }
+
+  /**
+   * Interprets the result of a lease acquisition, adding any permits granted beyond those needed for the current
+   * request to the local lease.
+   *
+   * @return the number of permits by which the request exceeded the shared bucket, or 0 if the request was permitted
+   */
+  private long handleLeaseAcquisition(final String key, final int amount, final long leaseScriptResult) {
+    if (leaseScriptResult > 0) {
+      return leaseScriptResult;
+    }
+
+    final long grantedPermits = -leaseScriptResult;
+
+    if (grantedPermits > amount) {
+      leaseAcquiredCounter.increment();
+      localPermitLeases.addPermits(key, (int) (grantedPermits - amount));
+    }
+
+    return 0;
+  }
+
+  private void completeLeaseAcquisition(final String key, final CompletableFuture<Void> leaseAcquisition) {
+    pendingLeaseAcquisitions.remove(key, leaseAcquisition);
+    leaseAcquisition.complete(null);
+  }
+
+  private void invalidateLease(final String key) {
+    if (localPermitLeases != null) {
+      localPermitLeases.invalidate(key);
+    }
+  }
+
   private boolean failOpen() {
     return this.dynamicConfigurationManager.getConfiguration().getRateLimitPolicy().failOpen();
   }
 
   private long executeValidateScript(final String key, final int amount, final boolean applyChanges) {
-    final List<String> keys = List.of(bucketName(name, key));
-    final List<String> arguments = List.of(
-        String.valueOf(config.bucketSize()),
-        String.valueOf(config.leakRatePerMillis()),
-        String.valueOf(clock.millis()),
-        String.valueOf(amount),
-        String.valueOf(applyChanges)
-    );
-    return (Long) validateScript.execute(keys, arguments);
+    return (Long) validateScript.executeBinary(buildKeys(key), buildArguments(amount, applyChanges));
   }
 
   private CompletionStage<Long> executeValidateScriptAsync(final String key, final int amount, final boolean applyChanges) {
-    final List<String> keys = List.of(bucketName(name, key));
-    final List<String> arguments = List.of(
-        String.valueOf(config.bucketSize()),
-        String.valueOf(config.leakRatePerMillis()),
-        String.valueOf(clock.millis()),
-        String.valueOf(amount),
-        String.valueOf(applyChanges)
-    );
-    return validateScript.executeAsync(keys, arguments).thenApply(o -> (Long) o);
+    return executeScriptAsync(buildKeys(key), buildArguments(amount, applyChanges));
+  }
+
+  /**
+   * Takes at least {@code amount} and at most {@code acquisitionAmount} permits from the shared bucket.
+   *
+   * @return the negated number of permits taken if at least {@code amount} permits were available, or the number of
+   * permits by which {@code amount} exceeded the available permits otherwise
+   */
+  private long executeLeaseScript(final String key, final int amount, final int acquisitionAmount) {
+    return (Long) validateScript.executeBinary(buildKeys(key), buildLeaseArguments(amount, acquisitionAmount));
+  }
+
+  private CompletionStage<Long> executeLeaseScriptAsync(final String key,
+      final int amount,
+      final int acquisitionAmount) {
+    return executeScriptAsync(buildKeys(key), buildLeaseArguments(amount, acquisitionAmount));
+  }
+
+  private CompletionStage<Long> executeScriptAsync(final byte[][] keys, final byte[][] arguments) {
+    try {
+      return validateScript.executeBinaryAsync(keys, arguments).thenApply(o -> (Long) o);
+    } catch (final RedisException e) {
+      // Circuit breakers and bulkheads may reject operations before they're dispatched
+      return failedFuture(e);
+    }
+  }
+
+  private byte[][] buildKeys(final String key) {
+    return new byte[][] { encodeBucketName(bucketNamePrefix, key) };
+  }
+
+  private byte[][] buildArguments(final int amount, final boolean applyChanges) {
+    return new byte[][] {
+        bucketSizeArgument,
+        leakRatePerMillisArgument,
+        encodeLong(clock.millis()),
+        encodeLong(amount),
+        applyChanges ? TRUE_ARGUMENT : FALSE_ARGUMENT
+    };
+  }
+
+  private byte[][] buildLeaseArguments(final int amount, final int acquisitionAmount) {
+    return new byte[][] {
+        bucketSizeArgument,
+        leakRatePerMillisArgument,
+        encodeLong(clock.millis()),
+        encodeLong(acquisitionAmount),
+        TRUE_ARGUMENT,
+        encodeLong(amount)
+    };
+  }
+
+  /**
+   * Encodes the name of the bucket for the given key as UTF-8 bytes; the result is identical to
+   * {@code bucketName(name, key).getBytes(StandardCharsets.UTF_8)}, but avoids building an intermediate string for the
+   * common case of an ASCII key.
+   *
+   * @param bucketNamePrefix the UTF-8-encoded bucket name prefix for a specific rate limiter
+   * @param key the key for which to encode a bucket name
+   */
+  @VisibleForTesting
+  static byte[] encodeBucketName(final byte[] bucketNamePrefix, final String key) {
+    final int keyLength = key.length();
+
+    for (int i = 0; i < keyLength; i++) {
+      if (key.charAt(i) >= 0x80) {
+        final byte[] keyBytes = key.getBytes(StandardCharsets.UTF_8);
+        final byte[] bucketName = Arrays.copyOf(bucketNamePrefix, bucketNamePrefix.length + keyBytes.length);
+        System.arraycopy(keyBytes, 0, bucketName, bucketNamePrefix.length, keyBytes.length);
+
+        return bucketName;
+      }
+    }
+
+    final byte[] bucketName = Arrays.copyOf(bucketNamePrefix, bucketNamePrefix.length + keyLength);
+
+    for (int i = 0; i < keyLength; i++) {
+      bucketName[bucketNamePrefix.length + i] = (byte) key.charAt(i);
+    }
+
+    return bucketName;
+  }
+
+  /**
+   * Encodes the given value as ASCII decimal digits; the result is identical to
+   * {@code String.valueOf(value).getBytes(StandardCharsets.US_ASCII)}. Small non-negative values are encoded as shared,
+   * pre-allocated arrays that callers must not modify.
+   */
+  @VisibleForTesting
+  static byte[] encodeLong(final long value) {
+    if (value >= 0 && value < ENCODED_SMALL_VALUES.length) {
+      return ENCODED_SMALL_VALUES[(int) value];
+    }
+
+    return encodeLongUncached(value);
+  }
+
+  private static byte[] encodeLongUncached(final long value) {
+    if (value < 0) {
+      return Long.toString(value).getBytes(StandardCharsets.US_ASCII);
+    }
+
+    int length = 1;
+
+    for (long remaining = value / 10; remaining > 0; remaining /= 10) {
+      length++;
+    }
+
+    final byte[] encoded = new byte[length];
+    long remaining = value;
+
+    for (int i = length - 1; i >= 0; i--) {
+      encoded[i] = (byte) ('0' + (remaining % 10));
+      remaining /= 10;
+    }
+
+    return encoded;
+  }
+
+  private static byte[][] encodeSmallValues() {
+    final byte[][] encodedValues = new byte[256][];
+
+    for (int i = 0; i < encodedValues.length; i++) {
+      encodedValues[i] = encodeLongUncached(i);
+    }
+
+    return encodedValues;
   }
 
   @VisibleForTesting
@@ -14,6 +14,7 @@ import java.time.Duration;
 import java.time.Instant;
 import java.util.ArrayList;
 import java.util.List;
+import javax.annotation.Nullable;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.whispersystems.textsecuregcm.entities.MessageProtos;
@@ -31,6 +32,16 @@ public final class MessageMetrics {
 
   public static final String DELIVERY_LATENCY_TIMER_NAME = name(MessageMetrics.class, "deliveryLatency");
 
+  private record DeliveryLatencyTimerKey(Tag platformTag, String channel, @Nullable Tag clientVersionTag) {
+  }
+
+  private static final MeterCache<DeliveryLatencyTimerKey, Timer> DELIVERY_LATENCY_TIMERS = new MeterCache<>(1_000,
+      MessageMetrics::buildDeliveryLatencyTimer,
+      () -> Timer.builder(DELIVERY_LATENCY_TIMER_NAME)
+          .publishPercentileHistogram(true)
+          .tags(UserAgentTagUtil.PLATFORM_TAG, MeterCache.OVERFLOW_TAG_VALUE, "channel", MeterCache.OVERFLOW_TAG_VALUE)
+          .register(Metrics.globalRegistry));
+
   public static void measureAccountOutgoingMessageUuidMismatches(final Account account,
       final OutgoingMessageEntity outgoingMessage) {
     measureAccountDestinationUuidMismatches(account, outgoingMessage.destinationUuid());
@@ -61,16 +72,26 @@ public final class MessageMetrics {
       final String userAgent,
       final ClientReleaseManager clientReleaseManager) {
 
+    final DeliveryLatencyTimerKey key = new DeliveryLatencyTimerKey(UserAgentTagUtil.getPlatformTag(userAgent),
+        channel,
+        UserAgentTagUtil.getClientVersionTag(userAgent, clientReleaseManager).orElse(null));
+
+    DELIVERY_LATENCY_TIMERS.get(key)
+        .record(Duration.between(Instant.ofEpochMilli(serverTimestamp), Instant.now()));
+  }
+
+  private static Timer buildDeliveryLatencyTimer(final DeliveryLatencyTimerKey key) {
     final List<Tag> tags = new ArrayList<>(3);
-    tags.add(UserAgentTagUtil.getPlatformTag(userAgent));
-    tags.add(Tag.of("channel", channel));
+    tags.add(key.platformTag());
+    tags.add(Tag.of("channel", key.channel()));
 
-    UserAgentTagUtil.getClientVersionTag(userAgent, clientReleaseManager).ifPresent(tags::add);
+    if (key.clientVersionTag() != null) {
+      tags.add(key.clientVersionTag());
+    }
 
-    Timer.builder(DELIVERY_LATENCY_TIMER_NAME)
+    return Timer.builder(DELIVERY_LATENCY_TIMER_NAME)
         .publishPercentileHistogram(true)
         .tags(tags)
-        .register(Metrics.globalRegistry)
-        .record(Duration.between(Instant.ofEpochMilli(serverTimestamp), Instant.now()));
+        .register(Metrics.globalRegistry);
   }
 }
@@ -0,0 +1,77 @@
+/*
+ * Copyright 2023 Signal Messenger, LLC
+ * SPDX-License-Identifier: AGPL-3.0-only
+ */
+
+package org.whispersystems.textsecuregcm.metrics;
+
+import com.google.common.base.Suppliers;
+import io.micrometer.core.instrument.Meter;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * A meter cache holds registered meters keyed by a small, caller-defined tuple of tag values so that hot paths can find
+ * the right meter with a single map lookup instead of building a list of tags and querying a meter registry for every
+ * request or message.
+ * <p>
+ * Meter caches also bound the number of distinct tag combinations a metric may have. Once a cache holds its maximum
+ * number of meters, lookups for keys not already in the cache resolve to a single "overflow" meter, which callers
+ * should register with {@link #OVERFLOW_TAG_VALUE} in place of any unbounded tag values.
+ *
+ * @param <K> the type of key used to identify meters
+ * @param <M> the type of meter held by this cache
+ */
+public class MeterCache<K, M extends Meter> {
+
+  private final int maxMeters;
+  private final Function<K, M> meterFactory;
+  private final Supplier<M> overflowMeterSupplier;
+
+  private final Map<K, M> metersByKey = new ConcurrentHashMap<>();
+
+  public static final String OVERFLOW_TAG_VALUE = "overflow";
+
+  /**
+   * Constructs a new meter cache.
+   *
+   * @param maxMeters the maximum number of distinct keys (and meters) to hold in this cache; the overflow meter does
+   * not count toward this limit
+   * @param meterFactory a function that registers (or finds) the meter for a given key
+   * @param overflowMeterSupplier a supplier for the meter to use for all keys once this cache is full; the supplier is
+   * called at most once
+   */
+  public MeterCache(final int maxMeters, final Function<K, M> meterFactory, final Supplier<M> overflowMeterSupplier) {
+    if (maxMeters < 1) {
+      throw new IllegalArgumentException("Meter caches must be able to hold at least one meter");
+    }
+
+    this.maxMeters = maxMeters;
+    this.meterFactory = meterFactory;
+    this.overflowMeterSupplier = Suppliers.memoize(overflowMeterSupplier::get);
+  }
+
+  /**
+   * Returns the meter for the given key, registering a new meter if this cache has room for it, or the overflow meter
+   * otherwise.
+   *
+   * @param key the key for which to retrieve a meter
+   *
+   * @return the meter for the given key or the overflow meter if this cache is full
+   */
+  public M get(final K key) {
+    final M meter = metersByKey.get(key);
+
+    if (meter != null) {
+      return meter;
+    }
+
+    // Concurrent callers may briefly push the cache slightly past its maximum size, which is fine; the point is to keep
+    // the number of meters bounded, not to enforce an exact limit.
+    return metersByKey.size() < maxMeters
+        ? metersByKey.computeIfAbsent(key, meterFactory)
+        : overflowMeterSupplier.get();
+  }
+}
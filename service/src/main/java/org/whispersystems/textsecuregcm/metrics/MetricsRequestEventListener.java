@@ -8,6 +8,7 @@ package org.whispersystems.textsecuregcm.metrics;
 import com.codahale.metrics.MetricRegistry;
 import com.google.common.annotations.VisibleForTesting;
 import com.google.common.net.HttpHeaders;
+import io.micrometer.core.instrument.Counter;
 import io.micrometer.core.instrument.MeterRegistry;
 import io.micrometer.core.instrument.Metrics;
 import io.micrometer.core.instrument.Tag;
@@ -18,7 +19,6 @@ import org.whispersystems.textsecuregcm.storage.ClientReleaseManager;
 import org.whispersystems.textsecuregcm.util.logging.UriInfoUtil;
 
 import javax.annotation.Nullable;
-import java.util.ArrayList;
 import java.util.List;
 
 /**
@@ -46,6 +46,18 @@ public class MetricsRequestEventListener implements RequestEventListener {
   private final TrafficSource trafficSource;
   private final MeterRegistry meterRegistry;
 
+  private final MeterCache<RequestCounterKey, Counter> requestCounters;
+  private final MeterCache<RequestsByVersionCounterKey, Counter> requestsByVersionCounters;
+
+  private static final int MAX_REQUEST_COUNTERS = 10_000;
+  private static final int MAX_REQUESTS_BY_VERSION_COUNTERS = 1_000;
+
+  private record RequestCounterKey(String path, String method, int status, Tag platformTag) {
+  }
+
+  private record RequestsByVersionCounterKey(Tag clientVersionTag, Tag platformTag) {
+  }
+
   public MetricsRequestEventListener(final TrafficSource trafficSource, final ClientReleaseManager clientReleaseManager) {
     this(trafficSource, Metrics.globalRegistry, clientReleaseManager);
   }
@@ -58,32 +70,53 @@ public class MetricsRequestEventListener implements RequestEventListener {
     this.trafficSource = trafficSource;
     this.meterRegistry = meterRegistry;
     this.clientReleaseManager = clientReleaseManager;
+
+    final Tag trafficSourceTag = Tag.of(TRAFFIC_SOURCE_TAG, trafficSource.name().toLowerCase());
+
+    this.requestCounters = new MeterCache<>(MAX_REQUEST_COUNTERS,
+        key -> meterRegistry.counter(REQUEST_COUNTER_NAME, List.of(
+            Tag.of(PATH_TAG, key.path()),
+            Tag.of(METHOD_TAG, key.method()),
+            Tag.of(STATUS_CODE_TAG, String.valueOf(key.status())),
+            trafficSourceTag,
+            key.platformTag())),
+        () -> meterRegistry.counter(REQUEST_COUNTER_NAME, List.of(
+            Tag.of(PATH_TAG, MeterCache.OVERFLOW_TAG_VALUE),
+            Tag.of(METHOD_TAG, MeterCache.OVERFLOW_TAG_VALUE),
+            Tag.of(STATUS_CODE_TAG, MeterCache.OVERFLOW_TAG_VALUE),
+            trafficSourceTag,
+            Tag.of(UserAgentTagUtil.PLATFORM_TAG, MeterCache.OVERFLOW_TAG_VALUE))));
+
+    this.requestsByVersionCounters = new MeterCache<>(MAX_REQUESTS_BY_VERSION_COUNTERS,
+        key -> meterRegistry.counter(REQUESTS_BY_VERSION_COUNTER_NAME,
+            Tags.of(key.clientVersionTag(), key.platformTag())),
+        () -> meterRegistry.counter(REQUESTS_BY_VERSION_COUNTER_NAME, Tags.of(
+            Tag.of(UserAgentTagUtil.VERSION_TAG, MeterCache.OVERFLOW_TAG_VALUE),
+            Tag.of(UserAgentTagUtil.PLATFORM_TAG, MeterCache.OVERFLOW_TAG_VALUE))));
   }
 
   @Override
   public void onEvent(final RequestEvent event) {
     if (event.getType() == RequestEvent.Type.FINISHED) {
       if (!event.getUriInfo().getMatchedTemplates().isEmpty()) {
-        final List<Tag> tags = new ArrayList<>(5);
-        tags.add(Tag.of(PATH_TAG, UriInfoUtil.getPathTemplate(event.getUriInfo())));
-        tags.add(Tag.of(METHOD_TAG, event.getContainerRequest().getMethod()));
-        tags.add(Tag.of(STATUS_CODE_TAG, String.valueOf(event.getContainerResponse().getStatus())));
-        tags.add(Tag.of(TRAFFIC_SOURCE_TAG, trafficSource.name().toLowerCase()));
-
         @Nullable final String userAgent;
         {
           final List<String> userAgentValues = event.getContainerRequest().getRequestHeader(HttpHeaders.USER_AGENT);
           userAgent = userAgentValues != null && !userAgentValues.isEmpty() ? userAgentValues.get(0) : null;
         }
 
-        tags.add(UserAgentTagUtil.getPlatformTag(userAgent));
+        final Tag platformTag = UserAgentTagUtil.getPlatformTag(userAgent);
 
-        meterRegistry.counter(REQUEST_COUNTER_NAME, tags).increment();
+        requestCounters.get(new RequestCounterKey(UriInfoUtil.getPathTemplate(event.getUriInfo()),
+                event.getContainerRequest().getMethod(),
+                event.getContainerResponse().getStatus(),
+                platformTag))
+            .increment();
 
         UserAgentTagUtil.getClientVersionTag(userAgent, clientReleaseManager)
-            .ifPresent(clientVersionTag -> meterRegistry.counter(REQUESTS_BY_VERSION_COUNTER_NAME,
-                    Tags.of(clientVersionTag, UserAgentTagUtil.getPlatformTag(userAgent)))
-                .increment());
+            .ifPresent(clientVersionTag ->
+                requestsByVersionCounters.get(new RequestsByVersionCounterKey(clientVersionTag, platformTag))
+                    .increment());
       }
     }
   }
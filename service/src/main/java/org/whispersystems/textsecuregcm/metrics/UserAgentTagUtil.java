@@ -7,10 +7,14 @@ package org.whispersystems.textsecuregcm.metrics;
 
 import com.vdurmont.semver4j.Semver;
 import io.micrometer.core.instrument.Tag;
+import java.util.Arrays;
 import java.util.Collections;
+import java.util.EnumMap;
 import java.util.Map;
 import java.util.Optional;
 import java.util.Set;
+import java.util.function.Function;
+import java.util.stream.Collectors;
 import org.whispersystems.textsecuregcm.storage.ClientReleaseManager;
 import org.whispersystems.textsecuregcm.util.ua.ClientPlatform;
 import org.whispersystems.textsecuregcm.util.ua.UnrecognizedUserAgentException;
@@ -25,19 +29,23 @@ public class UserAgentTagUtil {
   public static final String PLATFORM_TAG = "platform";
   public static final String VERSION_TAG = "clientVersion";
 
+  private static final Map<ClientPlatform, Tag> PLATFORM_TAGS = Arrays.stream(ClientPlatform.values())
+      .collect(Collectors.toMap(Function.identity(),
+          platform -> Tag.of(PLATFORM_TAG, platform.name().toLowerCase()),
+          (a, b) -> a,
+          () -> new EnumMap<>(ClientPlatform.class)));
+
+  private static final Tag UNRECOGNIZED_PLATFORM_TAG = Tag.of(PLATFORM_TAG, "unrecognized");
+
   private UserAgentTagUtil() {
   }
 
   public static Tag getPlatformTag(final String userAgentString) {
-    String platform;
-
     try {
-      platform = UserAgentUtil.parseUserAgentString(userAgentString).getPlatform().name().toLowerCase();
+      return PLATFORM_TAGS.get(UserAgentUtil.parseUserAgentString(userAgentString).getPlatform());
     } catch (final UnrecognizedUserAgentException e) {
-      platform = "unrecognized";
+      return UNRECOGNIZED_PLATFORM_TAG;
     }
-
-    return Tag.of(PLATFORM_TAG, platform);
   }
 
   public static Optional<Tag> getClientVersionTag(final String userAgentString, final ClientReleaseManager clientReleaseManager) {
@@ -22,13 +22,17 @@ import io.lettuce.core.cluster.models.partitions.RedisClusterNode;
 import io.lettuce.core.cluster.pubsub.RedisClusterPubSubAdapter;
 import io.micrometer.core.instrument.Counter;
 import java.io.IOException;
+import java.time.Clock;
 import java.time.Duration;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Random;
 import java.util.Set;
 import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.ScheduledExecutorService;
@@ -65,9 +69,14 @@ public class ClientPresenceManager extends RedisClusterPubSubAdapter<String, Str
   private final ExecutorService keyspaceNotificationExecutorService;
   private final ScheduledExecutorService scheduledExecutorService;
   private ScheduledFuture<?> pruneMissingPeersFuture;
+  private ScheduledFuture<?> pruneExpiredAbsencesFuture;
 
   private final Map<String, DisplacedPresenceListener> displacementListenersByPresenceKey = new ConcurrentHashMap<>();
 
+  private final Duration absenceCacheTtl;
+  private final Clock clock;
+  private final Map<String, Long> absenceExpirationsByPresenceKey = new ConcurrentHashMap<>();
+
   private final Timer checkPresenceTimer;
   private final Timer setPresenceTimer;
   private final Timer clearPresenceTimer;
@@ -75,10 +84,13 @@ public class ClientPresenceManager extends RedisClusterPubSubAdapter<String, Str
   private final Meter pruneClientMeter;
   private final Meter remoteDisplacementMeter;
   private final Meter pubSubMessageMeter;
+  private final Meter localPresenceMeter;
+  private final Meter cachedAbsenceMeter;
   private final Counter displacementListenerAlreadyRemovedCounter;
 
   private static final int PRUNE_PEERS_INTERVAL_SECONDS = (int) Duration.ofSeconds(30).toSeconds();
   private static final int PRESENCE_EXPIRATION_SECONDS = (int) Duration.ofMinutes(11).toSeconds();
+  private static final int MAX_CACHED_ABSENCES = 1_000_000;
 
   static final String MANAGER_SET_KEY = "presence::managers";
 
@@ -87,6 +99,21 @@ public class ClientPresenceManager extends RedisClusterPubSubAdapter<String, Str
   public ClientPresenceManager(final FaultTolerantRedisCluster presenceCluster,
       final ScheduledExecutorService scheduledExecutorService,
       final ExecutorService keyspaceNotificationExecutorService) throws IOException {
+
+    this(presenceCluster, scheduledExecutorService, keyspaceNotificationExecutorService, Duration.ZERO,
+        Clock.systemUTC());
+  }
+
+  /**
+   * @param absenceCacheTtl the length of time for which asynchronous presence checks will remember that a client was
+   * absent; if zero, absences will not be cached. Cached absences are only cleared early when the client connects to
+   * this server, so a client that connects to a different server may be reported as absent for up to this long.
+   */
+  public ClientPresenceManager(final FaultTolerantRedisCluster presenceCluster,
+      final ScheduledExecutorService scheduledExecutorService,
+      final ExecutorService keyspaceNotificationExecutorService,
+      final Duration absenceCacheTtl,
+      final Clock clock) throws IOException {
     this.presenceCluster = presenceCluster;
     this.pubSubConnection = this.presenceCluster.createPubSubConnection();
     this.clearPresenceScript = ClusterLuaScript.fromResource(presenceCluster, "lua/clear_presence.lua",
@@ -95,9 +122,12 @@ public class ClientPresenceManager extends RedisClusterPubSubAdapter<String, Str
         ScriptOutputType.VALUE);
     this.scheduledExecutorService = scheduledExecutorService;
     this.keyspaceNotificationExecutorService = keyspaceNotificationExecutorService;
+    this.absenceCacheTtl = absenceCacheTtl;
+    this.clock = clock;
 
     final MetricRegistry metricRegistry = SharedMetricRegistries.getOrCreate(Constants.METRICS_NAME);
     metricRegistry.gauge(name(getClass(), "localClientCount"), () -> displacementListenersByPresenceKey::size);
+    metricRegistry.gauge(name(getClass(), "cachedAbsenceCount"), () -> absenceExpirationsByPresenceKey::size);
 
     this.checkPresenceTimer = metricRegistry.timer(name(getClass(), "checkPresence"));
     this.setPresenceTimer = metricRegistry.timer(name(getClass(), "setPresence"));
@@ -106,6 +136,8 @@ public class ClientPresenceManager extends RedisClusterPubSubAdapter<String, Str
     this.pruneClientMeter = metricRegistry.meter(name(getClass(), "pruneClient"));
     this.remoteDisplacementMeter = metricRegistry.meter(name(getClass(), "remoteDisplacement"));
     this.pubSubMessageMeter = metricRegistry.meter(name(getClass(), "pubSubMessage"));
+    this.localPresenceMeter = metricRegistry.meter(name(getClass(), "localPresence"));
+    this.cachedAbsenceMeter = metricRegistry.meter(name(getClass(), "cachedAbsence"));
     this.displacementListenerAlreadyRemovedCounter = Metrics.counter(
         name(getClass(), "displacementListenerAlreadyRemoved"));
   }
@@ -139,6 +171,11 @@ public class ClientPresenceManager extends RedisClusterPubSubAdapter<String, Str
         log.warn("Failed to prune missing peers", t);
       }
     }, new Random().nextInt(PRUNE_PEERS_INTERVAL_SECONDS), PRUNE_PEERS_INTERVAL_SECONDS, TimeUnit.SECONDS);
+
+    if (absenceCacheTtl.isPositive()) {
+      pruneExpiredAbsencesFuture = scheduledExecutorService.scheduleWithFixedDelay(this::pruneExpiredAbsences,
+          absenceCacheTtl.toMillis(), absenceCacheTtl.toMillis(), TimeUnit.MILLISECONDS);
+    }
   }
 
   @Override
@@ -149,6 +186,10 @@ public class ClientPresenceManager extends RedisClusterPubSubAdapter<String, Str
       pruneMissingPeersFuture.cancel(false);
     }
 
+    if (pruneExpiredAbsencesFuture != null) {
+      pruneExpiredAbsencesFuture.cancel(false);
+    }
+
     for (final String presenceKey : displacementListenersByPresenceKey.keySet()) {
       clearPresence(presenceKey);
     }
@@ -170,6 +211,7 @@ public class ClientPresenceManager extends RedisClusterPubSubAdapter<String, Str
       displacePresence(presenceKey, true);
 
       displacementListenersByPresenceKey.put(presenceKey, displacementListener);
+      absenceExpirationsByPresenceKey.remove(presenceKey);
 
       presenceCluster.useCluster(connection -> {
         final RedisAdvancedClusterCommands<String, String> commands = connection.sync();
@@ -222,6 +264,11 @@ public class ClientPresenceManager extends RedisClusterPubSubAdapter<String, Str
     clearPresence(presenceKey);
   }
 
+  /**
+   * Checks whether a client is present by consulting Redis directly, bypassing any local knowledge of client presence.
+   *
+   * @return {@code true} if the given device is present or {@code false} otherwise
+   */
   public boolean isPresent(final UUID accountUuid, final long deviceId) {
     try (final Timer.Context ignored = checkPresenceTimer.time()) {
       return presenceCluster.withCluster(connection ->
@@ -229,6 +276,89 @@ public class ClientPresenceManager extends RedisClusterPubSubAdapter<String, Str
     }
   }
 
+  /**
+   * Asynchronously checks whether a client is present. Clients connected to this server are reported as present without
+   * consulting Redis, and, if enabled, clients recently observed to be absent are reported as absent until their cache
+   * entries expire. Callers checking presence for several devices should prefer
+   * {@link #getPresenceAsync(UUID, Collection)}.
+   *
+   * @return a future that yields {@code true} if the given device is present or {@code false} otherwise
+   */
+  public CompletableFuture<Boolean> isPresentAsync(final UUID accountUuid, final long deviceId) {
+    final String presenceKey = getPresenceKey(accountUuid, deviceId);
+
+    if (displacementListenersByPresenceKey.containsKey(presenceKey)) {
+      localPresenceMeter.mark();
+      return CompletableFuture.completedFuture(true);
+    }
+
+    if (isRecentlyAbsent(presenceKey)) {
+      cachedAbsenceMeter.mark();
+      return CompletableFuture.completedFuture(false);
+    }
+
+    final Timer.Context timerContext = checkPresenceTimer.time();
+
+    return presenceCluster.withCluster(connection -> connection.async().exists(presenceKey))
+        .toCompletableFuture()
+        .thenApply(count -> {
+          final boolean present = count == 1;
+
+          if (!present && absenceCacheTtl.isPositive() && absenceExpirationsByPresenceKey.size() < MAX_CACHED_ABSENCES) {
+            absenceExpirationsByPresenceKey.put(presenceKey, clock.millis() + absenceCacheTtl.toMillis());
+          }
+
+          return present;
+        })
+        .whenComplete((ignored, throwable) -> timerContext.stop());
+  }
+
+  /**
+   * Checks presence for several devices associated with the same account. Devices connected to this server (or, if
+   * enabled, recently observed to be absent) are resolved locally, and checks for all remaining devices are issued
+   * together so they may be pipelined in a single round trip.
+   *
+   * @return a future that yields the presence of each of the given devices, keyed by device ID
+   */
+  public CompletableFuture<Map<Long, Boolean>> getPresenceAsync(final UUID accountUuid,
+      final Collection<Long> deviceIds) {
+
+    final Map<Long, CompletableFuture<Boolean>> presenceFuturesByDeviceId = new HashMap<>(deviceIds.size());
+
+    for (final long deviceId : deviceIds) {
+      presenceFuturesByDeviceId.put(deviceId, isPresentAsync(accountUuid, deviceId));
+    }
+
+    return CompletableFuture.allOf(presenceFuturesByDeviceId.values().toArray(new CompletableFuture[0]))
+        .thenApply(ignored -> {
+          final Map<Long, Boolean> presenceByDeviceId = new HashMap<>(deviceIds.size());
+          presenceFuturesByDeviceId.forEach((deviceId, future) -> presenceByDeviceId.put(deviceId, future.join()));
+
+          return presenceByDeviceId;
+        });
+  }
+
+  private boolean isRecentlyAbsent(final String presenceKey) {
+    final Long expiration = absenceExpirationsByPresenceKey.get(presenceKey);
+
+    if (expiration == null) {
+      return false;
+    }
+
+    if (expiration > clock.millis()) {
+      return true;
+    }
+
+    absenceExpirationsByPresenceKey.remove(presenceKey, expiration);
+    return false;
+  }
+
+  @VisibleForTesting
+  void pruneExpiredAbsences() {
+    final long now = clock.millis();
+    absenceExpirationsByPresenceKey.values().removeIf(expiration -> expiration <= now);
+  }
+
   public boolean isLocallyPresent(final UUID accountUuid, final long deviceId) {
     return displacementListenersByPresenceKey.containsKey(getPresenceKey(accountUuid, deviceId));
   }
@@ -8,6 +8,15 @@ import static com.codahale.metrics.MetricRegistry.name;
 import static org.whispersystems.textsecuregcm.entities.MessageProtos.Envelope;
 
 import io.micrometer.core.instrument.Metrics;
+import io.micrometer.core.instrument.Timer;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.function.Function;
 import org.apache.commons.lang3.StringUtils;
 import org.whispersystems.textsecuregcm.redis.RedisOperation;
 import org.whispersystems.textsecuregcm.storage.Account;
@@ -43,6 +52,9 @@ public class MessageSender {
   private static final String SEALED_SENDER_TAG_NAME = "sealedSender";
   private static final String HAS_SPAM_REPORTING_TOKEN_TAG_NAME = "hasSpamReportingToken";
 
+  private static final String SEND_STAGE_TIMER_NAME = name(MessageSender.class, "sendStage");
+  private static final String STAGE_TAG_NAME = "stage";
+
   public MessageSender(ClientPresenceManager clientPresenceManager,
       MessagesManager messagesManager,
       PushNotificationManager pushNotificationManager,
@@ -56,35 +68,139 @@ public class MessageSender {
   public void sendMessage(final Account account, final Device device, final Envelope message, final boolean online)
       throws NotPushRegisteredException {
 
-    final String channel;
-
-    if (device.getGcmId() != null) {
-      channel = "gcm";
-    } else if (device.getApnId() != null) {
-      channel = "apn";
-    } else if (device.getFetchesMessages()) {
-      channel = "websocket";
-    } else {
-      throw new AssertionError();
+    if (!sendMessages(account, Map.of(device, message), online).isEmpty()) {
+      throw new NotPushRegisteredException();
     }
+  }
 
-    final boolean clientPresent;
+  /**
+   * Sends messages to several devices associated with the same destination account. Messages are inserted into all
+   * destination queues and presence is checked for all destination devices in pipelined batches, after which push
+   * notifications are sent (if needed) to each device that is not present.
+   *
+   * @param account the destination account
+   * @param messagesByDevice the messages to send, keyed by destination device
+   * @param online if {@code true}, messages will only be delivered to devices that are present and no notifications
+   * will be sent
+   *
+   * @return the set of destination devices that were not present and could not be reached by push notification; for
+   * "online" messages, this will always be empty
+   */
+  public Set<Device> sendMessages(final Account account, final Map<Device, Envelope> messagesByDevice,
+      final boolean online) {
+
+    final Map<Device, Boolean> presenceByDevice;
 
     if (online) {
-      clientPresent = clientPresenceManager.isPresent(account.getUuid(), device.getId());
-
-      if (clientPresent) {
-        messagesManager.insert(account.getUuid(), device.getId(), message.toBuilder().setEphemeral(true).build());
-      }
+      presenceByDevice = checkPresence(account, messagesByDevice.keySet()).join();
+      insertEphemeralMessages(account, messagesByDevice, presenceByDevice).join();
     } else {
-      messagesManager.insert(account.getUuid(), device.getId(), message);
+      insertMessages(account, messagesByDevice).join();
 
       // We check for client presence after inserting the message to take a conservative view of notifications. If the
       // client wasn't present at the time of insertion but is now, they'll retrieve the message. If they were present
       // but disconnected before the message was delivered, we should send a notification.
-      clientPresent = clientPresenceManager.isPresent(account.getUuid(), device.getId());
+      presenceByDevice = checkPresence(account, messagesByDevice.keySet()).join();
+    }
+
+    return sendNotifications(account, messagesByDevice, presenceByDevice, online);
+  }
+
+  /**
+   * Asynchronously sends messages to several devices associated with the same destination account. This method
+   * behaves like {@link #sendMessages(Account, Map, boolean)}, but never blocks the calling thread; any work that may
+   * block (storing report hashes and sending push notifications) is dispatched to the given executor rather than
+   * running on a Redis client thread.
+   *
+   * @param account the destination account
+   * @param messagesByDevice the messages to send, keyed by destination device
+   * @param online if {@code true}, messages will only be delivered to devices that are present and no notifications
+   * will be sent
+   * @param executor the executor on which to perform work that may block
+   *
+   * @return a future that yields the set of destination devices that were not present and could not be reached by push
+   * notification
+   */
+  public CompletableFuture<Set<Device>> sendMessagesAsync(final Account account,
+      final Map<Device, Envelope> messagesByDevice,
+      final boolean online,
+      final Executor executor) {
+
+    final CompletableFuture<Map<Device, Boolean>> presenceFuture;
+
+    if (online) {
+      presenceFuture = checkPresence(account, messagesByDevice.keySet())
+          .thenComposeAsync(presenceByDevice -> insertEphemeralMessages(account, messagesByDevice, presenceByDevice)
+              .thenApply(ignored -> presenceByDevice), executor);
+    } else {
+      // As above, we check for presence only after messages have been inserted
+      presenceFuture = CompletableFuture.supplyAsync(() -> insertMessages(account, messagesByDevice), executor)
+          .thenCompose(Function.identity())
+          .thenCompose(ignored -> checkPresence(account, messagesByDevice.keySet()));
+    }
+
+    return presenceFuture.thenApplyAsync(presenceByDevice ->
+        sendNotifications(account, messagesByDevice, presenceByDevice, online), executor);
+  }
+
+  private CompletableFuture<Void> insertMessages(final Account account, final Map<Device, Envelope> messagesByDevice) {
+    final Map<Long, Envelope> messagesByDeviceId = new HashMap<>();
+    messagesByDevice.forEach((device, message) -> messagesByDeviceId.put(device.getId(), message));
+
+    final Timer.Sample sample = Timer.start();
+
+    return messagesManager.insert(account.getUuid(), messagesByDeviceId)
+        .whenComplete((ignored, throwable) -> sample.stop(Metrics.timer(SEND_STAGE_TIMER_NAME, STAGE_TAG_NAME, "insert")));
+  }
+
+  private CompletableFuture<Void> insertEphemeralMessages(final Account account,
+      final Map<Device, Envelope> messagesByDevice,
+      final Map<Device, Boolean> presenceByDevice) {
 
-      if (!clientPresent) {
+    final Map<Device, Envelope> ephemeralMessagesByDevice = new HashMap<>();
+
+    presenceByDevice.forEach((device, present) -> {
+      if (present) {
+        ephemeralMessagesByDevice.put(device, messagesByDevice.get(device).toBuilder().setEphemeral(true).build());
+      }
+    });
+
+    return ephemeralMessagesByDevice.isEmpty()
+        ? CompletableFuture.completedFuture(null)
+        : insertMessages(account, ephemeralMessagesByDevice);
+  }
+
+  /**
+   * Checks presence for all of the given devices in a single pipelined batch.
+   */
+  private CompletableFuture<Map<Device, Boolean>> checkPresence(final Account account, final Collection<Device> devices) {
+    final Map<Long, Device> devicesById = new HashMap<>(devices.size());
+    devices.forEach(device -> devicesById.put(device.getId(), device));
+
+    final Timer.Sample sample = Timer.start();
+
+    return clientPresenceManager.getPresenceAsync(account.getUuid(), devicesById.keySet())
+        .thenApply(presenceByDeviceId -> {
+          final Map<Device, Boolean> presenceByDevice = new HashMap<>(devices.size());
+          presenceByDeviceId.forEach((deviceId, present) -> presenceByDevice.put(devicesById.get(deviceId), present));
+
+          return presenceByDevice;
+        })
+        .whenComplete((ignored, throwable) -> sample.stop(Metrics.timer(SEND_STAGE_TIMER_NAME, STAGE_TAG_NAME, "presence")));
+  }
+
+  private Set<Device> sendNotifications(final Account account,
+      final Map<Device, Envelope> messagesByDevice,
+      final Map<Device, Boolean> presenceByDevice,
+      final boolean online) {
+
+    final Set<Device> unreachableDevices = new HashSet<>();
+    final Timer.Sample sample = Timer.start();
+
+    presenceByDevice.forEach((device, clientPresent) -> {
+      final Envelope message = messagesByDevice.get(device);
+
+      if (!online && !clientPresent) {
         try {
           pushNotificationManager.sendNewMessageNotification(account, device.getId(), message.getUrgent());
 
@@ -92,20 +208,36 @@ public class MessageSender {
           RedisOperation.unchecked(() -> pushLatencyManager.recordPushSent(account.getUuid(), device.getId(), useVoip, message.getUrgent()));
         } catch (final NotPushRegisteredException e) {
           if (!device.getFetchesMessages()) {
-            throw e;
+            unreachableDevices.add(device);
           }
         }
       }
-    }
 
-    Metrics.counter(SEND_COUNTER_NAME,
-            CHANNEL_TAG_NAME, channel,
-            EPHEMERAL_TAG_NAME, String.valueOf(online),
-            CLIENT_ONLINE_TAG_NAME, String.valueOf(clientPresent),
-            URGENT_TAG_NAME, String.valueOf(message.getUrgent()),
-            STORY_TAG_NAME, String.valueOf(message.getStory()),
-            SEALED_SENDER_TAG_NAME, String.valueOf(!message.hasSourceUuid()),
-            HAS_SPAM_REPORTING_TOKEN_TAG_NAME, String.valueOf(message.getReportSpamToken() != null && !message.getReportSpamToken().isEmpty()))
-        .increment();
+      Metrics.counter(SEND_COUNTER_NAME,
+              CHANNEL_TAG_NAME, getChannel(device),
+              EPHEMERAL_TAG_NAME, String.valueOf(online),
+              CLIENT_ONLINE_TAG_NAME, String.valueOf(clientPresent),
+              URGENT_TAG_NAME, String.valueOf(message.getUrgent()),
+              STORY_TAG_NAME, String.valueOf(message.getStory()),
+              SEALED_SENDER_TAG_NAME, String.valueOf(!message.hasSourceUuid()),
+              HAS_SPAM_REPORTING_TOKEN_TAG_NAME, String.valueOf(message.getReportSpamToken() != null && !message.getReportSpamToken().isEmpty()))
+          .increment();
+    });
+
+    sample.stop(Metrics.timer(SEND_STAGE_TIMER_NAME, STAGE_TAG_NAME, "push"));
+
+    return unreachableDevices;
+  }
+
+  private static String getChannel(final Device device) {
+    if (device.getGcmId() != null) {
+      return "gcm";
+    } else if (device.getApnId() != null) {
+      return "apn";
+    } else if (device.getFetchesMessages()) {
+      return "websocket";
+    } else {
+      throw new AssertionError();
+    }
   }
 }
@@ -0,0 +1,356 @@
+/*
+ * Copyright 2023 Signal Messenger, LLC
+ * SPDX-License-Identifier: AGPL-3.0-only
+ */
+
+package org.whispersystems.textsecuregcm.redis;
+
+import static org.whispersystems.textsecuregcm.metrics.MetricsUtil.name;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.google.common.annotations.VisibleForTesting;
+import io.dropwizard.lifecycle.Managed;
+import io.lettuce.core.TrackingArgs;
+import io.lettuce.core.api.StatefulRedisConnection;
+import io.lettuce.core.api.push.PushListener;
+import io.lettuce.core.api.push.PushMessage;
+import io.lettuce.core.cluster.api.StatefulRedisClusterConnection;
+import io.lettuce.core.cluster.event.ClusterTopologyChangedEvent;
+import io.lettuce.core.cluster.models.partitions.RedisClusterNode;
+import io.lettuce.core.codec.StringCodec;
+import io.lettuce.core.event.connection.ConnectionActivatedEvent;
+import io.lettuce.core.event.connection.ConnectionDeactivatedEvent;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Metrics;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Function;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+import javax.annotation.Nullable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import reactor.core.Disposable;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
+
+/**
+ * A local cache of values read from keys in a Redis cluster that stays consistent with the cluster using
+ * server-assisted client-side caching. When started, the cache enables broadcast-mode key tracking
+ * ({@code CLIENT TRACKING ON BCAST PREFIX ...}) on a dedicated connection to each upstream node in the cluster, and
+ * each node pushes an invalidation message to that connection whenever any client modifies a key with one of the
+ * tracked prefixes. Tracking requires Redis 6 or newer, with which Lettuce negotiates the RESP3 protocol needed for
+ * push messages.
+ * <p>
+ * Values are cached by Redis key and by a caller-chosen field within that key (for example, a hash field); an
+ * invalidation for a key discards all of the values cached for that key. Whenever tracking may have been interrupted
+ * (for example, because a connection was lost or the cluster's topology changed), the cache discards all of its entries
+ * and passes reads through to Redis until tracking has been re-established on all nodes. Entries also expire after a
+ * fixed time as a safeguard against lost invalidation messages.
+ */
+public class ClusterClientSideCache implements Managed, PushListener {
+
+  private final StatefulRedisClusterConnection<String, String> trackingConnection;
+  private final List<String> prefixes;
+  private final TrackingArgs trackingArgs;
+
+  private final Cache<String, TrackedKey> trackedKeys;
+
+  private final Set<StatefulRedisConnection<String, String>> listeningConnections = ConcurrentHashMap.newKeySet();
+  private final Scheduler trackingScheduler;
+  private final AtomicBoolean trackingRetryScheduled = new AtomicBoolean(false);
+
+  private volatile boolean tracking = false;
+
+  @Nullable
+  private Disposable eventSubscription;
+
+  private final Map<String, Counter> hitCountersByPrefix;
+  private final Map<String, Counter> missCountersByPrefix;
+  private final Map<String, Counter> invalidationCountersByPrefix;
+  private final Counter bypassCounter;
+  private final Counter flushCounter;
+
+  private static final String HIT_COUNTER_NAME = name(ClusterClientSideCache.class, "hit");
+  private static final String MISS_COUNTER_NAME = name(ClusterClientSideCache.class, "miss");
+  private static final String INVALIDATION_COUNTER_NAME = name(ClusterClientSideCache.class, "invalidation");
+  private static final String BYPASS_COUNTER_NAME = name(ClusterClientSideCache.class, "bypass");
+  private static final String FLUSH_COUNTER_NAME = name(ClusterClientSideCache.class, "flush");
+
+  private static final String INVALIDATE_PUSH_MESSAGE_TYPE = "invalidate";
+
+  private static final Duration TRACKING_RETRY_DELAY = Duration.ofSeconds(5);
+
+  private static final Logger logger = LoggerFactory.getLogger(ClusterClientSideCache.class);
+
+  private static class TrackedKey {
+
+    private final Map<String, Object> valuesByField = new ConcurrentHashMap<>();
+  }
+
+  ClusterClientSideCache(final String name,
+      final StatefulRedisClusterConnection<String, String> trackingConnection,
+      final List<String> prefixes,
+      final long maxSize,
+      final Duration ttl) {
+
+    if (prefixes.isEmpty()) {
+      throw new IllegalArgumentException("Client-side cache must track at least one prefix");
+    }
+
+    this.trackingConnection = trackingConnection;
+    this.prefixes = List.copyOf(prefixes);
+    this.trackingArgs = TrackingArgs.Builder.enabled().bcast().prefixes(prefixes.toArray(String[]::new));
+
+    this.trackedKeys = Caffeine.newBuilder()
+        .maximumSize(maxSize)
+        .expireAfterWrite(ttl)
+        .build();
+
+    this.trackingScheduler = Schedulers.newSingle(name + "-clientSideCacheTracking", true);
+
+    this.hitCountersByPrefix = buildCountersByPrefix(HIT_COUNTER_NAME, name, prefixes);
+    this.missCountersByPrefix = buildCountersByPrefix(MISS_COUNTER_NAME, name, prefixes);
+    this.invalidationCountersByPrefix = buildCountersByPrefix(INVALIDATION_COUNTER_NAME, name, prefixes);
+    this.bypassCounter = Metrics.counter(BYPASS_COUNTER_NAME, "cache", name);
+    this.flushCounter = Metrics.counter(FLUSH_COUNTER_NAME, "cache", name);
+  }
+
+  private static Map<String, Counter> buildCountersByPrefix(final String counterName,
+      final String cacheName,
+      final List<String> prefixes) {
+
+    return prefixes.stream()
+        .distinct()
+        .collect(Collectors.toMap(Function.identity(),
+            prefix -> Metrics.counter(counterName, "cache", cacheName, "prefix", prefix)));
+  }
+
+  @Override
+  public void start() {
+    eventSubscription = trackingConnection.getResources().eventBus().get()
+        .filter(event -> event instanceof ClusterTopologyChangedEvent
+            || event instanceof ConnectionActivatedEvent
+            || event instanceof ConnectionDeactivatedEvent)
+        .publishOn(trackingScheduler)
+        .subscribe(event -> restartTracking());
+
+    restartTracking();
+  }
+
+  @Override
+  public void stop() {
+    if (eventSubscription != null) {
+      eventSubscription.dispose();
+    }
+
+    tracking = false;
+    trackedKeys.invalidateAll();
+
+    listeningConnections.forEach(connection -> connection.removeListener(this));
+    listeningConnections.clear();
+
+    trackingConnection.close();
+    trackingScheduler.dispose();
+  }
+
+  /**
+   * Returns the value for the given key and field, loading it from Redis with the given loader if it isn't already
+   * cached. Non-null values returned by the loader are cached until the key is modified in Redis.
+   *
+   * @param key the Redis key from which the value is read; must begin with one of this cache's tracked prefixes
+   * @param field a field that distinguishes values read from the same key (for example, a hash field), or an empty
+   * string if only one value is read from the key
+   * @param loader a function that reads the value from Redis
+   *
+   * @return the value for the given key and field, or {@code null} if the loader returned {@code null}
+   */
+  @Nullable
+  public <T> T get(final String key, final String field, final Supplier<T> loader) {
+    final String prefix = getPrefix(key);
+
+    if (!tracking) {
+      bypassCounter.increment();
+      return loader.get();
+    }
+
+    @Nullable final T cachedValue = getCachedValue(key, field);
+
+    if (cachedValue != null) {
+      hitCountersByPrefix.get(prefix).increment();
+      return cachedValue;
+    }
+
+    missCountersByPrefix.get(prefix).increment();
+
+    final TrackedKey trackedKey = trackedKeys.get(key, ignored -> new TrackedKey());
+    final T value = loader.get();
+
+    cacheIfNotInvalidated(key, trackedKey, field, value);
+
+    return value;
+  }
+
+  /**
+   * Asynchronously returns the value for the given key and field, loading it from Redis with the given loader if it
+   * isn't already cached.
+   *
+   * @see #get(String, String, Supplier)
+   */
+  public <T> CompletableFuture<T> getAsync(final String key, final String field,
+      final Supplier<CompletableFuture<T>> loader) {
+
+    final String prefix = getPrefix(key);
+
+    if (!tracking) {
+      bypassCounter.increment();
+      return loader.get();
+    }
+
+    @Nullable final T cachedValue = getCachedValue(key, field);
+
+    if (cachedValue != null) {
+      hitCountersByPrefix.get(prefix).increment();
+      return CompletableFuture.completedFuture(cachedValue);
+    }
+
+    missCountersByPrefix.get(prefix).increment();
+
+    final TrackedKey trackedKey = trackedKeys.get(key, ignored -> new TrackedKey());
+
+    return loader.get().thenApply(value -> {
+      cacheIfNotInvalidated(key, trackedKey, field, value);
+      return value;
+    });
+  }
+
+  /**
+   * Discards all values cached for the given key. Callers that modify a tracked key should invalidate it locally
+   * rather than waiting for Redis to push an invalidation message.
+   *
+   * @param key the key for which to discard cached values
+   */
+  public void invalidate(final String key) {
+    trackedKeys.invalidate(key);
+  }
+
+  @Nullable
+  @SuppressWarnings("unchecked")
+  private <T> T getCachedValue(final String key, final String field) {
+    @Nullable final TrackedKey trackedKey = trackedKeys.getIfPresent(key);
+    return trackedKey != null ? (T) trackedKey.valuesByField.get(field) : null;
+  }
+
+  private void cacheIfNotInvalidated(final String key,
+      final TrackedKey trackedKey,
+      final String field,
+      @Nullable final Object value) {
+
+    // The tracked key was created before the value was read; if it has since been replaced or removed, the key was
+    // invalidated while the read was in flight and the value may already be stale
+    if (value != null && trackedKeys.asMap().get(key) == trackedKey) {
+      trackedKey.valuesByField.put(field, value);
+    }
+  }
+
+  private String getPrefix(final String key) {
+    for (final String prefix : prefixes) {
+      if (key.startsWith(prefix)) {
+        return prefix;
+      }
+    }
+
+    throw new IllegalArgumentException("Key does not have a tracked prefix: " + key);
+  }
+
+  @VisibleForTesting
+  boolean isTracking() {
+    return tracking;
+  }
+
+  @VisibleForTesting
+  boolean isCached(final String key, final String field) {
+    return getCachedValue(key, field) != null;
+  }
+
+  /**
+   * Disables and re-enables tracking on every upstream node in the cluster, discarding all cached values in the
+   * process. Until tracking has been re-enabled on all nodes, reads pass through to Redis.
+   */
+  @VisibleForTesting
+  synchronized void restartTracking() {
+    tracking = false;
+
+    try {
+      for (final RedisClusterNode node : trackingConnection.getPartitions()) {
+        if (!node.is(RedisClusterNode.NodeFlag.UPSTREAM)) {
+          continue;
+        }
+
+        final StatefulRedisConnection<String, String> nodeConnection =
+            trackingConnection.getConnection(node.getNodeId());
+
+        if (listeningConnections.add(nodeConnection)) {
+          nodeConnection.addListener(this);
+        }
+
+        // Redis rejects prefixes that overlap with prefixes that are already tracked, so clear them first
+        nodeConnection.sync().clientTracking(TrackingArgs.Builder.enabled(false));
+        nodeConnection.sync().clientTracking(trackingArgs);
+      }
+    } catch (final RuntimeException e) {
+      logger.warn("Failed to enable client-side cache tracking; will retry", e);
+
+      if (trackingRetryScheduled.compareAndSet(false, true)) {
+        trackingScheduler.schedule(() -> {
+          trackingRetryScheduled.set(false);
+          restartTracking();
+        }, TRACKING_RETRY_DELAY.toMillis(), TimeUnit.MILLISECONDS);
+      }
+
+      return;
+    }
+
+    // Anything cached before this point may have missed an invalidation message while tracking was interrupted
+    flush();
+    tracking = true;
+  }
+
+  private void flush() {
+    flushCounter.increment();
+    trackedKeys.invalidateAll();
+  }
+
+  @Override
+  public void onPushMessage(final PushMessage message) {
+    if (!INVALIDATE_PUSH_MESSAGE_TYPE.equals(message.getType())) {
+      return;
+    }
+
+    final List<Object> content = message.getContent(StringCodec.UTF8::decodeKey);
+
+    // A null list of keys means the node flushed its data or its tracking table, and all keys should be invalidated
+    if (content.size() < 2 || !(content.get(1) instanceof List<?> keys)) {
+      flush();
+      return;
+    }
+
+    for (final Object key : keys) {
+      if (key instanceof String invalidatedKey) {
+        trackedKeys.invalidate(invalidatedKey);
+
+        prefixes.stream()
+            .filter(invalidatedKey::startsWith)
+            .findFirst()
+            .ifPresent(prefix -> invalidationCountersByPrefix.get(prefix).increment());
+      }
+    }
+  }
+}
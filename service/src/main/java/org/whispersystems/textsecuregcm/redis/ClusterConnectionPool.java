@@ -0,0 +1,162 @@
+/*
+ * Copyright 2023 Signal Messenger, LLC
+ * SPDX-License-Identifier: AGPL-3.0-only
+ */
+
+package org.whispersystems.textsecuregcm.redis;
+
+import static org.whispersystems.textsecuregcm.metrics.MetricsUtil.name;
+
+import com.google.common.annotations.VisibleForTesting;
+import io.lettuce.core.cluster.SlotHash;
+import io.lettuce.core.cluster.api.StatefulRedisClusterConnection;
+import io.micrometer.core.instrument.Metrics;
+import io.micrometer.core.instrument.Tags;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+import java.util.function.Supplier;
+import java.util.function.ToIntFunction;
+import javax.annotation.Nullable;
+
+/**
+ * A fixed-size pool of connections to a Redis cluster that share a codec. Each connection multiplexes all of the
+ * commands issued through it over a single pipe per cluster node, so spreading operations across several connections
+ * keeps a slow operation from delaying every other operation issued after it.
+ * <p>
+ * Commands issued through different connections may execute in a different order than they were issued. Callers that
+ * issue dependent commands in separate operations should either use a pool of one connection or use the
+ * {@link RedisConnectionSelectionPolicy#KEY_SLOT} selection policy and supply routing keys.
+ *
+ * @param <K> the type of keys for connections in this pool
+ * @param <V> the type of values for connections in this pool
+ */
+class ClusterConnectionPool<K, V> {
+
+  private final List<StatefulRedisClusterConnection<K, V>> connections;
+  private final List<AtomicInteger> inFlightOperations;
+
+  private final RedisConnectionSelectionPolicy selectionPolicy;
+  private final ToIntFunction<K> slotFunction;
+
+  private final AtomicInteger nextConnection = new AtomicInteger();
+
+  private static final String IN_FLIGHT_OPERATIONS_GAUGE_NAME =
+      name(FaultTolerantRedisCluster.class, "inFlightOperations");
+
+  static ClusterConnectionPool<String, String> forStrings(final String clusterName,
+      final RedisWorkload workload,
+      final int size,
+      final RedisConnectionSelectionPolicy selectionPolicy,
+      final Supplier<StatefulRedisClusterConnection<String, String>> connectionSupplier) {
+
+    return new ClusterConnectionPool<>(clusterName, workload, "string", size, selectionPolicy, SlotHash::getSlot,
+        connectionSupplier);
+  }
+
+  static ClusterConnectionPool<byte[], byte[]> forBytes(final String clusterName,
+      final RedisWorkload workload,
+      final int size,
+      final RedisConnectionSelectionPolicy selectionPolicy,
+      final Supplier<StatefulRedisClusterConnection<byte[], byte[]>> connectionSupplier) {
+
+    return new ClusterConnectionPool<>(clusterName, workload, "binary", size, selectionPolicy, SlotHash::getSlot,
+        connectionSupplier);
+  }
+
+  @VisibleForTesting
+  ClusterConnectionPool(final String clusterName,
+      final RedisWorkload workload,
+      final String codecName,
+      final int size,
+      final RedisConnectionSelectionPolicy selectionPolicy,
+      final ToIntFunction<K> slotFunction,
+      final Supplier<StatefulRedisClusterConnection<K, V>> connectionSupplier) {
+
+    if (size < 1) {
+      throw new IllegalArgumentException("Connection pool must contain at least one connection");
+    }
+
+    this.selectionPolicy = selectionPolicy;
+    this.slotFunction = slotFunction;
+
+    this.connections = new ArrayList<>(size);
+    this.inFlightOperations = new ArrayList<>(size);
+
+    for (int i = 0; i < size; i++) {
+      connections.add(connectionSupplier.get());
+
+      inFlightOperations.add(Metrics.gauge(IN_FLIGHT_OPERATIONS_GAUGE_NAME,
+          Tags.of("cluster", clusterName,
+              "workload", workload.name().toLowerCase(),
+              "codec", codecName,
+              "connection", String.valueOf(i)),
+          new AtomicInteger()));
+    }
+  }
+
+  /**
+   * Applies the given function to a connection from this pool. If the function returns a {@link CompletionStage}, the
+   * operation is considered in flight until that stage completes; otherwise, it's considered complete when the function
+   * returns.
+   *
+   * @param routingKey the key involved in the operation, if known; used to choose a connection if this pool's
+   * selection policy is {@link RedisConnectionSelectionPolicy#KEY_SLOT}
+   * @param function the function to apply to the chosen connection
+   *
+   * @return the result of the given function
+   */
+  <T> T withConnection(@Nullable final K routingKey, final Function<StatefulRedisClusterConnection<K, V>, T> function) {
+    final int index = selectConnection(routingKey);
+    final AtomicInteger inFlight = inFlightOperations.get(index);
+
+    inFlight.incrementAndGet();
+    boolean pending = false;
+
+    try {
+      final T result = function.apply(connections.get(index));
+
+      if (result instanceof CompletionStage<?> completionStage) {
+        pending = true;
+        completionStage.whenComplete((ignored, throwable) -> inFlight.decrementAndGet());
+      }
+
+      return result;
+    } finally {
+      if (!pending) {
+        inFlight.decrementAndGet();
+      }
+    }
+  }
+
+  @VisibleForTesting
+  int selectConnection(@Nullable final K routingKey) {
+    if (connections.size() == 1) {
+      return 0;
+    }
+
+    if (selectionPolicy == RedisConnectionSelectionPolicy.KEY_SLOT && routingKey != null) {
+      return slotFunction.applyAsInt(routingKey) % connections.size();
+    }
+
+    return Math.floorMod(nextConnection.getAndIncrement(), connections.size());
+  }
+
+  /**
+   * Returns the hash slot for the given key.
+   */
+  int getSlot(final K key) {
+    return slotFunction.applyAsInt(key);
+  }
+
+  @VisibleForTesting
+  int getInFlightOperations(final int index) {
+    return inFlightOperations.get(index).get();
+  }
+
+  void close() {
+    connections.forEach(StatefulRedisClusterConnection::close);
+  }
+}
@@ -18,6 +18,7 @@ import java.security.NoSuchAlgorithmException;
 import java.util.HexFormat;
 import java.util.List;
 import java.util.concurrent.CompletableFuture;
+import javax.annotation.Nullable;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import reactor.core.publisher.Flux;
@@ -26,6 +27,7 @@ import reactor.core.publisher.Mono;
 public class ClusterLuaScript {
 
   private final FaultTolerantRedisCluster redisCluster;
+  private final RedisWorkload workload;
   private final ScriptOutputType scriptOutputType;
   private final String script;
   private final String sha;
@@ -39,6 +41,14 @@ public class ClusterLuaScript {
       final String resource,
       final ScriptOutputType scriptOutputType) throws IOException {
 
+    return fromResource(redisCluster, resource, scriptOutputType, RedisWorkload.INTERACTIVE);
+  }
+
+  public static ClusterLuaScript fromResource(final FaultTolerantRedisCluster redisCluster,
+      final String resource,
+      final ScriptOutputType scriptOutputType,
+      final RedisWorkload workload) throws IOException {
+
     try (final InputStream inputStream = ClusterLuaScript.class.getClassLoader().getResourceAsStream(resource)) {
       if (inputStream == null) {
         throw new IllegalArgumentException("Script not found: " + resource);
@@ -46,7 +56,8 @@ public class ClusterLuaScript {
 
       return new ClusterLuaScript(redisCluster,
           new String(inputStream.readAllBytes(), StandardCharsets.UTF_8),
-          scriptOutputType);
+          scriptOutputType,
+          workload);
     }
   }
 
@@ -55,7 +66,17 @@ public class ClusterLuaScript {
       final String script,
       final ScriptOutputType scriptOutputType) {
 
+    this(redisCluster, script, scriptOutputType, RedisWorkload.INTERACTIVE);
+  }
+
+  @VisibleForTesting
+  ClusterLuaScript(final FaultTolerantRedisCluster redisCluster,
+      final String script,
+      final ScriptOutputType scriptOutputType,
+      final RedisWorkload workload) {
+
     this.redisCluster = redisCluster;
+    this.workload = workload;
     this.scriptOutputType = scriptOutputType;
     this.script = script;
 
@@ -73,35 +94,69 @@ public class ClusterLuaScript {
   }
 
   public Object execute(final List<String> keys, final List<String> args) {
-    return redisCluster.withCluster(connection ->
+    return redisCluster.withCluster(workload, getRoutingKey(keys), connection ->
         execute(connection, keys.toArray(STRING_ARRAY), args.toArray(STRING_ARRAY)));
   }
 
   public CompletableFuture<Object> executeAsync(final List<String> keys, final List<String> args) {
-    return redisCluster.withCluster(connection ->
+    return redisCluster.withCluster(workload, getRoutingKey(keys), connection ->
         executeAsync(connection, keys.toArray(STRING_ARRAY), args.toArray(STRING_ARRAY)));
   }
 
   public Flux<Object> executeReactive(final List<String> keys, final List<String> args) {
-    return redisCluster.withCluster(connection ->
+    return redisCluster.withCluster(workload, getRoutingKey(keys), connection ->
         executeReactive(connection, keys.toArray(STRING_ARRAY), args.toArray(STRING_ARRAY)));
   }
 
   public Object executeBinary(final List<byte[]> keys, final List<byte[]> args) {
-    return redisCluster.withBinaryCluster(connection ->
+    return redisCluster.withBinaryCluster(workload, getRoutingKey(keys), connection ->
         execute(connection, keys.toArray(BYTE_ARRAY_ARRAY), args.toArray(BYTE_ARRAY_ARRAY)));
   }
 
   public CompletableFuture<Object> executeBinaryAsync(final List<byte[]> keys, final List<byte[]> args) {
-    return redisCluster.withBinaryCluster(connection ->
+    return redisCluster.withBinaryCluster(workload, getRoutingKey(keys), connection ->
         executeAsync(connection, keys.toArray(BYTE_ARRAY_ARRAY), args.toArray(BYTE_ARRAY_ARRAY)));
   }
 
   public Flux<Object> executeBinaryReactive(final List<byte[]> keys, final List<byte[]> args) {
-    return redisCluster.withBinaryCluster(connection ->
+    return redisCluster.withBinaryCluster(workload, getRoutingKey(keys), connection ->
         executeReactive(connection, keys.toArray(BYTE_ARRAY_ARRAY), args.toArray(BYTE_ARRAY_ARRAY)));
   }
 
+  /**
+   * Executes this script with keys and arguments that have already been encoded as byte arrays. Unlike
+   * {@link #executeBinary(List, List)}, this method passes the given arrays to Redis without copying them; callers must
+   * not modify the arrays (or their elements) until the script has completed.
+   */
+  public Object executeBinary(final byte[][] keys, final byte[][] args) {
+    return redisCluster.withBinaryCluster(workload, getRoutingKey(keys), connection ->
+        execute(connection, keys, args));
+  }
+
+  /**
+   * Asynchronously executes this script with keys and arguments that have already been encoded as byte arrays. Unlike
+   * {@link #executeBinaryAsync(List, List)}, this method passes the given arrays to Redis without copying them; callers
+   * must not modify the arrays (or their elements) until the returned future has completed.
+   */
+  public CompletableFuture<Object> executeBinaryAsync(final byte[][] keys, final byte[][] args) {
+    return redisCluster.withBinaryCluster(workload, getRoutingKey(keys), connection ->
+        executeAsync(connection, keys, args));
+  }
+
+  /**
+   * Returns the key used to choose a connection for a script invocation. All keys passed to a script must be in the
+   * same hash slot, so the first key is representative of all of them.
+   */
+  @Nullable
+  private static <T> T getRoutingKey(final List<T> keys) {
+    return keys.isEmpty() ? null : keys.get(0);
+  }
+
+  @Nullable
+  private static byte[] getRoutingKey(final byte[][] keys) {
+    return keys.length == 0 ? null : keys[0];
+  }
+
   private <T> Object execute(final StatefulRedisClusterConnection<T, T> connection, final T[] keys, final T[] args) {
     try {
       try {
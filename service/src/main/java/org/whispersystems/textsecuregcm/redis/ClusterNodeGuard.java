@@ -0,0 +1,143 @@
+/*
+ * Copyright 2023 Signal Messenger, LLC
+ * SPDX-License-Identifier: AGPL-3.0-only
+ */
+
+package org.whispersystems.textsecuregcm.redis;
+
+import static org.whispersystems.textsecuregcm.metrics.MetricsUtil.name;
+
+import io.github.resilience4j.bulkhead.Bulkhead;
+import io.github.resilience4j.bulkhead.BulkheadConfig;
+import io.github.resilience4j.circuitbreaker.CircuitBreaker;
+import io.github.resilience4j.circuitbreaker.CircuitBreakerConfig;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Metrics;
+import io.micrometer.core.instrument.Tags;
+import java.time.Duration;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.TimeUnit;
+import javax.annotation.Nullable;
+import org.whispersystems.textsecuregcm.util.CircuitBreakerUtil;
+import org.whispersystems.textsecuregcm.util.ExceptionUtils;
+
+/**
+ * Guards operations against a single upstream node in a Redis cluster with a node-specific circuit breaker and,
+ * optionally, a bulkhead that limits the number of concurrent operations against the node. Because each node has its
+ * own guard, a failing or saturated node only rejects operations on keys in its own slot range.
+ */
+class ClusterNodeGuard {
+
+  private final CircuitBreaker circuitBreaker;
+
+  @Nullable
+  private final Bulkhead bulkhead;
+
+  private static final String BULKHEAD_AVAILABLE_CALLS_GAUGE_NAME =
+      name(FaultTolerantRedisCluster.class, "nodeBulkheadAvailableConcurrentCalls");
+
+  private static final String BULKHEAD_REJECTED_CALLS_COUNTER_NAME =
+      name(FaultTolerantRedisCluster.class, "nodeBulkheadRejectedCalls");
+
+  /**
+   * Constructs a new guard for a cluster node.
+   *
+   * @param clusterName the name of the cluster to which the node belongs
+   * @param nodeId the node's cluster-assigned identifier
+   * @param circuitBreakerConfig the configuration for the node's circuit breaker
+   * @param maxConcurrentCalls the maximum number of concurrent operations to allow against the node; if zero, the
+   * number of concurrent operations is unlimited
+   */
+  ClusterNodeGuard(final String clusterName,
+      final String nodeId,
+      final CircuitBreakerConfig circuitBreakerConfig,
+      final int maxConcurrentCalls) {
+
+    final Tags tags = Tags.of("cluster", clusterName, "node", nodeId);
+
+    this.circuitBreaker = CircuitBreaker.of(clusterName + "-breaker-" + nodeId, circuitBreakerConfig);
+    CircuitBreakerUtil.registerMetrics(circuitBreaker, FaultTolerantRedisCluster.class, tags);
+
+    if (maxConcurrentCalls > 0) {
+      this.bulkhead = Bulkhead.of(clusterName + "-bulkhead-" + nodeId, BulkheadConfig.custom()
+          .maxConcurrentCalls(maxConcurrentCalls)
+          .maxWaitDuration(Duration.ZERO)
+          .build());
+
+      final Counter rejectedCallsCounter = Metrics.counter(BULKHEAD_REJECTED_CALLS_COUNTER_NAME, tags);
+      bulkhead.getEventPublisher().onCallRejected(event -> rejectedCallsCounter.increment());
+
+      Metrics.gauge(BULKHEAD_AVAILABLE_CALLS_GAUGE_NAME, tags, bulkhead,
+          b -> b.getMetrics().getAvailableConcurrentCalls());
+    } else {
+      this.bulkhead = null;
+    }
+  }
+
+  CircuitBreaker getCircuitBreaker() {
+    return circuitBreaker;
+  }
+
+  /**
+   * Executes the given operation if both this node's bulkhead and circuit breaker permit it. If the operation returns a
+   * {@link CompletionStage}, the operation's outcome is recorded by the circuit breaker when that stage completes, and
+   * the operation holds its bulkhead permit until then.
+   *
+   * @param callable the operation to execute
+   *
+   * @return the result of the given operation
+   *
+   * @throws io.github.resilience4j.bulkhead.BulkheadFullException if the node already has the maximum number of
+   * concurrent operations in flight
+   * @throws io.github.resilience4j.circuitbreaker.CallNotPermittedException if the node's circuit breaker is open
+   * @throws Exception if the operation itself failed
+   */
+  <T> T execute(final Callable<T> callable) throws Exception {
+    if (bulkhead != null) {
+      bulkhead.acquirePermission();
+    }
+
+    boolean pending = false;
+
+    try {
+      circuitBreaker.acquirePermission();
+      final long start = System.nanoTime();
+
+      final T result;
+
+      try {
+        result = callable.call();
+      } catch (final Throwable t) {
+        circuitBreaker.onError(System.nanoTime() - start, TimeUnit.NANOSECONDS, t);
+        throw t;
+      }
+
+      if (result instanceof CompletionStage<?> completionStage) {
+        pending = true;
+
+        completionStage.whenComplete((ignored, throwable) -> {
+          final long duration = System.nanoTime() - start;
+
+          if (throwable == null) {
+            circuitBreaker.onSuccess(duration, TimeUnit.NANOSECONDS);
+          } else {
+            circuitBreaker.onError(duration, TimeUnit.NANOSECONDS, ExceptionUtils.unwrap(throwable));
+          }
+
+          if (bulkhead != null) {
+            bulkhead.onComplete();
+          }
+        });
+      } else {
+        circuitBreaker.onSuccess(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+      }
+
+      return result;
+    } finally {
+      if (!pending && bulkhead != null) {
+        bulkhead.onComplete();
+      }
+    }
+  }
+}
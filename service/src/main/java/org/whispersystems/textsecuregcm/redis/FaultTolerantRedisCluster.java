@@ -7,6 +7,7 @@ package org.whispersystems.textsecuregcm.redis;
 
 import com.google.common.annotations.VisibleForTesting;
 import io.github.resilience4j.circuitbreaker.CircuitBreaker;
+import io.github.resilience4j.circuitbreaker.CircuitBreakerConfig;
 import io.github.resilience4j.core.IntervalFunction;
 import io.github.resilience4j.reactor.circuitbreaker.operator.CircuitBreakerOperator;
 import io.github.resilience4j.reactor.retry.RetryOperator;
@@ -20,14 +21,20 @@ import io.lettuce.core.cluster.ClusterClientOptions;
 import io.lettuce.core.cluster.ClusterTopologyRefreshOptions;
 import io.lettuce.core.cluster.RedisClusterClient;
 import io.lettuce.core.cluster.api.StatefulRedisClusterConnection;
+import io.lettuce.core.cluster.models.partitions.Partitions;
+import io.lettuce.core.cluster.models.partitions.RedisClusterNode;
 import io.lettuce.core.cluster.pubsub.StatefulRedisClusterPubSubConnection;
 import io.lettuce.core.codec.ByteArrayCodec;
 import io.lettuce.core.resource.ClientResources;
 import java.time.Duration;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.function.Consumer;
 import java.util.function.Function;
+import javax.annotation.Nullable;
 import org.reactivestreams.Publisher;
 import org.whispersystems.textsecuregcm.configuration.CircuitBreakerConfiguration;
 import org.whispersystems.textsecuregcm.configuration.RedisClusterConfiguration;
@@ -39,6 +46,15 @@ import reactor.core.scheduler.Schedulers;
 /**
  * A fault-tolerant access manager for a Redis cluster. A fault-tolerant Redis cluster provides managed,
  * circuit-breaker-protected access to connections.
+ * <p>
+ * Operations that identify the key they act upon are guarded by a circuit breaker (and, optionally, a bulkhead)
+ * specific to the upstream node that owns that key's hash slot, so a single failing or overloaded node doesn't cause
+ * operations against other nodes to be rejected. Operations that don't identify a key are guarded by a cluster-wide
+ * circuit breaker.
+ * <p>
+ * Operations are issued through pools of connections. By default, all operations share a single connection per codec,
+ * but clusters may be configured with larger pools and with a separate pool for {@link RedisWorkload#BULK bulk}
+ * operations so that large reads don't delay latency-sensitive operations.
  */
 public class FaultTolerantRedisCluster {
 
@@ -46,12 +62,17 @@ public class FaultTolerantRedisCluster {
 
   private final RedisClusterClient clusterClient;
 
-  private final StatefulRedisClusterConnection<String, String> stringConnection;
-  private final StatefulRedisClusterConnection<byte[], byte[]> binaryConnection;
+  private final ClusterConnectionPool<String, String> stringConnections;
+  private final ClusterConnectionPool<byte[], byte[]> binaryConnections;
+  private final ClusterConnectionPool<String, String> bulkStringConnections;
+  private final ClusterConnectionPool<byte[], byte[]> bulkBinaryConnections;
 
   private final List<StatefulRedisClusterPubSubConnection<?, ?>> pubSubConnections = new ArrayList<>();
 
   private final CircuitBreaker circuitBreaker;
+  private final CircuitBreakerConfig circuitBreakerConfig;
+  private final int maxConcurrentCallsPerNode;
+  private final Map<String, ClusterNodeGuard> nodeGuards = new ConcurrentHashMap<>();
   private final Retry retry;
   private final Retry topologyChangedEventRetry;
 
@@ -63,12 +84,27 @@ public class FaultTolerantRedisCluster {
                 clusterConfiguration.getTimeout())),
         clusterConfiguration.getTimeout(),
         clusterConfiguration.getCircuitBreakerConfiguration(),
-        clusterConfiguration.getRetryConfiguration());
+        clusterConfiguration.getRetryConfiguration(),
+        clusterConfiguration.getConnectionPoolSize(),
+        clusterConfiguration.getBulkConnectionPoolSize(),
+        clusterConfiguration.getConnectionSelectionPolicy(),
+        clusterConfiguration.getMaxConcurrentCallsPerNode());
   }
 
   @VisibleForTesting
   FaultTolerantRedisCluster(final String name, final RedisClusterClient clusterClient, final Duration commandTimeout,
       final CircuitBreakerConfiguration circuitBreakerConfiguration, final RetryConfiguration retryConfiguration) {
+
+    this(name, clusterClient, commandTimeout, circuitBreakerConfiguration, retryConfiguration,
+        1, 0, RedisConnectionSelectionPolicy.ROUND_ROBIN, 0);
+  }
+
+  @VisibleForTesting
+  FaultTolerantRedisCluster(final String name, final RedisClusterClient clusterClient, final Duration commandTimeout,
+      final CircuitBreakerConfiguration circuitBreakerConfiguration, final RetryConfiguration retryConfiguration,
+      final int connectionPoolSize, final int bulkConnectionPoolSize,
+      final RedisConnectionSelectionPolicy connectionSelectionPolicy, final int maxConcurrentCallsPerNode) {
+
     this.name = name;
 
     this.clusterClient = clusterClient;
@@ -85,10 +121,27 @@ public class FaultTolerantRedisCluster {
         .publishOnScheduler(true)
         .build());
 
-    this.stringConnection = clusterClient.connect();
-    this.binaryConnection = clusterClient.connect(ByteArrayCodec.INSTANCE);
+    this.stringConnections = ClusterConnectionPool.forStrings(name, RedisWorkload.INTERACTIVE, connectionPoolSize,
+        connectionSelectionPolicy, clusterClient::connect);
+
+    this.binaryConnections = ClusterConnectionPool.forBytes(name, RedisWorkload.INTERACTIVE, connectionPoolSize,
+        connectionSelectionPolicy, () -> clusterClient.connect(ByteArrayCodec.INSTANCE));
+
+    if (bulkConnectionPoolSize > 0) {
+      this.bulkStringConnections = ClusterConnectionPool.forStrings(name, RedisWorkload.BULK, bulkConnectionPoolSize,
+          connectionSelectionPolicy, clusterClient::connect);
 
-    this.circuitBreaker = CircuitBreaker.of(name + "-breaker", circuitBreakerConfiguration.toCircuitBreakerConfig());
+      this.bulkBinaryConnections = ClusterConnectionPool.forBytes(name, RedisWorkload.BULK, bulkConnectionPoolSize,
+          connectionSelectionPolicy, () -> clusterClient.connect(ByteArrayCodec.INSTANCE));
+    } else {
+      // With no dedicated connections, bulk operations share connections with everything else
+      this.bulkStringConnections = stringConnections;
+      this.bulkBinaryConnections = binaryConnections;
+    }
+
+    this.circuitBreakerConfig = circuitBreakerConfiguration.toCircuitBreakerConfig();
+    this.circuitBreaker = CircuitBreaker.of(name + "-breaker", circuitBreakerConfig);
+    this.maxConcurrentCallsPerNode = maxConcurrentCallsPerNode;
     this.retry = Retry.of(name + "-retry", retryConfiguration.toRetryConfigBuilder()
         .retryOnException(exception -> exception instanceof RedisCommandTimeoutException).build());
     final RetryConfig topologyChangedEventRetryConfig = RetryConfig.custom()
@@ -104,8 +157,16 @@ public class FaultTolerantRedisCluster {
   }
 
     void shutdown() {
-      stringConnection.close();
-      binaryConnection.close();
+      stringConnections.close();
+      binaryConnections.close();
+
+      if (bulkStringConnections != stringConnections) {
+        bulkStringConnections.close();
+      }
+
+      if (bulkBinaryConnections != binaryConnections) {
+        bulkBinaryConnections.close();
+      }
 
       for (final StatefulRedisClusterPubSubConnection<?, ?> pubSubConnection : pubSubConnections) {
         pubSubConnection.close();
@@ -119,30 +180,64 @@ public class FaultTolerantRedisCluster {
   }
 
   public void useCluster(final Consumer<StatefulRedisClusterConnection<String, String>> consumer) {
-    useConnection(stringConnection, consumer);
+    useConnection(stringConnections, consumer);
   }
 
   public <T> T withCluster(final Function<StatefulRedisClusterConnection<String, String>, T> function) {
-    return withConnection(stringConnection, function);
+    return withConnection(stringConnections, null, function);
+  }
+
+  /**
+   * Applies the given function to a connection chosen for the given workload and routing key.
+   *
+   * @param workload the kind of work the given function performs
+   * @param routingKey the key involved in the operation, if known; if present, the operation is guarded by the circuit
+   * breaker for the node that owns the key's hash slot, and operations on keys in the same hash slot use the same
+   * connection if this cluster is configured with the {@link RedisConnectionSelectionPolicy#KEY_SLOT} policy
+   * @param function the function to apply to the chosen connection
+   *
+   * @return the result of the given function
+   */
+  public <T> T withCluster(final RedisWorkload workload, @Nullable final String routingKey,
+      final Function<StatefulRedisClusterConnection<String, String>, T> function) {
+
+    return withConnection(workload == RedisWorkload.BULK ? bulkStringConnections : stringConnections, routingKey,
+        function);
   }
 
   public void useBinaryCluster(final Consumer<StatefulRedisClusterConnection<byte[], byte[]>> consumer) {
-    useConnection(binaryConnection, consumer);
+    useConnection(binaryConnections, consumer);
   }
 
   public <T> T withBinaryCluster(final Function<StatefulRedisClusterConnection<byte[], byte[]>, T> function) {
-    return withConnection(binaryConnection, function);
+    return withConnection(binaryConnections, null, function);
+  }
+
+  /**
+   * Applies the given function to a binary connection chosen for the given workload and routing key.
+   *
+   * @see #withCluster(RedisWorkload, String, Function)
+   */
+  public <T> T withBinaryCluster(final RedisWorkload workload, @Nullable final byte[] routingKey,
+      final Function<StatefulRedisClusterConnection<byte[], byte[]>, T> function) {
+
+    return withConnection(workload == RedisWorkload.BULK ? bulkBinaryConnections : binaryConnections, routingKey,
+        function);
   }
 
   public <T> Publisher<T> withBinaryClusterReactive(
       final Function<StatefulRedisClusterConnection<byte[], byte[]>, Publisher<T>> function) {
-    return withConnectionReactive(binaryConnection, function);
+    return withConnectionReactive(binaryConnections, function);
   }
 
-  private <K, V> void useConnection(final StatefulRedisClusterConnection<K, V> connection,
+  private <K, V> void useConnection(final ClusterConnectionPool<K, V> connections,
       final Consumer<StatefulRedisClusterConnection<K, V>> consumer) {
     try {
-      circuitBreaker.executeCheckedRunnable(() -> retry.executeRunnable(() -> consumer.accept(connection)));
+      circuitBreaker.executeCheckedRunnable(() -> retry.executeRunnable(() ->
+          connections.withConnection(null, connection -> {
+            consumer.accept(connection);
+            return null;
+          })));
     } catch (final Throwable t) {
       if (t instanceof RedisException) {
         throw (RedisException) t;
@@ -152,10 +247,19 @@ public class FaultTolerantRedisCluster {
     }
   }
 
-  private <T, K, V> T withConnection(final StatefulRedisClusterConnection<K, V> connection,
+  private <T, K, V> T withConnection(final ClusterConnectionPool<K, V> connections, @Nullable final K routingKey,
       final Function<StatefulRedisClusterConnection<K, V>, T> function) {
     try {
-      return circuitBreaker.executeCheckedSupplier(() -> retry.executeCallable(() -> function.apply(connection)));
+      final Optional<ClusterNodeGuard> maybeNodeGuard =
+          routingKey != null ? getNodeGuard(connections.getSlot(routingKey)) : Optional.empty();
+
+      if (maybeNodeGuard.isPresent()) {
+        return maybeNodeGuard.get().execute(() -> retry.executeCallable(() ->
+            connections.withConnection(routingKey, function)));
+      }
+
+      return circuitBreaker.executeCheckedSupplier(() -> retry.executeCallable(() ->
+          connections.withConnection(routingKey, function)));
     } catch (final Throwable t) {
       if (t instanceof RedisException) {
         throw (RedisException) t;
@@ -165,14 +269,55 @@ public class FaultTolerantRedisCluster {
     }
   }
 
-  private <T, K, V> Publisher<T> withConnectionReactive(final StatefulRedisClusterConnection<K, V> connection,
+  private <T, K, V> Publisher<T> withConnectionReactive(final ClusterConnectionPool<K, V> connections,
       final Function<StatefulRedisClusterConnection<K, V>, Publisher<T>> function) {
 
-    return Flux.from(function.apply(connection))
+    return Flux.from(connections.withConnection(null, function))
         .transformDeferred(RetryOperator.of(retry))
         .transformDeferred(CircuitBreakerOperator.of(circuitBreaker));
   }
 
+  /**
+   * Returns the guard for the upstream node that currently owns the given hash slot.
+   *
+   * @param slot the hash slot for which to find a guard
+   *
+   * @return the guard for the node that owns the given slot, or empty if the owner of the slot is not known
+   */
+  @VisibleForTesting
+  Optional<ClusterNodeGuard> getNodeGuard(final int slot) {
+    @Nullable final Partitions partitions = clusterClient.getPartitions();
+    @Nullable final RedisClusterNode node = partitions != null ? partitions.getPartitionBySlot(slot) : null;
+
+    if (node == null || node.getNodeId() == null) {
+      return Optional.empty();
+    }
+
+    return Optional.of(nodeGuards.computeIfAbsent(node.getNodeId(),
+        nodeId -> new ClusterNodeGuard(name, nodeId, circuitBreakerConfig, maxConcurrentCallsPerNode)));
+  }
+
+  /**
+   * Creates a local cache of values read from keys in this cluster with the given prefixes. The cache uses its own
+   * connections to the cluster to receive invalidation messages, and must be started before it serves cached values.
+   *
+   * @param cacheName a name for the cache, used to identify its metrics
+   * @param prefixes the prefixes of the keys that may be cached; prefixes must not overlap with one another
+   * @param maxSize the maximum number of keys for which to cache values
+   * @param ttl the maximum time for which a value may be cached
+   *
+   * @return a new, unstarted client-side cache
+   *
+   * @see ClusterClientSideCache
+   */
+  public ClusterClientSideCache createClientSideCache(final String cacheName,
+      final List<String> prefixes,
+      final long maxSize,
+      final Duration ttl) {
+
+    return new ClusterClientSideCache(name + "-" + cacheName, clusterClient.connect(), prefixes, maxSize, ttl);
+  }
+
   public FaultTolerantPubSubConnection<String, String> createPubSubConnection() {
     final StatefulRedisClusterPubSubConnection<String, String> pubSubConnection = clusterClient.connectPubSub();
     pubSubConnections.add(pubSubConnection);
@@ -0,0 +1,23 @@
+/*
+ * Copyright 2023 Signal Messenger, LLC
+ * SPDX-License-Identifier: AGPL-3.0-only
+ */
+
+package org.whispersystems.textsecuregcm.redis;
+
+/**
+ * Policies for choosing a connection from a pool of connections to a Redis cluster.
+ */
+public enum RedisConnectionSelectionPolicy {
+
+  /**
+   * Choose connections in turn regardless of the keys involved in an operation
+   */
+  ROUND_ROBIN,
+
+  /**
+   * Choose connections by the hash slot of the key involved in an operation when known so that all operations on a
+   * given slot are issued (and therefore executed) in order; operations with no known key are distributed round-robin
+   */
+  KEY_SLOT
+}
@@ -0,0 +1,24 @@
+/*
+ * Copyright 2023 Signal Messenger, LLC
+ * SPDX-License-Identifier: AGPL-3.0-only
+ */
+
+package org.whispersystems.textsecuregcm.redis;
+
+/**
+ * Identifies the kind of work an operation on a {@link FaultTolerantRedisCluster} performs so it can be routed to an
+ * appropriate group of connections.
+ */
+public enum RedisWorkload {
+
+  /**
+   * Latency-sensitive operations on small values; this is the default for all operations
+   */
+  INTERACTIVE,
+
+  /**
+   * Operations that transfer large amounts of data (i.e. reading pages of messages) and would delay interactive
+   * operations queued behind them on the same connection
+   */
+  BULK
+}
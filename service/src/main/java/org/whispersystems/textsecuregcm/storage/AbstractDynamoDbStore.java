@@ -11,14 +11,20 @@ import static io.micrometer.core.instrument.Metrics.timer;
 
 import io.micrometer.core.instrument.Counter;
 import io.micrometer.core.instrument.Timer;
+import java.time.Duration;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.atomic.AtomicReference;
 import java.util.function.Consumer;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import software.amazon.awssdk.services.dynamodb.DynamoDbAsyncClient;
 import software.amazon.awssdk.services.dynamodb.DynamoDbClient;
 import software.amazon.awssdk.services.dynamodb.model.AttributeValue;
 import software.amazon.awssdk.services.dynamodb.model.BatchWriteItemRequest;
@@ -31,6 +37,18 @@ public abstract class AbstractDynamoDbStore {
 
   private static final int MAX_ATTEMPTS_TO_SAVE_BATCH_WRITE = 25;  // This was arbitrarily chosen and may be entirely too high.
 
+  private static final int MAX_ATTEMPTS_TO_SAVE_BATCH_WRITE_ASYNC = 8;
+
+  private static final Duration BATCH_WRITE_RETRY_BASE_DELAY = Duration.ofMillis(25);
+
+  private static final String BATCH_WRITE_ITEMS_ASYNC_TIMER_NAME =
+      name(AbstractDynamoDbStore.class, "batchWriteItemsAsync");
+
+  private static final String BATCH_WRITE_ITEMS_ASYNC_UNPROCESSED_COUNTER_NAME =
+      name(AbstractDynamoDbStore.class, "batchWriteItemsAsyncUnprocessed");
+
+  private static final String TABLE_TAG_NAME = "table";
+
   public static final int DYNAMO_DB_MAX_BATCH_SIZE = 25;  // This limit comes from Amazon Dynamo DB itself. It will reject batch writes larger than this.
 
   public static final int RESULT_SET_CHUNK_SIZE = 100;
@@ -71,6 +89,83 @@ public abstract class AbstractDynamoDbStore {
     }
   }
 
+  /**
+   * Asynchronously applies the given write requests to the given table in batches of at most
+   * {@link #DYNAMO_DB_MAX_BATCH_SIZE} items. All batches are issued in parallel, and unprocessed items from each batch
+   * are retried with exponential backoff.
+   *
+   * @return a future that completes when all write requests have been applied, or completes exceptionally if any batch
+   * could not be fully applied
+   */
+  static CompletableFuture<Void> writeInBatchesAsync(final DynamoDbAsyncClient dynamoDbAsyncClient,
+      final String tableName,
+      final List<WriteRequest> writeRequests) {
+
+    if (writeRequests.isEmpty()) {
+      return CompletableFuture.completedFuture(null);
+    }
+
+    final int batchCount = (writeRequests.size() + DYNAMO_DB_MAX_BATCH_SIZE - 1) / DYNAMO_DB_MAX_BATCH_SIZE;
+
+    return writeInBatchesAsync(dynamoDbAsyncClient, tableName, Flux.fromIterable(writeRequests), batchCount);
+  }
+
+  /**
+   * Asynchronously applies the given write requests to the given table in batches of at most
+   * {@link #DYNAMO_DB_MAX_BATCH_SIZE} items. At most {@code maxConcurrency} batches are in flight at a time, and
+   * unprocessed items from each batch are retried with exponential backoff.
+   *
+   * @return a future that completes when all write requests have been applied, or completes exceptionally if any batch
+   * could not be fully applied
+   */
+  static CompletableFuture<Void> writeInBatchesAsync(final DynamoDbAsyncClient dynamoDbAsyncClient,
+      final String tableName,
+      final Flux<WriteRequest> writeRequests,
+      final int maxConcurrency) {
+
+    return writeRequests
+        .buffer(DYNAMO_DB_MAX_BATCH_SIZE)
+        .flatMap(batch -> writeBatchAsync(dynamoDbAsyncClient, tableName, batch, 0), maxConcurrency)
+        .then()
+        .toFuture();
+  }
+
+  private static Mono<Void> writeBatchAsync(final DynamoDbAsyncClient dynamoDbAsyncClient,
+      final String tableName,
+      final List<WriteRequest> batch,
+      final int attempt) {
+
+    final Timer.Sample sample = Timer.start();
+
+    return Mono.fromFuture(() -> dynamoDbAsyncClient.batchWriteItem(BatchWriteItemRequest.builder()
+            .requestItems(Map.of(tableName, batch))
+            .build()))
+        .flatMap(response -> {
+          sample.stop(timer(BATCH_WRITE_ITEMS_ASYNC_TIMER_NAME,
+              TABLE_TAG_NAME, tableName,
+              "firstAttempt", String.valueOf(attempt == 0)));
+
+          final List<WriteRequest> unprocessedWriteRequests =
+              response.unprocessedItems().getOrDefault(tableName, Collections.emptyList());
+
+          if (unprocessedWriteRequests.isEmpty()) {
+            return Mono.empty();
+          }
+
+          if (attempt + 1 >= MAX_ATTEMPTS_TO_SAVE_BATCH_WRITE_ASYNC) {
+            counter(BATCH_WRITE_ITEMS_ASYNC_UNPROCESSED_COUNTER_NAME, TABLE_TAG_NAME, tableName)
+                .increment(unprocessedWriteRequests.size());
+
+            return Mono.error(new IllegalStateException(
+                "Attempt count reached max (" + MAX_ATTEMPTS_TO_SAVE_BATCH_WRITE_ASYNC + ") with "
+                    + unprocessedWriteRequests.size() + " unprocessed items remaining"));
+          }
+
+          return Mono.delay(BATCH_WRITE_RETRY_BASE_DELAY.multipliedBy(1L << attempt))
+              .then(writeBatchAsync(dynamoDbAsyncClient, tableName, unprocessedWriteRequests, attempt + 1));
+        });
+  }
+
   @Nonnull
   protected List<Map<String, AttributeValue>> scan(final ScanRequest scanRequest, final int max) {
     return db().scanPaginator(scanRequest)
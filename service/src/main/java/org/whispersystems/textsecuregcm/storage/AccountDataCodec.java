@@ -0,0 +1,79 @@
+/*
+ * Copyright 2023 Signal Messenger, LLC
+ * SPDX-License-Identifier: AGPL-3.0-only
+ */
+
+package org.whispersystems.textsecuregcm.storage;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.dataformat.smile.SmileConstants;
+import com.fasterxml.jackson.dataformat.smile.databind.SmileMapper;
+import com.google.common.annotations.VisibleForTesting;
+import java.io.IOException;
+import java.util.List;
+import org.whispersystems.textsecuregcm.util.SystemMapper;
+
+/**
+ * Encodes and decodes the serialized form of {@link Account} entities. Accounts are written in a single configured
+ * {@link AccountDataFormat}, but may be read from any supported format; Smile-encoded data always begins with a
+ * distinctive header (which also carries the Smile format version), while JSON-encoded account data always begins with
+ * an opening brace. This allows a store to switch write formats while existing entries remain readable.
+ */
+class AccountDataCodec {
+
+  private final AccountDataFormat writeFormat;
+  private final ObjectWriter writer;
+
+  private static final ObjectMapper SMILE_MAPPER = SystemMapper.configureMapper(new SmileMapper());
+
+  /**
+   * Constructs a new account data codec.
+   *
+   * @param writeFormat the format in which to encode accounts
+   * @param fieldsToExclude the names of {@link Account} fields to omit when encoding accounts
+   */
+  AccountDataCodec(final AccountDataFormat writeFormat, final List<String> fieldsToExclude) {
+    this.writeFormat = writeFormat;
+
+    final ObjectMapper mapper = switch (writeFormat) {
+      case JSON -> SystemMapper.jsonMapper();
+      case SMILE -> SMILE_MAPPER;
+    };
+
+    this.writer = mapper.writer(SystemMapper.excludingField(Account.class, fieldsToExclude));
+  }
+
+  AccountDataFormat getWriteFormat() {
+    return writeFormat;
+  }
+
+  byte[] encode(final Account account) throws JsonProcessingException {
+    return writer.writeValueAsBytes(account);
+  }
+
+  /**
+   * Decodes an account from data in any supported format.
+   *
+   * @param accountData the serialized account
+   *
+   * @return the decoded account
+   *
+   * @throws IOException if the given data could not be decoded as an account
+   */
+  static Account decode(final byte[] accountData) throws IOException {
+    return (getFormat(accountData) == AccountDataFormat.SMILE ? SMILE_MAPPER : SystemMapper.jsonMapper())
+        .readValue(accountData, Account.class);
+  }
+
+  @VisibleForTesting
+  static AccountDataFormat getFormat(final byte[] accountData) {
+    return accountData.length >= 3
+        && accountData[0] == SmileConstants.HEADER_BYTE_1
+        && accountData[1] == SmileConstants.HEADER_BYTE_2
+        && accountData[2] == SmileConstants.HEADER_BYTE_3
+        ? AccountDataFormat.SMILE
+        : AccountDataFormat.JSON;
+  }
+}
@@ -0,0 +1,24 @@
+/*
+ * Copyright 2023 Signal Messenger, LLC
+ * SPDX-License-Identifier: AGPL-3.0-only
+ */
+
+package org.whispersystems.textsecuregcm.storage;
+
+/**
+ * Formats in which serialized account data may be written to a store. Readers accept data in any of these formats
+ * regardless of which format a store is configured to write, so a store's write format can be changed without first
+ * migrating existing data.
+ */
+public enum AccountDataFormat {
+
+  /**
+   * Plain-text JSON
+   */
+  JSON,
+
+  /**
+   * Smile, a binary encoding of the JSON data model that is more compact and faster to parse than plain-text JSON
+   */
+  SMILE
+}
@@ -0,0 +1,332 @@
+/*
+ * Copyright 2023 Signal Messenger, LLC
+ * SPDX-License-Identifier: AGPL-3.0-only
+ */
+
+package org.whispersystems.textsecuregcm.storage;
+
+import static org.whispersystems.textsecuregcm.metrics.MetricsUtil.name;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.google.common.annotations.VisibleForTesting;
+import io.dropwizard.lifecycle.Managed;
+import io.lettuce.core.cluster.SlotHash;
+import io.lettuce.core.cluster.models.partitions.RedisClusterNode;
+import io.lettuce.core.cluster.pubsub.RedisClusterPubSubAdapter;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Metrics;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import java.time.Duration;
+import java.util.Base64;
+import java.util.Optional;
+import java.util.UUID;
+import javax.annotation.Nullable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.whispersystems.textsecuregcm.redis.FaultTolerantPubSubConnection;
+import org.whispersystems.textsecuregcm.redis.FaultTolerantRedisCluster;
+
+/**
+ * An in-process cache of recently-used accounts that sits in front of the shared account cache in Redis. Entries are
+ * kept consistent across servers on a best-effort basis: whenever a server writes or removes an account in the shared
+ * cache, it publishes an invalidation message to all other servers, and entries expire after a short time regardless.
+ * <p>
+ * Accounts are mutable and are marked stale after updates, so this cache holds serialized accounts rather than
+ * {@link Account} instances; callers must deserialize a fresh instance for each lookup. Secondary keys (phone number,
+ * phone number identifier, and username hash) map to account identifiers, and callers must verify that an account
+ * resolved by secondary key is still identified by that key.
+ */
+public class AccountNearCache extends RedisClusterPubSubAdapter<String, String> implements Managed {
+
+  private final FaultTolerantRedisCluster cacheCluster;
+
+  // Null if this near cache only publishes invalidations and never caches accounts locally
+  @Nullable
+  private final FaultTolerantPubSubConnection<String, String> pubSubConnection;
+
+  private final Cache<UUID, CachedAccount> accountsByUuid;
+  private final Cache<String, UUID> accountIdentifiersByE164;
+  private final Cache<UUID, UUID> accountIdentifiersByPhoneNumberIdentifier;
+  private final Cache<String, UUID> accountIdentifiersByUsernameHash;
+
+  // The oldest version of each account that other servers have told us is acceptable; this keeps a read from the
+  // shared cache that raced with an invalidation from repopulating this cache with an outdated version
+  private final Cache<UUID, Integer> minimumVersionsByUuid;
+
+  // Identifies invalidation messages published by this instance so it can ignore its own messages
+  private final String instanceId = UUID.randomUUID().toString();
+
+  @VisibleForTesting
+  static final String INVALIDATION_CHANNEL = "account_near_cache_invalidation";
+
+  private static final long DEFAULT_MAX_SIZE = 250_000;
+  private static final Duration DEFAULT_TTL = Duration.ofSeconds(30);
+
+  private static final Counter INVALIDATION_RECEIVED_COUNTER =
+      Metrics.counter(name(AccountNearCache.class, "invalidationReceived"));
+  private static final Counter PUBLISH_INVALIDATION_FAILURE_COUNTER =
+      Metrics.counter(name(AccountNearCache.class, "publishInvalidationFailure"));
+
+  private static final Logger logger = LoggerFactory.getLogger(AccountNearCache.class);
+
+  private record CachedAccount(String accountJson, int version) {
+  }
+
+  public AccountNearCache(final FaultTolerantRedisCluster cacheCluster) {
+    this(cacheCluster, DEFAULT_MAX_SIZE, DEFAULT_TTL);
+  }
+
+  @VisibleForTesting
+  AccountNearCache(final FaultTolerantRedisCluster cacheCluster, final long maxSize, final Duration ttl) {
+    this(cacheCluster, maxSize, ttl, true);
+  }
+
+  private AccountNearCache(final FaultTolerantRedisCluster cacheCluster,
+      final long maxSize,
+      final Duration ttl,
+      final boolean cacheLocally) {
+
+    this.cacheCluster = cacheCluster;
+    this.pubSubConnection = cacheLocally ? cacheCluster.createPubSubConnection() : null;
+
+    this.accountsByUuid = Caffeine.newBuilder()
+        .maximumSize(maxSize)
+        .expireAfterWrite(ttl)
+        .recordStats()
+        .build();
+
+    this.accountIdentifiersByE164 = buildSecondaryKeyCache(maxSize, ttl);
+    this.accountIdentifiersByPhoneNumberIdentifier = buildSecondaryKeyCache(maxSize, ttl);
+    this.accountIdentifiersByUsernameHash = buildSecondaryKeyCache(maxSize, ttl);
+
+    this.minimumVersionsByUuid = Caffeine.newBuilder()
+        .maximumSize(maxSize)
+        .expireAfterWrite(ttl)
+        .build();
+
+    if (cacheLocally) {
+      CaffeineCacheMetrics.monitor(Metrics.globalRegistry, accountsByUuid, name(AccountNearCache.class, "accounts"));
+    }
+  }
+
+  /**
+   * Returns a near cache that never caches accounts locally, but still notifies other servers when accounts change.
+   * This is appropriate for short-lived processes (i.e. commands) that modify accounts, but that don't benefit from
+   * local caching and don't subscribe to invalidation messages.
+   *
+   * @param cacheCluster the cluster to which to publish invalidation messages
+   *
+   * @return a near cache that only publishes invalidation messages
+   */
+  public static AccountNearCache publishOnly(final FaultTolerantRedisCluster cacheCluster) {
+    return new AccountNearCache(cacheCluster, DEFAULT_MAX_SIZE, DEFAULT_TTL, false);
+  }
+
+  private static <K> Cache<K, UUID> buildSecondaryKeyCache(final long maxSize, final Duration ttl) {
+    return Caffeine.newBuilder()
+        .maximumSize(maxSize)
+        .expireAfterWrite(ttl)
+        .build();
+  }
+
+  @Override
+  public void start() {
+    if (pubSubConnection == null) {
+      return;
+    }
+
+    pubSubConnection.usePubSubConnection(connection -> connection.addListener(this));
+    pubSubConnection.subscribeToClusterTopologyChangedEvents(this::resubscribe);
+
+    subscribe();
+  }
+
+  @Override
+  public void stop() {
+    if (pubSubConnection == null) {
+      return;
+    }
+
+    pubSubConnection.usePubSubConnection(connection -> {
+      connection.removeListener(this);
+      connection.sync().upstream().commands().unsubscribe(INVALIDATION_CHANNEL);
+    });
+  }
+
+  private void subscribe() {
+    final int slot = SlotHash.getSlot(INVALIDATION_CHANNEL);
+
+    pubSubConnection.usePubSubConnection(connection ->
+        connection.sync().nodes(node -> node.is(RedisClusterNode.NodeFlag.UPSTREAM) && node.hasSlot(slot))
+            .commands()
+            .subscribe(INVALIDATION_CHANNEL));
+  }
+
+  private void resubscribe() {
+    // We may have missed invalidation messages while the subscription was broken, so nothing we have can be trusted
+    invalidateAll();
+    subscribe();
+  }
+
+  /**
+   * Returns the serialized form of the account with the given identifier, if present in this cache.
+   */
+  Optional<String> getAccountJson(final UUID uuid) {
+    return Optional.ofNullable(accountsByUuid.getIfPresent(uuid)).map(CachedAccount::accountJson);
+  }
+
+  Optional<UUID> getAccountIdentifierByE164(final String e164) {
+    return Optional.ofNullable(accountIdentifiersByE164.getIfPresent(e164));
+  }
+
+  Optional<UUID> getAccountIdentifierByPhoneNumberIdentifier(final UUID pni) {
+    return Optional.ofNullable(accountIdentifiersByPhoneNumberIdentifier.getIfPresent(pni));
+  }
+
+  Optional<UUID> getAccountIdentifierByUsernameHash(final byte[] usernameHash) {
+    return Optional.ofNullable(accountIdentifiersByUsernameHash.getIfPresent(encodeUsernameHash(usernameHash)));
+  }
+
+  /**
+   * Caches the given account locally without notifying other servers. This is appropriate when the account was just
+   * read from the shared cache and so is no newer than what other servers would see.
+   *
+   * @param account the account to cache
+   * @param accountJson the serialized form of the given account
+   */
+  void putLocal(final Account account, final String accountJson) {
+    if (pubSubConnection == null) {
+      // Without a subscription to invalidation messages, there's no way to keep locally-cached accounts current
+      return;
+    }
+
+    final int version = account.getVersion();
+
+    // Never replace a newer version of an account with an older one, and never cache a version that another server has
+    // already announced is out of date. Invalidation messages raise the minimum version before removing entries, so
+    // checking it here (while holding the entry's lock) means a concurrent invalidation either blocks this write or
+    // removes the entry afterward.
+    accountsByUuid.asMap().compute(account.getUuid(), (uuid, existing) -> {
+      final Integer minimumVersion = minimumVersionsByUuid.getIfPresent(uuid);
+
+      if (minimumVersion != null && version < minimumVersion) {
+        return existing;
+      }
+
+      return existing != null && existing.version() > version ? existing : new CachedAccount(accountJson, version);
+    });
+
+    if (account.getNumber() != null) {
+      accountIdentifiersByE164.put(account.getNumber(), account.getUuid());
+    }
+
+    if (account.getPhoneNumberIdentifier() != null) {
+      accountIdentifiersByPhoneNumberIdentifier.put(account.getPhoneNumberIdentifier(), account.getUuid());
+    }
+
+    account.getUsernameHash().ifPresent(usernameHash ->
+        accountIdentifiersByUsernameHash.put(encodeUsernameHash(usernameHash), account.getUuid()));
+  }
+
+  /**
+   * Caches the given account locally and notifies other servers that any older versions of the account they hold are
+   * out of date.
+   *
+   * @param account the account to cache
+   * @param accountJson the serialized form of the given account
+   */
+  void put(final Account account, final String accountJson) {
+    putLocal(account, accountJson);
+    publishInvalidation(account.getUuid(), account.getVersion());
+  }
+
+  /**
+   * Removes the given account from this cache and from the caches of all other servers regardless of version. This is
+   * appropriate only when the account has been deleted; other servers will refuse to cache any version of the account
+   * until their record of the invalidation expires.
+   */
+  void invalidate(final UUID uuid) {
+    accountsByUuid.invalidate(uuid);
+    publishInvalidation(uuid, Integer.MAX_VALUE);
+  }
+
+  /**
+   * Removes the given account from this cache and notifies other servers that the given version of the account (and
+   * any older version) is about to become out of date. This is appropriate before updating an account; every
+   * successful update produces a newer version, which other servers will still accept.
+   *
+   * @param account the account about to be updated
+   */
+  void invalidateBeforeUpdate(final Account account) {
+    accountsByUuid.invalidate(account.getUuid());
+    publishInvalidation(account.getUuid(), account.getVersion() + 1);
+  }
+
+  @VisibleForTesting
+  void invalidateAll() {
+    accountsByUuid.invalidateAll();
+    accountIdentifiersByE164.invalidateAll();
+    accountIdentifiersByPhoneNumberIdentifier.invalidateAll();
+    accountIdentifiersByUsernameHash.invalidateAll();
+  }
+
+  private void publishInvalidation(final UUID uuid, final int version) {
+    try {
+      cacheCluster.withCluster(connection ->
+              connection.async().publish(INVALIDATION_CHANNEL, encodeInvalidation(instanceId, uuid, version)))
+          .whenComplete((ignored, throwable) -> {
+            if (throwable != null) {
+              PUBLISH_INVALIDATION_FAILURE_COUNTER.increment();
+              logger.debug("Failed to publish account invalidation", throwable);
+            }
+          });
+    } catch (final Exception e) {
+      // Entries expire quickly on their own; a failure to publish shouldn't fail the write that triggered it
+      PUBLISH_INVALIDATION_FAILURE_COUNTER.increment();
+      logger.debug("Failed to publish account invalidation", e);
+    }
+  }
+
+  @Override
+  public void message(final RedisClusterNode node, final String channel, final String message) {
+    if (!INVALIDATION_CHANNEL.equals(channel)) {
+      return;
+    }
+
+    final String[] pieces = message.split(":", 3);
+
+    if (pieces.length != 3) {
+      logger.warn("Malformed account invalidation message: {}", message);
+      return;
+    }
+
+    if (instanceId.equals(pieces[0])) {
+      return;
+    }
+
+    INVALIDATION_RECEIVED_COUNTER.increment();
+
+    try {
+      final UUID uuid = UUID.fromString(pieces[1]);
+      final int version = Integer.parseInt(pieces[2]);
+
+      minimumVersionsByUuid.asMap().merge(uuid, version, Math::max);
+
+      // Versions only change when an account is updated, so a cached copy with the same version is still current
+      accountsByUuid.asMap()
+          .computeIfPresent(uuid, (ignored, existing) -> existing.version() < version ? null : existing);
+    } catch (final IllegalArgumentException e) {
+      logger.warn("Malformed account invalidation message: {}", message, e);
+    }
+  }
+
+  @VisibleForTesting
+  static String encodeInvalidation(final String instanceId, final UUID uuid, final int version) {
+    return instanceId + ":" + uuid + ":" + version;
+  }
+
+  private static String encodeUsernameHash(final byte[] usernameHash) {
+    return Base64.getUrlEncoder().withoutPadding().encodeToString(usernameHash);
+  }
+}
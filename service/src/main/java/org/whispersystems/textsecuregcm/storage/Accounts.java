@@ -8,9 +8,9 @@ import static com.codahale.metrics.MetricRegistry.name;
 import static java.util.Objects.requireNonNull;
 
 import com.fasterxml.jackson.core.JsonProcessingException;
-import com.fasterxml.jackson.databind.ObjectWriter;
 import com.google.common.annotations.VisibleForTesting;
 import com.google.common.base.Throwables;
+import io.micrometer.core.instrument.Counter;
 import io.micrometer.core.instrument.Metrics;
 import io.micrometer.core.instrument.Timer;
 import java.io.IOException;
@@ -19,6 +19,8 @@ import java.time.Clock;
 import java.time.Duration;
 import java.time.Instant;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -28,6 +30,8 @@ import java.util.UUID;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.CompletionException;
 import java.util.concurrent.CompletionStage;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
 import java.util.function.Predicate;
 import java.util.stream.Collectors;
 import javax.annotation.Nonnull;
@@ -37,7 +41,6 @@ import org.slf4j.LoggerFactory;
 import org.whispersystems.textsecuregcm.util.AsyncTimerUtil;
 import org.whispersystems.textsecuregcm.util.AttributeValues;
 import org.whispersystems.textsecuregcm.util.ExceptionUtils;
-import org.whispersystems.textsecuregcm.util.SystemMapper;
 import org.whispersystems.textsecuregcm.util.UUIDUtil;
 import org.whispersystems.textsecuregcm.util.Util;
 import reactor.core.publisher.Flux;
@@ -46,11 +49,13 @@ import reactor.core.scheduler.Scheduler;
 import software.amazon.awssdk.services.dynamodb.DynamoDbAsyncClient;
 import software.amazon.awssdk.services.dynamodb.DynamoDbClient;
 import software.amazon.awssdk.services.dynamodb.model.AttributeValue;
+import software.amazon.awssdk.services.dynamodb.model.BatchGetItemRequest;
 import software.amazon.awssdk.services.dynamodb.model.CancellationReason;
 import software.amazon.awssdk.services.dynamodb.model.ConditionalCheckFailedException;
 import software.amazon.awssdk.services.dynamodb.model.Delete;
 import software.amazon.awssdk.services.dynamodb.model.GetItemRequest;
 import software.amazon.awssdk.services.dynamodb.model.GetItemResponse;
+import software.amazon.awssdk.services.dynamodb.model.KeysAndAttributes;
 import software.amazon.awssdk.services.dynamodb.model.Put;
 import software.amazon.awssdk.services.dynamodb.model.QueryRequest;
 import software.amazon.awssdk.services.dynamodb.model.QueryResponse;
@@ -80,9 +85,6 @@ public class Accounts extends AbstractDynamoDbStore {
 
   static final List<String> ACCOUNT_FIELDS_TO_EXCLUDE_FROM_SERIALIZATION = List.of("uuid", "usernameLinkHandle");
 
-  private static final ObjectWriter ACCOUNT_DDB_JSON_WRITER = SystemMapper.jsonMapper()
-      .writer(SystemMapper.excludingField(Account.class, ACCOUNT_FIELDS_TO_EXCLUDE_FROM_SERIALIZATION));
-
   private static final Timer CREATE_TIMER = Metrics.timer(name(Accounts.class, "create"));
   private static final Timer CHANGE_NUMBER_TIMER = Metrics.timer(name(Accounts.class, "changeNumber"));
   private static final Timer SET_USERNAME_TIMER = Metrics.timer(name(Accounts.class, "setUsername"));
@@ -95,6 +97,14 @@ public class Accounts extends AbstractDynamoDbStore {
   private static final Timer GET_BY_PNI_TIMER = Metrics.timer(name(Accounts.class, "getByPni"));
   private static final Timer GET_BY_UUID_TIMER = Metrics.timer(name(Accounts.class, "getByUuid"));
   private static final Timer DELETE_TIMER = Metrics.timer(name(Accounts.class, "delete"));
+  private static final Timer BATCH_GET_BY_UUID_TIMER = Metrics.timer(name(Accounts.class, "batchGetByUuid"));
+  private static final Counter BATCH_GET_UNPROCESSED_KEYS_COUNTER =
+      Metrics.counter(name(Accounts.class, "batchGetUnprocessedKeys"));
+
+  // This limit comes from DynamoDB itself; BatchGetItem requests may contain at most 100 keys
+  private static final int DYNAMO_DB_MAX_BATCH_GET_SIZE = 100;
+  private static final int MAX_BATCH_GET_ATTEMPTS = 5;
+  private static final Duration BATCH_GET_RETRY_BASE_DELAY = Duration.ofMillis(25);
 
   private static final String CONDITIONAL_CHECK_FAILED = "ConditionalCheckFailed";
 
@@ -141,6 +151,7 @@ public class Accounts extends AbstractDynamoDbStore {
   private final String usernamesConstraintTableName;
   private final String deletedAccountsTableName;
   private final String accountsTableName;
+  private final AccountDataCodec accountDataCodec;
 
   @VisibleForTesting
   public Accounts(
@@ -151,7 +162,8 @@ public class Accounts extends AbstractDynamoDbStore {
       final String phoneNumberConstraintTableName,
       final String phoneNumberIdentifierConstraintTableName,
       final String usernamesConstraintTableName,
-      final String deletedAccountsTableName) {
+      final String deletedAccountsTableName,
+      final AccountDataFormat accountDataFormat) {
     super(client);
     this.clock = clock;
     this.asyncClient = asyncClient;
@@ -160,6 +172,7 @@ public class Accounts extends AbstractDynamoDbStore {
     this.accountsTableName = accountsTableName;
     this.usernamesConstraintTableName = usernamesConstraintTableName;
     this.deletedAccountsTableName = deletedAccountsTableName;
+    this.accountDataCodec = new AccountDataCodec(accountDataFormat, ACCOUNT_FIELDS_TO_EXCLUDE_FROM_SERIALIZATION);
   }
 
   public Accounts(
@@ -169,10 +182,11 @@ public class Accounts extends AbstractDynamoDbStore {
       final String phoneNumberConstraintTableName,
       final String phoneNumberIdentifierConstraintTableName,
       final String usernamesConstraintTableName,
-      final String deletedAccountsTableName) {
+      final String deletedAccountsTableName,
+      final AccountDataFormat accountDataFormat) {
     this(Clock.systemUTC(), client, asyncClient, accountsTableName,
         phoneNumberConstraintTableName, phoneNumberIdentifierConstraintTableName, usernamesConstraintTableName,
-        deletedAccountsTableName);
+        deletedAccountsTableName, accountDataFormat);
   }
 
   public boolean create(final Account account) {
@@ -352,10 +366,10 @@ public class Accounts extends AbstractDynamoDbStore {
 
     // Use account UUID as a "reservation token" - by providing this, the client proves ownership of the hash
     final UUID uuid = account.getUuid();
-    final byte[] accountJsonBytes;
+    final AttributeValue accountDataAttributeValue;
 
     try {
-      accountJsonBytes = SystemMapper.jsonMapper().writeValueAsBytes(account);
+      accountDataAttributeValue = accountDataAttributeValue(account);
     } catch (final JsonProcessingException e) {
       throw new IllegalArgumentException(e);
     }
@@ -386,7 +400,7 @@ public class Accounts extends AbstractDynamoDbStore {
                 .conditionExpression("#version = :version")
                 .expressionAttributeNames(Map.of("#data", ATTR_ACCOUNT_DATA, "#version", ATTR_VERSION))
                 .expressionAttributeValues(Map.of(
-                    ":data", AttributeValues.fromByteArray(accountJsonBytes),
+                    ":data", accountDataAttributeValue,
                     ":version", AttributeValues.fromInt(account.getVersion()),
                     ":version_increment", AttributeValues.fromInt(1)))
                 .build())
@@ -747,6 +761,89 @@ public class Accounts extends AbstractDynamoDbStore {
             .map(Accounts::fromItem)));
   }
 
+  /**
+   * Retrieves the accounts with the given identifiers using as few {@code BatchGetItem} calls as possible. Identifiers
+   * with no matching account are omitted from the results.
+   *
+   * @param uuids the account identifiers to look up
+   *
+   * @return a future that yields the accounts that exist for the given identifiers, keyed by account identifier
+   */
+  @Nonnull
+  public CompletableFuture<Map<UUID, Account>> getByAccountIdentifiersAsync(final Collection<UUID> uuids) {
+    if (uuids.isEmpty()) {
+      return CompletableFuture.completedFuture(Collections.emptyMap());
+    }
+
+    final List<Map<String, AttributeValue>> keys = uuids.stream()
+        .distinct()
+        .map(uuid -> Map.of(KEY_ACCOUNT_UUID, AttributeValues.fromUUID(uuid)))
+        .toList();
+
+    final List<CompletableFuture<List<Map<String, AttributeValue>>>> batchFutures =
+        new ArrayList<>((keys.size() / DYNAMO_DB_MAX_BATCH_GET_SIZE) + 1);
+
+    for (int i = 0; i < keys.size(); i += DYNAMO_DB_MAX_BATCH_GET_SIZE) {
+      batchFutures.add(batchGetItemsAsync(accountsTableName,
+          keys.subList(i, Math.min(i + DYNAMO_DB_MAX_BATCH_GET_SIZE, keys.size())), 0));
+    }
+
+    final Timer.Sample sample = Timer.start();
+
+    return CompletableFuture.allOf(batchFutures.toArray(new CompletableFuture[0]))
+        .thenApply(ignored -> {
+          final Map<UUID, Account> accountsByUuid = new HashMap<>(keys.size());
+
+          batchFutures.stream()
+              .flatMap(future -> future.join().stream())
+              .map(Accounts::fromItem)
+              .forEach(account -> accountsByUuid.put(account.getUuid(), account));
+
+          return accountsByUuid;
+        })
+        .whenComplete((ignored, throwable) -> sample.stop(BATCH_GET_BY_UUID_TIMER));
+  }
+
+  private CompletableFuture<List<Map<String, AttributeValue>>> batchGetItemsAsync(final String tableName,
+      final List<Map<String, AttributeValue>> keys,
+      final int attempt) {
+
+    return asyncClient.batchGetItem(BatchGetItemRequest.builder()
+            .requestItems(Map.of(tableName, KeysAndAttributes.builder()
+                .keys(keys)
+                .consistentRead(true)
+                .build()))
+            .build())
+        .thenCompose(response -> {
+          final List<Map<String, AttributeValue>> items =
+              new ArrayList<>(response.responses().getOrDefault(tableName, Collections.emptyList()));
+
+          @Nullable final KeysAndAttributes unprocessedKeys = response.unprocessedKeys().get(tableName);
+
+          if (unprocessedKeys == null || unprocessedKeys.keys().isEmpty()) {
+            return CompletableFuture.completedFuture(items);
+          }
+
+          if (attempt >= MAX_BATCH_GET_ATTEMPTS) {
+            return CompletableFuture.failedFuture(new IllegalStateException(
+                "Could not retrieve " + unprocessedKeys.keys().size() + " items after " + attempt + " attempts"));
+          }
+
+          BATCH_GET_UNPROCESSED_KEYS_COUNTER.increment(unprocessedKeys.keys().size());
+
+          // Back off exponentially before retrying unprocessed keys, as recommended by the DynamoDB documentation
+          final Executor delayedExecutor =
+              CompletableFuture.delayedExecutor(BATCH_GET_RETRY_BASE_DELAY.toMillis() << attempt, TimeUnit.MILLISECONDS);
+
+          return CompletableFuture.supplyAsync(() -> unprocessedKeys.keys(), delayedExecutor)
+              .thenCompose(retryKeys -> batchGetItemsAsync(tableName, retryKeys, attempt + 1))
+              .thenApply(retrievedItems -> {
+                items.addAll(retrievedItems);
+                return items;
+              });
+        });
+  }
+
   private TransactWriteItem buildPutDeletedAccount(final UUID uuid, final String e164) {
     return TransactWriteItem.builder()
         .put(Put.builder()
@@ -1095,7 +1192,7 @@ public class Accounts extends AbstractDynamoDbStore {
       throw new RuntimeException("item missing values");
     }
     try {
-      final Account account = SystemMapper.jsonMapper().readValue(item.get(ATTR_ACCOUNT_DATA).b().asByteArray(), Account.class);
+      final Account account = AccountDataCodec.decode(item.get(ATTR_ACCOUNT_DATA).b().asByteArray());
 
       final UUID accountIdentifier = UUIDUtil.fromByteBuffer(item.get(KEY_ACCOUNT_UUID).b().asByteBuffer());
       final UUID phoneNumberIdentifierFromAttribute = AttributeValues.getUUID(item, ATTR_PNI_UUID, null);
@@ -1120,8 +1217,8 @@ public class Accounts extends AbstractDynamoDbStore {
     }
   }
 
-  private static AttributeValue accountDataAttributeValue(final Account account) throws JsonProcessingException {
-    return AttributeValues.fromByteArray(ACCOUNT_DDB_JSON_WRITER.writeValueAsBytes(account));
+  private AttributeValue accountDataAttributeValue(final Account account) throws JsonProcessingException {
+    return AttributeValues.fromByteArray(accountDataCodec.encode(account));
   }
 
   private static boolean conditionalCheckFailed(final CancellationReason reason) {
@@ -8,6 +8,7 @@ package org.whispersystems.textsecuregcm.storage;
 import static com.codahale.metrics.MetricRegistry.name;
 import static java.util.Objects.requireNonNull;
 
+import com.codahale.metrics.Meter;
 import com.codahale.metrics.MetricRegistry;
 import com.codahale.metrics.SharedMetricRegistries;
 import com.codahale.metrics.Timer;
@@ -27,7 +28,10 @@ import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Base64;
+import java.util.Collection;
 import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.NoSuchElementException;
@@ -35,6 +39,7 @@ import java.util.Objects;
 import java.util.Optional;
 import java.util.OptionalInt;
 import java.util.Queue;
+import java.util.Set;
 import java.util.UUID;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.CompletionStage;
@@ -42,6 +47,7 @@ import java.util.concurrent.Executor;
 import java.util.concurrent.atomic.AtomicReference;
 import java.util.function.Consumer;
 import java.util.function.Function;
+import java.util.function.Predicate;
 import java.util.function.Supplier;
 import java.util.stream.Collectors;
 import javax.annotation.Nullable;
@@ -51,6 +57,7 @@ import org.signal.libsignal.protocol.IdentityKey;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.whispersystems.textsecuregcm.auth.SaltedTokenHash;
+import org.whispersystems.textsecuregcm.configuration.dynamic.DynamicConfiguration;
 import org.whispersystems.textsecuregcm.controllers.MismatchedDevicesException;
 import org.whispersystems.textsecuregcm.entities.AccountAttributes;
 import org.whispersystems.textsecuregcm.entities.ECSignedPreKey;
@@ -81,6 +88,9 @@ public class AccountsManager {
   private static final Timer getByUsernameLinkHandleTimer = metricRegistry.timer(name(AccountsManager.class, "getByUsernameLinkHandle"));
   private static final Timer getByUuidTimer = metricRegistry.timer(name(AccountsManager.class, "getByUuid"));
   private static final Timer deleteTimer = metricRegistry.timer(name(AccountsManager.class, "delete"));
+  private static final Timer getByServiceIdentifiersTimer = metricRegistry.timer(name(AccountsManager.class, "getByServiceIdentifiers"));
+  private static final Meter bulkGetCacheHitMeter = metricRegistry.meter(name(AccountsManager.class, "bulkGetCacheHit"));
+  private static final Meter bulkGetCacheMissMeter = metricRegistry.meter(name(AccountsManager.class, "bulkGetCacheMiss"));
 
   private static final Timer redisSetTimer = metricRegistry.timer(name(AccountsManager.class, "redisSet"));
   private static final Timer redisNumberGetTimer = metricRegistry.timer(name(AccountsManager.class, "redisNumberGet"));
@@ -103,6 +113,7 @@ public class AccountsManager {
   private final Accounts accounts;
   private final PhoneNumberIdentifiers phoneNumberIdentifiers;
   private final FaultTolerantRedisCluster cacheCluster;
+  private final AccountNearCache accountNearCache;
   private final AccountLockManager accountLockManager;
   private final KeysManager keysManager;
   private final MessagesManager messagesManager;
@@ -111,6 +122,7 @@ public class AccountsManager {
   private final SecureValueRecovery2Client secureValueRecovery2Client;
   private final ClientPresenceManager clientPresenceManager;
   private final ExperimentEnrollmentManager experimentEnrollmentManager;
+  private final DynamicConfigurationManager<DynamicConfiguration> dynamicConfigurationManager;
   private final RegistrationRecoveryPasswordsManager registrationRecoveryPasswordsManager;
   private final Executor accountLockExecutor;
   private final Clock clock;
@@ -148,6 +160,7 @@ public class AccountsManager {
   public AccountsManager(final Accounts accounts,
       final PhoneNumberIdentifiers phoneNumberIdentifiers,
       final FaultTolerantRedisCluster cacheCluster,
+      final AccountNearCache accountNearCache,
       final AccountLockManager accountLockManager,
       final KeysManager keysManager,
       final MessagesManager messagesManager,
@@ -156,12 +169,14 @@ public class AccountsManager {
       final SecureValueRecovery2Client secureValueRecovery2Client,
       final ClientPresenceManager clientPresenceManager,
       final ExperimentEnrollmentManager experimentEnrollmentManager,
+      final DynamicConfigurationManager<DynamicConfiguration> dynamicConfigurationManager,
       final RegistrationRecoveryPasswordsManager registrationRecoveryPasswordsManager,
       final Executor accountLockExecutor,
       final Clock clock) {
     this.accounts = accounts;
     this.phoneNumberIdentifiers = phoneNumberIdentifiers;
     this.cacheCluster = cacheCluster;
+    this.accountNearCache = accountNearCache;
     this.accountLockManager = accountLockManager;
     this.keysManager = keysManager;
     this.messagesManager = messagesManager;
@@ -170,6 +185,7 @@ public class AccountsManager {
     this.secureValueRecovery2Client = secureValueRecovery2Client;
     this.clientPresenceManager = clientPresenceManager;
     this.experimentEnrollmentManager = experimentEnrollmentManager;
+    this.dynamicConfigurationManager = dynamicConfigurationManager;
     this.registrationRecoveryPasswordsManager = requireNonNull(registrationRecoveryPasswordsManager);
     this.accountLockExecutor = accountLockExecutor;
     this.clock = requireNonNull(clock);
@@ -220,7 +236,7 @@ public class AccountsManager {
         // for metrics, we want secondary to run with the same original UUID
         final UUID actualUuid = account.getUuid();
 
-        redisSet(account);
+        redisSet(account, true);
 
         // In terms of previously-existing accounts, there are three possible cases:
         //
@@ -616,7 +632,7 @@ public class AccountsManager {
           () -> accounts.getByAccountIdentifier(uuid).orElseThrow(),
           AccountChangeValidator.GENERAL_CHANGE_VALIDATOR);
 
-      redisSet(updatedAccount);
+      redisSet(updatedAccount, true);
     }
 
     return updatedAccount;
@@ -637,7 +653,7 @@ public class AccountsManager {
               AccountChangeValidator.GENERAL_CHANGE_VALIDATOR,
               MAX_UPDATE_ATTEMPTS);
         })
-        .thenCompose(updatedAccount -> redisSetAsync(updatedAccount).thenApply(ignored -> updatedAccount))
+        .thenCompose(updatedAccount -> redisSetAsync(updatedAccount, true).thenApply(ignored -> updatedAccount))
         .whenComplete((ignored, throwable) -> timerContext.close());
   }
 
@@ -750,7 +766,10 @@ public class AccountsManager {
   public Optional<Account> getByE164(final String number) {
     return checkRedisThenAccounts(
         getByNumberTimer,
-        () -> redisGetBySecondaryKey(getAccountMapKey(number), redisNumberGetTimer),
+        () -> nearCacheGetBySecondaryKey(accountNearCache.getAccountIdentifierByE164(number),
+            account -> number.equals(account.getNumber()))
+            .or(() -> redisGetBySecondaryKey(getAccountMapKey(number),
+                account -> number.equals(account.getNumber()), redisNumberGetTimer)),
         () -> accounts.getByE164(number)
     );
   }
@@ -758,7 +777,10 @@ public class AccountsManager {
   public CompletableFuture<Optional<Account>> getByE164Async(final String number) {
     return checkRedisThenAccountsAsync(
         getByNumberTimer,
-        () -> redisGetBySecondaryKeyAsync(getAccountMapKey(number), redisNumberGetTimer),
+        () -> nearCacheGetBySecondaryKeyAsync(accountNearCache.getAccountIdentifierByE164(number),
+            account -> number.equals(account.getNumber()),
+            () -> redisGetBySecondaryKeyAsync(getAccountMapKey(number),
+                account -> number.equals(account.getNumber()), redisNumberGetTimer)),
         () -> accounts.getByE164Async(number)
     );
   }
@@ -766,7 +788,10 @@ public class AccountsManager {
   public Optional<Account> getByPhoneNumberIdentifier(final UUID pni) {
     return checkRedisThenAccounts(
         getByNumberTimer,
-        () -> redisGetBySecondaryKey(getAccountMapKey(pni.toString()), redisPniGetTimer),
+        () -> nearCacheGetBySecondaryKey(accountNearCache.getAccountIdentifierByPhoneNumberIdentifier(pni),
+            account -> pni.equals(account.getPhoneNumberIdentifier()))
+            .or(() -> redisGetBySecondaryKey(getAccountMapKey(pni.toString()),
+                account -> pni.equals(account.getPhoneNumberIdentifier()), redisPniGetTimer)),
         () -> accounts.getByPhoneNumberIdentifier(pni)
     );
   }
@@ -774,7 +799,10 @@ public class AccountsManager {
   public CompletableFuture<Optional<Account>> getByPhoneNumberIdentifierAsync(final UUID pni) {
     return checkRedisThenAccountsAsync(
         getByNumberTimer,
-        () -> redisGetBySecondaryKeyAsync(getAccountMapKey(pni.toString()), redisPniGetTimer),
+        () -> nearCacheGetBySecondaryKeyAsync(accountNearCache.getAccountIdentifierByPhoneNumberIdentifier(pni),
+            account -> pni.equals(account.getPhoneNumberIdentifier()),
+            () -> redisGetBySecondaryKeyAsync(getAccountMapKey(pni.toString()),
+                account -> pni.equals(account.getPhoneNumberIdentifier()), redisPniGetTimer)),
         () -> accounts.getByPhoneNumberIdentifierAsync(pni)
     );
   }
@@ -782,7 +810,8 @@ public class AccountsManager {
   public CompletableFuture<Optional<Account>> getByUsernameLinkHandle(final UUID usernameLinkHandle) {
     return checkRedisThenAccountsAsync(
         getByUsernameLinkHandleTimer,
-        () -> redisGetBySecondaryKeyAsync(getAccountMapKey(usernameLinkHandle.toString()), redisUsernameLinkHandleGetTimer),
+        () -> redisGetBySecondaryKeyAsync(getAccountMapKey(usernameLinkHandle.toString()),
+            account -> usernameLinkHandle.equals(account.getUsernameLinkHandle()), redisUsernameLinkHandleGetTimer),
         () -> accounts.getByUsernameLinkHandle(usernameLinkHandle)
     );
   }
@@ -790,7 +819,11 @@ public class AccountsManager {
   public CompletableFuture<Optional<Account>> getByUsernameHash(final byte[] usernameHash) {
     return checkRedisThenAccountsAsync(
         getByUsernameHashTimer,
-        () -> redisGetBySecondaryKeyAsync(getUsernameHashAccountMapKey(usernameHash), redisUsernameHashGetTimer),
+        () -> nearCacheGetBySecondaryKeyAsync(accountNearCache.getAccountIdentifierByUsernameHash(usernameHash),
+            account -> Arrays.equals(usernameHash, account.getUsernameHash().orElse(null)),
+            () -> redisGetBySecondaryKeyAsync(getUsernameHashAccountMapKey(usernameHash),
+                account -> Arrays.equals(usernameHash, account.getUsernameHash().orElse(null)),
+                redisUsernameHashGetTimer)),
         () -> accounts.getByUsernameHash(usernameHash)
     );
   }
@@ -825,6 +858,143 @@ public class AccountsManager {
     );
   }
 
+  /**
+   * Retrieves the accounts associated with the given service identifiers in bulk. Account identifiers are resolved in a
+   * single pipelined batch of cache reads; accounts not found in the cache are then loaded from DynamoDB with as few
+   * batched reads as possible and written back to the cache asynchronously.
+   *
+   * @param serviceIdentifiers the service identifiers for which to retrieve accounts
+   *
+   * @return a future that yields the accounts that exist for the given service identifiers, keyed by service
+   * identifier; service identifiers with no associated account are omitted
+   */
+  public CompletableFuture<Map<ServiceIdentifier, Account>> getByServiceIdentifiersAsync(
+      final Collection<ServiceIdentifier> serviceIdentifiers) {
+
+    @SuppressWarnings("resource") final Timer.Context timerContext = getByServiceIdentifiersTimer.time();
+
+    // PNIs must first be resolved to account identifiers; we issue all secondary key lookups at once and let them
+    // pipeline, then resolve any cache misses individually
+    final Map<ServiceIdentifier, CompletableFuture<ResolvedAccountIdentifier>> accountIdentifierFutures =
+        new HashMap<>();
+
+    for (final ServiceIdentifier serviceIdentifier : serviceIdentifiers) {
+      accountIdentifierFutures.computeIfAbsent(serviceIdentifier, ignored -> switch (serviceIdentifier.identityType()) {
+        case ACI -> CompletableFuture.completedFuture(new ResolvedAccountIdentifier(serviceIdentifier.uuid(), null));
+        case PNI -> resolvePhoneNumberIdentifierAsync(serviceIdentifier.uuid());
+      });
+    }
+
+    return CompletableFuture.allOf(accountIdentifierFutures.values().toArray(new CompletableFuture[0]))
+        .thenCompose(ignored -> {
+          final Map<ServiceIdentifier, UUID> accountIdentifiersByServiceIdentifier = new HashMap<>();
+
+          // Resolving a PNI that wasn't in the cache loads the whole account, and there's no need to load it again
+          final Map<UUID, Account> resolvedAccountsByUuid = new HashMap<>();
+
+          accountIdentifierFutures.forEach((serviceIdentifier, future) -> {
+            final ResolvedAccountIdentifier resolvedAccountIdentifier = future.join();
+
+            if (resolvedAccountIdentifier != null) {
+              accountIdentifiersByServiceIdentifier.put(serviceIdentifier, resolvedAccountIdentifier.uuid());
+
+              if (resolvedAccountIdentifier.account() != null) {
+                resolvedAccountsByUuid.put(resolvedAccountIdentifier.uuid(), resolvedAccountIdentifier.account());
+              }
+            }
+          });
+
+          final Set<UUID> unresolvedAccountIdentifiers = new HashSet<>(accountIdentifiersByServiceIdentifier.values());
+          unresolvedAccountIdentifiers.removeAll(resolvedAccountsByUuid.keySet());
+
+          return getByAccountIdentifiersAsync(unresolvedAccountIdentifiers)
+              .thenApply(accountsByUuid -> {
+                final Map<ServiceIdentifier, Account> accountsByServiceIdentifier = new HashMap<>();
+
+                accountIdentifiersByServiceIdentifier.forEach((serviceIdentifier, uuid) -> {
+                  final Account account = resolvedAccountsByUuid.containsKey(uuid)
+                      ? resolvedAccountsByUuid.get(uuid)
+                      : accountsByUuid.get(uuid);
+
+                  if (account != null && account.isIdentifiedBy(serviceIdentifier)) {
+                    accountsByServiceIdentifier.put(serviceIdentifier, account);
+                  }
+                });
+
+                return accountsByServiceIdentifier;
+              });
+        })
+        .whenComplete((ignored, throwable) -> timerContext.close());
+  }
+
+  private CompletableFuture<Map<UUID, Account>> getByAccountIdentifiersAsync(final Set<UUID> uuids) {
+    final Map<UUID, CompletableFuture<Optional<Account>>> cachedAccountFutures = new HashMap<>(uuids.size());
+
+    for (final UUID uuid : uuids) {
+      cachedAccountFutures.put(uuid, redisGetByAccountIdentifierAsync(uuid));
+    }
+
+    return CompletableFuture.allOf(cachedAccountFutures.values().toArray(new CompletableFuture[0]))
+        .thenCompose(ignored -> {
+          final Map<UUID, Account> accountsByUuid = new HashMap<>(uuids.size());
+          final Set<UUID> cacheMisses = new HashSet<>();
+
+          cachedAccountFutures.forEach((uuid, future) -> future.join()
+              .ifPresentOrElse(account -> accountsByUuid.put(uuid, account), () -> cacheMisses.add(uuid)));
+
+          bulkGetCacheHitMeter.mark(accountsByUuid.size());
+          bulkGetCacheMissMeter.mark(cacheMisses.size());
+
+          if (cacheMisses.isEmpty()) {
+            return CompletableFuture.completedFuture(accountsByUuid);
+          }
+
+          return accounts.getByAccountIdentifiersAsync(cacheMisses)
+              .thenApply(accountsFromDynamo -> {
+                accountsFromDynamo.forEach((uuid, account) -> {
+                  accountsByUuid.put(uuid, account);
+
+                  // Repopulate the cache in the background; callers don't need to wait for writes to complete
+                  redisSetAsync(account, false).whenComplete((ignoredResult, throwable) -> {
+                    if (throwable != null) {
+                      logger.warn("Failed to repopulate cache for account {}", uuid, throwable);
+                    }
+                  });
+                });
+
+                return accountsByUuid;
+              });
+        });
+  }
+
+  /**
+   * An account identifier resolved from some other service identifier, along with the account itself if it had to be
+   * loaded to resolve the identifier.
+   */
+  private record ResolvedAccountIdentifier(UUID uuid, @Nullable Account account) {
+  }
+
+  /**
+   * Resolves the given phone number identifier to an account identifier.
+   *
+   * @return a future that yields the resolved account identifier (and account, if it was loaded in the process), or
+   * {@code null} if no account has the given phone number identifier
+   */
+  private CompletableFuture<ResolvedAccountIdentifier> resolvePhoneNumberIdentifierAsync(final UUID pni) {
+    return cacheCluster.withCluster(connection -> connection.async().get(getAccountMapKey(pni.toString())))
+        .toCompletableFuture()
+        .thenApply(nullableUuid -> Optional.ofNullable(nullableUuid).map(UUID::fromString))
+        .exceptionally(throwable -> {
+          logger.warn("Failed to resolve PNI from Redis", throwable);
+          return Optional.empty();
+        })
+        .thenCompose(maybeUuid -> maybeUuid
+            .map(uuid -> CompletableFuture.completedFuture(new ResolvedAccountIdentifier(uuid, null)))
+            .orElseGet(() -> getByPhoneNumberIdentifierAsync(pni).thenApply(maybeAccount -> maybeAccount
+                .map(account -> new ResolvedAccountIdentifier(account.getUuid(), account))
+                .orElse(null))));
+  }
+
   public UUID getPhoneNumberIdentifier(String e164) {
     return phoneNumberIdentifiers.getPhoneNumberIdentifier(e164);
   }
@@ -869,7 +1039,9 @@ public class AccountsManager {
             messagesManager.clear(account.getPhoneNumberIdentifier()),
             profilesManager.deleteAll(account.getUuid()),
             registrationRecoveryPasswordsManager.removeForNumber(account.getNumber()))
-        .thenCompose(ignored -> CompletableFuture.allOf(accounts.delete(account.getUuid()), redisDeleteAsync(account)))
+        .thenCompose(ignored -> CompletableFuture.allOf(
+            accounts.delete(account.getUuid()),
+            redisDeleteAsync(account, true)))
         .thenRun(() -> RedisOperation.unchecked(() ->
             account.getDevices().forEach(device ->
                 clientPresenceManager.disconnectPresence(account.getUuid(), device.getId()))));
@@ -887,9 +1059,26 @@ public class AccountsManager {
     return "Account3::" + uuid.toString();
   }
 
-  private void redisSet(Account account) {
+  /**
+   * Returns the key for a copy of an account stored alongside one of its secondary keys, which allows the account to be
+   * retrieved by that secondary key in a single round trip. Values are of the form {@code <uuid>:<account JSON>}.
+   */
+  private String getSecondaryKeyAccountEntityKey(final String secondaryKey) {
+    return "AccountEntity::" + secondaryKey;
+  }
+
+  /**
+   * Writes the given account to the shared cache and to the near cache.
+   *
+   * @param account the account to cache
+   * @param publishInvalidation if {@code true}, notify other servers that older versions of the account are out of
+   * date; this should only be the case when the account has actually changed, and not when repopulating the cache after
+   * a cache miss
+   */
+  private void redisSet(final Account account, final boolean publishInvalidation) {
     try (Timer.Context ignored = redisSetTimer.time()) {
       final String accountJson = writeRedisAccountJson(account);
+      final String secondaryKeyAccountJson = account.getUuid() + ":" + accountJson;
 
       cacheCluster.useCluster(connection -> {
         final RedisAdvancedClusterCommands<String, String> commands = connection.sync();
@@ -900,13 +1089,21 @@ public class AccountsManager {
 
         account.getUsernameHash().ifPresent(usernameHash ->
             commands.setex(getUsernameHashAccountMapKey(usernameHash), CACHE_TTL_SECONDS, account.getUuid().toString()));
+
+        if (secondaryKeyCopiesEnabled()) {
+          getAccountMapKeys(account).forEach(secondaryKey ->
+              commands.setex(getSecondaryKeyAccountEntityKey(secondaryKey), CACHE_TTL_SECONDS,
+                  secondaryKeyAccountJson));
+        }
       });
+
+      updateNearCache(account, accountJson, publishInvalidation);
     } catch (JsonProcessingException e) {
       throw new IllegalStateException(e);
     }
   }
 
-  private CompletableFuture<Void> redisSetAsync(final Account account) {
+  private CompletableFuture<Void> redisSetAsync(final Account account, final boolean publishInvalidation) {
     final String accountJson;
 
     try {
@@ -915,6 +1112,8 @@ public class AccountsManager {
       throw new UncheckedIOException(e);
     }
 
+    final String secondaryKeyAccountJson = account.getUuid() + ":" + accountJson;
+
     return cacheCluster.withCluster(connection -> CompletableFuture.allOf(
         connection.async().setex(
                 getAccountMapKey(account.getPhoneNumberIdentifier().toString()), CACHE_TTL_SECONDS,
@@ -932,8 +1131,50 @@ public class AccountsManager {
             .map(usernameHash -> connection.async()
                 .setex(getUsernameHashAccountMapKey(usernameHash), CACHE_TTL_SECONDS, account.getUuid().toString())
                 .toCompletableFuture())
-            .orElseGet(() -> CompletableFuture.completedFuture(null))
-    ));
+            .orElseGet(() -> CompletableFuture.completedFuture(null)),
+
+        secondaryKeyCopiesEnabled()
+            ? CompletableFuture.allOf(getAccountMapKeys(account).stream()
+                .map(secondaryKey -> connection.async()
+                    .setex(getSecondaryKeyAccountEntityKey(secondaryKey), CACHE_TTL_SECONDS, secondaryKeyAccountJson)
+                    .toCompletableFuture())
+                .toArray(CompletableFuture[]::new))
+            : CompletableFuture.completedFuture(null)
+    ))
+        // Don't tell other servers about the new version until they can read it from the shared cache
+        .thenRun(() -> updateNearCache(account, accountJson, publishInvalidation));
+  }
+
+  /**
+   * Indicates whether copies of accounts should be stored alongside (and read from) their secondary keys. Servers that
+   * predate secondary key copies only update and remove the primary copy of an account, so a secondary key copy could
+   * be out of date for up to the cache TTL if any such servers are still running. Copies are always removed along with
+   * the rest of an account's cache entries regardless of this setting.
+   */
+  private boolean secondaryKeyCopiesEnabled() {
+    return dynamicConfigurationManager.getConfiguration().getAccountCacheConfiguration().secondaryKeyCopiesEnabled();
+  }
+
+  private void updateNearCache(final Account account, final String accountJson, final boolean publishInvalidation) {
+    if (publishInvalidation) {
+      accountNearCache.put(account, accountJson);
+    } else {
+      accountNearCache.putLocal(account, accountJson);
+    }
+  }
+
+  /**
+   * Returns the secondary keys (phone number, phone number identifier, and username hash, if any) by which the given
+   * account may be found in the cache.
+   */
+  private List<String> getAccountMapKeys(final Account account) {
+    final List<String> accountMapKeys = new ArrayList<>(3);
+    accountMapKeys.add(getAccountMapKey(account.getNumber()));
+    accountMapKeys.add(getAccountMapKey(account.getPhoneNumberIdentifier().toString()));
+
+    account.getUsernameHash().ifPresent(usernameHash -> accountMapKeys.add(getUsernameHashAccountMapKey(usernameHash)));
+
+    return accountMapKeys;
   }
 
   private Optional<Account> checkRedisThenAccounts(
@@ -944,7 +1185,7 @@ public class AccountsManager {
       Optional<Account> account = resolveFromRedis.get();
       if (account.isEmpty()) {
         account = resolveFromAccounts.get();
-        account.ifPresent(this::redisSet);
+        account.ifPresent(a -> redisSet(a, false));
       }
       return account;
     }
@@ -962,13 +1203,49 @@ public class AccountsManager {
             .map(accountFromRedis -> CompletableFuture.completedFuture(maybeAccountFromRedis))
             .orElseGet(() -> resolveFromAccounts.get()
                 .thenCompose(maybeAccountFromAccounts -> maybeAccountFromAccounts
-                    .map(account -> redisSetAsync(account).thenApply(ignored -> maybeAccountFromAccounts))
+                    .map(account -> redisSetAsync(account, false).thenApply(ignored -> maybeAccountFromAccounts))
                     .orElseGet(() -> CompletableFuture.completedFuture(maybeAccountFromAccounts)))))
         .whenComplete((ignored, throwable) -> timerContext.close());
   }
 
-  private Optional<Account> redisGetBySecondaryKey(final String secondaryKey, final Timer timer) {
+  private Optional<Account> nearCacheGetBySecondaryKey(final Optional<UUID> maybeUuid,
+      final Predicate<Account> isIdentifiedBySecondaryKey) {
+
+    // Secondary key mappings in the near cache aren't invalidated when an account changes, so make sure the account is
+    // still identified by the secondary key before returning it
+    return maybeUuid.flatMap(this::nearCacheGetByAccountIdentifier).filter(isIdentifiedBySecondaryKey);
+  }
+
+  private CompletableFuture<Optional<Account>> nearCacheGetBySecondaryKeyAsync(final Optional<UUID> maybeUuid,
+      final Predicate<Account> isIdentifiedBySecondaryKey,
+      final Supplier<CompletableFuture<Optional<Account>>> resolveFromRedis) {
+
+    return nearCacheGetBySecondaryKey(maybeUuid, isIdentifiedBySecondaryKey)
+        .map(account -> CompletableFuture.completedFuture(Optional.of(account)))
+        .orElseGet(resolveFromRedis);
+  }
+
+  private Optional<Account> nearCacheGetByAccountIdentifier(final UUID uuid) {
+    return accountNearCache.getAccountJson(uuid).flatMap(accountJson -> parseAccountJson(accountJson, uuid));
+  }
+
+  private Optional<Account> redisGetBySecondaryKey(final String secondaryKey,
+      final Predicate<Account> isIdentifiedBySecondaryKey,
+      final Timer timer) {
+
     try (final Timer.Context ignored = timer.time()) {
+      if (secondaryKeyCopiesEnabled()) {
+        final String secondaryKeyAccountJson = cacheCluster.withCluster(connection ->
+            connection.sync().get(getSecondaryKeyAccountEntityKey(secondaryKey)));
+
+        if (secondaryKeyAccountJson != null) {
+          return parseSecondaryKeyAccountJson(secondaryKeyAccountJson, isIdentifiedBySecondaryKey);
+        }
+      }
+
+      // Fall back to resolving the account identifier and then the account if there's no copy of the account stored
+      // alongside the secondary key (i.e. because copies are disabled or the account was cached before they were
+      // enabled)
       return Optional.ofNullable(cacheCluster.withCluster(connection -> connection.sync().get(secondaryKey)))
           .map(UUID::fromString)
           .flatMap(this::getByAccountIdentifier);
@@ -981,16 +1258,32 @@ public class AccountsManager {
     }
   }
 
-  private CompletableFuture<Optional<Account>> redisGetBySecondaryKeyAsync(final String secondaryKey, final Timer timer) {
+  private CompletableFuture<Optional<Account>> redisGetBySecondaryKeyAsync(final String secondaryKey,
+      final Predicate<Account> isIdentifiedBySecondaryKey,
+      final Timer timer) {
+
     @SuppressWarnings("resource") final Timer.Context timerContext = timer.time();
 
-    return cacheCluster.withCluster(connection -> connection.async().get(secondaryKey))
-        .thenCompose(nullableUuid -> {
-          if (nullableUuid != null) {
-            return getByAccountIdentifierAsync(UUID.fromString(nullableUuid));
-          } else {
-            return CompletableFuture.completedFuture(Optional.empty());
+    final CompletionStage<String> secondaryKeyAccountJsonFuture = secondaryKeyCopiesEnabled()
+        ? cacheCluster.withCluster(connection -> connection.async().get(getSecondaryKeyAccountEntityKey(secondaryKey)))
+        : CompletableFuture.completedFuture(null);
+
+    return secondaryKeyAccountJsonFuture
+        .thenCompose(nullableSecondaryKeyAccountJson -> {
+          if (nullableSecondaryKeyAccountJson != null) {
+            return CompletableFuture.completedFuture(
+                parseSecondaryKeyAccountJson(nullableSecondaryKeyAccountJson, isIdentifiedBySecondaryKey));
           }
+
+          // As above, fall back to a two-step lookup if there's no copy of the account stored with the secondary key
+          return cacheCluster.withCluster(connection -> connection.async().get(secondaryKey))
+              .thenCompose(nullableUuid -> {
+                if (nullableUuid != null) {
+                  return getByAccountIdentifierAsync(UUID.fromString(nullableUuid));
+                } else {
+                  return CompletableFuture.completedFuture(Optional.empty());
+                }
+              });
         })
         .exceptionally(throwable -> {
           logger.warn("Failed to retrieve account from Redis", throwable);
@@ -1000,11 +1293,41 @@ public class AccountsManager {
         .toCompletableFuture();
   }
 
+  private Optional<Account> parseSecondaryKeyAccountJson(final String secondaryKeyAccountJson,
+      final Predicate<Account> isIdentifiedBySecondaryKey) {
+
+    final int separatorIndex = secondaryKeyAccountJson.indexOf(':');
+
+    if (separatorIndex < 0) {
+      logger.warn("Malformed account stored by secondary key");
+      return Optional.empty();
+    }
+
+    final UUID uuid = UUID.fromString(secondaryKeyAccountJson.substring(0, separatorIndex));
+    final String accountJson = secondaryKeyAccountJson.substring(separatorIndex + 1);
+
+    // Copies of accounts stored by secondary key may outlive a change to that key (i.e. a change of phone number), so
+    // make sure the account is still identified by the secondary key before returning it
+    final Optional<Account> maybeAccount = parseAccountJson(accountJson, uuid).filter(isIdentifiedBySecondaryKey);
+    maybeAccount.ifPresent(account -> accountNearCache.putLocal(account, accountJson));
+
+    return maybeAccount;
+  }
+
   private Optional<Account> redisGetByAccountIdentifier(UUID uuid) {
+    final Optional<Account> maybeNearCachedAccount = nearCacheGetByAccountIdentifier(uuid);
+
+    if (maybeNearCachedAccount.isPresent()) {
+      return maybeNearCachedAccount;
+    }
+
     try (Timer.Context ignored = redisUuidGetTimer.time()) {
       final String json = cacheCluster.withCluster(connection -> connection.sync().get(getAccountEntityKey(uuid)));
 
-      return parseAccountJson(json, uuid);
+      final Optional<Account> maybeAccount = parseAccountJson(json, uuid);
+      maybeAccount.ifPresent(account -> accountNearCache.putLocal(account, json));
+
+      return maybeAccount;
     } catch (final RedisException e) {
       logger.warn("Redis failure", e);
       return Optional.empty();
@@ -1012,8 +1335,19 @@ public class AccountsManager {
   }
 
   private CompletableFuture<Optional<Account>> redisGetByAccountIdentifierAsync(final UUID uuid) {
+    final Optional<Account> maybeNearCachedAccount = nearCacheGetByAccountIdentifier(uuid);
+
+    if (maybeNearCachedAccount.isPresent()) {
+      return CompletableFuture.completedFuture(maybeNearCachedAccount);
+    }
+
     return cacheCluster.withCluster(connection -> connection.async().get(getAccountEntityKey(uuid)))
-        .thenApply(accountJson -> parseAccountJson(accountJson, uuid))
+        .thenApply(accountJson -> {
+          final Optional<Account> maybeAccount = parseAccountJson(accountJson, uuid);
+          maybeAccount.ifPresent(account -> accountNearCache.putLocal(account, accountJson));
+
+          return maybeAccount;
+        })
         .exceptionally(throwable -> {
           logger.warn("Failed to retrieve account from Redis", throwable);
           return Optional.empty();
@@ -1048,6 +1382,8 @@ public class AccountsManager {
   }
 
   private void redisDelete(final Account account) {
+    accountNearCache.invalidateBeforeUpdate(account);
+
     try (final Timer.Context ignored = redisDeleteTimer.time()) {
       cacheCluster.useCluster(connection -> {
         connection.sync().del(
@@ -1056,19 +1392,33 @@ public class AccountsManager {
             getAccountEntityKey(account.getUuid()));
 
         account.getUsernameHash().ifPresent(usernameHash -> connection.sync().del(getUsernameHashAccountMapKey(usernameHash)));
+
+        connection.sync().del(getAccountMapKeys(account).stream()
+            .map(this::getSecondaryKeyAccountEntityKey)
+            .toArray(String[]::new));
       });
     }
   }
 
   private CompletableFuture<Void> redisDeleteAsync(final Account account) {
+    return redisDeleteAsync(account, false);
+  }
+
+  private CompletableFuture<Void> redisDeleteAsync(final Account account, final boolean accountDeleted) {
+    if (accountDeleted) {
+      accountNearCache.invalidate(account.getUuid());
+    } else {
+      accountNearCache.invalidateBeforeUpdate(account);
+    }
+
     @SuppressWarnings("resource") final Timer.Context timerContext = redisDeleteTimer.time();
 
-    final List<String> keysToDelete = new ArrayList<>(4);
-    keysToDelete.add(getAccountMapKey(account.getNumber()));
-    keysToDelete.add(getAccountMapKey(account.getPhoneNumberIdentifier().toString()));
+    final List<String> accountMapKeys = getAccountMapKeys(account);
+    final List<String> keysToDelete = new ArrayList<>(accountMapKeys.size() * 2 + 1);
+    keysToDelete.addAll(accountMapKeys);
     keysToDelete.add(getAccountEntityKey(account.getUuid()));
 
-    account.getUsernameHash().ifPresent(usernameHash -> keysToDelete.add(getUsernameHashAccountMapKey(usernameHash)));
+    accountMapKeys.forEach(secondaryKey -> keysToDelete.add(getSecondaryKeyAccountEntityKey(secondaryKey)));
 
     return cacheCluster.withCluster(connection -> connection.async().del(keysToDelete.toArray(new String[0])))
         .toCompletableFuture()
@@ -0,0 +1,148 @@
+/*
+ * Copyright 2023 Signal Messenger, LLC
+ * SPDX-License-Identifier: AGPL-3.0-only
+ */
+
+package org.whispersystems.textsecuregcm.storage;
+
+import static com.codahale.metrics.MetricRegistry.name;
+
+import com.google.common.annotations.VisibleForTesting;
+import io.micrometer.core.instrument.Metrics;
+import java.time.Duration;
+import java.util.OptionalDouble;
+import org.whispersystems.textsecuregcm.configuration.dynamic.DynamicConfiguration;
+import org.whispersystems.textsecuregcm.configuration.dynamic.DynamicMessagePersisterConfiguration;
+
+/**
+ * Translates observations about message cache pressure (memory utilization and the number of queues awaiting
+ * persistence) into a persist delay and per-worker concurrency for the {@link MessagePersister}. Under pressure, the
+ * persist delay shrinks toward a configured minimum and concurrency grows toward a configured maximum; as pressure
+ * subsides, both relax gradually back toward their baseline values.
+ */
+class AdaptivePersistenceController {
+
+  private final Duration maxPersistDelay;
+  private final DynamicConfigurationManager<DynamicConfiguration> dynamicConfigurationManager;
+
+  private volatile double pressure = 0;
+  private volatile double memoryUtilization = 0;
+  private volatile long estimatedQueueCount = 0;
+
+  // When observed pressure falls, the controller's pressure decays by this factor per update rather than falling
+  // immediately so the persister doesn't oscillate between aggressive and relaxed settings
+  @VisibleForTesting
+  static final double PRESSURE_DECAY_FACTOR = 0.8;
+
+  // Pressure below this level is treated as no pressure at all
+  private static final double MIN_PRESSURE = 0.01;
+
+  AdaptivePersistenceController(final Duration maxPersistDelay,
+      final DynamicConfigurationManager<DynamicConfiguration> dynamicConfigurationManager) {
+
+    this.maxPersistDelay = maxPersistDelay;
+    this.dynamicConfigurationManager = dynamicConfigurationManager;
+
+    Metrics.gauge(name(AdaptivePersistenceController.class, "pressure"), this,
+        AdaptivePersistenceController::getPressure);
+    Metrics.gauge(name(AdaptivePersistenceController.class, "memoryUtilization"), this,
+        controller -> controller.memoryUtilization);
+    Metrics.gauge(name(AdaptivePersistenceController.class, "estimatedQueueCount"), this,
+        controller -> controller.estimatedQueueCount);
+    Metrics.gauge(name(AdaptivePersistenceController.class, "persistDelayMillis"), this,
+        controller -> controller.getPersistDelay().toMillis());
+    Metrics.gauge(name(AdaptivePersistenceController.class, "queuePersistenceConcurrency"), this,
+        AdaptivePersistenceController::getQueuePersistenceConcurrency);
+  }
+
+  /**
+   * Updates this controller's pressure level in light of new observations.
+   *
+   * @param maxMemoryUtilization the highest fraction of available memory in use by any node in the message cache
+   * cluster, if known
+   * @param estimatedQueueCount the estimated number of queues awaiting persistence
+   */
+  void update(final OptionalDouble maxMemoryUtilization, final long estimatedQueueCount) {
+    final DynamicMessagePersisterConfiguration configuration = getConfiguration();
+
+    this.memoryUtilization = maxMemoryUtilization.orElse(0);
+    this.estimatedQueueCount = estimatedQueueCount;
+
+    if (!configuration.isAdaptivePersistenceEnabled()) {
+      pressure = 0;
+      return;
+    }
+
+    final double memoryPressure = maxMemoryUtilization.isPresent()
+        ? scale(maxMemoryUtilization.getAsDouble(),
+            configuration.getMemoryPressureLowWatermark(),
+            configuration.getMemoryPressureHighWatermark())
+        : 0;
+
+    final double queueCountPressure =
+        Math.min(1, (double) estimatedQueueCount / configuration.getQueueCountHighWatermark());
+
+    final double observedPressure = Math.max(memoryPressure, queueCountPressure);
+    final double updatedPressure = Math.max(observedPressure, pressure * PRESSURE_DECAY_FACTOR);
+
+    pressure = updatedPressure < MIN_PRESSURE ? 0 : updatedPressure;
+  }
+
+  /**
+   * @return the current pressure level, from 0 (no pressure) to 1 (maximum pressure)
+   */
+  double getPressure() {
+    return pressure;
+  }
+
+  /**
+   * @return the delay after which queues should be persisted given current pressure
+   */
+  Duration getPersistDelay() {
+    final DynamicMessagePersisterConfiguration configuration = getConfiguration();
+
+    if (!configuration.isAdaptivePersistenceEnabled()) {
+      return maxPersistDelay;
+    }
+
+    final Duration minPersistDelay = configuration.getMinPersistDelay().compareTo(maxPersistDelay) < 0
+        ? configuration.getMinPersistDelay()
+        : maxPersistDelay;
+
+    final long adjustmentMillis = Math.round(maxPersistDelay.minus(minPersistDelay).toMillis() * pressure);
+
+    return maxPersistDelay.minusMillis(adjustmentMillis);
+  }
+
+  /**
+   * @return the number of queues each persister worker should persist concurrently given current pressure
+   */
+  int getQueuePersistenceConcurrency() {
+    final DynamicMessagePersisterConfiguration configuration = getConfiguration();
+    final int baseConcurrency = configuration.getQueuePersistenceConcurrency();
+
+    if (!configuration.isAdaptivePersistenceEnabled()) {
+      return baseConcurrency;
+    }
+
+    final int maxConcurrency = Math.max(baseConcurrency, configuration.getMaxQueuePersistenceConcurrency());
+
+    return baseConcurrency + (int) Math.round((maxConcurrency - baseConcurrency) * pressure);
+  }
+
+  private DynamicMessagePersisterConfiguration getConfiguration() {
+    return dynamicConfigurationManager.getConfiguration().getMessagePersisterConfiguration();
+  }
+
+  private static double scale(final double value, final double low, final double high) {
+    if (value <= low) {
+      return 0;
+    }
+
+    if (value >= high) {
+      return 1;
+    }
+
+    return (value - low) / (high - low);
+  }
+}
@@ -71,6 +71,14 @@ public class DynamicConfigurationManager<T> {
   }
 
   public T getConfiguration() {
+    // Configurations are only ever replaced (never cleared) once the initial configuration has arrived, so callers only
+    // need to take the monitor while waiting for the initial configuration
+    final T currentConfiguration = configuration.get();
+
+    if (currentConfiguration != null) {
+      return currentConfiguration;
+    }
+
     synchronized (this) {
       while (!initialized) {
         try {
@@ -15,41 +15,64 @@ import com.codahale.metrics.SharedMetricRegistries;
 import com.codahale.metrics.Timer;
 import com.google.common.annotations.VisibleForTesting;
 import io.dropwizard.lifecycle.Managed;
+import io.lettuce.core.cluster.SlotHash;
 import io.micrometer.core.instrument.Counter;
-import software.amazon.awssdk.services.dynamodb.model.ItemCollectionSizeLimitExceededException;
-
+import io.micrometer.core.instrument.Metrics;
 import java.time.Duration;
 import java.time.Instant;
 import java.util.List;
-import java.util.Optional;
+import java.util.OptionalDouble;
 import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLongArray;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.whispersystems.textsecuregcm.configuration.dynamic.DynamicConfiguration;
 import org.whispersystems.textsecuregcm.entities.MessageProtos;
 import org.whispersystems.textsecuregcm.util.Constants;
+import org.whispersystems.textsecuregcm.util.ExceptionUtils;
 import org.whispersystems.textsecuregcm.util.Util;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import software.amazon.awssdk.services.dynamodb.model.ItemCollectionSizeLimitExceededException;
 
 public class MessagePersister implements Managed {
 
   private final MessagesCache messagesCache;
   private final MessagesManager messagesManager;
   private final AccountsManager accountsManager;
+  private final DynamicConfigurationManager<DynamicConfiguration> dynamicConfigurationManager;
 
   private final Duration persistDelay;
 
   private final boolean dedicatedProcess;
   private final Thread[] workerThreads;
+  private final Thread pressureMonitorThread;
   private volatile boolean running;
 
+  private final AdaptivePersistenceController adaptivePersistenceController;
+
+  // The time at which the oldest queue in each slot's persistence index was added to that index as of the last time
+  // the slot was visited, or 0 if the slot's index was empty
+  private final AtomicLongArray oldestQueueTimestampsBySlot = new AtomicLongArray(SlotHash.SLOT_COUNT);
+  private final AtomicInteger queuesInFlight = new AtomicInteger();
+
   private final MetricRegistry metricRegistry = SharedMetricRegistries.getOrCreate(Constants.METRICS_NAME);
   private final Timer getQueuesTimer = metricRegistry.timer(name(MessagePersister.class, "getQueues"));
   private final Timer persistQueueTimer = metricRegistry.timer(name(MessagePersister.class, "persistQueue"));
   private final Meter persistQueueExceptionMeter = metricRegistry.meter(
       name(MessagePersister.class, "persistQueueException"));
+  private final Meter persistedQueueMeter = metricRegistry.meter(name(MessagePersister.class, "persistedQueue"));
+  private final Meter persistedMessageMeter = metricRegistry.meter(name(MessagePersister.class, "persistedMessage"));
   private final Counter oversizedQueueCounter = counter(name(MessagePersister.class, "persistQueueOversized"));
+  private final Counter persistMessagesRetryCounter = counter(name(MessagePersister.class, "persistMessagesRetry"));
   private final Histogram queueCountHistogram = metricRegistry.histogram(name(MessagePersister.class, "queueCount"));
   private final Histogram queueSizeHistogram = metricRegistry.histogram(name(MessagePersister.class, "queueSize"));
+  private final Histogram slotBacklogAgeHistogram = metricRegistry.histogram(
+      name(MessagePersister.class, "slotBacklogAgeMillis"));
 
   static final int QUEUE_BATCH_LIMIT = 100;
   static final int MESSAGE_BATCH_LIMIT = 100;
@@ -58,6 +81,16 @@ public class MessagePersister implements Managed {
 
   private static final int CONSECUTIVE_EMPTY_CACHE_REMOVAL_LIMIT = 3;
 
+  private static final long PRESSURE_SAMPLE_INTERVAL_MILLIS = Duration.ofSeconds(10).toMillis();
+
+  // The number of randomly-chosen slots to sample when estimating the number of queues awaiting persistence
+  @VisibleForTesting
+  static final int QUEUE_COUNT_SAMPLE_SLOTS = 128;
+
+  @VisibleForTesting
+  static final int MAX_PERSIST_MESSAGES_ATTEMPTS = 3;
+  private static final long PERSIST_MESSAGES_RETRY_BASE_DELAY_MILLIS = 100;
+
   private static final Logger logger = LoggerFactory.getLogger(MessagePersister.class);
 
   public MessagePersister(final MessagesCache messagesCache, final MessagesManager messagesManager,
@@ -68,9 +101,11 @@ public class MessagePersister implements Managed {
     this.messagesCache = messagesCache;
     this.messagesManager = messagesManager;
     this.accountsManager = accountsManager;
+    this.dynamicConfigurationManager = dynamicConfigurationManager;
     this.persistDelay = persistDelay;
     this.workerThreads = new Thread[dedicatedProcessWorkerThreadCount];
     this.dedicatedProcess = true;
+    this.adaptivePersistenceController = new AdaptivePersistenceController(persistDelay, dynamicConfigurationManager);
 
     for (int i = 0; i < workerThreads.length; i++) {
       workerThreads[i] = new Thread(() -> {
@@ -94,6 +129,21 @@ public class MessagePersister implements Managed {
         }
       }, "MessagePersisterWorker-" + i);
     }
+
+    pressureMonitorThread = new Thread(() -> {
+      while (running) {
+        try {
+          updatePersistencePressure();
+        } catch (final Exception e) {
+          logger.warn("Failed to update persistence pressure", e);
+        }
+
+        Util.sleep(PRESSURE_SAMPLE_INTERVAL_MILLIS);
+      }
+    }, "MessagePersisterPressureMonitor");
+
+    Metrics.gauge(name(MessagePersister.class, "backlogAgeMillis"), this, MessagePersister::getBacklogAgeMillis);
+    Metrics.gauge(name(MessagePersister.class, "queuesInFlight"), queuesInFlight);
   }
 
   @VisibleForTesting
@@ -108,12 +158,17 @@ public class MessagePersister implements Managed {
     for (final Thread workerThread : workerThreads) {
       workerThread.start();
     }
+
+    pressureMonitorThread.start();
   }
 
   @Override
   public void stop() {
     running = false;
 
+    // The pressure monitor spends most of its time sleeping; wake it up so it notices that it should stop
+    pressureMonitorThread.interrupt();
+
     for (final Thread workerThread : workerThreads) {
       try {
         workerThread.join();
@@ -121,85 +176,206 @@ public class MessagePersister implements Managed {
         logger.warn("Interrupted while waiting for worker thread to complete current operation");
       }
     }
+
+    try {
+      pressureMonitorThread.join();
+    } catch (final InterruptedException e) {
+      logger.warn("Interrupted while waiting for pressure monitor thread to stop");
+    }
+  }
+
+  /**
+   * Samples message cache memory utilization and the depth of a random selection of queue persistence indices, then
+   * adjusts the persist delay and concurrency accordingly.
+   */
+  @VisibleForTesting
+  void updatePersistencePressure() {
+    if (!dynamicConfigurationManager.getConfiguration().getMessagePersisterConfiguration()
+        .isAdaptivePersistenceEnabled()) {
+
+      adaptivePersistenceController.update(OptionalDouble.empty(), 0);
+      return;
+    }
+
+    final List<CompletableFuture<Long>> sampledQueueCountFutures = ThreadLocalRandom.current()
+        .ints(QUEUE_COUNT_SAMPLE_SLOTS, 0, SlotHash.SLOT_COUNT)
+        .mapToObj(messagesCache::getQueuesToPersistCount)
+        .toList();
+
+    final long sampledQueueCount = sampledQueueCountFutures.stream().mapToLong(CompletableFuture::join).sum();
+
+    adaptivePersistenceController.update(messagesCache.getMaxMemoryUtilization(),
+        sampledQueueCount * SlotHash.SLOT_COUNT / QUEUE_COUNT_SAMPLE_SLOTS);
   }
 
+  @VisibleForTesting
+  AdaptivePersistenceController getAdaptivePersistenceController() {
+    return adaptivePersistenceController;
+  }
+
+  /**
+   * Returns the age of the oldest unpersisted queue across all slots as of the last time each slot was visited. Because
+   * each slot is only visited once per full pass through all slots, this value lags behind the true backlog age by up to
+   * the duration of one pass.
+   */
+  @VisibleForTesting
+  long getBacklogAgeMillis() {
+    long oldestTimestamp = Long.MAX_VALUE;
+
+    for (int slot = 0; slot < oldestQueueTimestampsBySlot.length(); slot++) {
+      final long timestamp = oldestQueueTimestampsBySlot.get(slot);
+
+      if (timestamp > 0) {
+        oldestTimestamp = Math.min(oldestTimestamp, timestamp);
+      }
+    }
+
+    return oldestTimestamp == Long.MAX_VALUE ? 0 : Math.max(0, System.currentTimeMillis() - oldestTimestamp);
+  }
+
+  /**
+   * Persists all queues in the next slot that are older than the current (possibly adaptive) persistence delay.
+   * Queues within the slot are persisted concurrently, up to the current concurrency limit; a failure to persist one
+   * queue does not delay others.
+   *
+   * @return the number of queues persisted (or scheduled for retry)
+   */
   @VisibleForTesting
   int persistNextQueues(final Instant currentTime) {
     final int slot = messagesCache.getNextSlotToPersist();
+    final int concurrency = adaptivePersistenceController.getQueuePersistenceConcurrency();
+    final Duration effectivePersistDelay = adaptivePersistenceController.getPersistDelay();
+
+    messagesCache.getOldestQueueToPersistTimestamp(slot).ifPresent(oldestQueueTimestamp ->
+        slotBacklogAgeHistogram.update(Duration.between(oldestQueueTimestamp, currentTime).toMillis()));
 
     List<String> queuesToPersist;
     int queuesPersisted = 0;
 
     do {
       try (final Timer.Context ignored = getQueuesTimer.time()) {
-        queuesToPersist = messagesCache.getQueuesToPersist(slot, currentTime.minus(persistDelay), QUEUE_BATCH_LIMIT);
+        queuesToPersist = messagesCache.getQueuesToPersist(slot, currentTime.minus(effectivePersistDelay),
+            QUEUE_BATCH_LIMIT);
       }
 
-      for (final String queue : queuesToPersist) {
-        final UUID accountUuid = MessagesCache.getAccountUuidFromQueueName(queue);
-        final long deviceId = MessagesCache.getDeviceIdFromQueueName(queue);
-
-        try {
-          persistQueue(accountUuid, deviceId);
-        } catch (final Exception e) {
-          if (e instanceof ItemCollectionSizeLimitExceededException) {
-            oversizedQueueCounter.increment();
-          }
-          persistQueueExceptionMeter.mark();
-          logger.warn("Failed to persist queue {}::{}; will schedule for retry", accountUuid, deviceId, e);
-
-          messagesCache.addQueueToPersist(accountUuid, deviceId);
-
-          Util.sleep(EXCEPTION_PAUSE_MILLIS);
-        }
-      }
+      Flux.fromIterable(queuesToPersist)
+          .flatMap(queue -> Mono.fromFuture(() -> persistQueueOrScheduleRetry(
+              MessagesCache.getAccountUuidFromQueueName(queue),
+              MessagesCache.getDeviceIdFromQueueName(queue))), concurrency)
+          .then()
+          .block();
 
       queuesPersisted += queuesToPersist.size();
     } while (queuesToPersist.size() >= QUEUE_BATCH_LIMIT);
 
+    oldestQueueTimestampsBySlot.set(slot, messagesCache.getOldestQueueToPersistTimestamp(slot)
+        .map(Instant::toEpochMilli)
+        .orElse(0L));
+
     return queuesPersisted;
   }
 
+  private CompletableFuture<Void> persistQueueOrScheduleRetry(final UUID accountUuid, final long deviceId) {
+    queuesInFlight.incrementAndGet();
+
+    return persistQueue(accountUuid, deviceId)
+        .exceptionallyCompose(throwable -> {
+          final Throwable cause = ExceptionUtils.unwrap(throwable);
+
+          if (cause instanceof ItemCollectionSizeLimitExceededException) {
+            oversizedQueueCounter.increment();
+          }
+          persistQueueExceptionMeter.mark();
+          logger.warn("Failed to persist queue {}::{}; will schedule for retry", accountUuid, deviceId, cause);
+
+          return messagesCache.addQueueToPersist(accountUuid, deviceId)
+              .exceptionally(addQueueThrowable -> {
+                logger.error("Failed to schedule queue {}::{} for retry", accountUuid, deviceId, addQueueThrowable);
+                return null;
+              });
+        })
+        .whenComplete((ignored, throwable) -> queuesInFlight.decrementAndGet());
+  }
+
   @VisibleForTesting
-  void persistQueue(final UUID accountUuid, final long deviceId) throws MessagePersistenceException {
-    final Optional<Account> maybeAccount = accountsManager.getByAccountIdentifier(accountUuid);
+  CompletableFuture<Void> persistQueue(final UUID accountUuid, final long deviceId) {
+    return accountsManager.getByAccountIdentifierAsync(accountUuid)
+        .thenCompose(maybeAccount -> {
+          if (maybeAccount.isEmpty()) {
+            logger.error("No account record found for account {}", accountUuid);
+            return CompletableFuture.<Void>completedFuture(null);
+          }
 
-    if (maybeAccount.isEmpty()) {
-      logger.error("No account record found for account {}", accountUuid);
-      return;
-    }
+          final Timer.Context timerContext = persistQueueTimer.time();
+
+          final CompletableFuture<Integer> persistFuture = messagesCache.lockQueueForPersistence(accountUuid, deviceId)
+              .thenCompose(ignored -> persistQueueMessages(accountUuid, deviceId, 0, 0));
+
+          // Always release the lock, regardless of the outcome of the persistence attempt, then report that outcome
+          return persistFuture
+              .handle((ignored, throwable) -> null)
+              .thenCompose(ignored -> messagesCache.unlockQueueForPersistence(accountUuid, deviceId))
+              .thenCompose(ignored -> persistFuture)
+              .thenAccept(messageCount -> {
+                queueSizeHistogram.update(messageCount);
+                persistedQueueMeter.mark();
+                persistedMessageMeter.mark(messageCount);
+              })
+              .whenComplete((ignored, throwable) -> timerContext.stop());
+        });
+  }
 
-    try (final Timer.Context ignored = persistQueueTimer.time()) {
-      messagesCache.lockQueueForPersistence(accountUuid, deviceId);
+  private CompletableFuture<Integer> persistQueueMessages(final UUID accountUuid,
+      final long deviceId,
+      final int messageCount,
+      final int consecutiveEmptyCacheRemovals) {
 
-      try {
-        int messageCount = 0;
-        List<MessageProtos.Envelope> messages;
+    return messagesCache.getMessagesToPersist(accountUuid, deviceId, MESSAGE_BATCH_LIMIT)
+        .thenCompose(messages -> {
+          if (messages.isEmpty()) {
+            return CompletableFuture.completedFuture(messageCount);
+          }
 
-        int consecutiveEmptyCacheRemovals = 0;
+          return persistMessages(accountUuid, deviceId, messages, 1)
+              .thenCompose(messagesRemovedFromCache -> {
+                final int updatedConsecutiveEmptyCacheRemovals =
+                    messagesRemovedFromCache == 0 ? consecutiveEmptyCacheRemovals + 1 : 0;
 
-        do {
-          messages = messagesCache.getMessagesToPersist(accountUuid, deviceId, MESSAGE_BATCH_LIMIT);
+                if (updatedConsecutiveEmptyCacheRemovals > CONSECUTIVE_EMPTY_CACHE_REMOVAL_LIMIT) {
+                  return CompletableFuture.<Integer>failedFuture(
+                      new MessagePersistenceException("persistence failure loop detected"));
+                }
 
-          int messagesRemovedFromCache = messagesManager.persistMessages(accountUuid, deviceId, messages);
-          messageCount += messages.size();
+                return persistQueueMessages(accountUuid, deviceId, messageCount + messages.size(),
+                    updatedConsecutiveEmptyCacheRemovals);
+              });
+        });
+  }
 
-          if (messagesRemovedFromCache == 0) {
-            consecutiveEmptyCacheRemovals += 1;
-          } else {
-            consecutiveEmptyCacheRemovals = 0;
+  /**
+   * Persists a single batch of messages from a queue, retrying with exponential backoff on failure. Retries are
+   * scheduled rather than slept so they don't hold up other queues being persisted at the same time.
+   */
+  private CompletableFuture<Integer> persistMessages(final UUID accountUuid,
+      final long deviceId,
+      final List<MessageProtos.Envelope> messages,
+      final int attempt) {
+
+    return messagesManager.persistMessages(accountUuid, deviceId, messages)
+        .exceptionallyCompose(throwable -> {
+          if (attempt >= MAX_PERSIST_MESSAGES_ATTEMPTS
+              || ExceptionUtils.unwrap(throwable) instanceof ItemCollectionSizeLimitExceededException) {
+
+            return CompletableFuture.failedFuture(throwable);
           }
 
-          if (consecutiveEmptyCacheRemovals > CONSECUTIVE_EMPTY_CACHE_REMOVAL_LIMIT) {
-            throw new MessagePersistenceException("persistence failure loop detected");
-          }
+          persistMessagesRetryCounter.increment();
 
-        } while (!messages.isEmpty());
+          final long delayMillis = PERSIST_MESSAGES_RETRY_BASE_DELAY_MILLIS << (attempt - 1);
 
-        queueSizeHistogram.update(messageCount);
-      } finally {
-        messagesCache.unlockQueueForPersistence(accountUuid, deviceId);
-      }
-    }
+          return CompletableFuture.supplyAsync(() -> null,
+                  CompletableFuture.delayedExecutor(delayMillis, TimeUnit.MILLISECONDS))
+              .thenCompose(ignored -> persistMessages(accountUuid, deviceId, messages, attempt + 1));
+        });
   }
 }
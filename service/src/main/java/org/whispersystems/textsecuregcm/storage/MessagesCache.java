@@ -17,6 +17,7 @@ import io.lettuce.core.cluster.SlotHash;
 import io.lettuce.core.cluster.models.partitions.RedisClusterNode;
 import io.lettuce.core.cluster.pubsub.RedisClusterPubSubAdapter;
 import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
 import io.micrometer.core.instrument.Metrics;
 import io.micrometer.core.instrument.Timer;
 import java.io.IOException;
@@ -27,15 +28,18 @@ import java.time.Instant;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashMap;
-import java.util.HashSet;
-import java.util.IdentityHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.OptionalDouble;
 import java.util.Set;
 import java.util.UUID;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
 import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.function.Predicate;
 import java.util.stream.Collectors;
 import javax.annotation.Nullable;
@@ -47,6 +51,7 @@ import org.whispersystems.textsecuregcm.metrics.MetricsUtil;
 import org.whispersystems.textsecuregcm.redis.ClusterLuaScript;
 import org.whispersystems.textsecuregcm.redis.FaultTolerantPubSubConnection;
 import org.whispersystems.textsecuregcm.redis.FaultTolerantRedisCluster;
+import org.whispersystems.textsecuregcm.redis.RedisWorkload;
 import org.whispersystems.textsecuregcm.util.Pair;
 import org.whispersystems.textsecuregcm.util.RedisClusterUtil;
 import org.whispersystems.textsecuregcm.util.Util;
@@ -74,8 +79,17 @@ public class MessagesCache extends RedisClusterPubSubAdapter<String, String> imp
   private final ClusterLuaScript removeQueueScript;
   private final ClusterLuaScript getQueuesToPersistScript;
 
-  private final Map<String, MessageAvailabilityListener> messageListenersByQueueName = new HashMap<>();
-  private final Map<MessageAvailabilityListener, String> queueNamesByMessageListener = new IdentityHashMap<>();
+  private final Map<String, MessageAvailabilityListener> messageListenersByQueueName = new ConcurrentHashMap<>();
+  private final Map<MessageAvailabilityListener, String> queueNamesByMessageListener = new ConcurrentHashMap<>();
+
+  // Queues whose keyspace notification subscriptions may need to change, and futures that complete when those changes
+  // have been applied. Changes are applied in batches by flushSubscriptionChanges.
+  private final Map<String, CompletableFuture<Void>> pendingSubscriptionChangesByQueueName = new ConcurrentHashMap<>();
+  private final AtomicBoolean subscriptionFlushInProgress = new AtomicBoolean(false);
+
+  // Queues for which a "new messages available" notification has been dispatched, but not yet delivered to a listener
+  private final Set<String> queuesWithPendingNewMessageNotifications = ConcurrentHashMap.newKeySet();
+  private final Executor newMessageNotificationExecutor;
 
   private final Timer insertTimer = Metrics.timer(name(MessagesCache.class, "insert"));
   private final Timer getMessagesTimer = Metrics.timer(name(MessagesCache.class, "get"));
@@ -84,6 +98,8 @@ public class MessagesCache extends RedisClusterPubSubAdapter<String, String> imp
   private final Counter pubSubMessageCounter = Metrics.counter(name(MessagesCache.class, "pubSubMessage"));
   private final Counter newMessageNotificationCounter = Metrics.counter(
       name(MessagesCache.class, "newMessageNotification"));
+  private final Counter coalescedNewMessageNotificationCounter = Metrics.counter(
+      name(MessagesCache.class, "coalescedNewMessageNotification"));
   private final Counter queuePersistedNotificationCounter = Metrics.counter(
       name(MessagesCache.class, "queuePersisted"));
   private final Counter staleEphemeralMessagesCounter = Metrics.counter(
@@ -92,6 +108,8 @@ public class MessagesCache extends RedisClusterPubSubAdapter<String, String> imp
       name(MessagesCache.class, "messageAvailabilityListenerRemovedAfterAdd"));
   private final Counter prunedStaleSubscriptionCounter = Metrics.counter(
       name(MessagesCache.class, "prunedStaleSubscription"));
+  private final DistributionSummary subscriptionBatchSizeDistributionSummary = Metrics.summary(
+      name(MessagesCache.class, "subscriptionBatchSize"));
 
   static final String NEXT_SLOT_TO_PERSIST_KEY = "user_queue_persist_slot";
   private static final byte[] LOCK_VALUE = "1".getBytes(StandardCharsets.UTF_8);
@@ -105,17 +123,38 @@ public class MessagesCache extends RedisClusterPubSubAdapter<String, String> imp
   private static final String GET_FLUX_NAME = MetricsUtil.name(MessagesCache.class, "get");
   private static final int PAGE_SIZE = 100;
 
+  @VisibleForTesting
+  static final int MAX_SUBSCRIPTION_BATCH_SIZE = 512;
+
   private static final Logger logger = LoggerFactory.getLogger(MessagesCache.class);
 
   public MessagesCache(final FaultTolerantRedisCluster insertCluster, final FaultTolerantRedisCluster readDeleteCluster,
       final ExecutorService notificationExecutorService, final Scheduler messageDeliveryScheduler,
       final ExecutorService messageDeletionExecutorService, final Clock clock) throws IOException {
 
+    this(insertCluster, readDeleteCluster, notificationExecutorService, messageDeliveryScheduler,
+        messageDeletionExecutorService, clock, Duration.ZERO);
+  }
+
+  /**
+   * @param newMessageNotificationDebounce the length of time to wait before notifying a listener that new messages are
+   * available; notifications for messages that arrive within that window are coalesced into a single notification. If
+   * zero, listeners are notified immediately (though notifications may still be coalesced if listeners are busy).
+   */
+  public MessagesCache(final FaultTolerantRedisCluster insertCluster, final FaultTolerantRedisCluster readDeleteCluster,
+      final ExecutorService notificationExecutorService, final Scheduler messageDeliveryScheduler,
+      final ExecutorService messageDeletionExecutorService, final Clock clock,
+      final Duration newMessageNotificationDebounce) throws IOException {
+
     this.readDeleteCluster = readDeleteCluster;
     this.pubSubConnection = readDeleteCluster.createPubSubConnection();
     this.clock = clock;
 
     this.notificationExecutorService = notificationExecutorService;
+    this.newMessageNotificationExecutor = newMessageNotificationDebounce.isPositive()
+        ? CompletableFuture.delayedExecutor(newMessageNotificationDebounce.toMillis(), TimeUnit.MILLISECONDS,
+        notificationExecutorService)
+        : notificationExecutorService;
     this.messageDeliveryScheduler = messageDeliveryScheduler;
     this.messageDeletionExecutorService = messageDeletionExecutorService;
     this.messageDeletionScheduler = Schedulers.fromExecutorService(messageDeletionExecutorService, "messageDeletion");
@@ -123,11 +162,15 @@ public class MessagesCache extends RedisClusterPubSubAdapter<String, String> imp
     this.insertScript = ClusterLuaScript.fromResource(insertCluster, "lua/insert_item.lua", ScriptOutputType.INTEGER);
     this.removeByGuidScript = ClusterLuaScript.fromResource(readDeleteCluster, "lua/remove_item_by_guid.lua",
         ScriptOutputType.MULTI);
-    this.getItemsScript = ClusterLuaScript.fromResource(readDeleteCluster, "lua/get_items.lua", ScriptOutputType.MULTI);
+    this.getItemsScript = ClusterLuaScript.fromResource(readDeleteCluster, "lua/get_items.lua", ScriptOutputType.MULTI,
+        RedisWorkload.BULK);
     this.removeQueueScript = ClusterLuaScript.fromResource(readDeleteCluster, "lua/remove_queue.lua",
         ScriptOutputType.STATUS);
     this.getQueuesToPersistScript = ClusterLuaScript.fromResource(readDeleteCluster, "lua/get_queues_to_persist.lua",
         ScriptOutputType.MULTI);
+
+    Metrics.gauge(name(MessagesCache.class, "pendingSubscriptionChanges"), pendingSubscriptionChangesByQueueName,
+        Map::size);
   }
 
   @Override
@@ -142,17 +185,9 @@ public class MessagesCache extends RedisClusterPubSubAdapter<String, String> imp
   }
 
   private void resubscribeAll() {
-
-    final Set<String> queueNames;
-
-    synchronized (messageListenersByQueueName) {
-      queueNames = new HashSet<>(messageListenersByQueueName.keySet());
-    }
-
-    for (final String queueName : queueNames) {
-      // avoid overwhelming a newly recovered node by processing synchronously, rather than using CompletableFuture.allOf()
-      subscribeForKeyspaceNotifications(queueName).join();
-    }
+    // Subscription changes are applied in bounded batches, one batch at a time, so this won't overwhelm a newly
+    // recovered node
+    messageListenersByQueueName.keySet().forEach(this::requestSubscriptionUpdate);
   }
 
   public long insert(final UUID guid, final UUID destinationUuid, final long destinationDevice,
@@ -167,6 +202,29 @@ public class MessagesCache extends RedisClusterPubSubAdapter<String, String> imp
                 guid.toString().getBytes(StandardCharsets.UTF_8))));
   }
 
+  /**
+   * Asynchronously inserts a message into a destination device's queue. Callers inserting messages for several devices
+   * at once may issue several asynchronous insertions before waiting for any of them to complete; Lettuce will pipeline
+   * the underlying commands.
+   *
+   * @return a future that yields the ID of the inserted message within the destination queue
+   */
+  public CompletableFuture<Long> insertAsync(final UUID guid, final UUID destinationUuid, final long destinationDevice,
+      final MessageProtos.Envelope message) {
+
+    final MessageProtos.Envelope messageWithGuid = message.toBuilder().setServerGuid(guid.toString()).build();
+    final Timer.Sample sample = Timer.start();
+
+    return insertScript.executeBinaryAsync(List.of(getMessageQueueKey(destinationUuid, destinationDevice),
+                getMessageQueueMetadataKey(destinationUuid, destinationDevice),
+                getQueueIndexKey(destinationUuid, destinationDevice)),
+            List.of(messageWithGuid.toByteArray(),
+                String.valueOf(message.getServerTimestamp()).getBytes(StandardCharsets.UTF_8),
+                guid.toString().getBytes(StandardCharsets.UTF_8)))
+        .thenApply(result -> (long) result)
+        .whenComplete((ignored, throwable) -> sample.stop(insertTimer));
+  }
+
   public CompletableFuture<Optional<MessageProtos.Envelope>> remove(final UUID destinationUuid,
       final long destinationDevice,
       final UUID messageGuid) {
@@ -314,25 +372,29 @@ public class MessagesCache extends RedisClusterPubSubAdapter<String, String> imp
         });
   }
 
-  @VisibleForTesting
-  List<MessageProtos.Envelope> getMessagesToPersist(final UUID accountUuid, final long destinationDevice,
-      final int limit) {
-    return getMessagesTimer.record(() -> {
-      final List<ScoredValue<byte[]>> scoredMessages = readDeleteCluster.withBinaryCluster(
-          connection -> connection.sync()
-              .zrangeWithScores(getMessageQueueKey(accountUuid, destinationDevice), 0, limit));
-      final List<MessageProtos.Envelope> envelopes = new ArrayList<>(scoredMessages.size());
-
-      for (final ScoredValue<byte[]> scoredMessage : scoredMessages) {
-        try {
-          envelopes.add(MessageProtos.Envelope.parseFrom(scoredMessage.getValue()));
-        } catch (InvalidProtocolBufferException e) {
-          logger.warn("Failed to parse envelope", e);
-        }
-      }
+  CompletableFuture<List<MessageProtos.Envelope>> getMessagesToPersist(final UUID accountUuid,
+      final long destinationDevice, final int limit) {
 
-      return envelopes;
-    });
+    final Timer.Sample sample = Timer.start();
+    final byte[] queueKey = getMessageQueueKey(accountUuid, destinationDevice);
+
+    return readDeleteCluster.withBinaryCluster(RedisWorkload.BULK, queueKey, connection -> connection.async()
+            .zrangeWithScores(queueKey, 0, limit))
+        .thenApply(scoredMessages -> {
+          final List<MessageProtos.Envelope> envelopes = new ArrayList<>(scoredMessages.size());
+
+          for (final ScoredValue<byte[]> scoredMessage : scoredMessages) {
+            try {
+              envelopes.add(MessageProtos.Envelope.parseFrom(scoredMessage.getValue()));
+            } catch (InvalidProtocolBufferException e) {
+              logger.warn("Failed to parse envelope", e);
+            }
+          }
+
+          return envelopes;
+        })
+        .whenComplete((ignored, throwable) -> sample.stop(getMessagesTimer))
+        .toCompletableFuture();
   }
 
   public CompletableFuture<Void> clear(final UUID destinationUuid) {
@@ -368,87 +430,213 @@ public class MessagesCache extends RedisClusterPubSubAdapter<String, String> imp
             String.valueOf(limit))));
   }
 
-  void addQueueToPersist(final UUID accountUuid, final long deviceId) {
-    readDeleteCluster.useBinaryCluster(connection -> connection.sync()
-        .zadd(getQueueIndexKey(accountUuid, deviceId), ZAddArgs.Builder.nx(), System.currentTimeMillis(),
-            getMessageQueueKey(accountUuid, deviceId)));
+  /**
+   * Returns the time at which the oldest queue in the given slot's persistence index was added to that index, if any.
+   * Because queues are only added to the index when they go from empty to non-empty, this is approximately the age of the
+   * oldest unpersisted message in the slot.
+   */
+  Optional<Instant> getOldestQueueToPersistTimestamp(final int slot) {
+    final List<ScoredValue<byte[]>> oldestQueues = readDeleteCluster.withBinaryCluster(
+        connection -> connection.sync().zrangeWithScores(getQueueIndexKey(slot), 0, 0));
+
+    return oldestQueues.stream()
+        .findFirst()
+        .map(scoredQueue -> Instant.ofEpochMilli((long) scoredQueue.getScore()));
   }
 
-  void lockQueueForPersistence(final UUID accountUuid, final long deviceId) {
-    readDeleteCluster.useBinaryCluster(
-        connection -> connection.sync().setex(getPersistInProgressKey(accountUuid, deviceId), 30, LOCK_VALUE));
+  /**
+   * Returns the number of queues in the given slot's persistence index.
+   */
+  CompletableFuture<Long> getQueuesToPersistCount(final int slot) {
+    return readDeleteCluster.withBinaryCluster(connection -> connection.async().zcard(getQueueIndexKey(slot)))
+        .toCompletableFuture();
   }
 
-  void unlockQueueForPersistence(final UUID accountUuid, final long deviceId) {
-    readDeleteCluster.useBinaryCluster(
-        connection -> connection.sync().del(getPersistInProgressKey(accountUuid, deviceId)));
+  /**
+   * Returns the highest fraction of available memory in use by any upstream node in the cluster, or empty if no node
+   * has a memory limit.
+   */
+  OptionalDouble getMaxMemoryUtilization() {
+    return readDeleteCluster.withCluster(connection -> connection.sync().upstream().commands().info("memory"))
+        .stream()
+        .map(MessagesCache::getMemoryUtilization)
+        .flatMapToDouble(OptionalDouble::stream)
+        .max();
+  }
+
+  @VisibleForTesting
+  static OptionalDouble getMemoryUtilization(final String memoryInfo) {
+    long usedMemory = -1;
+    long maxMemory = -1;
+
+    for (final String line : memoryInfo.split("\\r?\\n")) {
+      if (line.startsWith("used_memory:")) {
+        usedMemory = Long.parseLong(line.substring("used_memory:".length()).trim());
+      } else if (line.startsWith("maxmemory:")) {
+        maxMemory = Long.parseLong(line.substring("maxmemory:".length()).trim());
+      }
+    }
+
+    return usedMemory >= 0 && maxMemory > 0
+        ? OptionalDouble.of((double) usedMemory / maxMemory)
+        : OptionalDouble.empty();
+  }
+
+  CompletableFuture<Void> addQueueToPersist(final UUID accountUuid, final long deviceId) {
+    return readDeleteCluster.withBinaryCluster(connection -> connection.async()
+            .zadd(getQueueIndexKey(accountUuid, deviceId), ZAddArgs.Builder.nx(), System.currentTimeMillis(),
+                getMessageQueueKey(accountUuid, deviceId)))
+        .thenRun(Util.NOOP)
+        .toCompletableFuture();
+  }
+
+  CompletableFuture<Void> lockQueueForPersistence(final UUID accountUuid, final long deviceId) {
+    return readDeleteCluster.withBinaryCluster(
+            connection -> connection.async().setex(getPersistInProgressKey(accountUuid, deviceId), 30, LOCK_VALUE))
+        .thenRun(Util.NOOP)
+        .toCompletableFuture();
+  }
+
+  CompletableFuture<Void> unlockQueueForPersistence(final UUID accountUuid, final long deviceId) {
+    return readDeleteCluster.withBinaryCluster(
+            connection -> connection.async().del(getPersistInProgressKey(accountUuid, deviceId)))
+        .thenRun(Util.NOOP)
+        .toCompletableFuture();
   }
 
   public void addMessageAvailabilityListener(final UUID destinationUuid, final long deviceId,
       final MessageAvailabilityListener listener) {
     final String queueName = getQueueName(destinationUuid, deviceId);
 
-    final CompletableFuture<Void> subscribeFuture;
-    synchronized (messageListenersByQueueName) {
-      messageListenersByQueueName.put(queueName, listener);
-      queueNamesByMessageListener.put(listener, queueName);
-      // Submit to the Redis queue within the synchronized block, but don’t wait until exiting
-      subscribeFuture = subscribeForKeyspaceNotifications(queueName);
-    }
+    queueNamesByMessageListener.put(listener, queueName);
+    messageListenersByQueueName.put(queueName, listener);
 
-    subscribeFuture.join();
+    requestSubscriptionUpdate(queueName).join();
   }
 
   public void removeMessageAvailabilityListener(final MessageAvailabilityListener listener) {
-    @Nullable final String queueName;
-    synchronized (messageListenersByQueueName) {
-      queueName = queueNamesByMessageListener.get(listener);
-    }
+    @Nullable final String queueName = queueNamesByMessageListener.remove(listener);
 
     if (queueName != null) {
-
-      final CompletableFuture<Void> unsubscribeFuture;
-      synchronized (messageListenersByQueueName) {
-        queueNamesByMessageListener.remove(listener);
-        if (messageListenersByQueueName.remove(queueName, listener)) {
-          // Submit to the Redis queue within the synchronized block, but don’t wait until exiting
-          unsubscribeFuture = unsubscribeFromKeyspaceNotifications(queueName);
-        } else {
-          messageAvailabilityListenerRemovedAfterAddCounter.increment();
-          unsubscribeFuture = CompletableFuture.completedFuture(null);
-        }
+      if (messageListenersByQueueName.remove(queueName, listener)) {
+        // There's no need to wait for the unsubscription to complete; any notifications that arrive in the meantime will
+        // find no listener and will be ignored
+        requestSubscriptionUpdate(queueName);
+      } else {
+        messageAvailabilityListenerRemovedAfterAddCounter.increment();
       }
-
-      unsubscribeFuture.join();
     }
   }
 
   private void pruneStaleSubscription(final String channel) {
-    unsubscribeFromKeyspaceNotifications(getQueueNameFromKeyspaceChannel(channel))
+    requestSubscriptionUpdate(getQueueNameFromKeyspaceChannel(channel))
         .thenRun(prunedStaleSubscriptionCounter::increment);
   }
 
-  private CompletableFuture<Void> subscribeForKeyspaceNotifications(final String queueName) {
-    final int slot = SlotHash.getSlot(queueName);
-
-    return pubSubConnection.withPubSubConnection(
-            connection -> connection.async()
-                .nodes(node -> node.is(RedisClusterNode.NodeFlag.UPSTREAM) && node.hasSlot(slot))
-            .commands()
-                .subscribe(getKeyspaceChannels(queueName))).toCompletableFuture()
-        .thenRun(Util.NOOP);
+  /**
+   * Requests that keyspace notification subscriptions for the given queue be brought in line with the presence (or
+   * absence) of a listener for that queue. Rather than issuing commands immediately, requests are coalesced and applied
+   * in batches, with one multi-channel {@code SUBSCRIBE} and/or {@code UNSUBSCRIBE} command per cluster node per batch.
+   * <p>
+   * Because the desired subscription state is read from {@link #messageListenersByQueueName} when the batch is applied
+   * (and not when the change is requested), callers must update listener maps before requesting an update.
+   *
+   * @param queueName the name of the queue whose subscriptions should be updated
+   *
+   * @return a future that completes when subscriptions for the given queue reflect the current listener state
+   */
+  private CompletableFuture<Void> requestSubscriptionUpdate(final String queueName) {
+    final CompletableFuture<Void> future =
+        pendingSubscriptionChangesByQueueName.computeIfAbsent(queueName, ignored -> new CompletableFuture<>());
+
+    scheduleSubscriptionFlush();
+
+    return future;
+  }
+
+  private void scheduleSubscriptionFlush() {
+    if (!pendingSubscriptionChangesByQueueName.isEmpty() && subscriptionFlushInProgress.compareAndSet(false, true)) {
+      try {
+        notificationExecutorService.execute(this::flushSubscriptionChanges);
+      } catch (final RuntimeException e) {
+        subscriptionFlushInProgress.set(false);
+        throw e;
+      }
+    }
   }
 
-  private CompletableFuture<Void> unsubscribeFromKeyspaceNotifications(final String queueName) {
-    final int slot = SlotHash.getSlot(queueName);
+  private void flushSubscriptionChanges() {
+    final Map<String, CompletableFuture<Void>> futuresByQueueName = new HashMap<>();
+
+    for (final String queueName : pendingSubscriptionChangesByQueueName.keySet()) {
+      if (futuresByQueueName.size() >= MAX_SUBSCRIPTION_BATCH_SIZE) {
+        break;
+      }
+
+      final CompletableFuture<Void> future = pendingSubscriptionChangesByQueueName.remove(queueName);
+
+      if (future != null) {
+        futuresByQueueName.put(queueName, future);
+      }
+    }
+
+    subscriptionBatchSizeDistributionSummary.record(futuresByQueueName.size());
+
+    CompletableFuture<Void> flushFuture;
+
+    try {
+      flushFuture = pubSubConnection.withPubSubConnection(connection -> {
+        final Map<String, List<String>> subscribeChannelsByNodeId = new HashMap<>();
+        final Map<String, List<String>> unsubscribeChannelsByNodeId = new HashMap<>();
+
+        for (final String queueName : futuresByQueueName.keySet()) {
+          @Nullable final RedisClusterNode node =
+              connection.getPartitions().getPartitionBySlot(SlotHash.getSlot(queueName));
+
+          if (node == null) {
+            // We'll try again when the cluster topology changes
+            continue;
+          }
 
-    return pubSubConnection.withPubSubConnection(
-            connection -> connection.async()
-                .nodes(node -> node.is(RedisClusterNode.NodeFlag.UPSTREAM) && node.hasSlot(slot))
+          final Map<String, List<String>> channelsByNodeId = messageListenersByQueueName.containsKey(queueName)
+              ? subscribeChannelsByNodeId
+              : unsubscribeChannelsByNodeId;
+
+          Collections.addAll(channelsByNodeId.computeIfAbsent(node.getNodeId(), ignored -> new ArrayList<>()),
+              getKeyspaceChannels(queueName));
+        }
+
+        final List<CompletableFuture<?>> commandFutures = new ArrayList<>();
+
+        subscribeChannelsByNodeId.forEach((nodeId, channels) -> commandFutures.add(connection.async()
+            .nodes(node -> node.is(RedisClusterNode.NodeFlag.UPSTREAM) && node.getNodeId().equals(nodeId))
             .commands()
-                .unsubscribe(getKeyspaceChannels(queueName)))
-        .toCompletableFuture()
-        .thenRun(Util.NOOP);
+            .subscribe(channels.toArray(String[]::new))
+            .toCompletableFuture()));
+
+        unsubscribeChannelsByNodeId.forEach((nodeId, channels) -> commandFutures.add(connection.async()
+            .nodes(node -> node.is(RedisClusterNode.NodeFlag.UPSTREAM) && node.getNodeId().equals(nodeId))
+            .commands()
+            .unsubscribe(channels.toArray(String[]::new))
+            .toCompletableFuture()));
+
+        return CompletableFuture.allOf(commandFutures.toArray(new CompletableFuture[0]));
+      });
+    } catch (final Exception e) {
+      flushFuture = CompletableFuture.failedFuture(e);
+    }
+
+    flushFuture.whenComplete((ignored, throwable) -> {
+      if (throwable != null) {
+        logger.warn("Failed to update keyspace notification subscriptions", throwable);
+        futuresByQueueName.values().forEach(future -> future.completeExceptionally(throwable));
+      } else {
+        futuresByQueueName.values().forEach(future -> future.complete(null));
+      }
+
+      subscriptionFlushInProgress.set(false);
+      scheduleSubscriptionFlush();
+    });
   }
 
   private static String[] getKeyspaceChannels(final String queueName) {
@@ -464,17 +652,35 @@ public class MessagesCache extends RedisClusterPubSubAdapter<String, String> imp
 
     if (channel.startsWith(QUEUE_KEYSPACE_PREFIX) && "zadd".equals(message)) {
       newMessageNotificationCounter.increment();
-      notificationExecutorService.execute(() -> {
+
+      final String queueName = getQueueNameFromKeyspaceChannel(channel);
+
+      // Listeners retrieve all available messages when notified, so there's no need to notify a listener more than once
+      // for messages that arrive before it has had a chance to handle the first notification
+      if (queuesWithPendingNewMessageNotifications.add(queueName)) {
         try {
-          findListener(channel).ifPresentOrElse(listener -> {
-            if (!listener.handleNewMessagesAvailable()) {
-              removeMessageAvailabilityListener(listener);
+          newMessageNotificationExecutor.execute(() -> {
+            // Clear the pending flag before notifying the listener so that messages arriving while the listener is
+            // busy will trigger another notification
+            queuesWithPendingNewMessageNotifications.remove(queueName);
+
+            try {
+              findListener(channel).ifPresentOrElse(listener -> {
+                if (!listener.handleNewMessagesAvailable()) {
+                  removeMessageAvailabilityListener(listener);
+                }
+              }, () -> pruneStaleSubscription(channel));
+            } catch (final Exception e) {
+              logger.warn("Unexpected error handling new message", e);
             }
-          }, () -> pruneStaleSubscription(channel));
-        } catch (final Exception e) {
-          logger.warn("Unexpected error handling new message", e);
+          });
+        } catch (final RuntimeException e) {
+          queuesWithPendingNewMessageNotifications.remove(queueName);
+          throw e;
         }
-      });
+      } else {
+        coalescedNewMessageNotificationCounter.increment();
+      }
     } else if (channel.startsWith(PERSISTING_KEYSPACE_PREFIX) && "del".equals(message)) {
       queuePersistedNotificationCounter.increment();
       notificationExecutorService.execute(() -> {
@@ -494,9 +700,7 @@ public class MessagesCache extends RedisClusterPubSubAdapter<String, String> imp
   private Optional<MessageAvailabilityListener> findListener(final String keyspaceChannel) {
     final String queueName = getQueueNameFromKeyspaceChannel(keyspaceChannel);
 
-    synchronized (messageListenersByQueueName) {
-      return Optional.ofNullable(messageListenersByQueueName.get(queueName));
-    }
+    return Optional.ofNullable(messageListenersByQueueName.get(queueName));
   }
 
   @VisibleForTesting
@@ -37,6 +37,7 @@ import software.amazon.awssdk.services.dynamodb.DynamoDbAsyncClient;
 import software.amazon.awssdk.services.dynamodb.DynamoDbClient;
 import software.amazon.awssdk.services.dynamodb.model.AttributeValue;
 import software.amazon.awssdk.services.dynamodb.model.DeleteItemRequest;
+import software.amazon.awssdk.services.dynamodb.model.DeleteRequest;
 import software.amazon.awssdk.services.dynamodb.model.PutRequest;
 import software.amazon.awssdk.services.dynamodb.model.QueryRequest;
 import software.amazon.awssdk.services.dynamodb.model.ReturnValue;
@@ -95,23 +96,49 @@ public class MessagesDynamoDb extends AbstractDynamoDbStore {
     final AttributeValue partitionKey = convertPartitionKey(destinationAccountUuid);
     List<WriteRequest> writeItems = new ArrayList<>();
     for (MessageProtos.Envelope message : messages) {
-      final UUID messageUuid = UUID.fromString(message.getServerGuid());
-
-      final ImmutableMap.Builder<String, AttributeValue> item = ImmutableMap.<String, AttributeValue>builder()
-          .put(KEY_PARTITION, partitionKey)
-          .put(KEY_SORT, convertSortKey(destinationDeviceId, message.getServerTimestamp(), messageUuid))
-          .put(LOCAL_INDEX_MESSAGE_UUID_KEY_SORT, convertLocalIndexMessageUuidSortKey(messageUuid))
-          .put(KEY_TTL, AttributeValues.fromLong(getTtlForMessage(message)))
-          .put(KEY_ENVELOPE_BYTES, AttributeValue.builder().b(SdkBytes.fromByteArray(message.toByteArray())).build());
-
-      writeItems.add(WriteRequest.builder().putRequest(PutRequest.builder()
-          .item(item.build())
-          .build()).build());
+      writeItems.add(buildPutRequest(message, partitionKey, destinationDeviceId));
     }
 
     executeTableWriteItemsUntilComplete(Map.of(tableName, writeItems));
   }
 
+  /**
+   * Stores the given messages asynchronously. Messages are written in parallel batches via {@code BatchWriteItem}, and
+   * unprocessed items are retried with backoff.
+   *
+   * @return a future that completes when all messages have been stored
+   */
+  public CompletableFuture<Void> storeAsync(final List<MessageProtos.Envelope> messages,
+      final UUID destinationAccountUuid, final long destinationDeviceId) {
+
+    final Timer.Sample sample = Timer.start();
+    final AttributeValue partitionKey = convertPartitionKey(destinationAccountUuid);
+
+    final List<WriteRequest> writeRequests = messages.stream()
+        .map(message -> buildPutRequest(message, partitionKey, destinationDeviceId))
+        .toList();
+
+    return writeInBatchesAsync(dbAsyncClient, tableName, writeRequests)
+        .whenComplete((ignored, throwable) -> sample.stop(storeTimer));
+  }
+
+  private WriteRequest buildPutRequest(final MessageProtos.Envelope message, final AttributeValue partitionKey,
+      final long destinationDeviceId) {
+
+    final UUID messageUuid = UUID.fromString(message.getServerGuid());
+
+    final ImmutableMap.Builder<String, AttributeValue> item = ImmutableMap.<String, AttributeValue>builder()
+        .put(KEY_PARTITION, partitionKey)
+        .put(KEY_SORT, convertSortKey(destinationDeviceId, message.getServerTimestamp(), messageUuid))
+        .put(LOCAL_INDEX_MESSAGE_UUID_KEY_SORT, convertLocalIndexMessageUuidSortKey(messageUuid))
+        .put(KEY_TTL, AttributeValues.fromLong(getTtlForMessage(message)))
+        .put(KEY_ENVELOPE_BYTES, AttributeValue.builder().b(SdkBytes.fromByteArray(message.toByteArray())).build());
+
+    return WriteRequest.builder().putRequest(PutRequest.builder()
+        .item(item.build())
+        .build()).build();
+  }
+
   public Publisher<MessageProtos.Envelope> load(final UUID destinationAccountUuid, final long destinationDeviceId,
       final Integer limit) {
 
@@ -214,6 +241,35 @@ public class MessagesDynamoDb extends AbstractDynamoDbStore {
         }, messageDeletionExecutor);
   }
 
+  /**
+   * Deletes a batch of messages for a single destination device using {@code BatchWriteItem}. Unlike
+   * {@link #deleteMessage(UUID, long, UUID, long)}, this method does not return the deleted messages.
+   *
+   * @param destinationAccountUuid the account for which to delete messages
+   * @param destinationDeviceId the device for which to delete messages
+   * @param serverTimestampsByGuid a map of message GUIDs to server timestamps for the messages to delete
+   *
+   * @return a future that completes when all messages have been deleted
+   */
+  public CompletableFuture<Void> deleteMessages(final UUID destinationAccountUuid,
+      final long destinationDeviceId,
+      final Map<UUID, Long> serverTimestampsByGuid) {
+
+    final AttributeValue partitionKey = convertPartitionKey(destinationAccountUuid);
+
+    final List<WriteRequest> deleteRequests = serverTimestampsByGuid.entrySet().stream()
+        .map(entry -> WriteRequest.builder()
+            .deleteRequest(DeleteRequest.builder()
+                .key(Map.of(
+                    KEY_PARTITION, partitionKey,
+                    KEY_SORT, convertSortKey(destinationDeviceId, entry.getValue(), entry.getKey())))
+                .build())
+            .build())
+        .toList();
+
+    return writeInBatchesAsync(dbAsyncClient, tableName, deleteRequests);
+  }
+
   public CompletableFuture<Void> deleteAllMessagesForAccount(final UUID destinationAccountUuid) {
     final Timer.Sample sample = Timer.start();
 
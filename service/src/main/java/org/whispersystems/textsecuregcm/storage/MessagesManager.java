@@ -10,14 +10,13 @@ import com.codahale.metrics.Meter;
 import com.codahale.metrics.MetricRegistry;
 import com.codahale.metrics.SharedMetricRegistries;
 import io.micrometer.core.instrument.Metrics;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 import java.util.UUID;
 import java.util.concurrent.CompletableFuture;
-import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
-import java.util.concurrent.TimeUnit;
-import java.util.concurrent.TimeoutException;
 import java.util.stream.Collectors;
 import javax.annotation.Nullable;
 import org.reactivestreams.Publisher;
@@ -70,6 +69,33 @@ public class MessagesManager {
     }
   }
 
+  /**
+   * Inserts messages for several devices associated with the same destination account. All insertions are issued
+   * before waiting for any of them to complete so that they may be pipelined.
+   *
+   * @param destinationUuid the destination account's identifier
+   * @param messagesByDeviceId the messages to insert, keyed by destination device ID
+   *
+   * @return a future that completes when all messages have been inserted
+   */
+  public CompletableFuture<Void> insert(final UUID destinationUuid, final Map<Long, Envelope> messagesByDeviceId) {
+    final CompletableFuture<?>[] insertFutures = new CompletableFuture[messagesByDeviceId.size()];
+    int i = 0;
+
+    for (final Map.Entry<Long, Envelope> entry : messagesByDeviceId.entrySet()) {
+      final UUID messageGuid = UUID.randomUUID();
+      final Envelope message = entry.getValue();
+
+      insertFutures[i++] = messagesCache.insertAsync(messageGuid, destinationUuid, entry.getKey(), message);
+
+      if (message.hasSourceUuid() && !destinationUuid.toString().equals(message.getSourceUuid())) {
+        reportMessageManager.store(message.getSourceUuid(), messageGuid);
+      }
+    }
+
+    return CompletableFuture.allOf(insertFutures);
+  }
+
   public boolean hasCachedMessages(final UUID destinationUuid, final long destinationDevice) {
     return messagesCache.hasMessages(destinationUuid, destinationDevice);
   }
@@ -136,9 +162,45 @@ public class MessagesManager {
   }
 
   /**
-   * @return the number of messages successfully removed from the cache.
+   * Deletes a batch of messages for a single destination device. Messages are first removed from the cache with a single
+   * script invocation; any messages not found in the cache are then removed from DynamoDB in batches.
+   *
+   * @param destinationUuid the account for which to delete messages
+   * @param destinationDeviceId the device for which to delete messages
+   * @param serverTimestampsByGuid a map of message GUIDs to server timestamps for the messages to delete
+   *
+   * @return a future that completes when all messages have been deleted
+   */
+  public CompletableFuture<Void> delete(final UUID destinationUuid, final long destinationDeviceId,
+      final Map<UUID, Long> serverTimestampsByGuid) {
+
+    if (serverTimestampsByGuid.isEmpty()) {
+      return CompletableFuture.completedFuture(null);
+    }
+
+    return messagesCache.remove(destinationUuid, destinationDeviceId, List.copyOf(serverTimestampsByGuid.keySet()))
+        .thenComposeAsync(removed -> {
+          final Map<UUID, Long> uncachedServerTimestampsByGuid = new HashMap<>(serverTimestampsByGuid);
+          removed.forEach(envelope -> uncachedServerTimestampsByGuid.remove(UUID.fromString(envelope.getServerGuid())));
+
+          cacheHitByGuidMeter.mark(serverTimestampsByGuid.size() - uncachedServerTimestampsByGuid.size());
+
+          if (uncachedServerTimestampsByGuid.isEmpty()) {
+            return CompletableFuture.completedFuture(null);
+          }
+
+          cacheMissByGuidMeter.mark(uncachedServerTimestampsByGuid.size());
+
+          return messagesDynamoDb.deleteMessages(destinationUuid, destinationDeviceId, uncachedServerTimestampsByGuid);
+        }, messageDeletionExecutor);
+  }
+
+  /**
+   * Stores the given messages in DynamoDB, then removes them from the cache.
+   *
+   * @return a future that yields the number of messages successfully removed from the cache
    */
-  public int persistMessages(
+  public CompletableFuture<Integer> persistMessages(
       final UUID destinationUuid,
       final long destinationDeviceId,
       final List<Envelope> messages) {
@@ -147,20 +209,19 @@ public class MessagesManager {
         .filter(envelope -> !envelope.getEphemeral())
         .collect(Collectors.toList());
 
-    messagesDynamoDb.store(nonEphemeralMessages, destinationUuid, destinationDeviceId);
-
     final List<UUID> messageGuids = messages.stream().map(message -> UUID.fromString(message.getServerGuid()))
         .collect(Collectors.toList());
-    int messagesRemovedFromCache = 0;
-    try {
-      messagesRemovedFromCache = messagesCache.remove(destinationUuid, destinationDeviceId, messageGuids)
-          .get(30, TimeUnit.SECONDS).size();
-      persistMessageMeter.mark(nonEphemeralMessages.size());
-
-    } catch (InterruptedException | ExecutionException | TimeoutException e) {
-      logger.warn("Failed to remove messages from cache", e);
-    }
-    return messagesRemovedFromCache;
+
+    return messagesDynamoDb.storeAsync(nonEphemeralMessages, destinationUuid, destinationDeviceId)
+        .thenCompose(ignored -> messagesCache.remove(destinationUuid, destinationDeviceId, messageGuids)
+            .thenApply(removedMessages -> {
+              persistMessageMeter.mark(nonEphemeralMessages.size());
+              return removedMessages.size();
+            })
+            .exceptionally(throwable -> {
+              logger.warn("Failed to remove messages from cache", throwable);
+              return 0;
+            }));
   }
 
   public void addMessageAvailabilityListener(
@@ -12,28 +12,46 @@ import java.io.IOException;
 import java.util.Optional;
 import java.util.UUID;
 import java.util.concurrent.CompletableFuture;
+import java.util.function.Supplier;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.whispersystems.textsecuregcm.redis.ClusterClientSideCache;
 import org.whispersystems.textsecuregcm.redis.FaultTolerantRedisCluster;
 import org.whispersystems.textsecuregcm.util.SystemMapper;
-import org.whispersystems.textsecuregcm.util.Util;
 import javax.annotation.Nullable;
 
 public class ProfilesManager {
 
   private final Logger logger = LoggerFactory.getLogger(ProfilesManager.class);
 
-  private static final String CACHE_PREFIX = "profiles::";
+  public static final String CACHE_PREFIX = "profiles::";
 
   private final Profiles profiles;
   private final FaultTolerantRedisCluster cacheCluster;
+  @Nullable
+  private final ClusterClientSideCache clientSideCache;
   private final ObjectMapper mapper;
 
 
   public ProfilesManager(final Profiles profiles,
       final FaultTolerantRedisCluster cacheCluster) {
+    this(profiles, cacheCluster, null);
+  }
+
+  /**
+   * Constructs a new profiles manager.
+   *
+   * @param profiles the persistent profile store
+   * @param cacheCluster the cluster in which profiles are cached
+   * @param clientSideCache an optional local cache of profiles read from the cache cluster; must track keys with
+   * {@link #CACHE_PREFIX}
+   */
+  public ProfilesManager(final Profiles profiles,
+      final FaultTolerantRedisCluster cacheCluster,
+      @Nullable final ClusterClientSideCache clientSideCache) {
     this.profiles = profiles;
     this.cacheCluster = cacheCluster;
+    this.clientSideCache = clientSideCache;
     this.mapper = SystemMapper.jsonMapper();
   }
 
@@ -77,6 +95,7 @@ public class ProfilesManager {
       final String profileJson = mapper.writeValueAsString(profile);
 
       cacheCluster.useCluster(connection -> connection.sync().hset(getCacheKey(uuid), profile.version(), profileJson));
+      invalidateClientSideCache(uuid);
     } catch (JsonProcessingException e) {
       throw new IllegalArgumentException(e);
     }
@@ -93,13 +112,19 @@ public class ProfilesManager {
 
     return cacheCluster.withCluster(connection ->
         connection.async().hset(getCacheKey(uuid), profile.version(), profileJson))
-            .thenRun(Util.NOOP)
+            .thenRun(() -> invalidateClientSideCache(uuid))
             .toCompletableFuture();
   }
 
   private Optional<VersionedProfile> redisGet(UUID uuid, String version) {
     try {
-      @Nullable final String json = cacheCluster.withCluster(connection -> connection.sync().hget(getCacheKey(uuid), version));
+      final String cacheKey = getCacheKey(uuid);
+      final Supplier<String> loader =
+          () -> cacheCluster.withCluster(connection -> connection.sync().hget(cacheKey, version));
+
+      @Nullable final String json = clientSideCache != null
+          ? clientSideCache.get(cacheKey, version, loader)
+          : loader.get();
 
       return parseProfileJson(json);
     } catch (RedisException e) {
@@ -109,8 +134,11 @@ public class ProfilesManager {
   }
 
   private CompletableFuture<Optional<VersionedProfile>> redisGetAsync(UUID uuid, String version) {
-    return cacheCluster.withCluster(connection ->
-        connection.async().hget(getCacheKey(uuid), version))
+    final String cacheKey = getCacheKey(uuid);
+    final Supplier<CompletableFuture<String>> loader = () -> cacheCluster.withCluster(connection ->
+        connection.async().hget(cacheKey, version)).toCompletableFuture();
+
+    return (clientSideCache != null ? clientSideCache.getAsync(cacheKey, version, loader) : loader.get())
         .thenApply(this::parseProfileJson)
         .exceptionally(throwable -> {
           logger.warn("Failed to read versioned profile from Redis", throwable);
@@ -134,7 +162,14 @@ public class ProfilesManager {
   private CompletableFuture<Void> redisDelete(UUID uuid) {
     return cacheCluster.withCluster(connection -> connection.async().del(getCacheKey(uuid)))
         .toCompletableFuture()
-        .thenRun(Util.NOOP);
+        .thenRun(() -> invalidateClientSideCache(uuid));
+  }
+
+  private void invalidateClientSideCache(final UUID uuid) {
+    // Don't wait for Redis to tell us about our own writes
+    if (clientSideCache != null) {
+      clientSideCache.invalidate(getCacheKey(uuid));
+    }
   }
 
   private String getCacheKey(UUID uuid) {
@@ -6,20 +6,21 @@ import org.whispersystems.textsecuregcm.util.AttributeValues;
 import software.amazon.awssdk.services.dynamodb.DynamoDbClient;
 import software.amazon.awssdk.services.dynamodb.model.DeleteItemRequest;
 import software.amazon.awssdk.services.dynamodb.model.DeleteItemResponse;
-import software.amazon.awssdk.services.dynamodb.model.PutItemRequest;
+import software.amazon.awssdk.services.dynamodb.model.PutRequest;
 import software.amazon.awssdk.services.dynamodb.model.ReturnValue;
+import software.amazon.awssdk.services.dynamodb.model.WriteRequest;
 import java.time.Duration;
 import java.time.Instant;
+import java.util.Collection;
 import java.util.Map;
 
 import static org.whispersystems.textsecuregcm.metrics.MetricsUtil.name;
 
-public class ReportMessageDynamoDb {
+public class ReportMessageDynamoDb extends AbstractDynamoDbStore {
 
   static final String KEY_HASH = "H";
   static final String ATTR_TTL = "E";
 
-  private final DynamoDbClient db;
   private final String tableName;
   private final Duration ttl;
 
@@ -31,23 +32,33 @@ public class ReportMessageDynamoDb {
       .register(Metrics.globalRegistry);
 
   public ReportMessageDynamoDb(final DynamoDbClient dynamoDB, final String tableName, final Duration ttl) {
-    this.db = dynamoDB;
+    super(dynamoDB);
+
     this.tableName = tableName;
     this.ttl = ttl;
   }
 
-  public void store(byte[] hash) {
-    db.putItem(PutItemRequest.builder()
-        .tableName(tableName)
-        .item(Map.of(
-            KEY_HASH, AttributeValues.fromByteArray(hash),
-            ATTR_TTL, AttributeValues.fromLong(Instant.now().plus(ttl).getEpochSecond())
-        ))
-        .build());
+  /**
+   * Stores the given report hashes, issuing at most one batch write per {@link #DYNAMO_DB_MAX_BATCH_SIZE} hashes.
+   *
+   * @param hashes the hashes to store; must not contain duplicates
+   */
+  public void store(final Collection<byte[]> hashes) {
+    final long expiration = Instant.now().plus(ttl).getEpochSecond();
+
+    writeInBatches(hashes, batch -> executeTableWriteItemsUntilComplete(Map.of(tableName, batch.stream()
+        .map(hash -> WriteRequest.builder()
+            .putRequest(PutRequest.builder()
+                .item(Map.of(
+                    KEY_HASH, AttributeValues.fromByteArray(hash),
+                    ATTR_TTL, AttributeValues.fromLong(expiration)))
+                .build())
+            .build())
+        .toList())));
   }
 
   public boolean remove(byte[] hash) {
-    final DeleteItemResponse deleteItemResponse = db.deleteItem(DeleteItemRequest.builder()
+    final DeleteItemResponse deleteItemResponse = db().deleteItem(DeleteItemRequest.builder()
         .tableName(tableName)
         .key(Map.of(KEY_HASH, AttributeValues.fromByteArray(hash)))
         .returnValues(ReturnValue.ALL_OLD)
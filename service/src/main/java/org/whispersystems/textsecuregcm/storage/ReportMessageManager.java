@@ -5,6 +5,8 @@
 
 package org.whispersystems.textsecuregcm.storage;
 
+import com.google.common.annotations.VisibleForTesting;
+import io.dropwizard.lifecycle.Managed;
 import io.lettuce.core.RedisException;
 import java.nio.charset.StandardCharsets;
 import java.security.MessageDigest;
@@ -14,7 +16,13 @@ import java.util.ArrayList;
 import java.util.List;
 import java.util.Objects;
 import java.util.Optional;
+import java.util.Set;
 import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import io.micrometer.core.instrument.Counter;
 import io.micrometer.core.instrument.Metrics;
 import io.micrometer.core.instrument.Tags;
 import org.slf4j.Logger;
@@ -24,7 +32,12 @@ import org.whispersystems.textsecuregcm.metrics.UserAgentTagUtil;
 import org.whispersystems.textsecuregcm.redis.FaultTolerantRedisCluster;
 import org.whispersystems.textsecuregcm.util.UUIDUtil;
 
-public class ReportMessageManager {
+/**
+ * Stores and resolves message reports. Report hashes for newly-sent messages are stored in a write-behind fashion: they
+ * are queued by the message-sending path, then hashed and written to DynamoDB in batches by a dedicated writer thread.
+ * Hashes that have been queued but not yet written are still visible to {@link #report}.
+ */
+public class ReportMessageManager implements Managed {
 
   private final ReportMessageDynamoDb reportMessageDynamoDb;
   private final FaultTolerantRedisCluster rateLimitCluster;
@@ -33,37 +46,156 @@ public class ReportMessageManager {
 
   private final List<ReportedMessageListener> reportedMessageListeners = new ArrayList<>();
 
+  private final BlockingQueue<PendingReportHash> pendingReportHashQueue;
+
+  // Report hashes that have been queued, but not yet written (or are being written) to DynamoDB
+  private final Set<PendingReportHash> pendingReportHashes = ConcurrentHashMap.newKeySet();
+
+  private final Thread writerThread;
+  private volatile boolean running;
+
+  @VisibleForTesting
+  static final int MAX_PENDING_REPORT_HASHES = 10_000;
+
+  private static final long WRITER_POLL_TIMEOUT_MILLIS = 100;
+
   private static final String REPORT_MESSAGE_COUNTER_NAME = MetricsUtil.name(ReportMessageManager.class, "reportMessage");
   private static final String FOUND_MESSAGE_TAG = "foundMessage";
   private static final String TOKEN_PRESENT_TAG = "hasReportSpamToken";
 
+  private static final Counter DROPPED_REPORT_HASH_COUNTER =
+      Metrics.counter(MetricsUtil.name(ReportMessageManager.class, "droppedReportHash"));
+  private static final Counter STORE_REPORT_HASH_FAILURE_COUNTER =
+      Metrics.counter(MetricsUtil.name(ReportMessageManager.class, "storeReportHashFailure"));
+  private static final Counter FOUND_PENDING_REPORT_HASH_COUNTER =
+      Metrics.counter(MetricsUtil.name(ReportMessageManager.class, "foundPendingReportHash"));
+
   private static final Logger logger = LoggerFactory.getLogger(ReportMessageManager.class);
 
+  private record PendingReportHash(UUID messageGuid, String sourceAci) {
+  }
+
   public ReportMessageManager(final ReportMessageDynamoDb reportMessageDynamoDb,
       final FaultTolerantRedisCluster rateLimitCluster,
       final Duration counterTtl) {
 
+    this(reportMessageDynamoDb, rateLimitCluster, counterTtl, MAX_PENDING_REPORT_HASHES);
+  }
+
+  @VisibleForTesting
+  ReportMessageManager(final ReportMessageDynamoDb reportMessageDynamoDb,
+      final FaultTolerantRedisCluster rateLimitCluster,
+      final Duration counterTtl,
+      final int maxPendingReportHashes) {
+
     this.reportMessageDynamoDb = reportMessageDynamoDb;
     this.rateLimitCluster = rateLimitCluster;
 
     this.counterTtl = counterTtl;
+
+    this.pendingReportHashQueue = new ArrayBlockingQueue<>(maxPendingReportHashes);
+    this.writerThread = new Thread(() -> {
+      while (running || !pendingReportHashQueue.isEmpty()) {
+        try {
+          writeNextBatch(WRITER_POLL_TIMEOUT_MILLIS);
+        } catch (final InterruptedException e) {
+          // Check whether we should still be running and continue
+        } catch (final Exception e) {
+          logger.warn("Unexpected error writing report hashes", e);
+        }
+      }
+    }, "ReportMessageHashWriter");
+
+    Metrics.gauge(MetricsUtil.name(ReportMessageManager.class, "pendingReportHashes"), pendingReportHashQueue,
+        BlockingQueue::size);
+  }
+
+  @Override
+  public void start() {
+    running = true;
+    writerThread.start();
+  }
+
+  @Override
+  public void stop() {
+    // The writer drains any hashes that are still queued before exiting
+    running = false;
+
+    try {
+      writerThread.join();
+    } catch (final InterruptedException e) {
+      logger.warn("Interrupted while waiting for report hash writer to finish");
+    }
   }
 
   public void addListener(final ReportedMessageListener listener) {
     this.reportedMessageListeners.add(listener);
   }
 
+  /**
+   * Queues a report hash for the given message to be stored. This method never blocks; if too many hashes are already
+   * waiting to be written, the new hash is dropped.
+   */
   public void store(String sourceAci, UUID messageGuid) {
 
     try {
       Objects.requireNonNull(sourceAci);
 
-      reportMessageDynamoDb.store(hash(messageGuid, sourceAci));
+      final PendingReportHash pendingReportHash = new PendingReportHash(messageGuid, sourceAci);
+
+      // Register the hash before queueing it so the writer never sees a queued hash that isn't registered
+      pendingReportHashes.add(pendingReportHash);
+
+      if (!pendingReportHashQueue.offer(pendingReportHash)) {
+        pendingReportHashes.remove(pendingReportHash);
+        DROPPED_REPORT_HASH_COUNTER.increment();
+      }
     } catch (final Exception e) {
       logger.warn("Failed to store hash", e);
     }
   }
 
+  /**
+   * Waits up to the given timeout for at least one queued report hash, then hashes and writes up to
+   * {@link AbstractDynamoDbStore#DYNAMO_DB_MAX_BATCH_SIZE} queued hashes in a single batch.
+   *
+   * @return the number of hashes taken from the queue
+   */
+  @VisibleForTesting
+  int writeNextBatch(final long timeoutMillis) throws InterruptedException {
+    final PendingReportHash first = pendingReportHashQueue.poll(timeoutMillis, TimeUnit.MILLISECONDS);
+
+    if (first == null) {
+      return 0;
+    }
+
+    final List<PendingReportHash> batch = new ArrayList<>(AbstractDynamoDbStore.DYNAMO_DB_MAX_BATCH_SIZE);
+    batch.add(first);
+    pendingReportHashQueue.drainTo(batch, AbstractDynamoDbStore.DYNAMO_DB_MAX_BATCH_SIZE - 1);
+
+    try {
+      reportMessageDynamoDb.store(batch.stream()
+          .map(pendingReportHash -> hash(pendingReportHash.messageGuid(), pendingReportHash.sourceAci()))
+          .toList());
+    } catch (final Exception e) {
+      logger.warn("Failed to store hashes", e);
+      STORE_REPORT_HASH_FAILURE_COUNTER.increment(batch.size());
+    }
+
+    for (final PendingReportHash pendingReportHash : batch) {
+      if (!pendingReportHashes.remove(pendingReportHash)) {
+        // The message was reported while its hash was being written; make sure the report can't be counted twice
+        try {
+          reportMessageDynamoDb.remove(hash(pendingReportHash.messageGuid(), pendingReportHash.sourceAci()));
+        } catch (final Exception e) {
+          logger.warn("Failed to remove reported hash", e);
+        }
+      }
+    }
+
+    return batch.size();
+  }
+
   public void report(final Optional<String> sourceNumber,
       final Optional<UUID> sourceAci,
       final Optional<UUID> sourcePni,
@@ -72,7 +204,14 @@ public class ReportMessageManager {
       final Optional<byte[]> reportSpamToken,
       final String reporterUserAgent) {
 
-    final boolean found = sourceAci.map(uuid -> reportMessageDynamoDb.remove(hash(messageGuid, uuid.toString())))
+    final boolean found = sourceAci.map(uuid -> {
+          if (pendingReportHashes.remove(new PendingReportHash(messageGuid, uuid.toString()))) {
+            FOUND_PENDING_REPORT_HASH_COUNTER.increment();
+            return true;
+          }
+
+          return reportMessageDynamoDb.remove(hash(messageGuid, uuid.toString()));
+        })
         .orElse(false);
 
     Metrics.counter(REPORT_MESSAGE_COUNTER_NAME,
@@ -6,13 +6,13 @@
 package org.whispersystems.textsecuregcm.storage;
 
 import static org.whispersystems.textsecuregcm.metrics.MetricsUtil.name;
-import static org.whispersystems.textsecuregcm.storage.AbstractDynamoDbStore.DYNAMO_DB_MAX_BATCH_SIZE;
 
 import io.micrometer.core.instrument.DistributionSummary;
 import io.micrometer.core.instrument.Metrics;
 import io.micrometer.core.instrument.Timer;
 import java.nio.ByteBuffer;
 import java.time.Duration;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
@@ -21,18 +21,19 @@ import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.atomic.AtomicInteger;
 import org.whispersystems.textsecuregcm.entities.PreKey;
 import org.whispersystems.textsecuregcm.util.AttributeValues;
-import org.whispersystems.textsecuregcm.util.Util;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 import software.amazon.awssdk.services.dynamodb.DynamoDbAsyncClient;
 import software.amazon.awssdk.services.dynamodb.model.AttributeValue;
 import software.amazon.awssdk.services.dynamodb.model.DeleteItemRequest;
 import software.amazon.awssdk.services.dynamodb.model.DeleteItemResponse;
-import software.amazon.awssdk.services.dynamodb.model.PutItemRequest;
+import software.amazon.awssdk.services.dynamodb.model.DeleteRequest;
+import software.amazon.awssdk.services.dynamodb.model.PutRequest;
 import software.amazon.awssdk.services.dynamodb.model.QueryRequest;
 import software.amazon.awssdk.services.dynamodb.model.QueryResponse;
 import software.amazon.awssdk.services.dynamodb.model.ReturnValue;
 import software.amazon.awssdk.services.dynamodb.model.Select;
+import software.amazon.awssdk.services.dynamodb.model.WriteRequest;
 
 /**
  * A single-use pre-key store stores single-use pre-keys of a specific type. Keys returned by a single-use pre-key
@@ -49,7 +50,6 @@ public abstract class SingleUsePreKeyStore<K extends PreKey<?>> {
   private final DynamoDbAsyncClient dynamoDbAsyncClient;
   private final String tableName;
 
-  private final Timer storeKeyTimer = Metrics.timer(name(getClass(), "storeKey"));
   private final Timer storeKeyBatchTimer = Metrics.timer(name(getClass(), "storeKeyBatch"));
   private final Timer getKeyCountTimer = Metrics.timer(name(getClass(), "getCount"));
   private final Timer deleteForDeviceTimer = Metrics.timer(name(getClass(), "deleteForDevice"));
@@ -70,6 +70,8 @@ public abstract class SingleUsePreKeyStore<K extends PreKey<?>> {
   private final String takeKeyTimerName = name(getClass(), "takeKey");
   private static final String KEY_PRESENT_TAG_NAME = "keyPresent";
 
+  private static final int MAX_CONCURRENT_BATCH_WRITES = 8;
+
   static final String KEY_ACCOUNT_UUID = "U";
   static final String KEY_DEVICE_ID_KEY_ID = "DK";
   static final String ATTR_PUBLIC_KEY = "P";
@@ -94,25 +96,21 @@ public abstract class SingleUsePreKeyStore<K extends PreKey<?>> {
   public CompletableFuture<Void> store(final UUID identifier, final long deviceId, final List<K> preKeys) {
     final Timer.Sample sample = Timer.start();
 
-    return Mono.fromFuture(() -> delete(identifier, deviceId))
-        .thenMany(
-            Flux.fromIterable(preKeys)
-                .flatMap(preKey -> Mono.fromFuture(() -> store(identifier, deviceId, preKey)), DYNAMO_DB_MAX_BATCH_SIZE))
-        .then()
-        .toFuture()
+    // A batch write can't include more than one request for the same item, so keep only the last key with each ID, just
+    // as if the keys had been written one at a time
+    final Map<Long, K> preKeysById = new LinkedHashMap<>(preKeys.size());
+    preKeys.forEach(preKey -> preKeysById.put(preKey.keyId(), preKey));
+
+    return delete(identifier, deviceId)
+        .thenCompose(ignored -> writeInBatches(Flux.fromIterable(preKeysById.values())
+            .map(preKey -> WriteRequest.builder()
+                .putRequest(PutRequest.builder()
+                    .item(getItemFromPreKey(identifier, deviceId, preKey))
+                    .build())
+                .build())))
         .thenRun(() -> sample.stop(storeKeyBatchTimer));
   }
 
-  private CompletableFuture<Void> store(final UUID identifier, final long deviceId, final K preKey) {
-    final Timer.Sample sample = Timer.start();
-
-    return dynamoDbAsyncClient.putItem(PutItemRequest.builder()
-            .tableName(tableName)
-            .item(getItemFromPreKey(identifier, deviceId, preKey))
-            .build())
-        .thenRun(() -> sample.stop(storeKeyTimer));
-  }
-
   /**
    * Attempts to retrieve a single-use pre-key for a specific device. Keys may only be returned by this method at most
    * once; once the key is returned, it is removed from the key store and subsequent calls to this method will never
@@ -248,19 +246,19 @@ public abstract class SingleUsePreKeyStore<K extends PreKey<?>> {
   }
 
   private CompletableFuture<Void> deleteItems(final AttributeValue partitionKey, final Flux<Map<String, AttributeValue>> items) {
-    return items
-        .map(item -> DeleteItemRequest.builder()
-            .tableName(tableName)
-            .key(Map.of(
-                KEY_ACCOUNT_UUID, partitionKey,
-                KEY_DEVICE_ID_KEY_ID, item.get(KEY_DEVICE_ID_KEY_ID)
-            ))
-            .build())
-        .flatMap(deleteItemRequest -> Mono.fromFuture(() -> dynamoDbAsyncClient.deleteItem(deleteItemRequest)), DYNAMO_DB_MAX_BATCH_SIZE)
-        // Idiom: wait for everything to finish, but discard the results
-        .reduce(0, (a, b) -> 0)
-        .toFuture()
-        .thenRun(Util.NOOP);
+    return writeInBatches(items
+        .map(item -> WriteRequest.builder()
+            .deleteRequest(DeleteRequest.builder()
+                .key(Map.of(
+                    KEY_ACCOUNT_UUID, partitionKey,
+                    KEY_DEVICE_ID_KEY_ID, item.get(KEY_DEVICE_ID_KEY_ID)))
+                .build())
+            .build()));
+  }
+
+  private CompletableFuture<Void> writeInBatches(final Flux<WriteRequest> writeRequests) {
+    return AbstractDynamoDbStore.writeInBatchesAsync(dynamoDbAsyncClient, tableName, writeRequests,
+        MAX_CONCURRENT_BATCH_WRITES);
   }
 
   protected static AttributeValue getPartitionKey(final UUID accountUuid) {
@@ -24,19 +24,20 @@ public class CircuitBreakerUtil {
   private static final String OUTCOME_TAG_NAME = "outcome";
 
   public static void registerMetrics(CircuitBreaker circuitBreaker, Class<?> clazz) {
+    registerMetrics(circuitBreaker, clazz, Tags.empty());
+  }
+
+  public static void registerMetrics(CircuitBreaker circuitBreaker, Class<?> clazz, Tags additionalTags) {
     final String breakerName = clazz.getSimpleName() + "/" + circuitBreaker.getName();
 
     final Counter successCounter = Metrics.counter(CIRCUIT_BREAKER_CALL_COUNTER_NAME,
-        NAME_TAG_NAME, breakerName,
-        OUTCOME_TAG_NAME, "success");
+        additionalTags.and(NAME_TAG_NAME, breakerName, OUTCOME_TAG_NAME, "success"));
 
     final Counter failureCounter = Metrics.counter(CIRCUIT_BREAKER_CALL_COUNTER_NAME,
-        NAME_TAG_NAME, breakerName,
-        OUTCOME_TAG_NAME, "failure");
+        additionalTags.and(NAME_TAG_NAME, breakerName, OUTCOME_TAG_NAME, "failure"));
 
     final Counter unpermittedCounter = Metrics.counter(CIRCUIT_BREAKER_CALL_COUNTER_NAME,
-        NAME_TAG_NAME, breakerName,
-        OUTCOME_TAG_NAME, "unpermitted");
+        additionalTags.and(NAME_TAG_NAME, breakerName, OUTCOME_TAG_NAME, "unpermitted"));
 
     circuitBreaker.getEventPublisher().onSuccess(event -> {
       successCounter.increment();
@@ -51,7 +52,7 @@ public class CircuitBreakerUtil {
     });
 
     Metrics.gauge(CIRCUIT_BREAKER_STATE_GAUGE_NAME,
-        Tags.of(Tag.of(NAME_TAG_NAME, circuitBreaker.getName())),
+        additionalTags.and(Tag.of(NAME_TAG_NAME, circuitBreaker.getName())),
         circuitBreaker, breaker -> breaker.getState().getOrder());
   }
 
@@ -5,9 +5,12 @@
 
 package org.whispersystems.textsecuregcm.util.ua;
 
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
 import com.google.common.annotations.VisibleForTesting;
 import com.vdurmont.semver4j.Semver;
 import io.grpc.Context;
+import java.util.Optional;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 import org.apache.commons.lang3.StringUtils;
@@ -18,22 +21,33 @@ public class UserAgentUtil {
 
   private static final Pattern STANDARD_UA_PATTERN = Pattern.compile("^Signal-(Android|Desktop|iOS)/([^ ]+)( (.+))?$", Pattern.CASE_INSENSITIVE);
 
+  // Clients send a small number of distinct User-Agent strings, and the same string may be parsed several times while
+  // handling a single request, so parsed results are cached by raw header value. Unusually long strings aren't cached
+  // so hostile clients can't use the cache to pin large amounts of memory.
+  private static final int MAX_CACHED_USER_AGENT_LENGTH = 256;
+
+  private static final Cache<String, Optional<UserAgent>> PARSED_USER_AGENTS = Caffeine.newBuilder()
+      .maximumSize(10_000)
+      .build();
+
   public static UserAgent parseUserAgentString(final String userAgentString) throws UnrecognizedUserAgentException {
     if (StringUtils.isBlank(userAgentString)) {
       throw new UnrecognizedUserAgentException("User-Agent string is blank");
     }
 
-    try {
-      final UserAgent standardUserAgent = parseStandardUserAgentString(userAgentString);
+    final Optional<UserAgent> maybeUserAgent = userAgentString.length() <= MAX_CACHED_USER_AGENT_LENGTH
+        ? PARSED_USER_AGENTS.get(userAgentString, UserAgentUtil::parseUserAgentStringUncached)
+        : parseUserAgentStringUncached(userAgentString);
 
-      if (standardUserAgent != null) {
-        return standardUserAgent;
-      }
+    return maybeUserAgent.orElseThrow(UnrecognizedUserAgentException::new);
+  }
+
+  private static Optional<UserAgent> parseUserAgentStringUncached(final String userAgentString) {
+    try {
+      return Optional.ofNullable(parseStandardUserAgentString(userAgentString));
     } catch (final Exception e) {
-      throw new UnrecognizedUserAgentException(e);
+      return Optional.empty();
     }
-
-    throw new UnrecognizedUserAgentException();
   }
 
   public static UserAgent userAgentFromGrpcContext() {
@@ -0,0 +1,123 @@
+/*
+ * Copyright 2023 Signal Messenger, LLC
+ * SPDX-License-Identifier: AGPL-3.0-only
+ */
+
+package org.whispersystems.textsecuregcm.websocket;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Metrics;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import org.whispersystems.textsecuregcm.auth.AuthenticatedAccount;
+import org.whispersystems.textsecuregcm.metrics.MetricsUtil;
+import org.whispersystems.textsecuregcm.storage.Device;
+import org.whispersystems.textsecuregcm.storage.MessagesManager;
+
+/**
+ * Collects acknowledged messages for a single device and deletes them in batches. A batch is deleted when it reaches a
+ * maximum size or when a short window has elapsed since the first message in the batch was acknowledged, whichever
+ * comes first.
+ */
+class MessageAcknowledgementBatcher {
+
+  private final MessagesManager messagesManager;
+  private final AuthenticatedAccount auth;
+  private final Device device;
+  private final int maxBatchSize;
+  private final Executor delayedFlushExecutor;
+
+  private Map<UUID, Long> pendingServerTimestampsByGuid = new HashMap<>();
+  private CompletableFuture<Void> pendingBatchFuture = new CompletableFuture<>();
+
+  private static final DistributionSummary BATCH_SIZE_DISTRIBUTION_SUMMARY =
+      Metrics.summary(MetricsUtil.name(MessageAcknowledgementBatcher.class, "batchSize"));
+
+  /**
+   * @param messagesManager the messages manager through which to delete acknowledged messages
+   * @param auth the authenticated account whose messages are acknowledged
+   * @param device the device whose messages are acknowledged
+   * @param maxBatchSize the number of pending acknowledgements at which a batch is deleted immediately
+   * @param delayedFlushExecutor an executor that runs tasks after the batching window has elapsed
+   */
+  MessageAcknowledgementBatcher(final MessagesManager messagesManager,
+      final AuthenticatedAccount auth,
+      final Device device,
+      final int maxBatchSize,
+      final Executor delayedFlushExecutor) {
+
+    this.messagesManager = messagesManager;
+    this.auth = auth;
+    this.device = device;
+    this.maxBatchSize = maxBatchSize;
+    this.delayedFlushExecutor = delayedFlushExecutor;
+  }
+
+  /**
+   * Adds an acknowledged message to the current batch.
+   *
+   * @param guid the server-assigned GUID of the acknowledged message
+   * @param serverTimestamp the server timestamp of the acknowledged message
+   *
+   * @return a future that completes when the batch containing the acknowledged message has been deleted
+   */
+  CompletableFuture<Void> acknowledge(final UUID guid, final long serverTimestamp) {
+    final CompletableFuture<Void> batchFuture;
+    final boolean flushImmediately;
+    final boolean scheduleFlush;
+
+    synchronized (this) {
+      pendingServerTimestampsByGuid.put(guid, serverTimestamp);
+      batchFuture = pendingBatchFuture;
+
+      flushImmediately = pendingServerTimestampsByGuid.size() >= maxBatchSize;
+      scheduleFlush = !flushImmediately && pendingServerTimestampsByGuid.size() == 1;
+    }
+
+    if (flushImmediately) {
+      flush(batchFuture);
+    } else if (scheduleFlush) {
+      delayedFlushExecutor.execute(() -> flush(batchFuture));
+    }
+
+    return batchFuture;
+  }
+
+  /**
+   * Deletes the given batch if it is still pending; does nothing if the batch has already been deleted (i.e. because it
+   * reached its maximum size before its window elapsed).
+   */
+  private void flush(final CompletableFuture<Void> batchFuture) {
+    final Map<UUID, Long> batch;
+
+    synchronized (this) {
+      if (pendingBatchFuture != batchFuture) {
+        return;
+      }
+
+      batch = pendingServerTimestampsByGuid;
+
+      pendingServerTimestampsByGuid = new HashMap<>();
+      pendingBatchFuture = new CompletableFuture<>();
+    }
+
+    BATCH_SIZE_DISTRIBUTION_SUMMARY.record(batch.size());
+
+    try {
+      messagesManager.delete(auth.getAccount().getUuid(), device.getId(), batch)
+          .whenComplete((ignored, throwable) -> {
+            if (throwable != null) {
+              batchFuture.completeExceptionally(throwable);
+            } else {
+              batchFuture.complete(null);
+            }
+          });
+    } catch (final RuntimeException e) {
+      // Flushes may happen on a timer thread; make sure callers waiting on this batch always hear about the outcome
+      batchFuture.completeExceptionally(e);
+    }
+  }
+}
@@ -106,6 +106,14 @@ public class WebSocketConnection implements MessageAvailabilityListener, Displac
 
   private static final int DEFAULT_SEND_FUTURES_TIMEOUT_MILLIS = 5 * 60 * 1000;
 
+  // Acknowledged messages are deleted in batches of up to this many messages...
+  @VisibleForTesting
+  static final int MAX_ACKNOWLEDGEMENT_BATCH_SIZE = 100;
+
+  // ...or after this much time has passed since the first acknowledgement in a batch, whichever comes first
+  @VisibleForTesting
+  static final long ACKNOWLEDGEMENT_BATCH_WINDOW_MILLIS = 10;
+
   private static final Logger logger = LoggerFactory.getLogger(WebSocketConnection.class);
 
   private final ReceiptSender receiptSender;
@@ -134,6 +142,8 @@ public class WebSocketConnection implements MessageAvailabilityListener, Displac
 
   private final ClientReleaseManager clientReleaseManager;
 
+  private final MessageAcknowledgementBatcher acknowledgementBatcher;
+
   private enum StoredMessageState {
     EMPTY,
     CACHED_NEW_MESSAGES_AVAILABLE,
@@ -180,6 +190,11 @@ public class WebSocketConnection implements MessageAvailabilityListener, Displac
     this.scheduledExecutorService = scheduledExecutorService;
     this.messageDeliveryScheduler = messageDeliveryScheduler;
     this.clientReleaseManager = clientReleaseManager;
+    this.acknowledgementBatcher = new MessageAcknowledgementBatcher(messagesManager,
+        auth,
+        device,
+        MAX_ACKNOWLEDGEMENT_BATCH_SIZE,
+        CompletableFuture.delayedExecutor(ACKNOWLEDGEMENT_BATCH_WINDOW_MILLIS, TimeUnit.MILLISECONDS));
   }
 
   public void start() {
@@ -203,8 +218,7 @@ public class WebSocketConnection implements MessageAvailabilityListener, Displac
   }
 
   private CompletableFuture<Void> sendMessage(final Envelope message, StoredMessageInfo storedMessageInfo) {
-    // clear ephemeral field from the envelope
-    final Optional<byte[]> body = Optional.ofNullable(message.toBuilder().clearEphemeral().build().toByteArray());
+    final Optional<byte[]> body = Optional.of(serializeForDelivery(message));
 
     sendMessageMeter.mark();
     sentMessageCounter.increment();
@@ -224,9 +238,7 @@ public class WebSocketConnection implements MessageAvailabilityListener, Displac
           final CompletableFuture<Void> result;
           if (isSuccessResponse(response)) {
 
-            result = messagesManager.delete(auth.getAccount().getUuid(), device.getId(),
-                    storedMessageInfo.guid(), storedMessageInfo.serverTimestamp())
-                .thenApply(ignored -> null);
+            result = acknowledgementBatcher.acknowledge(storedMessageInfo.guid(), storedMessageInfo.serverTimestamp());
 
             if (message.getType() != Envelope.Type.SERVER_DELIVERY_RECEIPT) {
               recordMessageDeliveryDuration(message.getTimestamp(), device);
@@ -405,11 +417,22 @@ public class WebSocketConnection implements MessageAvailabilityListener, Displac
     Metrics.counter(SEND_MESSAGE_ERROR_COUNTER, tags).increment();
   }
 
+  /**
+   * Serializes an envelope for delivery to a client, omitting the server-internal ephemeral flag. The vast majority of
+   * envelopes never carry the flag, and those are serialized as-is rather than copied through a builder first.
+   */
+  @VisibleForTesting
+  static byte[] serializeForDelivery(final Envelope message) {
+    return message.hasEphemeral()
+        ? message.toBuilder().clearEphemeral().build().toByteArray()
+        : message.toByteArray();
+  }
+
   private CompletableFuture<Void> sendMessage(Envelope envelope) {
     final UUID messageGuid = UUID.fromString(envelope.getServerGuid());
 
     if (envelope.getStory() && !client.shouldDeliverStories()) {
-      messagesManager.delete(auth.getAccount().getUuid(), device.getId(), messageGuid, envelope.getServerTimestamp());
+      acknowledgementBatcher.acknowledge(messageGuid, envelope.getServerTimestamp());
 
       return CompletableFuture.completedFuture(null);
     } else {
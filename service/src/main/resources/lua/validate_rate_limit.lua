@@ -5,6 +5,9 @@
 -- and the deficit amount otherwise.
 -- However, 'check-only' operation doesn't modify the bucket, while 'use-if-available' (if successful)
 -- reduces the amount of available tokens by the requested amount.
+-- If a minimum amount is given, 'use-if-available' takes as many tokens as are available, up to the requested amount,
+-- as long as at least the minimum amount is available. In that case, the script returns the negated number of tokens
+-- taken if successful and the deficit relative to the minimum amount otherwise.
 
 local bucketId = KEYS[1]
 
@@ -13,6 +16,7 @@ local refillRatePerMillis = tonumber(ARGV[2])
 local currentTimeMillis = tonumber(ARGV[3])
 local requestedAmount = tonumber(ARGV[4])
 local useTokens = ARGV[5] and string.lower(ARGV[5]) == "true"
+local minimumAmount = tonumber(ARGV[6])
 
 local SIZE_FIELD = "s"
 local TIME_FIELD = "t"
@@ -36,6 +40,13 @@ local availableAmount = math.min(
     math.floor(tokensRemaining + (elapsedTime * refillRatePerMillis))
 )
 
+if minimumAmount and useTokens then
+    if availableAmount < minimumAmount then
+        return minimumAmount - availableAmount
+    end
+    requestedAmount = math.min(availableAmount, requestedAmount)
+end
+
 if availableAmount >= requestedAmount then
     if useTokens then
         tokensRemaining = availableAmount - requestedAmount
@@ -56,6 +67,9 @@ if availableAmount >= requestedAmount then
             redis.call("DEL", bucketId)
         end
     end
+    if minimumAmount and useTokens then
+        return -requestedAmount
+    end
     return 0
 else
     return requestedAmount - availableAmount
@@ -315,6 +315,46 @@ class BaseAccountAuthenticatorTest {
     verify(account).getDevice(deviceId + 1);
   }
 
+  @Test
+  void testAuthenticateChangedCredentials() {
+    final UUID uuid = UUID.randomUUID();
+    final long deviceId = 1;
+    final String password = "12345";
+
+    final Account account = mock(Account.class);
+    final Device device = mock(Device.class);
+
+    clock.unpin();
+    when(accountsManager.getByAccountIdentifier(uuid)).thenReturn(Optional.of(account));
+    when(account.getUuid()).thenReturn(uuid);
+    when(account.getDevice(deviceId)).thenReturn(Optional.of(device));
+    when(account.isEnabled()).thenReturn(true);
+    when(device.getId()).thenReturn(deviceId);
+    when(device.isEnabled()).thenReturn(true);
+    when(device.getAuthTokenHash()).thenReturn(SaltedTokenHash.generateFor(password));
+
+    final BasicCredentials basicCredentials = new BasicCredentials(uuid.toString(), password);
+
+    assertThat(baseAccountAuthenticator.authenticate(basicCredentials, true)).isPresent();
+    assertThat(baseAccountAuthenticator.authenticate(basicCredentials, true)).isPresent();
+
+    // Rotated credentials should be rejected immediately even though the old password was recently verified
+    when(device.getAuthTokenHash()).thenReturn(SaltedTokenHash.generateFor("new-password"));
+    assertThat(baseAccountAuthenticator.authenticate(basicCredentials, true)).isEmpty();
+
+    // ...and so should credentials for a device that has been removed
+    when(device.getAuthTokenHash()).thenReturn(SaltedTokenHash.generateFor(password));
+    assertThat(baseAccountAuthenticator.authenticate(basicCredentials, true)).isPresent();
+
+    when(account.getDevice(deviceId)).thenReturn(Optional.empty());
+    assertThat(baseAccountAuthenticator.authenticate(basicCredentials, true)).isEmpty();
+
+    // ...or an account that has been deleted
+    when(account.getDevice(deviceId)).thenReturn(Optional.of(device));
+    when(accountsManager.getByAccountIdentifier(uuid)).thenReturn(Optional.empty());
+    assertThat(baseAccountAuthenticator.authenticate(basicCredentials, true)).isEmpty();
+  }
+
   @Test
   void testAuthenticateIncorrectPassword() {
     final UUID uuid = UUID.randomUUID();
@@ -0,0 +1,81 @@
+/*
+ * Copyright 2023 Signal Messenger, LLC
+ * SPDX-License-Identifier: AGPL-3.0-only
+ */
+
+package org.whispersystems.textsecuregcm.auth;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.UUID;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+class VerifiedCredentialCacheTest {
+
+  private VerifiedCredentialCache verifiedCredentialCache;
+
+  private static final UUID ACCOUNT_IDENTIFIER = UUID.randomUUID();
+  private static final long DEVICE_ID = 1;
+  private static final String PASSWORD = "password";
+
+  @BeforeEach
+  void setUp() {
+    verifiedCredentialCache = new VerifiedCredentialCache();
+  }
+
+  @Test
+  void testVerifyCached() {
+    final SaltedTokenHash storedTokenHash = mock(SaltedTokenHash.class);
+    when(storedTokenHash.verify(PASSWORD)).thenReturn(true);
+
+    for (int i = 0; i < 3; i++) {
+      assertTrue(verifiedCredentialCache.verify(ACCOUNT_IDENTIFIER, DEVICE_ID, storedTokenHash, PASSWORD));
+    }
+
+    verify(storedTokenHash, times(1)).verify(PASSWORD);
+  }
+
+  @Test
+  void testVerifyIncorrectPassword() {
+    final SaltedTokenHash storedTokenHash = SaltedTokenHash.generateFor(PASSWORD);
+
+    assertTrue(verifiedCredentialCache.verify(ACCOUNT_IDENTIFIER, DEVICE_ID, storedTokenHash, PASSWORD));
+    assertFalse(verifiedCredentialCache.verify(ACCOUNT_IDENTIFIER, DEVICE_ID, storedTokenHash, PASSWORD + "nope"));
+  }
+
+  @Test
+  void testVerifyChangedCredentials() {
+    final SaltedTokenHash originalTokenHash = SaltedTokenHash.generateFor(PASSWORD);
+    assertTrue(verifiedCredentialCache.verify(ACCOUNT_IDENTIFIER, DEVICE_ID, originalTokenHash, PASSWORD));
+
+    final String newPassword = "new-password";
+    final SaltedTokenHash newTokenHash = SaltedTokenHash.generateFor(newPassword);
+
+    // The cached verification is for the old stored credentials and must not apply to the new ones
+    assertFalse(verifiedCredentialCache.verify(ACCOUNT_IDENTIFIER, DEVICE_ID, newTokenHash, PASSWORD));
+    assertTrue(verifiedCredentialCache.verify(ACCOUNT_IDENTIFIER, DEVICE_ID, newTokenHash, newPassword));
+
+    // Re-issuing the same password with a new salt should also require a full verification
+    final SaltedTokenHash reissuedTokenHash = SaltedTokenHash.generateFor(PASSWORD);
+    assertTrue(verifiedCredentialCache.verify(ACCOUNT_IDENTIFIER, DEVICE_ID, reissuedTokenHash, PASSWORD));
+    assertFalse(verifiedCredentialCache.verify(ACCOUNT_IDENTIFIER, DEVICE_ID, newTokenHash, PASSWORD));
+  }
+
+  @Test
+  void testVerifyDifferentDevice() {
+    final SaltedTokenHash storedTokenHash = mock(SaltedTokenHash.class);
+    when(storedTokenHash.verify(PASSWORD)).thenReturn(true);
+
+    assertTrue(verifiedCredentialCache.verify(ACCOUNT_IDENTIFIER, DEVICE_ID, storedTokenHash, PASSWORD));
+    assertTrue(verifiedCredentialCache.verify(ACCOUNT_IDENTIFIER, DEVICE_ID + 1, storedTokenHash, PASSWORD));
+    assertTrue(verifiedCredentialCache.verify(UUID.randomUUID(), DEVICE_ID, storedTokenHash, PASSWORD));
+
+    verify(storedTokenHash, times(3)).verify(PASSWORD);
+  }
+}
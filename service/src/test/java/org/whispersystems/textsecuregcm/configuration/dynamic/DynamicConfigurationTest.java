@@ -356,6 +356,10 @@ class DynamicConfigurationTest {
           DynamicConfigurationManager.parseConfiguration(emptyConfigYaml, DynamicConfiguration.class).orElseThrow();
 
       assertTrue(emptyConfig.getMessagePersisterConfiguration().isPersistenceEnabled());
+      assertEquals(8, emptyConfig.getMessagePersisterConfiguration().getQueuePersistenceConcurrency());
+      assertFalse(emptyConfig.getMessagePersisterConfiguration().isAdaptivePersistenceEnabled());
+      assertEquals(Duration.ofMinutes(1), emptyConfig.getMessagePersisterConfiguration().getMinPersistDelay());
+      assertEquals(32, emptyConfig.getMessagePersisterConfiguration().getMaxQueuePersistenceConcurrency());
     }
 
     {
@@ -384,6 +388,90 @@ class DynamicConfigurationTest {
 
       assertFalse(config.getMessagePersisterConfiguration().isPersistenceEnabled());
     }
+
+    {
+      final String messagePersisterConcurrencyYaml = REQUIRED_CONFIG.concat("""
+          messagePersister:
+            queuePersistenceConcurrency: 32
+          """);
+
+      final DynamicConfiguration config =
+          DynamicConfigurationManager.parseConfiguration(messagePersisterConcurrencyYaml, DynamicConfiguration.class)
+              .orElseThrow();
+
+      assertEquals(32, config.getMessagePersisterConfiguration().getQueuePersistenceConcurrency());
+    }
+
+    {
+      final String adaptivePersistenceYaml = REQUIRED_CONFIG.concat("""
+          messagePersister:
+            adaptivePersistenceEnabled: true
+            minPersistDelay: PT2M
+            maxQueuePersistenceConcurrency: 64
+            memoryPressureLowWatermark: 0.6
+            memoryPressureHighWatermark: 0.9
+            queueCountHighWatermark: 500000
+          """);
+
+      final DynamicMessagePersisterConfiguration config =
+          DynamicConfigurationManager.parseConfiguration(adaptivePersistenceYaml, DynamicConfiguration.class)
+              .orElseThrow()
+              .getMessagePersisterConfiguration();
+
+      assertTrue(config.isAdaptivePersistenceEnabled());
+      assertEquals(Duration.ofMinutes(2), config.getMinPersistDelay());
+      assertEquals(64, config.getMaxQueuePersistenceConcurrency());
+      assertEquals(0.6, config.getMemoryPressureLowWatermark());
+      assertEquals(0.9, config.getMemoryPressureHighWatermark());
+      assertEquals(500_000, config.getQueueCountHighWatermark());
+    }
+  }
+
+  @Test
+  void testParseMultiRecipientMessageConfiguration() throws JsonProcessingException {
+    {
+      final String emptyConfigYaml = REQUIRED_CONFIG.concat("test: true");
+      final DynamicConfiguration emptyConfig =
+          DynamicConfigurationManager.parseConfiguration(emptyConfigYaml, DynamicConfiguration.class).orElseThrow();
+
+      assertEquals(8, emptyConfig.getMultiRecipientMessageConfiguration().getMaxConcurrency());
+    }
+
+    {
+      final String multiRecipientMessageYaml = REQUIRED_CONFIG.concat("""
+          multiRecipientMessage:
+            maxConcurrency: 4
+          """);
+
+      final DynamicConfiguration config =
+          DynamicConfigurationManager.parseConfiguration(multiRecipientMessageYaml, DynamicConfiguration.class)
+              .orElseThrow();
+
+      assertEquals(4, config.getMultiRecipientMessageConfiguration().getMaxConcurrency());
+    }
+  }
+
+  @Test
+  void testParseAccountCacheConfiguration() throws JsonProcessingException {
+    {
+      final String emptyConfigYaml = REQUIRED_CONFIG.concat("test: true");
+      final DynamicConfiguration emptyConfig =
+          DynamicConfigurationManager.parseConfiguration(emptyConfigYaml, DynamicConfiguration.class).orElseThrow();
+
+      assertFalse(emptyConfig.getAccountCacheConfiguration().secondaryKeyCopiesEnabled());
+    }
+
+    {
+      final String accountCacheYaml = REQUIRED_CONFIG.concat("""
+          accountCache:
+            secondaryKeyCopiesEnabled: true
+          """);
+
+      final DynamicConfiguration config =
+          DynamicConfigurationManager.parseConfiguration(accountCacheYaml, DynamicConfiguration.class).orElseThrow();
+
+      assertTrue(config.getAccountCacheConfiguration().secondaryKeyCopiesEnabled());
+    }
   }
 
 }
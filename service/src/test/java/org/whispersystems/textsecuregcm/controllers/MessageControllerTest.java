@@ -17,6 +17,7 @@ import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.argThat;
 import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.anyBoolean;
+import static org.mockito.Mockito.anyInt;
 import static org.mockito.Mockito.anyString;
 import static org.mockito.Mockito.atLeastOnce;
 import static org.mockito.Mockito.doThrow;
@@ -36,11 +37,16 @@ import com.google.protobuf.ByteString;
 import io.dropwizard.auth.PolymorphicAuthValueFactoryProvider;
 import io.dropwizard.testing.junit5.DropwizardExtensionsSupport;
 import io.dropwizard.testing.junit5.ResourceExtension;
+import io.lettuce.core.RedisException;
+import io.lettuce.core.ScriptOutputType;
 import io.lettuce.core.cluster.api.sync.RedisAdvancedClusterCommands;
 import java.io.ByteArrayInputStream;
 import java.io.InputStream;
 import java.nio.ByteBuffer;
 import java.nio.ByteOrder;
+import java.time.Clock;
+import java.time.Duration;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Base64;
 import java.util.Collections;
@@ -48,11 +54,11 @@ import java.util.HashSet;
 import java.util.Iterator;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 import java.util.Random;
 import java.util.Set;
 import java.util.UUID;
-import java.util.concurrent.Callable;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.TimeUnit;
@@ -83,6 +89,8 @@ import org.whispersystems.textsecuregcm.auth.OptionalAccess;
 import org.whispersystems.textsecuregcm.auth.UnidentifiedAccessUtil;
 import org.whispersystems.textsecuregcm.configuration.dynamic.DynamicConfiguration;
 import org.whispersystems.textsecuregcm.configuration.dynamic.DynamicInboundMessageByteLimitConfiguration;
+import org.whispersystems.textsecuregcm.configuration.dynamic.DynamicMultiRecipientMessageConfiguration;
+import org.whispersystems.textsecuregcm.configuration.dynamic.DynamicRateLimitPolicy;
 import org.whispersystems.textsecuregcm.entities.AccountMismatchedDevices;
 import org.whispersystems.textsecuregcm.entities.AccountStaleDevices;
 import org.whispersystems.textsecuregcm.entities.ECSignedPreKey;
@@ -103,13 +111,16 @@ import org.whispersystems.textsecuregcm.identity.PniServiceIdentifier;
 import org.whispersystems.textsecuregcm.identity.ServiceIdentifier;
 import org.whispersystems.textsecuregcm.limits.CardinalityEstimator;
 import org.whispersystems.textsecuregcm.limits.RateLimiter;
+import org.whispersystems.textsecuregcm.limits.RateLimiterConfig;
 import org.whispersystems.textsecuregcm.limits.RateLimiters;
+import org.whispersystems.textsecuregcm.limits.StaticRateLimiter;
 import org.whispersystems.textsecuregcm.mappers.RateLimitExceededExceptionMapper;
 import org.whispersystems.textsecuregcm.providers.MultiRecipientMessageProvider;
 import org.whispersystems.textsecuregcm.push.MessageSender;
-import org.whispersystems.textsecuregcm.push.NotPushRegisteredException;
 import org.whispersystems.textsecuregcm.push.PushNotificationManager;
 import org.whispersystems.textsecuregcm.push.ReceiptSender;
+import org.whispersystems.textsecuregcm.redis.ClusterLuaScript;
+import org.whispersystems.textsecuregcm.redis.FaultTolerantRedisCluster;
 import org.whispersystems.textsecuregcm.spam.ReportSpamTokenProvider;
 import org.whispersystems.textsecuregcm.storage.Account;
 import org.whispersystems.textsecuregcm.storage.AccountsManager;
@@ -209,6 +220,7 @@ class MessageControllerTest {
     when(accountsManager.getByServiceIdentifier(new AciServiceIdentifier(MULTI_DEVICE_UUID))).thenReturn(Optional.of(multiDeviceAccount));
     when(accountsManager.getByServiceIdentifier(new PniServiceIdentifier(MULTI_DEVICE_PNI))).thenReturn(Optional.of(multiDeviceAccount));
     when(accountsManager.getByServiceIdentifier(new AciServiceIdentifier(INTERNATIONAL_UUID))).thenReturn(Optional.of(internationalAccount));
+    AccountsHelper.setupMockGetByServiceIdentifiers(accountsManager);
 
     final DynamicInboundMessageByteLimitConfiguration inboundMessageByteLimitConfiguration =
         mock(DynamicInboundMessageByteLimitConfiguration.class);
@@ -217,12 +229,18 @@ class MessageControllerTest {
 
     final DynamicConfiguration dynamicConfiguration = mock(DynamicConfiguration.class);
     when(dynamicConfiguration.getInboundMessageByteLimitConfiguration()).thenReturn(inboundMessageByteLimitConfiguration);
+    when(dynamicConfiguration.getMultiRecipientMessageConfiguration())
+        .thenReturn(new DynamicMultiRecipientMessageConfiguration());
 
     when(dynamicConfigurationManager.getConfiguration()).thenReturn(dynamicConfiguration);
 
     when(rateLimiters.getMessagesLimiter()).thenReturn(rateLimiter);
     when(rateLimiters.getStoriesLimiter()).thenReturn(rateLimiter);
     when(rateLimiters.getInboundMessageBytes()).thenReturn(rateLimiter);
+    when(rateLimiter.validateAsync(anyString(), anyInt())).thenReturn(CompletableFuture.completedFuture(null));
+
+    when(messageSender.sendMessagesAsync(any(), any(), anyBoolean(), any()))
+        .thenReturn(CompletableFuture.completedFuture(Collections.emptySet()));
   }
 
   private static Device generateTestDevice(final long id, final int registrationId, final int pniRegistrationId, final ECSignedPreKey signedPreKey, final long createdAt, final long lastSeen) {
@@ -287,12 +305,82 @@ class MessageControllerTest {
 
     assertThat("Good Response", response.getStatus(), is(equalTo(200)));
 
-    ArgumentCaptor<Envelope> captor = ArgumentCaptor.forClass(Envelope.class);
-    verify(messageSender, times(1)).sendMessage(any(Account.class), any(Device.class), captor.capture(), eq(false));
+    final Envelope envelope = verifySentEnvelopes(1).get(0);
+
+    assertTrue(envelope.hasSourceUuid());
+    assertTrue(envelope.hasSourceDevice());
+    assertTrue(envelope.getUrgent());
+  }
+
+  @Test
+  void testSingleDeviceInboundMessageBytesRateLimited() throws Exception {
+    when(dynamicConfigurationManager.getConfiguration().getInboundMessageByteLimitConfiguration().enforceInboundLimit())
+        .thenReturn(true);
+
+    final RateLimiter inboundMessageBytesLimiter = mock(RateLimiter.class);
+    when(rateLimiters.getInboundMessageBytes()).thenReturn(inboundMessageBytesLimiter);
+    doThrow(new RateLimitExceededException(Duration.ofSeconds(17), false))
+        .when(inboundMessageBytesLimiter).validate(any(UUID.class), anyInt());
+
+    Response response =
+        resources.getJerseyTest()
+            .target(String.format("/v1/messages/%s", SINGLE_DEVICE_UUID))
+            .request()
+            .header("Authorization", AuthHelper.getAuthHeader(AuthHelper.VALID_UUID, AuthHelper.VALID_PASSWORD))
+            .put(Entity.entity(SystemMapper.jsonMapper().readValue(jsonFixture("fixtures/current_message_single_device.json"),
+                    IncomingMessageList.class),
+                MediaType.APPLICATION_JSON_TYPE));
+
+    assertThat("Rate limited response", response.getStatus(), is(equalTo(429)));
+    assertEquals("17", response.getHeaderString("Retry-After"));
 
-    assertTrue(captor.getValue().hasSourceUuid());
-    assertTrue(captor.getValue().hasSourceDevice());
-    assertTrue(captor.getValue().getUrgent());
+    // A request rejected for its size shouldn't look up its destination or take permits from other rate limits
+    verify(accountsManager, never()).getByServiceIdentifier(any());
+    verify(rateLimiter, never()).validate(any(UUID.class), any(UUID.class));
+    verify(cardinalityEstimator).add(SINGLE_DEVICE_UUID.toString());
+    verifyNoMoreInteractions(messageSender);
+  }
+
+  @Test
+  void testSingleDeviceUnauthorizedCountsInboundMessageBytes() throws Exception {
+    final RateLimiter inboundMessageBytesLimiter = mock(RateLimiter.class);
+    when(rateLimiters.getInboundMessageBytes()).thenReturn(inboundMessageBytesLimiter);
+
+    Response response =
+        resources.getJerseyTest()
+            .target(String.format("/v1/messages/%s", SINGLE_DEVICE_UUID))
+            .request()
+            .header(OptionalAccess.UNIDENTIFIED, Base64.getEncoder().encodeToString("incorrect-key-000".getBytes()))
+            .put(Entity.entity(SystemMapper.jsonMapper().readValue(jsonFixture("fixtures/current_message_single_device.json"),
+                    IncomingMessageList.class),
+                MediaType.APPLICATION_JSON_TYPE));
+
+    assertThat("Unauthorized response", response.getStatus(), is(equalTo(401)));
+    verify(inboundMessageBytesLimiter).validate(eq(SINGLE_DEVICE_UUID), anyInt());
+    verifyNoMoreInteractions(messageSender);
+  }
+
+  @Test
+  void testSingleDeviceMessageRateLimited() throws Exception {
+    final RateLimiter messagesLimiter = mock(RateLimiter.class);
+    when(rateLimiters.getMessagesLimiter()).thenReturn(messagesLimiter);
+    doThrow(new RateLimitExceededException(Duration.ofSeconds(17), false))
+        .when(messagesLimiter).validate(any(UUID.class), any(UUID.class));
+
+    Response response =
+        resources.getJerseyTest()
+            .target(String.format("/v1/messages/%s", SINGLE_DEVICE_UUID))
+            .request()
+            .header("Authorization", AuthHelper.getAuthHeader(AuthHelper.VALID_UUID, AuthHelper.VALID_PASSWORD))
+            .put(Entity.entity(SystemMapper.jsonMapper().readValue(jsonFixture("fixtures/current_message_single_device.json"),
+                    IncomingMessageList.class),
+                MediaType.APPLICATION_JSON_TYPE));
+
+    assertThat("Rate limited response", response.getStatus(), is(equalTo(429)));
+    assertEquals("17", response.getHeaderString("Retry-After"));
+
+    verify(messagesLimiter).validate(AuthHelper.VALID_UUID, SINGLE_DEVICE_UUID);
+    verifyNoMoreInteractions(messageSender);
   }
 
   @Test
@@ -308,12 +396,11 @@ class MessageControllerTest {
 
     assertThat("Good Response", response.getStatus(), is(equalTo(200)));
 
-    ArgumentCaptor<Envelope> captor = ArgumentCaptor.forClass(Envelope.class);
-    verify(messageSender, times(1)).sendMessage(any(Account.class), any(Device.class), captor.capture(), eq(false));
+    final Envelope envelope = verifySentEnvelopes(1).get(0);
 
-    assertTrue(captor.getValue().hasSourceUuid());
-    assertTrue(captor.getValue().hasSourceDevice());
-    assertFalse(captor.getValue().getUrgent());
+    assertTrue(envelope.hasSourceUuid());
+    assertTrue(envelope.hasSourceDevice());
+    assertFalse(envelope.getUrgent());
   }
 
   @Test
@@ -329,11 +416,10 @@ class MessageControllerTest {
 
     assertThat("Good Response", response.getStatus(), is(equalTo(200)));
 
-    ArgumentCaptor<Envelope> captor = ArgumentCaptor.forClass(Envelope.class);
-    verify(messageSender, times(1)).sendMessage(any(Account.class), any(Device.class), captor.capture(), eq(false));
+    final Envelope envelope = verifySentEnvelopes(1).get(0);
 
-    assertTrue(captor.getValue().hasSourceUuid());
-    assertTrue(captor.getValue().hasSourceDevice());
+    assertTrue(envelope.hasSourceUuid());
+    assertTrue(envelope.hasSourceDevice());
   }
 
   @Test
@@ -362,11 +448,10 @@ class MessageControllerTest {
 
     assertThat("Good Response", response.getStatus(), is(equalTo(200)));
 
-    ArgumentCaptor<Envelope> captor = ArgumentCaptor.forClass(Envelope.class);
-    verify(messageSender, times(1)).sendMessage(any(Account.class), any(Device.class), captor.capture(), eq(false));
+    final Envelope envelope = verifySentEnvelopes(1).get(0);
 
-    assertFalse(captor.getValue().hasSourceUuid());
-    assertFalse(captor.getValue().hasSourceDevice());
+    assertFalse(envelope.hasSourceUuid());
+    assertFalse(envelope.hasSourceDevice());
   }
 
   @Test
@@ -450,11 +535,7 @@ class MessageControllerTest {
 
     assertThat("Good Response Code", response.getStatus(), is(equalTo(200)));
 
-    final ArgumentCaptor<Envelope> envelopeCaptor = ArgumentCaptor.forClass(Envelope.class);
-
-    verify(messageSender, times(2)).sendMessage(any(Account.class), any(Device.class), envelopeCaptor.capture(), eq(false));
-
-    envelopeCaptor.getAllValues().forEach(envelope -> assertTrue(envelope.getUrgent()));
+    verifySentEnvelopes(2).forEach(envelope -> assertTrue(envelope.getUrgent()));
   }
 
   @Test
@@ -470,11 +551,7 @@ class MessageControllerTest {
 
     assertThat("Good Response Code", response.getStatus(), is(equalTo(200)));
 
-    final ArgumentCaptor<Envelope> envelopeCaptor = ArgumentCaptor.forClass(Envelope.class);
-
-    verify(messageSender, times(2)).sendMessage(any(Account.class), any(Device.class), envelopeCaptor.capture(), eq(false));
-
-    envelopeCaptor.getAllValues().forEach(envelope -> assertFalse(envelope.getUrgent()));
+    verifySentEnvelopes(2).forEach(envelope -> assertFalse(envelope.getUrgent()));
   }
 
   @Test
@@ -490,7 +567,7 @@ class MessageControllerTest {
 
     assertThat("Good Response Code", response.getStatus(), is(equalTo(200)));
 
-    verify(messageSender, times(2)).sendMessage(any(Account.class), any(Device.class), any(Envelope.class), eq(false));
+    verifySentEnvelopes(2);
   }
 
   @Test
@@ -885,8 +962,7 @@ class MessageControllerTest {
 
     assertThat("Bad response", response.getStatus(), is(equalTo(413)));
 
-    verify(messageSender, never()).sendMessage(any(Account.class), any(Device.class), any(Envelope.class),
-        anyBoolean());
+    verify(messageSender, never()).sendMessages(any(), any(), anyBoolean());
   }
 
   @ParameterizedTest
@@ -904,11 +980,10 @@ class MessageControllerTest {
     if (expectOk) {
       assertEquals(200, response.getStatus());
 
-      final ArgumentCaptor<Envelope> captor = ArgumentCaptor.forClass(Envelope.class);
-      verify(messageSender).sendMessage(any(Account.class), any(Device.class), captor.capture(), eq(false));
+      verifySentEnvelopes(1);
     } else {
       assertEquals(400, response.getStatus());
-      verify(messageSender, never()).sendMessage(any(), any(), any(), anyBoolean());
+      verify(messageSender, never()).sendMessages(any(), any(), anyBoolean());
     }
   }
 
@@ -987,19 +1062,6 @@ class MessageControllerTest {
     // set up the entity to use in our PUT request
     Entity<InputStream> entity = Entity.entity(stream, MultiRecipientMessageProvider.MEDIA_TYPE);
 
-    when(multiRecipientMessageExecutor.invokeAll(any()))
-        .thenAnswer(answer -> {
-          final List<Callable> tasks = answer.getArgument(0, List.class);
-          tasks.forEach(c -> {
-            try {
-              c.call();
-            } catch (Exception e) {
-              throw new RuntimeException(e);
-            }
-          });
-          return null;
-        });
-
     // start building the request
     Invocation.Builder bldr = resources
         .getJerseyTest()
@@ -1021,9 +1083,9 @@ class MessageControllerTest {
     Response response = bldr.put(entity);
 
     if (authorize) {
-      ArgumentCaptor<Envelope> envelopeArgumentCaptor = ArgumentCaptor.forClass(Envelope.class);
-      verify(messageSender, atLeastOnce()).sendMessage(any(), any(), envelopeArgumentCaptor.capture(), anyBoolean());
-      assertEquals(urgent, envelopeArgumentCaptor.getValue().getUrgent());
+      final ArgumentCaptor<Map<Device, Envelope>> envelopesArgumentCaptor = ArgumentCaptor.forClass(Map.class);
+      verify(messageSender, atLeastOnce()).sendMessagesAsync(any(), envelopesArgumentCaptor.capture(), anyBoolean(), any());
+      envelopesArgumentCaptor.getValue().values().forEach(envelope -> assertEquals(urgent, envelope.getUrgent()));
     }
 
     // We have a 2x2x2 grid of possible situations based on:
@@ -1309,21 +1371,7 @@ class MessageControllerTest {
 
   @ParameterizedTest
   @MethodSource
-  void sendMultiRecipientMessage404(final ServiceIdentifier serviceIdentifier)
-      throws NotPushRegisteredException, InterruptedException {
-
-    when(multiRecipientMessageExecutor.invokeAll(any()))
-        .thenAnswer(answer -> {
-          final List<Callable> tasks = answer.getArgument(0, List.class);
-          tasks.forEach(c -> {
-            try {
-              c.call();
-            } catch (Exception e) {
-              throw new RuntimeException(e);
-            }
-          });
-          return null;
-        });
+  void sendMultiRecipientMessage404(final ServiceIdentifier serviceIdentifier) {
 
     final List<Recipient> recipients = List.of(
         new Recipient(serviceIdentifier, MULTI_DEVICE_ID1, MULTI_DEVICE_REG_ID1, new byte[48]),
@@ -1349,8 +1397,9 @@ class MessageControllerTest {
         .header(HttpHeaders.USER_AGENT, "FIXME")
         .header(OptionalAccess.UNIDENTIFIED, Base64.getEncoder().encodeToString(UNIDENTIFIED_ACCESS_BYTES));
 
-    doThrow(NotPushRegisteredException.class)
-        .when(messageSender).sendMessage(any(), any(), any(), anyBoolean());
+    when(messageSender.sendMessagesAsync(any(), any(), anyBoolean(), any()))
+        .thenAnswer(invocation -> CompletableFuture.completedFuture(
+            new HashSet<>(invocation.getArgument(1, Map.class).keySet())));
 
     // make the PUT request
     final SendMultiRecipientMessageResponse response = invocationBuilder.put(entity, SendMultiRecipientMessageResponse.class);
@@ -1363,17 +1412,83 @@ class MessageControllerTest {
         Arguments.of(new AciServiceIdentifier(MULTI_DEVICE_UUID)),
         Arguments.of(new PniServiceIdentifier(MULTI_DEVICE_PNI)));
   }
+  @Test
+  void testMultiRecipientStoryRateLimited() {
+    final RateLimiter storiesLimiter = mock(RateLimiter.class);
+    when(rateLimiters.getStoriesLimiter()).thenReturn(storiesLimiter);
+    when(storiesLimiter.validateAsync(anyString(), anyInt()))
+        .thenReturn(CompletableFuture.failedFuture(new RateLimitExceededException(Duration.ofSeconds(17), false)));
+
+    // Story rate limits are measured, but not enforced
+    assertThat("Good Response", sendMultiRecipientStory().getStatus(), is(equalTo(200)));
+
+    verify(storiesLimiter).validateAsync(SINGLE_DEVICE_UUID.toString(), 1);
+    verify(storiesLimiter).validateAsync(MULTI_DEVICE_UUID.toString(), 1);
+  }
+
+  @Test
+  void testMultiRecipientStoryRateLimiterThrowsSynchronously() throws Exception {
+    // Circuit breakers and bulkheads reject script calls before they're dispatched
+    final FaultTolerantRedisCluster redisCluster = mock(FaultTolerantRedisCluster.class);
+    when(redisCluster.withBinaryCluster(any(), any(), any())).thenThrow(new RedisException("Circuit breaker is open"));
+
+    when(dynamicConfigurationManager.getConfiguration().getRateLimitPolicy())
+        .thenReturn(new DynamicRateLimitPolicy(true));
+
+    final RateLimiter storiesLimiter = new StaticRateLimiter("stories",
+        new RateLimiterConfig(60, Duration.ofMinutes(1)),
+        ClusterLuaScript.fromResource(redisCluster, "lua/validate_rate_limit.lua", ScriptOutputType.INTEGER),
+        redisCluster,
+        Clock.systemUTC(),
+        dynamicConfigurationManager);
+
+    when(rateLimiters.getStoriesLimiter()).thenReturn(storiesLimiter);
+
+    // The rate limiter should fail open rather than failing the request
+    assertThat("Good Response", sendMultiRecipientStory().getStatus(), is(equalTo(200)));
+  }
+
+  private Response sendMultiRecipientStory() {
+    final List<Recipient> recipients = List.of(
+        new Recipient(new AciServiceIdentifier(SINGLE_DEVICE_UUID), SINGLE_DEVICE_ID1, SINGLE_DEVICE_REG_ID1,
+            new byte[48]),
+        new Recipient(new AciServiceIdentifier(MULTI_DEVICE_UUID), MULTI_DEVICE_ID1, MULTI_DEVICE_REG_ID1,
+            new byte[48]),
+        new Recipient(new AciServiceIdentifier(MULTI_DEVICE_UUID), MULTI_DEVICE_ID2, MULTI_DEVICE_REG_ID2,
+            new byte[48]));
+
+    return resources
+        .getJerseyTest()
+        .target("/v1/messages/multi_recipient")
+        .queryParam("online", false)
+        .queryParam("ts", System.currentTimeMillis())
+        .queryParam("story", true)
+        .queryParam("urgent", true)
+        .request()
+        .header(HttpHeaders.USER_AGENT, "test")
+        .put(Entity.entity(initializeMultiPayload(recipients, new byte[2048], true),
+            MultiRecipientMessageProvider.MEDIA_TYPE));
+  }
+
+
+  @SuppressWarnings("unchecked")
+  private static List<Envelope> verifySentEnvelopes(final int expectedDeviceCount) {
+    final ArgumentCaptor<Map<Device, Envelope>> captor = ArgumentCaptor.forClass(Map.class);
+    verify(messageSender).sendMessages(any(Account.class), captor.capture(), eq(false));
+
+    assertEquals(expectedDeviceCount, captor.getValue().size());
+    return new ArrayList<>(captor.getValue().values());
+  }
 
   private void checkBadMultiRecipientResponse(Response response, int expectedCode) throws Exception {
     assertThat("Unexpected response", response.getStatus(), is(equalTo(expectedCode)));
-    verify(messageSender, never()).sendMessage(any(), any(), any(), anyBoolean());
-    verify(multiRecipientMessageExecutor, never()).invokeAll(any());
+    verify(messageSender, never()).sendMessagesAsync(any(), any(), anyBoolean(), any());
   }
 
   private void checkGoodMultiRecipientResponse(Response response, int expectedCount) throws Exception {
     assertThat("Unexpected response", response.getStatus(), is(equalTo(200)));
-    ArgumentCaptor<List<Callable<Void>>> captor = ArgumentCaptor.forClass(List.class);
-    verify(multiRecipientMessageExecutor, times(1)).invokeAll(captor.capture());
+    ArgumentCaptor<Map<Device, Envelope>> captor = ArgumentCaptor.forClass(Map.class);
+    verify(messageSender, times(1)).sendMessagesAsync(any(), captor.capture(), anyBoolean(), any());
     assert (captor.getValue().size() == expectedCount);
     SendMultiRecipientMessageResponse smrmr = response.readEntity(SendMultiRecipientMessageResponse.class);
     assert (smrmr.uuids404().isEmpty());
@@ -223,6 +223,7 @@ class ProfileControllerTest {
     when(accountsManager.getByE164(AuthHelper.VALID_NUMBER)).thenReturn(Optional.of(capabilitiesAccount));
     when(accountsManager.getByAccountIdentifier(AuthHelper.VALID_UUID)).thenReturn(Optional.of(capabilitiesAccount));
     when(accountsManager.getByServiceIdentifier(new AciServiceIdentifier(AuthHelper.VALID_UUID))).thenReturn(Optional.of(capabilitiesAccount));
+    AccountsHelper.setupMockGetByServiceIdentifiers(accountsManager);
 
     final byte[] name = ProfileTestHelper.generateRandomByteArray(81);
     final byte[] emoji = ProfileTestHelper.generateRandomByteArray(60);
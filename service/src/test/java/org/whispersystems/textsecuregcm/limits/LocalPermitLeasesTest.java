@@ -0,0 +1,83 @@
+/*
+ * Copyright 2023 Signal Messenger, LLC
+ * SPDX-License-Identifier: AGPL-3.0-only
+ */
+
+package org.whispersystems.textsecuregcm.limits;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.time.Duration;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.whispersystems.textsecuregcm.util.MockUtils;
+import org.whispersystems.textsecuregcm.util.MutableClock;
+
+class LocalPermitLeasesTest {
+
+  private MutableClock clock;
+  private LocalPermitLeases localPermitLeases;
+
+  private static final int LEASE_SIZE = 10;
+  private static final String KEY = "key";
+
+  @BeforeEach
+  void setUp() {
+    clock = MockUtils.mutableClock(0);
+    localPermitLeases =
+        new LocalPermitLeases(new RateLimiterConfig(100, Duration.ofSeconds(1), LEASE_SIZE), clock);
+  }
+
+  @Test
+  void testColdKey() {
+    for (int i = 1; i < LocalPermitLeases.HOT_KEY_THRESHOLD; i++) {
+      assertFalse(localPermitLeases.tryConsume(KEY, 1));
+      assertEquals(0, localPermitLeases.getAcquisitionAmount(KEY, 1));
+    }
+
+    assertFalse(localPermitLeases.tryConsume(KEY, 1));
+    assertEquals(LEASE_SIZE + 1, localPermitLeases.getAcquisitionAmount(KEY, 1));
+  }
+
+  @Test
+  void testConsume() {
+    localPermitLeases.addPermits(KEY, LEASE_SIZE);
+
+    assertTrue(localPermitLeases.hasPermits(KEY, LEASE_SIZE));
+    assertFalse(localPermitLeases.hasPermits(KEY, LEASE_SIZE + 1));
+
+    assertTrue(localPermitLeases.tryConsume(KEY, LEASE_SIZE - 1));
+    assertTrue(localPermitLeases.tryConsume(KEY, 1));
+    assertFalse(localPermitLeases.tryConsume(KEY, 1));
+  }
+
+  @Test
+  void testExpiration() {
+    localPermitLeases.addPermits(KEY, LEASE_SIZE);
+
+    // It takes ten seconds to regenerate ten permits
+    clock.incrementSeconds(9);
+    assertTrue(localPermitLeases.hasPermits(KEY, 1));
+
+    clock.incrementSeconds(1);
+    assertFalse(localPermitLeases.hasPermits(KEY, 1));
+    assertFalse(localPermitLeases.tryConsume(KEY, 1));
+  }
+
+  @Test
+  void testInvalidate() {
+    localPermitLeases.addPermits(KEY, LEASE_SIZE);
+    localPermitLeases.invalidate(KEY);
+
+    assertFalse(localPermitLeases.hasPermits(KEY, 1));
+  }
+
+  @Test
+  void testLeasingDisabled() {
+    assertThrows(IllegalArgumentException.class,
+        () -> new LocalPermitLeases(new RateLimiterConfig(100, Duration.ofSeconds(1)), clock));
+  }
+}
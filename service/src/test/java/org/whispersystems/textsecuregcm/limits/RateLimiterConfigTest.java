@@ -27,4 +27,12 @@ class RateLimiterConfigTest {
     assertFalse(new RateLimiterConfig(1, Duration.ZERO).hasPositiveRegenerationRate());
     assertFalse(new RateLimiterConfig(1, Duration.ofSeconds(-1)).hasPositiveRegenerationRate());
   }
+
+  @Test
+  void hasValidLeaseSize() {
+    assertTrue(new RateLimiterConfig(10, Duration.ofSeconds(1)).hasValidLeaseSize());
+    assertTrue(new RateLimiterConfig(10, Duration.ofSeconds(1), 9).hasValidLeaseSize());
+    assertFalse(new RateLimiterConfig(10, Duration.ofSeconds(1), 10).hasValidLeaseSize());
+    assertFalse(new RateLimiterConfig(10, Duration.ofSeconds(1), -1).hasValidLeaseSize());
+  }
 }
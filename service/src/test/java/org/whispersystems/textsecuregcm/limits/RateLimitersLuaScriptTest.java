@@ -6,6 +6,7 @@
 package org.whispersystems.textsecuregcm.limits;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.mockito.ArgumentMatchers.any;
@@ -69,6 +70,101 @@ public class RateLimitersLuaScriptTest {
     assertThrows(RateLimitExceededException.class, () -> rateLimiter.validate("test", 25));
   }
 
+  @Test
+  public void testLeasedPermits() throws Exception {
+    final RateLimiters.For descriptor = RateLimiters.For.REGISTRATION;
+    final FaultTolerantRedisCluster redisCluster = REDIS_CLUSTER_EXTENSION.getRedisCluster();
+    final RateLimiters limiters = new RateLimiters(
+        Map.of(descriptor.id(), new RateLimiterConfig(100, Duration.ofMinutes(1), 10)),
+        dynamicConfig,
+        RateLimiters.defaultScript(redisCluster),
+        redisCluster,
+        Clock.systemUTC());
+
+    final RateLimiter rateLimiter = limiters.forDescriptor(descriptor);
+    final String bucketName = StaticRateLimiter.bucketName(descriptor.id(), "test");
+
+    // The first few requests for a key draw permits from the shared bucket one request at a time
+    for (int i = 1; i < LocalPermitLeases.HOT_KEY_THRESHOLD; i++) {
+      rateLimiter.validate("test", 1);
+    }
+
+    assertEquals(String.valueOf(100 - (LocalPermitLeases.HOT_KEY_THRESHOLD - 1)),
+        redisCluster.withCluster(connection -> connection.sync().hget(bucketName, "s")));
+
+    // ...after which the key is hot, and the next request leases ten extra permits that satisfy the next ten requests
+    for (int i = 0; i < 11; i++) {
+      rateLimiter.validate("test", 1);
+    }
+
+    assertEquals(String.valueOf(100 - (LocalPermitLeases.HOT_KEY_THRESHOLD - 1) - 11),
+        redisCluster.withCluster(connection -> connection.sync().hget(bucketName, "s")));
+
+    assertTrue(rateLimiter.hasAvailablePermits("test", 1));
+  }
+
+  @Test
+  public void testPartialLease() throws Exception {
+    final RateLimiters.For descriptor = RateLimiters.For.REGISTRATION;
+    final FaultTolerantRedisCluster redisCluster = REDIS_CLUSTER_EXTENSION.getRedisCluster();
+    final RateLimiters limiters = new RateLimiters(
+        Map.of(descriptor.id(), new RateLimiterConfig(10, Duration.ofMinutes(1), 10)),
+        dynamicConfig,
+        RateLimiters.defaultScript(redisCluster),
+        redisCluster,
+        clock);
+
+    final RateLimiter rateLimiter = limiters.forDescriptor(descriptor);
+
+    for (int i = 1; i < LocalPermitLeases.HOT_KEY_THRESHOLD; i++) {
+      rateLimiter.validate("test", 1);
+    }
+
+    // The shared bucket can't fill a whole lease, so the next request should take whatever remains
+    rateLimiter.validate("test", 1);
+
+    final String bucketName = StaticRateLimiter.bucketName(descriptor.id(), "test");
+    assertEquals("0", redisCluster.withCluster(connection -> connection.sync().hget(bucketName, "s")));
+
+    final int leasedPermits = 10 - LocalPermitLeases.HOT_KEY_THRESHOLD;
+
+    for (int i = 0; i < leasedPermits; i++) {
+      rateLimiter.validate("test", 1);
+    }
+
+    assertThrows(RateLimitExceededException.class, () -> rateLimiter.validate("test", 1));
+  }
+
+  @Test
+  public void testValidateAll() throws Exception {
+    final FaultTolerantRedisCluster redisCluster = REDIS_CLUSTER_EXTENSION.getRedisCluster();
+    final RateLimiters limiters = new RateLimiters(
+        Map.of(RateLimiters.For.REGISTRATION.id(), new RateLimiterConfig(60, Duration.ofSeconds(1)),
+            RateLimiters.For.VERIFY.id(), new RateLimiterConfig(60, Duration.ofSeconds(1))),
+        dynamicConfig,
+        RateLimiters.defaultScript(redisCluster),
+        redisCluster,
+        clock);
+
+    final RateLimiter registrationLimiter = limiters.forDescriptor(RateLimiters.For.REGISTRATION);
+    final RateLimiter verifyLimiter = limiters.forDescriptor(RateLimiters.For.VERIFY);
+
+    registrationLimiter.validate("test", 50);
+
+    final List<Optional<RateLimitExceededException>> outcomes = RateLimiter.validateAll(List.of(
+        new RateLimitCheck(registrationLimiter, "test", 25),
+        new RateLimitCheck(verifyLimiter, "test", 25)));
+
+    assertEquals(2, outcomes.size());
+    assertTrue(outcomes.get(0).isPresent());
+    assertTrue(outcomes.get(0).get().getRetryDuration().isPresent());
+    assertTrue(outcomes.get(1).isEmpty());
+
+    // An exceeded limit in one check shouldn't prevent other checks in the same batch from taking permits
+    assertTrue(verifyLimiter.hasAvailablePermits("test", 35));
+    assertFalse(verifyLimiter.hasAvailablePermits("test", 36));
+  }
+
   @Test
   public void testTtl() throws Exception {
     final RateLimiters.For descriptor = RateLimiters.For.REGISTRATION;
@@ -119,6 +215,37 @@ public class RateLimitersLuaScriptTest {
     assertEquals(750L, decodeBucket(key).orElseThrow().tokensRemaining);
   }
 
+  @Test
+  public void testLuaTakesPartialAmount() throws Exception {
+    final String key = "key1";
+    clock.setTimeMillis(0);
+
+    long result = (long) sandbox.execute(
+        List.of(key),
+        scriptArgs(1000, 1, 900, true),
+        redisCommandsHandler
+    );
+    assertEquals(0L, result);
+
+    // 100 tokens are available; asking for at least 50 and at most 200 should take all 100
+    result = (long) sandbox.execute(
+        List.of(key),
+        scriptArgs(1000, 1, 200, true, 50),
+        redisCommandsHandler
+    );
+    assertEquals(-100L, result);
+    assertEquals(0L, decodeBucket(key).orElseThrow().tokensRemaining);
+
+    // With no tokens available, the deficit is relative to the minimum amount
+    result = (long) sandbox.execute(
+        List.of(key),
+        scriptArgs(1000, 1, 200, true, 50),
+        redisCommandsHandler
+    );
+    assertEquals(50L, result);
+    assertEquals(0L, decodeBucket(key).orElseThrow().tokensRemaining);
+  }
+
   @Test
   public void testFailOpen() throws Exception {
     when(configuration.getRateLimitPolicy()).thenReturn(new DynamicRateLimitPolicy(true));
@@ -131,8 +258,14 @@ public class RateLimitersLuaScriptTest {
         redisCluster,
         Clock.systemUTC());
     when(redisCluster.withCluster(any())).thenThrow(new RedisException("fail"));
+    when(redisCluster.withCluster(any(), any(), any())).thenThrow(new RedisException("fail"));
+    when(redisCluster.withBinaryCluster(any(), any(), any())).thenThrow(new RedisException("fail"));
     final RateLimiter rateLimiter = limiters.forDescriptor(descriptor);
     rateLimiter.validate("test", 200);
+    rateLimiter.validateAsync("test", 200).toCompletableFuture().join();
+
+    assertEquals(List.of(Optional.empty()),
+        RateLimiter.validateAll(List.of(new RateLimitCheck(rateLimiter, "test", 200))));
   }
 
   private String serializeToOldBucketValueFormat(
@@ -174,6 +307,22 @@ public class RateLimitersLuaScriptTest {
     );
   }
 
+  private List<String> scriptArgs(
+      final long bucketSize,
+      final long ratePerMillis,
+      final long requestedAmount,
+      final boolean useTokens,
+      final long minimumAmount) {
+    return List.of(
+        String.valueOf(bucketSize),
+        String.valueOf(ratePerMillis),
+        String.valueOf(clock.millis()),
+        String.valueOf(requestedAmount),
+        String.valueOf(useTokens),
+        String.valueOf(minimumAmount)
+    );
+  }
+
   private record TokenBucket(long tokensRemaining, long lastUpdateTimeMillis) {
   }
 }
@@ -0,0 +1,30 @@
+/*
+ * Copyright 2023 Signal Messenger, LLC
+ * SPDX-License-Identifier: AGPL-3.0-only
+ */
+
+package org.whispersystems.textsecuregcm.limits;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+
+import java.nio.charset.StandardCharsets;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+class StaticRateLimiterTest {
+
+  @ParameterizedTest
+  @ValueSource(longs = {0, 1, 9, 10, 99, 255, 256, 1_000, 1_700_000_000_000L, Long.MAX_VALUE, -1, Long.MIN_VALUE})
+  void encodeLong(final long value) {
+    assertArrayEquals(String.valueOf(value).getBytes(StandardCharsets.US_ASCII), StaticRateLimiter.encodeLong(value));
+  }
+
+  @ParameterizedTest
+  @ValueSource(strings = {"", "test", "+18005551234", "e0f6e1e4-3b43-4b2c-b8b1-5e0b2b8a7e7e__0f0e", "ключ", "🔑"})
+  void encodeBucketName(final String key) {
+    final byte[] prefix = StaticRateLimiter.bucketName("test", "").getBytes(StandardCharsets.UTF_8);
+
+    assertArrayEquals(StaticRateLimiter.bucketName("test", key).getBytes(StandardCharsets.UTF_8),
+        StaticRateLimiter.encodeBucketName(prefix, key));
+  }
+}
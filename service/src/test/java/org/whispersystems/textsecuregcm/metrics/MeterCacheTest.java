@@ -0,0 +1,86 @@
+/*
+ * Copyright 2023 Signal Messenger, LLC
+ * SPDX-License-Identifier: AGPL-3.0-only
+ */
+
+package org.whispersystems.textsecuregcm.metrics;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+class MeterCacheTest {
+
+  private SimpleMeterRegistry meterRegistry;
+  private AtomicInteger meterFactoryCalls;
+  private AtomicInteger overflowSupplierCalls;
+
+  private MeterCache<String, Counter> meterCache;
+
+  private static final String COUNTER_NAME = "test";
+
+  @BeforeEach
+  void setUp() {
+    meterRegistry = new SimpleMeterRegistry();
+    meterFactoryCalls = new AtomicInteger();
+    overflowSupplierCalls = new AtomicInteger();
+
+    meterCache = new MeterCache<>(2,
+        value -> {
+          meterFactoryCalls.incrementAndGet();
+          return meterRegistry.counter(COUNTER_NAME, "value", value);
+        },
+        () -> {
+          overflowSupplierCalls.incrementAndGet();
+          return meterRegistry.counter(COUNTER_NAME, "value", MeterCache.OVERFLOW_TAG_VALUE);
+        });
+  }
+
+  @Test
+  void testGet() {
+    final Counter counter = meterCache.get("a");
+
+    // Steady-state lookups should never go back to the registry
+    for (int i = 0; i < 100; i++) {
+      assertSame(counter, meterCache.get("a"));
+    }
+
+    assertEquals(1, meterFactoryCalls.get());
+    assertNotSame(counter, meterCache.get("b"));
+    assertEquals(2, meterFactoryCalls.get());
+    assertEquals(0, overflowSupplierCalls.get());
+  }
+
+  @Test
+  void testOverflow() {
+    meterCache.get("a").increment();
+    meterCache.get("b").increment();
+    meterCache.get("c").increment();
+    meterCache.get("d").increment();
+
+    assertEquals(2, meterFactoryCalls.get());
+    assertEquals(1, overflowSupplierCalls.get());
+
+    assertEquals(1, meterRegistry.get(COUNTER_NAME).tag("value", "a").counter().count());
+    assertEquals(1, meterRegistry.get(COUNTER_NAME).tag("value", "b").counter().count());
+    assertEquals(2, meterRegistry.get(COUNTER_NAME).tag("value", MeterCache.OVERFLOW_TAG_VALUE).counter().count());
+
+    // Keys that made it into the cache before it filled up should still get their own meters
+    assertEquals(3, meterRegistry.getMeters().size());
+    meterCache.get("a").increment();
+    assertEquals(2, meterRegistry.get(COUNTER_NAME).tag("value", "a").counter().count());
+  }
+
+  @Test
+  void testEmptyCache() {
+    assertThrows(IllegalArgumentException.class, () -> new MeterCache<String, Counter>(0,
+        value -> meterRegistry.counter(COUNTER_NAME), () -> meterRegistry.counter(COUNTER_NAME)));
+  }
+}
@@ -11,6 +11,7 @@ import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
@@ -120,6 +121,38 @@ class MetricsRequestEventListenerTest {
     assertTrue(tags.contains(Tag.of(UserAgentTagUtil.PLATFORM_TAG, "android")));
   }
 
+  @Test
+  @SuppressWarnings("unchecked")
+  void testOnEventCachedCounter() {
+    final ExtendedUriInfo uriInfo = mock(ExtendedUriInfo.class);
+    when(uriInfo.getMatchedTemplates()).thenReturn(Collections.singletonList(new UriTemplate("/test")));
+
+    final ContainerRequest request = mock(ContainerRequest.class);
+    when(request.getMethod()).thenReturn("GET");
+    when(request.getRequestHeader(HttpHeaders.USER_AGENT)).thenReturn(
+        Collections.singletonList("Signal-Android/4.53.7 (Android 8.1)"));
+
+    final ContainerResponse response = mock(ContainerResponse.class);
+    when(response.getStatus()).thenReturn(200);
+
+    final RequestEvent event = mock(RequestEvent.class);
+    when(event.getType()).thenReturn(RequestEvent.Type.FINISHED);
+    when(event.getUriInfo()).thenReturn(uriInfo);
+    when(event.getContainerRequest()).thenReturn(request);
+    when(event.getContainerResponse()).thenReturn(response);
+
+    when(meterRegistry.counter(eq(MetricsRequestEventListener.REQUEST_COUNTER_NAME), any(Iterable.class)))
+        .thenReturn(counter);
+
+    for (int i = 0; i < 10; i++) {
+      listener.onEvent(event);
+    }
+
+    // Repeated requests with the same tags should reuse a single counter without going back to the registry
+    verify(meterRegistry, times(1)).counter(eq(MetricsRequestEventListener.REQUEST_COUNTER_NAME), any(Iterable.class));
+    verify(counter, times(10)).increment();
+  }
+
   @Test
   void testActualRouteMessageSuccess() throws InvalidProtocolBufferException {
     final MetricsApplicationEventListener applicationEventListener = mock(MetricsApplicationEventListener.class);
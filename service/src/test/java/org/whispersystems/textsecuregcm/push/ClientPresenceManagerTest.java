@@ -16,7 +16,9 @@ import static org.mockito.Mockito.mock;
 import io.lettuce.core.cluster.api.StatefulRedisClusterConnection;
 import io.lettuce.core.cluster.event.ClusterTopologyChangedEvent;
 import java.time.Duration;
+import java.time.Instant;
 import java.util.List;
+import java.util.Map;
 import java.util.UUID;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ExecutorService;
@@ -31,6 +33,7 @@ import org.junit.jupiter.api.Nested;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.RegisterExtension;
 import org.whispersystems.textsecuregcm.redis.RedisClusterExtension;
+import org.whispersystems.textsecuregcm.util.TestClock;
 
 class ClientPresenceManagerTest {
 
@@ -84,6 +87,63 @@ class ClientPresenceManagerTest {
     assertTrue(clientPresenceManager.isPresent(accountUuid, deviceId));
   }
 
+  @Test
+  void testIsPresentAsync() {
+    final UUID accountUuid = UUID.randomUUID();
+    final long deviceId = 1;
+
+    assertFalse(clientPresenceManager.isPresentAsync(accountUuid, deviceId).join());
+
+    clientPresenceManager.setPresent(accountUuid, deviceId, NO_OP);
+    assertTrue(clientPresenceManager.isPresentAsync(accountUuid, deviceId).join());
+
+    // Clients connected to this server should be reported as present without consulting Redis
+    REDIS_CLUSTER_EXTENSION.getRedisCluster().useCluster(connection -> connection.sync().flushall());
+    assertTrue(clientPresenceManager.isPresentAsync(accountUuid, deviceId).join());
+  }
+
+  @Test
+  void testGetPresenceAsync() {
+    final UUID accountUuid = UUID.randomUUID();
+    final long localDeviceId = 1;
+    final long remoteDeviceId = 2;
+    final long absentDeviceId = 3;
+
+    clientPresenceManager.setPresent(accountUuid, localDeviceId, NO_OP);
+
+    REDIS_CLUSTER_EXTENSION.getRedisCluster().useCluster(connection ->
+        connection.sync().set(ClientPresenceManager.getPresenceKey(accountUuid, remoteDeviceId),
+            UUID.randomUUID().toString()));
+
+    assertEquals(Map.of(localDeviceId, true, remoteDeviceId, true, absentDeviceId, false),
+        clientPresenceManager.getPresenceAsync(accountUuid, List.of(localDeviceId, remoteDeviceId, absentDeviceId))
+            .join());
+  }
+
+  @Test
+  void testAbsenceCache() throws Exception {
+    final TestClock clock = TestClock.pinned(Instant.now());
+    final ClientPresenceManager cachingPresenceManager =
+        new ClientPresenceManager(REDIS_CLUSTER_EXTENSION.getRedisCluster(), presenceRenewalExecutorService,
+            presenceRenewalExecutorService, Duration.ofSeconds(1), clock);
+
+    final UUID accountUuid = UUID.randomUUID();
+    final long deviceId = 1;
+
+    assertFalse(cachingPresenceManager.isPresentAsync(accountUuid, deviceId).join());
+
+    REDIS_CLUSTER_EXTENSION.getRedisCluster().useCluster(connection ->
+        connection.sync().set(ClientPresenceManager.getPresenceKey(accountUuid, deviceId),
+            UUID.randomUUID().toString()));
+
+    // The absence should be remembered until the cache entry expires
+    assertFalse(cachingPresenceManager.isPresentAsync(accountUuid, deviceId).join());
+    assertTrue(cachingPresenceManager.isPresent(accountUuid, deviceId));
+
+    clock.pin(clock.instant().plusSeconds(2));
+    assertTrue(cachingPresenceManager.isPresentAsync(accountUuid, deviceId).join());
+  }
+
   @Test
   void testIsLocallyPresent() {
     final UUID accountUuid = UUID.randomUUID();
@@ -8,19 +8,26 @@ package org.whispersystems.textsecuregcm.push;
 import static org.junit.jupiter.api.Assertions.assertDoesNotThrow;
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.mockito.ArgumentMatchers.any;
-import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyMap;
 import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.doThrow;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.verifyNoInteractions;
+import static org.mockito.Mockito.verifyNoMoreInteractions;
 import static org.mockito.Mockito.when;
 
 import com.google.protobuf.ByteString;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
 import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
 import org.apache.commons.lang3.RandomStringUtils;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
@@ -61,85 +68,175 @@ class MessageSenderTest {
 
     when(account.getUuid()).thenReturn(ACCOUNT_UUID);
     when(device.getId()).thenReturn(DEVICE_ID);
+    when(messagesManager.insert(any(), anyMap())).thenReturn(CompletableFuture.completedFuture(null));
+
+    when(clientPresenceManager.getPresenceAsync(any(), any())).thenAnswer(invocation -> {
+      final UUID accountUuid = invocation.getArgument(0);
+      final Collection<Long> deviceIds = invocation.getArgument(1);
+
+      final Map<Long, Boolean> presenceByDeviceId = new HashMap<>();
+      deviceIds.forEach(deviceId ->
+          presenceByDeviceId.put(deviceId, clientPresenceManager.isPresentAsync(accountUuid, deviceId).join()));
+
+      return CompletableFuture.completedFuture(presenceByDeviceId);
+    });
   }
 
   @Test
   void testSendOnlineMessageClientPresent() throws Exception {
-    when(clientPresenceManager.isPresent(ACCOUNT_UUID, DEVICE_ID)).thenReturn(true);
+    when(clientPresenceManager.isPresentAsync(ACCOUNT_UUID, DEVICE_ID)).thenReturn(CompletableFuture.completedFuture(true));
     when(device.getGcmId()).thenReturn("gcm-id");
 
     messageSender.sendMessage(account, device, message, true);
 
-    ArgumentCaptor<MessageProtos.Envelope> envelopeArgumentCaptor = ArgumentCaptor.forClass(
-        MessageProtos.Envelope.class);
+    final MessageProtos.Envelope insertedMessage = verifyInsertedMessages().get(DEVICE_ID);
 
-    verify(messagesManager).insert(any(), anyLong(), envelopeArgumentCaptor.capture());
-
-    assertTrue(envelopeArgumentCaptor.getValue().getEphemeral());
+    assertTrue(insertedMessage.getEphemeral());
 
     verifyNoInteractions(pushNotificationManager);
   }
 
   @Test
   void testSendOnlineMessageClientNotPresent() throws Exception {
-    when(clientPresenceManager.isPresent(ACCOUNT_UUID, DEVICE_ID)).thenReturn(false);
+    when(clientPresenceManager.isPresentAsync(ACCOUNT_UUID, DEVICE_ID)).thenReturn(CompletableFuture.completedFuture(false));
     when(device.getGcmId()).thenReturn("gcm-id");
 
     messageSender.sendMessage(account, device, message, true);
 
-    verify(messagesManager, never()).insert(any(), anyLong(), any());
+    verify(messagesManager, never()).insert(any(), anyMap());
     verifyNoInteractions(pushNotificationManager);
   }
 
   @Test
   void testSendMessageClientPresent() throws Exception {
-    when(clientPresenceManager.isPresent(ACCOUNT_UUID, DEVICE_ID)).thenReturn(true);
+    when(clientPresenceManager.isPresentAsync(ACCOUNT_UUID, DEVICE_ID)).thenReturn(CompletableFuture.completedFuture(true));
     when(device.getGcmId()).thenReturn("gcm-id");
 
     messageSender.sendMessage(account, device, message, false);
 
-    final ArgumentCaptor<MessageProtos.Envelope> envelopeArgumentCaptor = ArgumentCaptor.forClass(
-        MessageProtos.Envelope.class);
-
-    verify(messagesManager).insert(eq(ACCOUNT_UUID), eq(DEVICE_ID), envelopeArgumentCaptor.capture());
+    final MessageProtos.Envelope insertedMessage = verifyInsertedMessages().get(DEVICE_ID);
 
-    assertFalse(envelopeArgumentCaptor.getValue().getEphemeral());
-    assertEquals(message, envelopeArgumentCaptor.getValue());
+    assertFalse(insertedMessage.getEphemeral());
+    assertEquals(message, insertedMessage);
     verifyNoInteractions(pushNotificationManager);
   }
 
   @Test
   void testSendMessageGcmClientNotPresent() throws Exception {
-    when(clientPresenceManager.isPresent(ACCOUNT_UUID, DEVICE_ID)).thenReturn(false);
+    when(clientPresenceManager.isPresentAsync(ACCOUNT_UUID, DEVICE_ID)).thenReturn(CompletableFuture.completedFuture(false));
     when(device.getGcmId()).thenReturn("gcm-id");
 
     messageSender.sendMessage(account, device, message, false);
 
-    verify(messagesManager).insert(ACCOUNT_UUID, DEVICE_ID, message);
+    verify(messagesManager).insert(ACCOUNT_UUID, Map.of(DEVICE_ID, message));
     verify(pushNotificationManager).sendNewMessageNotification(account, device.getId(), message.getUrgent());
   }
 
   @Test
   void testSendMessageApnClientNotPresent() throws Exception {
-    when(clientPresenceManager.isPresent(ACCOUNT_UUID, DEVICE_ID)).thenReturn(false);
+    when(clientPresenceManager.isPresentAsync(ACCOUNT_UUID, DEVICE_ID)).thenReturn(CompletableFuture.completedFuture(false));
     when(device.getApnId()).thenReturn("apn-id");
 
     messageSender.sendMessage(account, device, message, false);
 
-    verify(messagesManager).insert(ACCOUNT_UUID, DEVICE_ID, message);
+    verify(messagesManager).insert(ACCOUNT_UUID, Map.of(DEVICE_ID, message));
     verify(pushNotificationManager).sendNewMessageNotification(account, device.getId(), message.getUrgent());
   }
 
   @Test
   void testSendMessageFetchClientNotPresent() throws Exception {
-    when(clientPresenceManager.isPresent(ACCOUNT_UUID, DEVICE_ID)).thenReturn(false);
+    when(clientPresenceManager.isPresentAsync(ACCOUNT_UUID, DEVICE_ID)).thenReturn(CompletableFuture.completedFuture(false));
     when(device.getFetchesMessages()).thenReturn(true);
 
     doThrow(NotPushRegisteredException.class)
         .when(pushNotificationManager).sendNewMessageNotification(account, DEVICE_ID, message.getUrgent());
 
     assertDoesNotThrow(() -> messageSender.sendMessage(account, device, message, false));
-    verify(messagesManager).insert(ACCOUNT_UUID, DEVICE_ID, message);
+    verify(messagesManager).insert(ACCOUNT_UUID, Map.of(DEVICE_ID, message));
+  }
+
+  @Test
+  void testSendMessagesMultipleDevices() throws Exception {
+    final long secondDeviceId = DEVICE_ID + 1;
+    final Device secondDevice = mock(Device.class);
+    final MessageProtos.Envelope secondMessage = generateRandomMessage();
+
+    when(device.getGcmId()).thenReturn("gcm-id");
+    when(secondDevice.getId()).thenReturn(secondDeviceId);
+    when(secondDevice.getApnId()).thenReturn("apn-id");
+
+    when(clientPresenceManager.isPresentAsync(ACCOUNT_UUID, DEVICE_ID))
+        .thenReturn(CompletableFuture.completedFuture(true));
+
+    when(clientPresenceManager.isPresentAsync(ACCOUNT_UUID, secondDeviceId))
+        .thenReturn(CompletableFuture.completedFuture(false));
+
+    assertTrue(messageSender.sendMessages(account, Map.of(device, message, secondDevice, secondMessage), false)
+        .isEmpty());
+
+    verify(messagesManager).insert(ACCOUNT_UUID, Map.of(DEVICE_ID, message, secondDeviceId, secondMessage));
+    verify(pushNotificationManager).sendNewMessageNotification(account, secondDeviceId, secondMessage.getUrgent());
+    verifyNoMoreInteractions(pushNotificationManager);
+  }
+
+  @Test
+  void testSendMessagesUnreachableDevice() throws Exception {
+    when(clientPresenceManager.isPresentAsync(ACCOUNT_UUID, DEVICE_ID))
+        .thenReturn(CompletableFuture.completedFuture(false));
+    when(device.getGcmId()).thenReturn("gcm-id");
+
+    doThrow(NotPushRegisteredException.class)
+        .when(pushNotificationManager).sendNewMessageNotification(account, DEVICE_ID, message.getUrgent());
+
+    assertEquals(Set.of(device), messageSender.sendMessages(account, Map.of(device, message), false));
+    assertThrows(NotPushRegisteredException.class, () -> messageSender.sendMessage(account, device, message, false));
+  }
+
+  @Test
+  void testSendMessagesAsync() throws Exception {
+    final long secondDeviceId = DEVICE_ID + 1;
+    final Device secondDevice = mock(Device.class);
+    final MessageProtos.Envelope secondMessage = generateRandomMessage();
+
+    when(device.getGcmId()).thenReturn("gcm-id");
+    when(secondDevice.getId()).thenReturn(secondDeviceId);
+
+    when(clientPresenceManager.isPresentAsync(ACCOUNT_UUID, DEVICE_ID))
+        .thenReturn(CompletableFuture.completedFuture(false));
+
+    when(clientPresenceManager.isPresentAsync(ACCOUNT_UUID, secondDeviceId))
+        .thenReturn(CompletableFuture.completedFuture(false));
+
+    doThrow(NotPushRegisteredException.class)
+        .when(pushNotificationManager).sendNewMessageNotification(account, secondDeviceId, secondMessage.getUrgent());
+
+    assertEquals(Set.of(secondDevice),
+        messageSender.sendMessagesAsync(account, Map.of(device, message, secondDevice, secondMessage), false,
+            Runnable::run).join());
+
+    verify(messagesManager).insert(ACCOUNT_UUID, Map.of(DEVICE_ID, message, secondDeviceId, secondMessage));
+    verify(pushNotificationManager).sendNewMessageNotification(account, DEVICE_ID, message.getUrgent());
+  }
+
+  @Test
+  void testSendOnlineMessagesAsync() {
+    when(clientPresenceManager.isPresentAsync(ACCOUNT_UUID, DEVICE_ID))
+        .thenReturn(CompletableFuture.completedFuture(true));
+    when(device.getGcmId()).thenReturn("gcm-id");
+
+    assertTrue(messageSender.sendMessagesAsync(account, Map.of(device, message), true, Runnable::run).join()
+        .isEmpty());
+
+    assertTrue(verifyInsertedMessages().get(DEVICE_ID).getEphemeral());
+    verifyNoInteractions(pushNotificationManager);
+  }
+
+  @SuppressWarnings("unchecked")
+  private Map<Long, MessageProtos.Envelope> verifyInsertedMessages() {
+    final ArgumentCaptor<Map<Long, MessageProtos.Envelope>> captor = ArgumentCaptor.forClass(Map.class);
+    verify(messagesManager).insert(eq(ACCOUNT_UUID), captor.capture());
+
+    return captor.getValue();
   }
 
   private MessageProtos.Envelope generateRandomMessage() {
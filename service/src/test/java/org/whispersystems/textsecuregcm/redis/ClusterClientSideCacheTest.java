@@ -0,0 +1,149 @@
+/*
+ * Copyright 2023 Signal Messenger, LLC
+ * SPDX-License-Identifier: AGPL-3.0-only
+ */
+
+package org.whispersystems.textsecuregcm.redis;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTimeoutPreemptively;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.RegisterExtension;
+
+class ClusterClientSideCacheTest {
+
+  @RegisterExtension
+  static final RedisClusterExtension REDIS_CLUSTER_EXTENSION = RedisClusterExtension.builder().build();
+
+  private ClusterClientSideCache clientSideCache;
+
+  private static final String PREFIX = "tracked::";
+  private static final String KEY = PREFIX + "key";
+
+  @BeforeEach
+  void setUp() {
+    clientSideCache = REDIS_CLUSTER_EXTENSION.getRedisCluster()
+        .createClientSideCache("test", List.of(PREFIX), 1_000, Duration.ofMinutes(1));
+
+    clientSideCache.start();
+
+    assertTrue(clientSideCache.isTracking());
+  }
+
+  @AfterEach
+  void tearDown() {
+    clientSideCache.stop();
+  }
+
+  @Test
+  void testGet() {
+    REDIS_CLUSTER_EXTENSION.getRedisCluster().useCluster(connection -> connection.sync().set(KEY, "value"));
+
+    final AtomicInteger loads = new AtomicInteger();
+    final Supplier<String> loader = () -> {
+      loads.incrementAndGet();
+      return REDIS_CLUSTER_EXTENSION.getRedisCluster().withCluster(connection -> connection.sync().get(KEY));
+    };
+
+    assertEquals("value", clientSideCache.get(KEY, "", loader));
+    assertEquals("value", clientSideCache.get(KEY, "", loader));
+    assertEquals(1, loads.get());
+  }
+
+  @Test
+  void testGetAsync() {
+    REDIS_CLUSTER_EXTENSION.getRedisCluster().useCluster(connection -> connection.sync().hset(KEY, "field", "value"));
+
+    final AtomicInteger loads = new AtomicInteger();
+
+    for (int i = 0; i < 2; i++) {
+      assertEquals("value", clientSideCache.getAsync(KEY, "field", () -> {
+        loads.incrementAndGet();
+        return REDIS_CLUSTER_EXTENSION.getRedisCluster().withCluster(connection ->
+            connection.async().hget(KEY, "field")).toCompletableFuture();
+      }).join());
+    }
+
+    assertEquals(1, loads.get());
+  }
+
+  @Test
+  void testGetNull() {
+    final AtomicInteger loads = new AtomicInteger();
+    final Supplier<String> loader = () -> {
+      loads.incrementAndGet();
+      return null;
+    };
+
+    assertNull(clientSideCache.get(KEY, "", loader));
+    assertNull(clientSideCache.get(KEY, "", loader));
+    assertEquals(2, loads.get());
+  }
+
+  @Test
+  void testUntrackedPrefix() {
+    assertThrows(IllegalArgumentException.class, () -> clientSideCache.get("untracked::key", "", () -> "value"));
+  }
+
+  @Test
+  void testRemoteInvalidation() {
+    REDIS_CLUSTER_EXTENSION.getRedisCluster().useCluster(connection -> connection.sync().hset(KEY, "a", "1"));
+
+    clientSideCache.get(KEY, "a", () ->
+        REDIS_CLUSTER_EXTENSION.getRedisCluster().withCluster(connection -> connection.sync().hget(KEY, "a")));
+
+    assertTrue(clientSideCache.isCached(KEY, "a"));
+
+    // Modifying any field of a key should invalidate all cached values for that key
+    REDIS_CLUSTER_EXTENSION.getRedisCluster().useCluster(connection -> connection.sync().hset(KEY, "b", "2"));
+
+    assertTimeoutPreemptively(Duration.ofSeconds(5), () -> {
+      while (clientSideCache.isCached(KEY, "a")) {
+        Thread.sleep(10);
+      }
+    });
+  }
+
+  @Test
+  void testLocalInvalidation() {
+    clientSideCache.get(KEY, "", () -> "value");
+    assertTrue(clientSideCache.isCached(KEY, ""));
+
+    clientSideCache.invalidate(KEY);
+    assertFalse(clientSideCache.isCached(KEY, ""));
+  }
+
+  @Test
+  void testInvalidationDuringLoad() {
+    final String value = clientSideCache.get(KEY, "", () -> {
+      // Simulate an invalidation arriving while the value is being read
+      clientSideCache.invalidate(KEY);
+      return "stale";
+    });
+
+    assertEquals("stale", value);
+    assertFalse(clientSideCache.isCached(KEY, ""));
+  }
+
+  @Test
+  void testRestartTracking() {
+    clientSideCache.get(KEY, "", () -> "value");
+    assertTrue(clientSideCache.isCached(KEY, ""));
+
+    clientSideCache.restartTracking();
+
+    assertTrue(clientSideCache.isTracking());
+    assertFalse(clientSideCache.isCached(KEY, ""));
+  }
+}
@@ -0,0 +1,115 @@
+/*
+ * Copyright 2023 Signal Messenger, LLC
+ * SPDX-License-Identifier: AGPL-3.0-only
+ */
+
+package org.whispersystems.textsecuregcm.redis;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+
+import io.lettuce.core.cluster.SlotHash;
+import io.lettuce.core.cluster.api.StatefulRedisClusterConnection;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import org.junit.jupiter.api.Test;
+
+class ClusterConnectionPoolTest {
+
+  @SuppressWarnings("unchecked")
+  private static ClusterConnectionPool<String, String> buildPool(final int size,
+      final RedisConnectionSelectionPolicy selectionPolicy,
+      final List<StatefulRedisClusterConnection<String, String>> createdConnections) {
+
+    return new ClusterConnectionPool<>("test", RedisWorkload.INTERACTIVE, "string", size, selectionPolicy,
+        SlotHash::getSlot, () -> {
+      final StatefulRedisClusterConnection<String, String> connection = mock(StatefulRedisClusterConnection.class);
+      createdConnections.add(connection);
+
+      return connection;
+    });
+  }
+
+  @Test
+  void testRoundRobin() {
+    final List<StatefulRedisClusterConnection<String, String>> connections = new ArrayList<>();
+    final ClusterConnectionPool<String, String> pool =
+        buildPool(3, RedisConnectionSelectionPolicy.ROUND_ROBIN, connections);
+
+    assertEquals(3, connections.size());
+
+    for (int i = 0; i < 6; i++) {
+      assertSame(connections.get(i % 3), pool.withConnection("key", connection -> connection));
+    }
+  }
+
+  @Test
+  void testKeySlot() {
+    final ClusterConnectionPool<String, String> pool =
+        buildPool(4, RedisConnectionSelectionPolicy.KEY_SLOT, new ArrayList<>());
+
+    final int expectedConnection = SlotHash.getSlot("{user}::queue") % 4;
+
+    assertEquals(expectedConnection, pool.selectConnection("{user}::queue"));
+    assertEquals(expectedConnection, pool.selectConnection("{user}::index"));
+    assertEquals(expectedConnection, pool.selectConnection("{user}::queue"));
+  }
+
+  @Test
+  void testKeySlotWithoutRoutingKey() {
+    final ClusterConnectionPool<String, String> pool =
+        buildPool(2, RedisConnectionSelectionPolicy.KEY_SLOT, new ArrayList<>());
+
+    assertEquals(0, pool.selectConnection(null));
+    assertEquals(1, pool.selectConnection(null));
+    assertEquals(0, pool.selectConnection(null));
+  }
+
+  @Test
+  void testInFlightOperations() {
+    final ClusterConnectionPool<String, String> pool =
+        buildPool(1, RedisConnectionSelectionPolicy.ROUND_ROBIN, new ArrayList<>());
+
+    final CompletableFuture<String> future = new CompletableFuture<>();
+
+    pool.withConnection(null, connection -> {
+      assertEquals(1, pool.getInFlightOperations(0));
+      return "synchronous";
+    });
+
+    assertEquals(0, pool.getInFlightOperations(0));
+
+    pool.withConnection(null, connection -> future);
+    assertEquals(1, pool.getInFlightOperations(0));
+
+    future.complete("asynchronous");
+    assertEquals(0, pool.getInFlightOperations(0));
+
+    assertThrows(RuntimeException.class, () -> pool.withConnection(null, connection -> {
+      throw new RuntimeException();
+    }));
+
+    assertEquals(0, pool.getInFlightOperations(0));
+  }
+
+  @Test
+  void testClose() {
+    final List<StatefulRedisClusterConnection<String, String>> connections = new ArrayList<>();
+    final ClusterConnectionPool<String, String> pool =
+        buildPool(2, RedisConnectionSelectionPolicy.ROUND_ROBIN, connections);
+
+    pool.close();
+
+    connections.forEach(connection -> verify(connection).close());
+  }
+
+  @Test
+  void testEmptyPool() {
+    assertThrows(IllegalArgumentException.class,
+        () -> buildPool(0, RedisConnectionSelectionPolicy.ROUND_ROBIN, new ArrayList<>()));
+  }
+}
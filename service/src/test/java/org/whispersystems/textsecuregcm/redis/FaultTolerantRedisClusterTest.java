@@ -6,6 +6,7 @@
 package org.whispersystems.textsecuregcm.redis;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
 import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.junit.jupiter.api.Assertions.assertTimeoutPreemptively;
 import static org.junit.jupiter.api.Assertions.assertTrue;
@@ -13,17 +14,26 @@ import static org.mockito.ArgumentMatchers.anyString;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.when;
 
+import io.github.resilience4j.bulkhead.BulkheadFullException;
 import io.github.resilience4j.circuitbreaker.CallNotPermittedException;
+import io.github.resilience4j.circuitbreaker.CircuitBreaker;
 import io.lettuce.core.RedisCommandTimeoutException;
 import io.lettuce.core.RedisException;
 import io.lettuce.core.cluster.RedisClusterClient;
+import io.lettuce.core.cluster.SlotHash;
 import io.lettuce.core.cluster.api.StatefulRedisClusterConnection;
 import io.lettuce.core.cluster.api.sync.RedisAdvancedClusterCommands;
+import io.lettuce.core.cluster.models.partitions.Partitions;
+import io.lettuce.core.cluster.models.partitions.RedisClusterNode;
 import io.lettuce.core.cluster.pubsub.StatefulRedisClusterPubSubConnection;
 import io.lettuce.core.event.EventBus;
 import io.lettuce.core.resource.ClientResources;
 import java.time.Duration;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ExecutionException;
+import java.util.stream.IntStream;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Nested;
 import org.junit.jupiter.api.Test;
@@ -34,14 +44,18 @@ import reactor.core.publisher.Flux;
 
 class FaultTolerantRedisClusterTest {
 
+  private RedisClusterClient clusterClient;
+  private StatefulRedisClusterConnection<String, String> clusterConnection;
   private RedisAdvancedClusterCommands<String, String> clusterCommands;
+  private CircuitBreakerConfiguration breakerConfiguration;
+  private RetryConfiguration retryConfiguration;
   private FaultTolerantRedisCluster faultTolerantCluster;
 
   @SuppressWarnings("unchecked")
   @BeforeEach
   public void setUp() {
-    final RedisClusterClient clusterClient = mock(RedisClusterClient.class);
-    final StatefulRedisClusterConnection<String, String> clusterConnection = mock(StatefulRedisClusterConnection.class);
+    clusterClient = mock(RedisClusterClient.class);
+    clusterConnection = mock(StatefulRedisClusterConnection.class);
     final StatefulRedisClusterPubSubConnection<String, String> pubSubConnection = mock(
         StatefulRedisClusterPubSubConnection.class);
     final ClientResources clientResources = mock(ClientResources.class);
@@ -56,13 +70,13 @@ class FaultTolerantRedisClusterTest {
     when(clientResources.eventBus()).thenReturn(eventBus);
     when(eventBus.get()).thenReturn(mock(Flux.class));
 
-    final CircuitBreakerConfiguration breakerConfiguration = new CircuitBreakerConfiguration();
+    breakerConfiguration = new CircuitBreakerConfiguration();
     breakerConfiguration.setFailureRateThreshold(100);
     breakerConfiguration.setSlidingWindowSize(1);
     breakerConfiguration.setSlidingWindowMinimumNumberOfCalls(1);
     breakerConfiguration.setWaitDurationInOpenStateInSeconds(Integer.MAX_VALUE);
 
-    final RetryConfiguration retryConfiguration = new RetryConfiguration();
+    retryConfiguration = new RetryConfiguration();
     retryConfiguration.setMaxAttempts(3);
     retryConfiguration.setWaitDuration(0);
 
@@ -107,6 +121,117 @@ class FaultTolerantRedisClusterTest {
 
   }
 
+  @Test
+  void testNodeBreaker() {
+    final String keyOnNodeA = "a";
+    final String keyOnNodeB = "b";
+
+    when(clusterClient.getPartitions()).thenReturn(buildPartitions(SlotHash.getSlot(keyOnNodeA)));
+    when(clusterCommands.get(keyOnNodeA)).thenThrow(new RuntimeException("Badness has ensued."));
+    when(clusterCommands.get(keyOnNodeB)).thenReturn("value");
+
+    assertNotEquals(faultTolerantCluster.getNodeGuard(SlotHash.getSlot(keyOnNodeA)).orElseThrow(),
+        faultTolerantCluster.getNodeGuard(SlotHash.getSlot(keyOnNodeB)).orElseThrow());
+
+    assertThrows(RedisException.class, () -> faultTolerantCluster.withCluster(RedisWorkload.INTERACTIVE, keyOnNodeA,
+        connection -> connection.sync().get(keyOnNodeA)));
+
+    final RedisException redisException = assertThrows(RedisException.class,
+        () -> faultTolerantCluster.withCluster(RedisWorkload.INTERACTIVE, keyOnNodeA,
+            connection -> connection.sync().get(keyOnNodeA)));
+
+    assertTrue(redisException.getCause() instanceof CallNotPermittedException);
+
+    // A failing node shouldn't affect operations against other nodes or operations without a routing key
+    assertEquals("value", faultTolerantCluster.withCluster(RedisWorkload.INTERACTIVE, keyOnNodeB,
+        connection -> connection.sync().get(keyOnNodeB)));
+
+    assertEquals("value", faultTolerantCluster.withCluster(connection -> connection.sync().get(keyOnNodeB)));
+  }
+
+  @Test
+  void testNodeBreakerAsync() {
+    final String keyOnNodeA = "a";
+
+    when(clusterClient.getPartitions()).thenReturn(buildPartitions(SlotHash.getSlot(keyOnNodeA)));
+
+    final CompletableFuture<String> pendingFuture = new CompletableFuture<>();
+
+    assertEquals(pendingFuture,
+        faultTolerantCluster.withCluster(RedisWorkload.INTERACTIVE, keyOnNodeA, connection -> pendingFuture));
+
+    // The operation's outcome shouldn't be recorded until its future completes
+    assertEquals(CircuitBreaker.State.CLOSED,
+        faultTolerantCluster.getNodeGuard(SlotHash.getSlot(keyOnNodeA)).orElseThrow().getCircuitBreaker().getState());
+
+    pendingFuture.completeExceptionally(new RedisCommandTimeoutException());
+
+    final RedisException redisException = assertThrows(RedisException.class,
+        () -> faultTolerantCluster.withCluster(RedisWorkload.INTERACTIVE, keyOnNodeA,
+            connection -> CompletableFuture.completedFuture("value")));
+
+    assertTrue(redisException.getCause() instanceof CallNotPermittedException);
+  }
+
+  @Test
+  void testNodeGuardUnknownTopology() {
+    when(clusterClient.getPartitions()).thenReturn(new Partitions());
+    assertTrue(faultTolerantCluster.getNodeGuard(SlotHash.getSlot("key")).isEmpty());
+  }
+
+  @Test
+  void testNodeBulkhead() {
+    final FaultTolerantRedisCluster bulkheadCluster = new FaultTolerantRedisCluster("test", clusterClient,
+        Duration.ofSeconds(2), breakerConfiguration, retryConfiguration, 1, 0,
+        RedisConnectionSelectionPolicy.ROUND_ROBIN, 1);
+
+    final String keyOnNodeA = "a";
+    final String keyOnNodeB = "b";
+
+    when(clusterClient.getPartitions()).thenReturn(buildPartitions(SlotHash.getSlot(keyOnNodeA)));
+
+    final CompletableFuture<String> pendingFuture = new CompletableFuture<>();
+
+    bulkheadCluster.withCluster(RedisWorkload.INTERACTIVE, keyOnNodeA, connection -> pendingFuture);
+
+    final RedisException redisException = assertThrows(RedisException.class,
+        () -> bulkheadCluster.withCluster(RedisWorkload.INTERACTIVE, keyOnNodeA, connection -> "value"));
+
+    assertTrue(redisException.getCause() instanceof BulkheadFullException);
+
+    assertEquals("value", bulkheadCluster.withCluster(RedisWorkload.INTERACTIVE, keyOnNodeB, connection -> "value"));
+
+    pendingFuture.complete("complete");
+
+    assertEquals("value", bulkheadCluster.withCluster(RedisWorkload.INTERACTIVE, keyOnNodeA, connection -> "value"));
+  }
+
+  /**
+   * Builds a two-node cluster topology in which the first node owns only the given slot and the second node owns all
+   * other slots.
+   */
+  private static Partitions buildPartitions(final int nodeASlot) {
+    final RedisClusterNode nodeA = new RedisClusterNode();
+    nodeA.setNodeId("node-a");
+    nodeA.setFlags(Set.of(RedisClusterNode.NodeFlag.UPSTREAM));
+    nodeA.setSlots(List.of(nodeASlot));
+
+    final RedisClusterNode nodeB = new RedisClusterNode();
+    nodeB.setNodeId("node-b");
+    nodeB.setFlags(Set.of(RedisClusterNode.NodeFlag.UPSTREAM));
+    nodeB.setSlots(IntStream.range(0, SlotHash.SLOT_COUNT)
+        .filter(slot -> slot != nodeASlot)
+        .boxed()
+        .toList());
+
+    final Partitions partitions = new Partitions();
+    partitions.addPartition(nodeA);
+    partitions.addPartition(nodeB);
+    partitions.updateCache();
+
+    return partitions;
+  }
+
   @Nested
   class WithRealCluster {
 
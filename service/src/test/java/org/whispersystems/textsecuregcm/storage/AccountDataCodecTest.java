@@ -0,0 +1,79 @@
+/*
+ * Copyright 2023 Signal Messenger, LLC
+ * SPDX-License-Identifier: AGPL-3.0-only
+ */
+
+package org.whispersystems.textsecuregcm.storage;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.UUID;
+import java.util.stream.LongStream;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.EnumSource;
+import org.whispersystems.textsecuregcm.auth.UnidentifiedAccessUtil;
+import org.whispersystems.textsecuregcm.tests.util.AccountsHelper;
+import org.whispersystems.textsecuregcm.tests.util.DevicesHelper;
+
+class AccountDataCodecTest {
+
+  @ParameterizedTest
+  @EnumSource(AccountDataFormat.class)
+  void testEncodeDecode(final AccountDataFormat accountDataFormat) throws IOException {
+    final Account account = generateAccount();
+    final AccountDataCodec codec = new AccountDataCodec(accountDataFormat, List.of("uuid"));
+
+    final byte[] accountData = codec.encode(account);
+    assertEquals(accountDataFormat, AccountDataCodec.getFormat(accountData));
+
+    final Account decoded = AccountDataCodec.decode(accountData);
+
+    assertNull(decoded.getUuid());
+    assertEquals(account.getNumber(), decoded.getNumber());
+    assertEquals(account.getPhoneNumberIdentifier(), decoded.getPhoneNumberIdentifier());
+    assertArrayEquals(account.getUnidentifiedAccessKey().orElseThrow(), decoded.getUnidentifiedAccessKey().orElseThrow());
+    assertEquals(account.getDevices().size(), decoded.getDevices().size());
+
+    for (final Device device : account.getDevices()) {
+      final Device decodedDevice = decoded.getDevice(device.getId()).orElseThrow();
+
+      assertEquals(device.getRegistrationId(), decodedDevice.getRegistrationId());
+      assertEquals(device.getLastSeen(), decodedDevice.getLastSeen());
+    }
+  }
+
+  @Test
+  void testGetFormat() {
+    assertEquals(AccountDataFormat.JSON, AccountDataCodec.getFormat("{}".getBytes(StandardCharsets.UTF_8)));
+    assertEquals(AccountDataFormat.JSON, AccountDataCodec.getFormat(new byte[0]));
+    assertEquals(AccountDataFormat.SMILE, AccountDataCodec.getFormat(new byte[]{':', ')', '\n', 0x00}));
+  }
+
+  @Test
+  void testSmileMoreCompact() throws IOException {
+    final Account account = generateAccount();
+
+    final byte[] jsonData = new AccountDataCodec(AccountDataFormat.JSON, List.of("uuid")).encode(account);
+    final byte[] smileData = new AccountDataCodec(AccountDataFormat.SMILE, List.of("uuid")).encode(account);
+
+    assertTrue(smileData.length < jsonData.length,
+        "Smile-encoded account (%d bytes) should be smaller than JSON-encoded account (%d bytes)"
+            .formatted(smileData.length, jsonData.length));
+  }
+
+  private static Account generateAccount() {
+    final List<Device> devices = LongStream.rangeClosed(1, 6)
+        .mapToObj(deviceId -> DevicesHelper.createDevice(deviceId, System.currentTimeMillis(), (int) deviceId))
+        .toList();
+
+    return AccountsHelper.generateTestAccount("+18005551234", UUID.randomUUID(), UUID.randomUUID(), devices,
+        new byte[UnidentifiedAccessUtil.UNIDENTIFIED_ACCESS_KEY_LENGTH]);
+  }
+}
@@ -0,0 +1,199 @@
+/*
+ * Copyright 2023 Signal Messenger, LLC
+ * SPDX-License-Identifier: AGPL-3.0-only
+ */
+
+package org.whispersystems.textsecuregcm.storage;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTimeoutPreemptively;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Optional;
+import java.util.UUID;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.RegisterExtension;
+import org.whispersystems.textsecuregcm.auth.UnidentifiedAccessUtil;
+import org.whispersystems.textsecuregcm.redis.RedisClusterExtension;
+import org.whispersystems.textsecuregcm.tests.util.AccountsHelper;
+
+class AccountNearCacheTest {
+
+  @RegisterExtension
+  static final RedisClusterExtension REDIS_CLUSTER_EXTENSION = RedisClusterExtension.builder().build();
+
+  private AccountNearCache accountNearCache;
+
+  private static final String E164 = "+18005551234";
+
+  @BeforeEach
+  void setUp() {
+    accountNearCache = new AccountNearCache(REDIS_CLUSTER_EXTENSION.getRedisCluster(), 1_000, Duration.ofMinutes(1));
+    accountNearCache.start();
+  }
+
+  @AfterEach
+  void tearDown() {
+    accountNearCache.stop();
+  }
+
+  @Test
+  void testPutLocal() {
+    final Account account = generateAccount(UUID.randomUUID(), UUID.randomUUID(), 1);
+    account.setUsernameHash(new byte[32]);
+
+    assertTrue(accountNearCache.getAccountJson(account.getUuid()).isEmpty());
+
+    accountNearCache.putLocal(account, "account-json");
+
+    assertEquals(Optional.of("account-json"), accountNearCache.getAccountJson(account.getUuid()));
+    assertEquals(Optional.of(account.getUuid()), accountNearCache.getAccountIdentifierByE164(E164));
+    assertEquals(Optional.of(account.getUuid()),
+        accountNearCache.getAccountIdentifierByPhoneNumberIdentifier(account.getPhoneNumberIdentifier()));
+    assertEquals(Optional.of(account.getUuid()), accountNearCache.getAccountIdentifierByUsernameHash(new byte[32]));
+  }
+
+  @Test
+  void testPutLocalOlderVersion() {
+    final UUID uuid = UUID.randomUUID();
+    final UUID pni = UUID.randomUUID();
+
+    accountNearCache.putLocal(generateAccount(uuid, pni, 2), "newer");
+    accountNearCache.putLocal(generateAccount(uuid, pni, 1), "older");
+
+    assertEquals(Optional.of("newer"), accountNearCache.getAccountJson(uuid));
+  }
+
+  @Test
+  void testInvalidate() {
+    final Account account = generateAccount(UUID.randomUUID(), UUID.randomUUID(), 1);
+
+    accountNearCache.putLocal(account, "account-json");
+    accountNearCache.invalidate(account.getUuid());
+
+    assertTrue(accountNearCache.getAccountJson(account.getUuid()).isEmpty());
+  }
+
+  @Test
+  void testInvalidateBeforeUpdate() {
+    final AccountNearCache remoteAccountNearCache =
+        new AccountNearCache(REDIS_CLUSTER_EXTENSION.getRedisCluster(), 1_000, Duration.ofMinutes(1));
+
+    final UUID uuid = UUID.randomUUID();
+    final UUID pni = UUID.randomUUID();
+    final Account account = generateAccount(uuid, pni, 1);
+
+    accountNearCache.putLocal(account, "account-json");
+    remoteAccountNearCache.invalidateBeforeUpdate(account);
+
+    assertTrue(remoteAccountNearCache.getAccountJson(uuid).isEmpty());
+
+    assertTimeoutPreemptively(Duration.ofSeconds(10), () -> {
+      while (accountNearCache.getAccountJson(uuid).isPresent()) {
+        Thread.sleep(10);
+      }
+    });
+
+    // The announced version is stale, but the version produced by the update is not
+    accountNearCache.putLocal(generateAccount(uuid, pni, 1), "stale-account-json");
+    assertTrue(accountNearCache.getAccountJson(uuid).isEmpty());
+
+    accountNearCache.putLocal(generateAccount(uuid, pni, 2), "updated-account-json");
+    assertEquals(Optional.of("updated-account-json"), accountNearCache.getAccountJson(uuid));
+  }
+
+  @Test
+  void testMessage() {
+    final UUID uuid = UUID.randomUUID();
+    final UUID pni = UUID.randomUUID();
+    final String otherInstanceId = UUID.randomUUID().toString();
+
+    accountNearCache.putLocal(generateAccount(uuid, pni, 2), "account-json");
+
+    // Announcements of the same or older versions should leave the cached copy in place
+    accountNearCache.message(null, AccountNearCache.INVALIDATION_CHANNEL,
+        AccountNearCache.encodeInvalidation(otherInstanceId, uuid, 2));
+
+    assertEquals(Optional.of("account-json"), accountNearCache.getAccountJson(uuid));
+
+    accountNearCache.message(null, AccountNearCache.INVALIDATION_CHANNEL,
+        AccountNearCache.encodeInvalidation(otherInstanceId, uuid, 3));
+
+    assertTrue(accountNearCache.getAccountJson(uuid).isEmpty());
+  }
+
+  @Test
+  void testPutLocalAfterMessage() {
+    final UUID uuid = UUID.randomUUID();
+    final UUID pni = UUID.randomUUID();
+    final String otherInstanceId = UUID.randomUUID().toString();
+
+    // Another server announces version 3 before this server finishes reading an older version from the shared cache
+    accountNearCache.message(null, AccountNearCache.INVALIDATION_CHANNEL,
+        AccountNearCache.encodeInvalidation(otherInstanceId, uuid, 3));
+
+    accountNearCache.putLocal(generateAccount(uuid, pni, 2), "stale-account-json");
+    assertTrue(accountNearCache.getAccountJson(uuid).isEmpty());
+
+    accountNearCache.putLocal(generateAccount(uuid, pni, 3), "account-json");
+    assertEquals(Optional.of("account-json"), accountNearCache.getAccountJson(uuid));
+  }
+
+  @Test
+  void testRemoteInvalidation() {
+    final AccountNearCache remoteAccountNearCache =
+        new AccountNearCache(REDIS_CLUSTER_EXTENSION.getRedisCluster(), 1_000, Duration.ofMinutes(1));
+
+    final UUID uuid = UUID.randomUUID();
+    final UUID pni = UUID.randomUUID();
+
+    accountNearCache.putLocal(generateAccount(uuid, pni, 1), "account-json");
+    remoteAccountNearCache.put(generateAccount(uuid, pni, 2), "updated-account-json");
+
+    assertTimeoutPreemptively(Duration.ofSeconds(10), () -> {
+      while (accountNearCache.getAccountJson(uuid).isPresent()) {
+        Thread.sleep(10);
+      }
+    });
+
+    assertEquals(Optional.of("updated-account-json"), remoteAccountNearCache.getAccountJson(uuid));
+  }
+
+  @Test
+  void testPublishOnly() {
+    final AccountNearCache publishOnlyAccountNearCache =
+        AccountNearCache.publishOnly(REDIS_CLUSTER_EXTENSION.getRedisCluster());
+
+    // Starting and stopping a publish-only cache should have no effect
+    publishOnlyAccountNearCache.start();
+
+    final UUID uuid = UUID.randomUUID();
+    final UUID pni = UUID.randomUUID();
+
+    accountNearCache.putLocal(generateAccount(uuid, pni, 1), "account-json");
+    publishOnlyAccountNearCache.put(generateAccount(uuid, pni, 2), "updated-account-json");
+
+    assertTrue(publishOnlyAccountNearCache.getAccountJson(uuid).isEmpty());
+
+    assertTimeoutPreemptively(Duration.ofSeconds(10), () -> {
+      while (accountNearCache.getAccountJson(uuid).isPresent()) {
+        Thread.sleep(10);
+      }
+    });
+
+    publishOnlyAccountNearCache.stop();
+  }
+
+  private static Account generateAccount(final UUID uuid, final UUID pni, final int version) {
+    final Account account = AccountsHelper.generateTestAccount(E164, uuid, pni, new ArrayList<>(),
+        new byte[UnidentifiedAccessUtil.UNIDENTIFIED_ACCESS_KEY_LENGTH]);
+
+    account.setVersion(version);
+
+    return account;
+  }
+}
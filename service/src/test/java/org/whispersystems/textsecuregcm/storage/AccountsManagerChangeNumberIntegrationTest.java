@@ -80,7 +80,8 @@ class AccountsManagerChangeNumberIntegrationTest {
           Tables.NUMBERS.tableName(),
           Tables.PNI_ASSIGNMENTS.tableName(),
           Tables.USERNAMES.tableName(),
-          Tables.DELETED_ACCOUNTS.tableName());
+          Tables.DELETED_ACCOUNTS.tableName(),
+          AccountDataFormat.JSON);
 
       accountLockExecutor = Executors.newSingleThreadExecutor();
 
@@ -117,6 +118,7 @@ class AccountsManagerChangeNumberIntegrationTest {
           accounts,
           phoneNumberIdentifiers,
           CACHE_CLUSTER_EXTENSION.getRedisCluster(),
+          mock(AccountNearCache.class),
           accountLockManager,
           keysManager,
           messagesManager,
@@ -125,6 +127,7 @@ class AccountsManagerChangeNumberIntegrationTest {
           svr2Client,
           clientPresenceManager,
           mock(ExperimentEnrollmentManager.class),
+          dynamicConfigurationManager,
           registrationRecoveryPasswordsManager,
           accountLockExecutor,
           mock(Clock.class));
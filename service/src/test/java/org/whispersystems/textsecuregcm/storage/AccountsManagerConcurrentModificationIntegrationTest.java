@@ -87,7 +87,8 @@ class AccountsManagerConcurrentModificationIntegrationTest {
         Tables.NUMBERS.tableName(),
         Tables.PNI_ASSIGNMENTS.tableName(),
         Tables.USERNAMES.tableName(),
-        Tables.DELETED_ACCOUNTS.tableName());
+        Tables.DELETED_ACCOUNTS.tableName(),
+        AccountDataFormat.JSON);
 
     {
       //noinspection unchecked
@@ -117,6 +118,7 @@ class AccountsManagerConcurrentModificationIntegrationTest {
           accounts,
           phoneNumberIdentifiers,
           RedisClusterHelper.builder().stringCommands(commands).build(),
+          mock(AccountNearCache.class),
           accountLockManager,
           mock(KeysManager.class),
           mock(MessagesManager.class),
@@ -125,6 +127,7 @@ class AccountsManagerConcurrentModificationIntegrationTest {
           mock(SecureValueRecovery2Client.class),
           mock(ClientPresenceManager.class),
           mock(ExperimentEnrollmentManager.class),
+          dynamicConfigurationManager,
           mock(RegistrationRecoveryPasswordsManager.class),
           mock(Executor.class),
           mock(Clock.class)
@@ -8,6 +8,7 @@ package org.whispersystems.textsecuregcm.storage;
 import static org.junit.jupiter.api.Assertions.assertArrayEquals;
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
 import static org.junit.jupiter.api.Assertions.assertNull;
 import static org.junit.jupiter.api.Assertions.assertSame;
 import static org.junit.jupiter.api.Assertions.assertThrows;
@@ -16,10 +17,12 @@ import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.anyLong;
 import static org.mockito.ArgumentMatchers.argThat;
 import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.startsWith;
 import static org.mockito.Mockito.anyString;
 import static org.mockito.Mockito.atLeastOnce;
 import static org.mockito.Mockito.doAnswer;
 import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.inOrder;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.times;
@@ -37,12 +40,14 @@ import java.time.Clock;
 import java.time.Duration;
 import java.util.ArrayList;
 import java.util.Base64;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
 import java.util.Optional;
+import java.util.Set;
 import java.util.UUID;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.Executor;
@@ -57,11 +62,13 @@ import org.junit.jupiter.params.ParameterizedTest;
 import org.junit.jupiter.params.provider.Arguments;
 import org.junit.jupiter.params.provider.MethodSource;
 import org.junit.jupiter.params.provider.ValueSource;
+import org.mockito.InOrder;
 import org.mockito.stubbing.Answer;
 import org.signal.libsignal.protocol.IdentityKey;
 import org.signal.libsignal.protocol.ecc.Curve;
 import org.signal.libsignal.protocol.ecc.ECKeyPair;
 import org.whispersystems.textsecuregcm.auth.UnidentifiedAccessUtil;
+import org.whispersystems.textsecuregcm.configuration.dynamic.DynamicAccountCacheConfiguration;
 import org.whispersystems.textsecuregcm.configuration.dynamic.DynamicConfiguration;
 import org.whispersystems.textsecuregcm.controllers.MismatchedDevicesException;
 import org.whispersystems.textsecuregcm.entities.AccountAttributes;
@@ -71,6 +78,7 @@ import org.whispersystems.textsecuregcm.experiment.ExperimentEnrollmentManager;
 import org.whispersystems.textsecuregcm.identity.AciServiceIdentifier;
 import org.whispersystems.textsecuregcm.identity.IdentityType;
 import org.whispersystems.textsecuregcm.identity.PniServiceIdentifier;
+import org.whispersystems.textsecuregcm.identity.ServiceIdentifier;
 import org.whispersystems.textsecuregcm.push.ClientPresenceManager;
 import org.whispersystems.textsecuregcm.securestorage.SecureStorageClient;
 import org.whispersystems.textsecuregcm.securevaluerecovery.SecureValueRecovery2Client;
@@ -100,6 +108,8 @@ class AccountsManagerTest {
   private ProfilesManager profilesManager;
   private ClientPresenceManager clientPresenceManager;
   private ExperimentEnrollmentManager enrollmentManager;
+  private AccountNearCache accountNearCache;
+  private DynamicConfiguration dynamicConfiguration;
 
   private Map<String, UUID> phoneNumberIdentifiersByE164;
 
@@ -131,6 +141,7 @@ class AccountsManagerTest {
     messagesManager = mock(MessagesManager.class);
     profilesManager = mock(ProfilesManager.class);
     clientPresenceManager = mock(ClientPresenceManager.class);
+    accountNearCache = mock(AccountNearCache.class);
 
     //noinspection unchecked
     commands = mock(RedisAdvancedClusterCommands.class);
@@ -171,9 +182,10 @@ class AccountsManagerTest {
     @SuppressWarnings("unchecked") final DynamicConfigurationManager<DynamicConfiguration> dynamicConfigurationManager =
         mock(DynamicConfigurationManager.class);
 
-    final DynamicConfiguration dynamicConfiguration = mock(DynamicConfiguration.class);
+    dynamicConfiguration = mock(DynamicConfiguration.class);
 
     when(dynamicConfigurationManager.getConfiguration()).thenReturn(dynamicConfiguration);
+    when(dynamicConfiguration.getAccountCacheConfiguration()).thenReturn(new DynamicAccountCacheConfiguration(true));
 
     enrollmentManager = mock(ExperimentEnrollmentManager.class);
     when(enrollmentManager.isEnrolled(any(UUID.class), eq(AccountsManager.USERNAME_EXPERIMENT_NAME))).thenReturn(true);
@@ -211,6 +223,7 @@ class AccountsManagerTest {
             .stringCommands(commands)
             .stringAsyncCommands(asyncCommands)
             .build(),
+        accountNearCache,
         accountLockManager,
         keysManager,
         messagesManager,
@@ -219,6 +232,7 @@ class AccountsManagerTest {
         svr2Client,
         clientPresenceManager,
         enrollmentManager,
+        dynamicConfigurationManager,
         registrationRecoveryPasswordsManager,
         mock(Executor.class),
         mock(Clock.class));
@@ -262,6 +276,73 @@ class AccountsManagerTest {
     assertFalse(accountsManager.getByServiceIdentifierAsync(new PniServiceIdentifier(aci)).join().isPresent());
   }
 
+  @Test
+  void testGetByServiceIdentifiersAsync() {
+    final UUID cachedAci = UUID.randomUUID();
+    final UUID cachedPni = UUID.randomUUID();
+    final UUID uncachedAci = UUID.randomUUID();
+    final UUID uncachedPni = UUID.randomUUID();
+    final UUID missingAci = UUID.randomUUID();
+
+    final Account uncachedAccount = AccountsHelper.generateTestAccount("+14152222222", uncachedAci, uncachedPni,
+        new ArrayList<>(), new byte[UnidentifiedAccessUtil.UNIDENTIFIED_ACCESS_KEY_LENGTH]);
+
+    when(asyncCommands.get(eq("Account3::" + cachedAci))).thenReturn(MockRedisFuture.completedFuture(
+        "{\"number\": \"+14153333333\", \"pni\": \"" + cachedPni + "\"}"));
+    when(asyncCommands.get(eq("AccountMap::" + uncachedPni)))
+        .thenReturn(MockRedisFuture.completedFuture(uncachedAci.toString()));
+
+    when(accounts.getByAccountIdentifiersAsync(any())).thenAnswer(invocation -> {
+      final Collection<UUID> uuids = invocation.getArgument(0);
+      return CompletableFuture.completedFuture(
+          uuids.contains(uncachedAci) ? Map.of(uncachedAci, uncachedAccount) : Map.of());
+    });
+
+    final Map<ServiceIdentifier, Account> accountsByServiceIdentifier =
+        accountsManager.getByServiceIdentifiersAsync(List.of(
+            new AciServiceIdentifier(cachedAci),
+            new PniServiceIdentifier(uncachedPni),
+            new AciServiceIdentifier(missingAci))).join();
+
+    assertEquals(Set.of(new AciServiceIdentifier(cachedAci), new PniServiceIdentifier(uncachedPni)),
+        accountsByServiceIdentifier.keySet());
+
+    assertEquals(cachedAci, accountsByServiceIdentifier.get(new AciServiceIdentifier(cachedAci)).getUuid());
+    assertSame(uncachedAccount, accountsByServiceIdentifier.get(new PniServiceIdentifier(uncachedPni)));
+
+    verify(accounts).getByAccountIdentifiersAsync(Set.of(uncachedAci, missingAci));
+    verify(asyncCommands).setex(eq("Account3::" + uncachedAci), anyLong(), anyString());
+  }
+
+  @Test
+  void testGetByServiceIdentifiersAsyncUnresolvedPni() {
+    final UUID aci = UUID.randomUUID();
+    final UUID pni = UUID.randomUUID();
+
+    final Account account = AccountsHelper.generateTestAccount("+14152222222", aci, pni,
+        new ArrayList<>(), new byte[UnidentifiedAccessUtil.UNIDENTIFIED_ACCESS_KEY_LENGTH]);
+
+    // The PNI isn't in the cache, so resolving it loads the whole account
+    when(accounts.getByPhoneNumberIdentifierAsync(pni))
+        .thenReturn(CompletableFuture.completedFuture(Optional.of(account)));
+
+    final Map<ServiceIdentifier, Account> accountsByServiceIdentifier =
+        accountsManager.getByServiceIdentifiersAsync(List.of(
+            new AciServiceIdentifier(aci),
+            new PniServiceIdentifier(pni))).join();
+
+    assertEquals(Set.of(new AciServiceIdentifier(aci), new PniServiceIdentifier(pni)),
+        accountsByServiceIdentifier.keySet());
+
+    assertSame(account, accountsByServiceIdentifier.get(new AciServiceIdentifier(aci)));
+    assertSame(account, accountsByServiceIdentifier.get(new PniServiceIdentifier(pni)));
+
+    // The account loaded while resolving the PNI shouldn't be loaded again
+    verify(accounts).getByPhoneNumberIdentifierAsync(pni);
+    verify(accounts, never()).getByAccountIdentifiersAsync(any());
+    verify(asyncCommands, never()).get(eq("Account3::" + aci));
+  }
+
   @Test
   void testGetAccountByNumberInCache() {
     UUID uuid = UUID.randomUUID();
@@ -277,6 +358,7 @@ class AccountsManagerTest {
     assertEquals(UUID.fromString("de24dc73-fbd8-41be-a7d5-764c70d9da7e"), account.get().getPhoneNumberIdentifier());
 
     verify(commands, times(1)).get(eq("AccountMap::+14152222222"));
+    verify(commands, times(1)).get(eq("AccountEntity::AccountMap::+14152222222"));
     verify(commands, times(1)).get(eq("Account3::" + uuid));
     verifyNoMoreInteractions(commands);
 
@@ -302,12 +384,96 @@ class AccountsManagerTest {
     assertEquals(UUID.fromString("de24dc73-fbd8-41be-a7d5-764c70d9da7e"), account.get().getPhoneNumberIdentifier());
 
     verify(asyncCommands).get(eq("AccountMap::+14152222222"));
+    verify(asyncCommands).get(eq("AccountEntity::AccountMap::+14152222222"));
     verify(asyncCommands).get(eq("Account3::" + uuid));
     verifyNoMoreInteractions(asyncCommands);
 
     verifyNoInteractions(accounts);
   }
 
+  @Test
+  void testGetAccountByNumberInSecondaryKeyCache() {
+    final UUID uuid = UUID.randomUUID();
+
+    when(commands.get(eq("AccountEntity::AccountMap::+14152222222"))).thenReturn(
+        uuid + ":{\"number\": \"+14152222222\", \"pni\": \"de24dc73-fbd8-41be-a7d5-764c70d9da7e\"}");
+
+    final Optional<Account> account = accountsManager.getByE164("+14152222222");
+
+    assertTrue(account.isPresent());
+    assertEquals(uuid, account.get().getUuid());
+    assertEquals("+14152222222", account.get().getNumber());
+    assertEquals(UUID.fromString("de24dc73-fbd8-41be-a7d5-764c70d9da7e"), account.get().getPhoneNumberIdentifier());
+
+    verify(commands).get(eq("AccountEntity::AccountMap::+14152222222"));
+    verifyNoMoreInteractions(commands);
+
+    verify(accountNearCache).putLocal(any(),
+        eq("{\"number\": \"+14152222222\", \"pni\": \"de24dc73-fbd8-41be-a7d5-764c70d9da7e\"}"));
+    verifyNoInteractions(accounts);
+  }
+
+  @Test
+  void testGetAccountByPniInSecondaryKeyCacheAsync() {
+    final UUID uuid = UUID.randomUUID();
+    final UUID pni = UUID.randomUUID();
+
+    when(asyncCommands.get(eq("AccountEntity::AccountMap::" + pni))).thenReturn(MockRedisFuture.completedFuture(
+        uuid + ":{\"number\": \"+14152222222\", \"pni\": \"" + pni + "\"}"));
+
+    final Optional<Account> account = accountsManager.getByPhoneNumberIdentifierAsync(pni).join();
+
+    assertTrue(account.isPresent());
+    assertEquals(uuid, account.get().getUuid());
+    assertEquals(pni, account.get().getPhoneNumberIdentifier());
+
+    verify(asyncCommands).get(eq("AccountEntity::AccountMap::" + pni));
+    verifyNoMoreInteractions(asyncCommands);
+
+    verifyNoInteractions(accounts);
+  }
+
+  @Test
+  void testGetAccountByNumberSecondaryKeyCopiesDisabled() {
+    final UUID uuid = UUID.randomUUID();
+    final UUID pni = UUID.randomUUID();
+
+    when(dynamicConfiguration.getAccountCacheConfiguration()).thenReturn(new DynamicAccountCacheConfiguration(false));
+
+    // During a rolling deploy, a server that predates secondary key copies may update the primary copy of an account
+    // (and its account identifier mapping) without updating or removing the copy stored alongside its phone number
+    when(commands.get(eq("AccountEntity::AccountMap::+14152222222"))).thenReturn(
+        uuid + ":{\"number\": \"+14152222222\", \"pni\": \"" + pni + "\", \"version\": 1}");
+
+    when(commands.get(eq("AccountMap::+14152222222"))).thenReturn(uuid.toString());
+    when(commands.get(eq("Account3::" + uuid))).thenReturn(
+        "{\"number\": \"+14152222222\", \"pni\": \"" + pni + "\", \"version\": 2}");
+
+    final Account account = accountsManager.getByE164("+14152222222").orElseThrow();
+
+    assertEquals(uuid, account.getUuid());
+    assertEquals(2, account.getVersion());
+
+    verify(commands, never()).get(startsWith("AccountEntity::"));
+    verifyNoInteractions(accounts);
+  }
+
+  @Test
+  void testGetAccountByUuidNotInCacheSecondaryKeyCopiesDisabled() {
+    final UUID uuid = UUID.randomUUID();
+    final UUID pni = UUID.randomUUID();
+    final Account account = AccountsHelper.generateTestAccount("+14152222222", uuid, pni, new ArrayList<>(),
+        new byte[UnidentifiedAccessUtil.UNIDENTIFIED_ACCESS_KEY_LENGTH]);
+
+    when(dynamicConfiguration.getAccountCacheConfiguration()).thenReturn(new DynamicAccountCacheConfiguration(false));
+    when(accounts.getByAccountIdentifier(uuid)).thenReturn(Optional.of(account));
+
+    assertSame(account, accountsManager.getByAccountIdentifier(uuid).orElseThrow());
+
+    verify(commands).setex(eq("Account3::" + uuid), anyLong(), anyString());
+    verify(commands, never()).setex(startsWith("AccountEntity::"), anyLong(), anyString());
+  }
+
   @Test
   void testGetAccountByUuidInCache() {
     UUID uuid = UUID.randomUUID();
@@ -350,6 +516,97 @@ class AccountsManagerTest {
     verifyNoInteractions(accounts);
   }
 
+  @Test
+  void testGetAccountByUuidInNearCache() {
+    UUID uuid = UUID.randomUUID();
+
+    when(accountNearCache.getAccountJson(uuid)).thenReturn(
+        Optional.of("{\"number\": \"+14152222222\", \"pni\": \"de24dc73-fbd8-41be-a7d5-764c70d9da7e\"}"));
+
+    final Optional<Account> account = accountsManager.getByAccountIdentifier(uuid);
+    final Optional<Account> asyncAccount = accountsManager.getByAccountIdentifierAsync(uuid).join();
+
+    assertTrue(account.isPresent());
+    assertEquals("+14152222222", account.get().getNumber());
+    assertEquals(uuid, account.get().getUuid());
+
+    assertTrue(asyncAccount.isPresent());
+    assertEquals(uuid, asyncAccount.get().getUuid());
+
+    // Each lookup should yield its own instance since accounts are mutable
+    assertNotSame(account.get(), asyncAccount.get());
+
+    verifyNoInteractions(commands);
+    verifyNoInteractions(asyncCommands);
+    verifyNoInteractions(accounts);
+  }
+
+  @Test
+  void testGetAccountByUuidPopulatesNearCache() {
+    UUID uuid = UUID.randomUUID();
+    final String accountJson = "{\"number\": \"+14152222222\", \"pni\": \"de24dc73-fbd8-41be-a7d5-764c70d9da7e\"}";
+
+    when(commands.get(eq("Account3::" + uuid))).thenReturn(accountJson);
+
+    final Optional<Account> account = accountsManager.getByAccountIdentifier(uuid);
+
+    assertTrue(account.isPresent());
+    verify(accountNearCache).putLocal(account.get(), accountJson);
+  }
+
+  @Test
+  void testGetAccountByE164InNearCacheWithStaleMapping() {
+    UUID uuid = UUID.randomUUID();
+
+    // The near cache maps the number to an account that no longer has that number
+    when(accountNearCache.getAccountIdentifierByE164("+14152222222")).thenReturn(Optional.of(uuid));
+    when(accountNearCache.getAccountJson(uuid)).thenReturn(
+        Optional.of("{\"number\": \"+14153333333\", \"pni\": \"de24dc73-fbd8-41be-a7d5-764c70d9da7e\"}"));
+
+    assertTrue(accountsManager.getByE164("+14152222222").isEmpty());
+
+    verify(commands).get(eq("AccountMap::+14152222222"));
+    verify(accounts).getByE164("+14152222222");
+  }
+
+  @Test
+  void testUpdateRefreshesNearCache() {
+    UUID uuid = UUID.randomUUID();
+    UUID pni = UUID.randomUUID();
+    Account account = AccountsHelper.generateTestAccount("+14152222222", uuid, pni, new ArrayList<>(), new byte[UnidentifiedAccessUtil.UNIDENTIFIED_ACCESS_KEY_LENGTH]);
+
+    doAnswer(ACCOUNT_UPDATE_ANSWER).when(accounts).update(any());
+
+    final Account updatedAccount = accountsManager.update(account, a -> a.setDiscoverableByPhoneNumber(false));
+
+    final InOrder inOrder = inOrder(accountNearCache);
+    inOrder.verify(accountNearCache).invalidateBeforeUpdate(account);
+    inOrder.verify(accountNearCache).put(eq(updatedAccount), any());
+
+    // Other servers must still accept the updated version after the pre-update invalidation
+    verify(accountNearCache, never()).invalidate(any());
+  }
+
+  @Test
+  void testUpdateAsyncRefreshesNearCacheAfterCacheWrite() {
+    UUID uuid = UUID.randomUUID();
+    UUID pni = UUID.randomUUID();
+    Account account = AccountsHelper.generateTestAccount("+14152222222", uuid, pni, new ArrayList<>(), new byte[UnidentifiedAccessUtil.UNIDENTIFIED_ACCESS_KEY_LENGTH]);
+
+    final MockRedisFuture<String> setexFuture = new MockRedisFuture<>();
+    when(asyncCommands.setex(any(), anyLong(), any())).thenReturn(setexFuture);
+
+    final CompletableFuture<Account> updateFuture =
+        accountsManager.updateAsync(account, a -> a.setDiscoverableByPhoneNumber(false));
+
+    // Other servers shouldn't hear about the new version until they can read it from the shared cache
+    verify(accountNearCache, never()).put(any(), any());
+
+    setexFuture.complete("OK");
+
+    verify(accountNearCache).put(eq(updateFuture.join()), any());
+  }
+
   @Test
   void testGetAccountByPniInCache() {
     UUID uuid = UUID.randomUUID();
@@ -366,6 +623,7 @@ class AccountsManagerTest {
     assertEquals(UUID.fromString("de24dc73-fbd8-41be-a7d5-764c70d9da7e"), account.get().getPhoneNumberIdentifier());
 
     verify(commands).get(eq("AccountMap::" + pni));
+    verify(commands).get(eq("AccountEntity::AccountMap::" + pni));
     verify(commands).get(eq("Account3::" + uuid));
     verifyNoMoreInteractions(commands);
 
@@ -392,6 +650,7 @@ class AccountsManagerTest {
     assertEquals(UUID.fromString("de24dc73-fbd8-41be-a7d5-764c70d9da7e"), account.get().getPhoneNumberIdentifier());
 
     verify(asyncCommands).get(eq("AccountMap::" + pni));
+    verify(asyncCommands).get(eq("AccountEntity::AccountMap::" + pni));
     verify(asyncCommands).get(eq("Account3::" + uuid));
     verifyNoMoreInteractions(asyncCommands);
 
@@ -416,6 +675,7 @@ class AccountsManagerTest {
     assertArrayEquals(USERNAME_HASH_1, account.get().getUsernameHash().get());
 
     verify(asyncCommands).get(eq("UAccountMap::" + BASE_64_URL_USERNAME_HASH_1));
+    verify(asyncCommands).get(eq("AccountEntity::UAccountMap::" + BASE_64_URL_USERNAME_HASH_1));
     verify(asyncCommands).get(eq("Account3::" + uuid));
     verifyNoMoreInteractions(asyncCommands);
 
@@ -437,9 +697,11 @@ class AccountsManagerTest {
     assertSame(retrieved.get(), account);
 
     verify(commands, times(1)).get(eq("AccountMap::+14152222222"));
+    verify(commands, times(1)).get(eq("AccountEntity::AccountMap::+14152222222"));
     verify(commands, times(1)).setex(eq("AccountMap::+14152222222"), anyLong(), eq(uuid.toString()));
     verify(commands, times(1)).setex(eq("AccountMap::" + pni), anyLong(), eq(uuid.toString()));
     verify(commands, times(1)).setex(eq("Account3::" + uuid), anyLong(), anyString());
+    verify(commands, times(2)).setex(startsWith("AccountEntity::"), anyLong(), startsWith(uuid + ":"));
     verifyNoMoreInteractions(commands);
 
     verify(accounts, times(1)).getByE164(eq("+14152222222"));
@@ -463,9 +725,11 @@ class AccountsManagerTest {
     assertSame(retrieved.get(), account);
 
     verify(asyncCommands).get(eq("AccountMap::+14152222222"));
+    verify(asyncCommands).get(eq("AccountEntity::AccountMap::+14152222222"));
     verify(asyncCommands).setex(eq("AccountMap::+14152222222"), anyLong(), eq(uuid.toString()));
     verify(asyncCommands).setex(eq("AccountMap::" + pni), anyLong(), eq(uuid.toString()));
     verify(asyncCommands).setex(eq("Account3::" + uuid), anyLong(), anyString());
+    verify(asyncCommands, times(2)).setex(startsWith("AccountEntity::"), anyLong(), startsWith(uuid + ":"));
     verifyNoMoreInteractions(asyncCommands);
 
     verify(accounts).getByE164Async(eq("+14152222222"));
@@ -490,10 +754,15 @@ class AccountsManagerTest {
     verify(commands, times(1)).setex(eq("AccountMap::+14152222222"), anyLong(), eq(uuid.toString()));
     verify(commands, times(1)).setex(eq("AccountMap::" + pni), anyLong(), eq(uuid.toString()));
     verify(commands, times(1)).setex(eq("Account3::" + uuid), anyLong(), anyString());
+    verify(commands, times(2)).setex(startsWith("AccountEntity::"), anyLong(), startsWith(uuid + ":"));
     verifyNoMoreInteractions(commands);
 
     verify(accounts, times(1)).getByAccountIdentifier(eq(uuid));
     verifyNoMoreInteractions(accounts);
+
+    // Repopulating the cache after a miss shouldn't notify other servers
+    verify(accountNearCache).putLocal(eq(account), anyString());
+    verify(accountNearCache, never()).put(any(), any());
   }
 
   @Test
@@ -516,10 +785,14 @@ class AccountsManagerTest {
     verify(asyncCommands).setex(eq("AccountMap::+14152222222"), anyLong(), eq(uuid.toString()));
     verify(asyncCommands).setex(eq("AccountMap::" + pni), anyLong(), eq(uuid.toString()));
     verify(asyncCommands).setex(eq("Account3::" + uuid), anyLong(), anyString());
+    verify(asyncCommands, times(2)).setex(startsWith("AccountEntity::"), anyLong(), startsWith(uuid + ":"));
     verifyNoMoreInteractions(asyncCommands);
 
     verify(accounts).getByAccountIdentifierAsync(eq(uuid));
     verifyNoMoreInteractions(accounts);
+
+    verify(accountNearCache).putLocal(eq(account), anyString());
+    verify(accountNearCache, never()).put(any(), any());
   }
 
   @Test
@@ -538,9 +811,11 @@ class AccountsManagerTest {
     assertSame(retrieved.get(), account);
 
     verify(commands).get(eq("AccountMap::" + pni));
+    verify(commands).get(eq("AccountEntity::AccountMap::" + pni));
     verify(commands).setex(eq("AccountMap::" + pni), anyLong(), eq(uuid.toString()));
     verify(commands).setex(eq("AccountMap::+14152222222"), anyLong(), eq(uuid.toString()));
     verify(commands).setex(eq("Account3::" + uuid), anyLong(), anyString());
+    verify(commands, times(2)).setex(startsWith("AccountEntity::"), anyLong(), startsWith(uuid + ":"));
     verifyNoMoreInteractions(commands);
 
     verify(accounts).getByPhoneNumberIdentifier(pni);
@@ -565,9 +840,11 @@ class AccountsManagerTest {
     assertSame(retrieved.get(), account);
 
     verify(asyncCommands).get(eq("AccountMap::" + pni));
+    verify(asyncCommands).get(eq("AccountEntity::AccountMap::" + pni));
     verify(asyncCommands).setex(eq("AccountMap::" + pni), anyLong(), eq(uuid.toString()));
     verify(asyncCommands).setex(eq("AccountMap::+14152222222"), anyLong(), eq(uuid.toString()));
     verify(asyncCommands).setex(eq("Account3::" + uuid), anyLong(), anyString());
+    verify(asyncCommands, times(2)).setex(startsWith("AccountEntity::"), anyLong(), startsWith(uuid + ":"));
     verifyNoMoreInteractions(asyncCommands);
 
     verify(accounts).getByPhoneNumberIdentifierAsync(pni);
@@ -593,10 +870,12 @@ class AccountsManagerTest {
     assertSame(retrieved.get(), account);
 
     verify(asyncCommands).get(eq("UAccountMap::" + BASE_64_URL_USERNAME_HASH_1));
+    verify(asyncCommands).get(eq("AccountEntity::UAccountMap::" + BASE_64_URL_USERNAME_HASH_1));
     verify(asyncCommands).setex(eq("UAccountMap::" + BASE_64_URL_USERNAME_HASH_1), anyLong(), eq(uuid.toString()));
     verify(asyncCommands).setex(eq("AccountMap::" + account.getPhoneNumberIdentifier()), anyLong(), eq(uuid.toString()));
     verify(asyncCommands).setex(eq("AccountMap::+14152222222"), anyLong(), eq(uuid.toString()));
     verify(asyncCommands).setex(eq("Account3::" + uuid), anyLong(), anyString());
+    verify(asyncCommands, times(3)).setex(startsWith("AccountEntity::"), anyLong(), startsWith(uuid + ":"));
     verifyNoMoreInteractions(asyncCommands);
 
     verify(accounts).getByUsernameHash(USERNAME_HASH_1);
@@ -618,9 +897,11 @@ class AccountsManagerTest {
     assertSame(retrieved.get(), account);
 
     verify(commands, times(1)).get(eq("AccountMap::+14152222222"));
+    verify(commands, times(1)).get(eq("AccountEntity::AccountMap::+14152222222"));
     verify(commands, times(1)).setex(eq("AccountMap::+14152222222"), anyLong(), eq(uuid.toString()));
     verify(commands, times(1)).setex(eq("AccountMap::" + pni), anyLong(), eq(uuid.toString()));
     verify(commands, times(1)).setex(eq("Account3::" + uuid), anyLong(), anyString());
+    verify(commands, times(2)).setex(startsWith("AccountEntity::"), anyLong(), startsWith(uuid + ":"));
     verifyNoMoreInteractions(commands);
 
     verify(accounts, times(1)).getByE164(eq("+14152222222"));
@@ -646,9 +927,11 @@ class AccountsManagerTest {
     assertSame(retrieved.get(), account);
 
     verify(asyncCommands).get(eq("AccountMap::+14152222222"));
+    verify(asyncCommands).get(eq("AccountEntity::AccountMap::+14152222222"));
     verify(asyncCommands).setex(eq("AccountMap::+14152222222"), anyLong(), eq(uuid.toString()));
     verify(asyncCommands).setex(eq("AccountMap::" + pni), anyLong(), eq(uuid.toString()));
     verify(asyncCommands).setex(eq("Account3::" + uuid), anyLong(), anyString());
+    verify(asyncCommands, times(2)).setex(startsWith("AccountEntity::"), anyLong(), startsWith(uuid + ":"));
     verifyNoMoreInteractions(asyncCommands);
 
     verify(accounts).getByE164Async(eq("+14152222222"));
@@ -673,6 +956,7 @@ class AccountsManagerTest {
     verify(commands, times(1)).setex(eq("AccountMap::+14152222222"), anyLong(), eq(uuid.toString()));
     verify(commands, times(1)).setex(eq("AccountMap::" + pni), anyLong(), eq(uuid.toString()));
     verify(commands, times(1)).setex(eq("Account3::" + uuid), anyLong(), anyString());
+    verify(commands, times(2)).setex(startsWith("AccountEntity::"), anyLong(), startsWith(uuid + ":"));
     verifyNoMoreInteractions(commands);
 
     verify(accounts, times(1)).getByAccountIdentifier(eq(uuid));
@@ -702,6 +986,7 @@ class AccountsManagerTest {
     verify(asyncCommands).setex(eq("AccountMap::+14152222222"), anyLong(), eq(uuid.toString()));
     verify(asyncCommands).setex(eq("AccountMap::" + pni), anyLong(), eq(uuid.toString()));
     verify(asyncCommands).setex(eq("Account3::" + uuid), anyLong(), anyString());
+    verify(asyncCommands, times(2)).setex(startsWith("AccountEntity::"), anyLong(), startsWith(uuid + ":"));
     verifyNoMoreInteractions(asyncCommands);
 
     verify(accounts).getByAccountIdentifierAsync(eq(uuid));
@@ -724,9 +1009,11 @@ class AccountsManagerTest {
     assertSame(retrieved.get(), account);
 
     verify(commands).get(eq("AccountMap::" + pni));
+    verify(commands).get(eq("AccountEntity::AccountMap::" + pni));
     verify(commands).setex(eq("AccountMap::" + pni), anyLong(), eq(uuid.toString()));
     verify(commands).setex(eq("AccountMap::+14152222222"), anyLong(), eq(uuid.toString()));
     verify(commands).setex(eq("Account3::" + uuid), anyLong(), anyString());
+    verify(commands, times(2)).setex(startsWith("AccountEntity::"), anyLong(), startsWith(uuid + ":"));
     verifyNoMoreInteractions(commands);
 
     verify(accounts).getByPhoneNumberIdentifier(pni);
@@ -754,9 +1041,11 @@ class AccountsManagerTest {
     assertSame(retrieved.get(), account);
 
     verify(asyncCommands).get(eq("AccountMap::" + pni));
+    verify(asyncCommands).get(eq("AccountEntity::AccountMap::" + pni));
     verify(asyncCommands).setex(eq("AccountMap::" + pni), anyLong(), eq(uuid.toString()));
     verify(asyncCommands).setex(eq("AccountMap::+14152222222"), anyLong(), eq(uuid.toString()));
     verify(asyncCommands).setex(eq("Account3::" + uuid), anyLong(), anyString());
+    verify(asyncCommands, times(2)).setex(startsWith("AccountEntity::"), anyLong(), startsWith(uuid + ":"));
     verifyNoMoreInteractions(asyncCommands);
 
     verify(accounts).getByPhoneNumberIdentifierAsync(pni);
@@ -782,10 +1071,12 @@ class AccountsManagerTest {
     assertSame(retrieved.get(), account);
 
     verify(asyncCommands).get(eq("UAccountMap::" + BASE_64_URL_USERNAME_HASH_1));
+    verify(asyncCommands).get(eq("AccountEntity::UAccountMap::" + BASE_64_URL_USERNAME_HASH_1));
     verify(asyncCommands).setex(eq("UAccountMap::" + BASE_64_URL_USERNAME_HASH_1), anyLong(), eq(uuid.toString()));
     verify(asyncCommands).setex(eq("AccountMap::" + account.getPhoneNumberIdentifier()), anyLong(), eq(uuid.toString()));
     verify(asyncCommands).setex(eq("AccountMap::+14152222222"), anyLong(), eq(uuid.toString()));
     verify(asyncCommands).setex(eq("Account3::" + uuid), anyLong(), anyString());
+    verify(asyncCommands, times(3)).setex(startsWith("AccountEntity::"), anyLong(), startsWith(uuid + ":"));
     verifyNoMoreInteractions(asyncCommands);
 
     verify(accounts).getByUsernameHash(USERNAME_HASH_1);
@@ -98,7 +98,8 @@ class AccountsManagerUsernameIntegrationTest {
         Tables.NUMBERS.tableName(),
         Tables.PNI_ASSIGNMENTS.tableName(),
         Tables.USERNAMES.tableName(),
-        Tables.DELETED_ACCOUNTS.tableName()));
+        Tables.DELETED_ACCOUNTS.tableName(),
+        AccountDataFormat.JSON));
 
     final AccountLockManager accountLockManager = mock(AccountLockManager.class);
 
@@ -126,6 +127,7 @@ class AccountsManagerUsernameIntegrationTest {
         accounts,
         phoneNumberIdentifiers,
         CACHE_CLUSTER_EXTENSION.getRedisCluster(),
+        mock(AccountNearCache.class),
         accountLockManager,
         mock(KeysManager.class),
         mock(MessagesManager.class),
@@ -134,6 +136,7 @@ class AccountsManagerUsernameIntegrationTest {
         mock(SecureValueRecovery2Client.class),
         mock(ClientPresenceManager.class),
         experimentEnrollmentManager,
+        dynamicConfigurationManager,
         mock(RegistrationRecoveryPasswordsManager.class),
         mock(Executor.class),
         mock(Clock.class));
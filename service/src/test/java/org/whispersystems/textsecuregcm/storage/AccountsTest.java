@@ -26,10 +26,13 @@ import java.time.Instant;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Base64;
+import java.util.Collections;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
 import java.util.Random;
+import java.util.Set;
 import java.util.UUID;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.CompletionException;
@@ -116,7 +119,8 @@ class AccountsTest {
         Tables.NUMBERS.tableName(),
         Tables.PNI_ASSIGNMENTS.tableName(),
         Tables.USERNAMES.tableName(),
-        Tables.DELETED_ACCOUNTS.tableName());
+        Tables.DELETED_ACCOUNTS.tableName(),
+        AccountDataFormat.JSON);
   }
 
   @Test
@@ -319,6 +323,31 @@ class AccountsTest {
     verifyStoredState("+14151112222", uuid, null, null, retrieved.get(), account);
   }
 
+  @Test
+  void testMixedAccountDataFormats() {
+    final Accounts smileAccounts = new Accounts(
+        DYNAMO_DB_EXTENSION.getDynamoDbClient(),
+        DYNAMO_DB_EXTENSION.getDynamoDbAsyncClient(),
+        Tables.ACCOUNTS.tableName(),
+        Tables.NUMBERS.tableName(),
+        Tables.PNI_ASSIGNMENTS.tableName(),
+        Tables.USERNAMES.tableName(),
+        Tables.DELETED_ACCOUNTS.tableName(),
+        AccountDataFormat.SMILE);
+
+    final Account account = nextRandomAccount();
+
+    // An account written in the new format should be readable by a store still writing the old format...
+    smileAccounts.create(account);
+    verifyStoredState(account.getNumber(), account.getUuid(), account.getPhoneNumberIdentifier(), null,
+        accounts.getByAccountIdentifier(account.getUuid()).orElseThrow(), account);
+
+    // ...and vice versa
+    accounts.update(account);
+    verifyStoredState(account.getNumber(), account.getUuid(), account.getPhoneNumberIdentifier(), null,
+        smileAccounts.getByAccountIdentifier(account.getUuid()).orElseThrow(), account);
+  }
+
   @Test
   void testOverwrite() {
     Device device = generateDevice(1);
@@ -419,7 +448,8 @@ class AccountsTest {
     accounts = new Accounts(mock(DynamoDbClient.class),
         dynamoDbAsyncClient, Tables.ACCOUNTS.tableName(),
         Tables.NUMBERS.tableName(), Tables.PNI_ASSIGNMENTS.tableName(), Tables.USERNAMES.tableName(),
-        Tables.DELETED_ACCOUNTS.tableName());
+        Tables.DELETED_ACCOUNTS.tableName(),
+        AccountDataFormat.JSON);
 
     Exception e = TransactionConflictException.builder().build();
     e = wrapException ? new CompletionException(e) : e;
@@ -450,6 +480,29 @@ class AccountsTest {
         retrievedAccounts.stream().map(Account::getUuid).collect(Collectors.toSet()));
   }
 
+  @Test
+  void testGetByAccountIdentifiersAsync() {
+    final Set<UUID> expectedAccountIdentifiers = new HashSet<>();
+
+    // Create enough accounts to require more than one BatchGetItem request
+    for (int i = 1; i <= 150; i++) {
+      final Account account = generateAccount("+1" + String.format("%03d", i), UUID.randomUUID(), UUID.randomUUID());
+      expectedAccountIdentifiers.add(account.getUuid());
+      accounts.create(account);
+    }
+
+    final List<UUID> requestedAccountIdentifiers = new ArrayList<>(expectedAccountIdentifiers);
+    requestedAccountIdentifiers.add(UUID.randomUUID());
+
+    final Map<UUID, Account> retrievedAccounts =
+        accounts.getByAccountIdentifiersAsync(requestedAccountIdentifiers).join();
+
+    assertEquals(expectedAccountIdentifiers, retrievedAccounts.keySet());
+    retrievedAccounts.forEach((uuid, account) -> assertEquals(uuid, account.getUuid()));
+
+    assertTrue(accounts.getByAccountIdentifiersAsync(Collections.emptyList()).join().isEmpty());
+  }
+
   @Test
   void testDelete() {
     final Device deletedDevice = generateDevice(1);
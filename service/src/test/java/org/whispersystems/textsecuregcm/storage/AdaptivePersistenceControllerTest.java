@@ -0,0 +1,140 @@
+/*
+ * Copyright 2023 Signal Messenger, LLC
+ * SPDX-License-Identifier: AGPL-3.0-only
+ */
+
+package org.whispersystems.textsecuregcm.storage;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.time.Duration;
+import java.util.OptionalDouble;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.CsvSource;
+import org.whispersystems.textsecuregcm.configuration.dynamic.DynamicConfiguration;
+import org.whispersystems.textsecuregcm.configuration.dynamic.DynamicMessagePersisterConfiguration;
+
+class AdaptivePersistenceControllerTest {
+
+  private DynamicMessagePersisterConfiguration messagePersisterConfiguration;
+  private AdaptivePersistenceController adaptivePersistenceController;
+
+  private static final Duration MAX_PERSIST_DELAY = Duration.ofMinutes(10);
+  private static final Duration MIN_PERSIST_DELAY = Duration.ofMinutes(2);
+
+  @BeforeEach
+  void setUp() {
+    @SuppressWarnings("unchecked") final DynamicConfigurationManager<DynamicConfiguration> dynamicConfigurationManager =
+        mock(DynamicConfigurationManager.class);
+
+    final DynamicConfiguration dynamicConfiguration = mock(DynamicConfiguration.class);
+    messagePersisterConfiguration = mock(DynamicMessagePersisterConfiguration.class);
+
+    when(dynamicConfigurationManager.getConfiguration()).thenReturn(dynamicConfiguration);
+    when(dynamicConfiguration.getMessagePersisterConfiguration()).thenReturn(messagePersisterConfiguration);
+
+    when(messagePersisterConfiguration.isAdaptivePersistenceEnabled()).thenReturn(true);
+    when(messagePersisterConfiguration.getMinPersistDelay()).thenReturn(MIN_PERSIST_DELAY);
+    when(messagePersisterConfiguration.getQueuePersistenceConcurrency()).thenReturn(8);
+    when(messagePersisterConfiguration.getMaxQueuePersistenceConcurrency()).thenReturn(32);
+    when(messagePersisterConfiguration.getMemoryPressureLowWatermark()).thenReturn(0.5);
+    when(messagePersisterConfiguration.getMemoryPressureHighWatermark()).thenReturn(0.8);
+    when(messagePersisterConfiguration.getQueueCountHighWatermark()).thenReturn(1_000L);
+
+    adaptivePersistenceController = new AdaptivePersistenceController(MAX_PERSIST_DELAY, dynamicConfigurationManager);
+  }
+
+  @Test
+  void testNoPressure() {
+    adaptivePersistenceController.update(OptionalDouble.of(0.1), 0);
+
+    assertEquals(0, adaptivePersistenceController.getPressure());
+    assertEquals(MAX_PERSIST_DELAY, adaptivePersistenceController.getPersistDelay());
+    assertEquals(8, adaptivePersistenceController.getQueuePersistenceConcurrency());
+  }
+
+  @ParameterizedTest
+  @CsvSource({
+      "0.5, 0, 0",
+      "0.65, 0, 0.5",
+      "0.8, 0, 1",
+      "0.95, 0, 1",
+      "0.1, 500, 0.5",
+      "0.65, 1000, 1",
+      "0.7, 100, 0.6666666666666666",
+  })
+  void testPressure(final double memoryUtilization, final long estimatedQueueCount, final double expectedPressure) {
+    adaptivePersistenceController.update(OptionalDouble.of(memoryUtilization), estimatedQueueCount);
+
+    assertEquals(expectedPressure, adaptivePersistenceController.getPressure(), 1e-9);
+  }
+
+  @Test
+  void testMaximumPressure() {
+    adaptivePersistenceController.update(OptionalDouble.of(0.9), 0);
+
+    assertEquals(1, adaptivePersistenceController.getPressure());
+    assertEquals(MIN_PERSIST_DELAY, adaptivePersistenceController.getPersistDelay());
+    assertEquals(32, adaptivePersistenceController.getQueuePersistenceConcurrency());
+  }
+
+  @Test
+  void testPartialPressure() {
+    adaptivePersistenceController.update(OptionalDouble.of(0.65), 0);
+
+    assertEquals(Duration.ofMinutes(6), adaptivePersistenceController.getPersistDelay());
+    assertEquals(20, adaptivePersistenceController.getQueuePersistenceConcurrency());
+  }
+
+  @Test
+  void testUnknownMemoryUtilization() {
+    adaptivePersistenceController.update(OptionalDouble.empty(), 0);
+    assertEquals(0, adaptivePersistenceController.getPressure());
+
+    adaptivePersistenceController.update(OptionalDouble.empty(), 1_000);
+    assertEquals(1, adaptivePersistenceController.getPressure());
+  }
+
+  @Test
+  void testGradualRelaxation() {
+    adaptivePersistenceController.update(OptionalDouble.of(1), 0);
+    assertEquals(1, adaptivePersistenceController.getPressure());
+
+    adaptivePersistenceController.update(OptionalDouble.of(0), 0);
+    assertEquals(AdaptivePersistenceController.PRESSURE_DECAY_FACTOR, adaptivePersistenceController.getPressure());
+
+    for (int i = 0; i < 100; i++) {
+      adaptivePersistenceController.update(OptionalDouble.of(0), 0);
+    }
+
+    assertEquals(0, adaptivePersistenceController.getPressure());
+    assertEquals(MAX_PERSIST_DELAY, adaptivePersistenceController.getPersistDelay());
+  }
+
+  @Test
+  void testDisabled() {
+    adaptivePersistenceController.update(OptionalDouble.of(1), 0);
+    assertEquals(1, adaptivePersistenceController.getPressure());
+
+    when(messagePersisterConfiguration.isAdaptivePersistenceEnabled()).thenReturn(false);
+
+    assertEquals(MAX_PERSIST_DELAY, adaptivePersistenceController.getPersistDelay());
+    assertEquals(8, adaptivePersistenceController.getQueuePersistenceConcurrency());
+
+    adaptivePersistenceController.update(OptionalDouble.of(1), 0);
+    assertEquals(0, adaptivePersistenceController.getPressure());
+  }
+
+  @Test
+  void testMinPersistDelayLongerThanMaxPersistDelay() {
+    when(messagePersisterConfiguration.getMinPersistDelay()).thenReturn(MAX_PERSIST_DELAY.multipliedBy(2));
+
+    adaptivePersistenceController.update(OptionalDouble.of(1), 0);
+
+    assertEquals(MAX_PERSIST_DELAY, adaptivePersistenceController.getPersistDelay());
+  }
+}
@@ -6,6 +6,11 @@ import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.when;
 
 import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.whispersystems.textsecuregcm.configuration.dynamic.DynamicConfiguration;
@@ -149,4 +154,53 @@ class DynamicConfigurationManagerTest {
     });
 
   }
+
+  @Test
+  void testGetConfigWithoutMonitor() {
+    when(appConfig.startConfigurationSession(startConfigurationSession))
+        .thenReturn(StartConfigurationSessionResponse.builder()
+            .initialConfigurationToken("initial")
+            .build());
+
+    when(appConfig.getLatestConfiguration(GetLatestConfigurationRequest.builder()
+        .configurationToken("initial").build()))
+        .thenReturn(GetLatestConfigurationResponse.builder()
+            .configuration(VALID_CONFIG)
+            .nextPollConfigurationToken("next").build());
+
+    when(appConfig.getLatestConfiguration(GetLatestConfigurationRequest.builder()
+        .configurationToken("next").build()))
+        .thenReturn(GetLatestConfigurationResponse.builder()
+            .configuration(SdkBytes.fromUtf8String(""))
+            .nextPollConfigurationToken("next").build());
+
+    assertTimeoutPreemptively(Duration.ofSeconds(5), () -> {
+      dynamicConfigurationManager.start();
+      assertThat(dynamicConfigurationManager.getConfiguration()).isNotNull();
+
+      final ExecutorService readerExecutor = Executors.newFixedThreadPool(8);
+
+      try {
+        // Once the initial configuration has arrived, concurrent readers should never need to acquire the manager's
+        // monitor; if they did, they'd all block here until the timeout
+        synchronized (dynamicConfigurationManager) {
+          final List<Future<?>> readerFutures = new ArrayList<>();
+
+          for (int i = 0; i < 8; i++) {
+            readerFutures.add(readerExecutor.submit(() -> {
+              for (int j = 0; j < 10_000; j++) {
+                assertThat(dynamicConfigurationManager.getConfiguration()).isNotNull();
+              }
+            }));
+          }
+
+          for (final Future<?> readerFuture : readerFutures) {
+            readerFuture.get();
+          }
+        }
+      } finally {
+        readerExecutor.shutdown();
+      }
+    });
+  }
 }
@@ -6,6 +6,7 @@
 package org.whispersystems.textsecuregcm.storage;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
 import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.junit.jupiter.api.Assertions.assertTimeoutPreemptively;
 import static org.mockito.ArgumentMatchers.any;
@@ -13,9 +14,9 @@ import static org.mockito.ArgumentMatchers.anyList;
 import static org.mockito.ArgumentMatchers.anyLong;
 import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.atLeastOnce;
-import static org.mockito.Mockito.doAnswer;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
@@ -28,6 +29,8 @@ import java.time.Instant;
 import java.util.List;
 import java.util.Optional;
 import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.ScheduledExecutorService;
@@ -38,7 +41,6 @@ import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.RegisterExtension;
 import org.mockito.ArgumentCaptor;
-import org.mockito.stubbing.Answer;
 import org.whispersystems.textsecuregcm.configuration.dynamic.DynamicConfiguration;
 import org.whispersystems.textsecuregcm.entities.MessageProtos;
 import org.whispersystems.textsecuregcm.redis.RedisClusterExtension;
@@ -77,7 +79,8 @@ class MessagePersisterTest {
 
     final Account account = mock(Account.class);
 
-    when(accountsManager.getByAccountIdentifier(DESTINATION_ACCOUNT_UUID)).thenReturn(Optional.of(account));
+    when(accountsManager.getByAccountIdentifierAsync(DESTINATION_ACCOUNT_UUID))
+        .thenReturn(CompletableFuture.completedFuture(Optional.of(account)));
     when(account.getNumber()).thenReturn(DESTINATION_ACCOUNT_NUMBER);
     when(dynamicConfigurationManager.getConfiguration()).thenReturn(new DynamicConfiguration());
 
@@ -90,19 +93,19 @@ class MessagePersisterTest {
     messagePersister = new MessagePersister(messagesCache, messagesManager, accountsManager,
         dynamicConfigurationManager, PERSIST_DELAY, 1);
 
-    doAnswer(invocation -> {
+    when(messagesDynamoDb.storeAsync(any(), any(), anyLong())).thenReturn(CompletableFuture.completedFuture(null));
+
+    when(messagesManager.persistMessages(any(UUID.class), anyLong(), any())).thenAnswer(invocation -> {
       final UUID destinationUuid = invocation.getArgument(0);
       final long destinationDeviceId = invocation.getArgument(1);
       final List<MessageProtos.Envelope> messages = invocation.getArgument(2);
 
-      messagesDynamoDb.store(messages, destinationUuid, destinationDeviceId);
-
-      for (final MessageProtos.Envelope message : messages) {
-        messagesCache.remove(destinationUuid, destinationDeviceId, UUID.fromString(message.getServerGuid())).get();
-      }
-
-      return null;
-    }).when(messagesManager).persistMessages(any(UUID.class), anyLong(), any());
+      return messagesDynamoDb.storeAsync(messages, destinationUuid, destinationDeviceId)
+          .thenCompose(ignored -> messagesCache.remove(destinationUuid, destinationDeviceId, messages.stream()
+              .map(message -> UUID.fromString(message.getServerGuid()))
+              .toList()))
+          .thenApply(List::size);
+    });
   }
 
   @AfterEach
@@ -119,7 +122,7 @@ class MessagePersisterTest {
   void testPersistNextQueuesNoQueues() {
     messagePersister.persistNextQueues(Instant.now());
 
-    verify(accountsManager, never()).getByAccountIdentifier(any(UUID.class));
+    verify(accountsManager, never()).getByAccountIdentifierAsync(any(UUID.class));
   }
 
   @Test
@@ -136,9 +139,10 @@ class MessagePersisterTest {
 
     final ArgumentCaptor<List<MessageProtos.Envelope>> messagesCaptor = ArgumentCaptor.forClass(List.class);
 
-    verify(messagesDynamoDb, atLeastOnce()).store(messagesCaptor.capture(), eq(DESTINATION_ACCOUNT_UUID),
+    verify(messagesDynamoDb, atLeastOnce()).storeAsync(messagesCaptor.capture(), eq(DESTINATION_ACCOUNT_UUID),
         eq(DESTINATION_DEVICE_ID));
     assertEquals(messageCount, messagesCaptor.getAllValues().stream().mapToInt(List::size).sum());
+    assertEquals(0, messagePersister.getBacklogAgeMillis());
   }
 
   @Test
@@ -153,7 +157,7 @@ class MessagePersisterTest {
 
     messagePersister.persistNextQueues(now);
 
-    verify(messagesDynamoDb, never()).store(any(), any(), anyLong());
+    verify(messagesDynamoDb, never()).storeAsync(any(), any(), anyLong());
   }
 
   @Test
@@ -171,7 +175,8 @@ class MessagePersisterTest {
 
       final Account account = mock(Account.class);
 
-      when(accountsManager.getByAccountIdentifier(accountUuid)).thenReturn(Optional.of(account));
+      when(accountsManager.getByAccountIdentifierAsync(accountUuid))
+          .thenReturn(CompletableFuture.completedFuture(Optional.of(account)));
       when(account.getNumber()).thenReturn(accountNumber);
 
       insertMessages(accountUuid, deviceId, messagesPerQueue, now);
@@ -183,7 +188,7 @@ class MessagePersisterTest {
 
     final ArgumentCaptor<List<MessageProtos.Envelope>> messagesCaptor = ArgumentCaptor.forClass(List.class);
 
-    verify(messagesDynamoDb, atLeastOnce()).store(messagesCaptor.capture(), any(UUID.class), anyLong());
+    verify(messagesDynamoDb, atLeastOnce()).storeAsync(messagesCaptor.capture(), any(UUID.class), anyLong());
     assertEquals(queueCount * messagesPerQueue, messagesCaptor.getAllValues().stream().mapToInt(List::size).sum());
   }
 
@@ -197,12 +202,14 @@ class MessagePersisterTest {
     insertMessages(DESTINATION_ACCOUNT_UUID, DESTINATION_DEVICE_ID, messageCount, now);
     setNextSlotToPersist(SlotHash.getSlot(queueName));
 
-    doAnswer((Answer<Void>) invocation -> {
-      throw new RuntimeException("OH NO.");
-    }).when(messagesDynamoDb).store(any(), eq(DESTINATION_ACCOUNT_UUID), eq(DESTINATION_DEVICE_ID));
+    when(messagesDynamoDb.storeAsync(any(), eq(DESTINATION_ACCOUNT_UUID), eq(DESTINATION_DEVICE_ID)))
+        .thenReturn(CompletableFuture.failedFuture(new RuntimeException("OH NO.")));
 
     messagePersister.persistNextQueues(now.plus(messagePersister.getPersistDelay()));
 
+    verify(messagesDynamoDb, times(MessagePersister.MAX_PERSIST_MESSAGES_ATTEMPTS))
+        .storeAsync(any(), eq(DESTINATION_ACCOUNT_UUID), eq(DESTINATION_DEVICE_ID));
+
     assertEquals(List.of(queueName),
         messagesCache.getQueuesToPersist(SlotHash.getSlot(queueName),
             Instant.now().plus(messagePersister.getPersistDelay()), 1));
@@ -219,11 +226,49 @@ class MessagePersisterTest {
     setNextSlotToPersist(SlotHash.getSlot(queueName));
 
     // returning `0` indicates something not working correctly
-    when(messagesManager.persistMessages(any(UUID.class), anyLong(), anyList())).thenReturn(0);
+    when(messagesManager.persistMessages(any(UUID.class), anyLong(), anyList()))
+        .thenReturn(CompletableFuture.completedFuture(0));
+
+    assertTimeoutPreemptively(Duration.ofSeconds(1), () -> {
+      final CompletionException completionException = assertThrows(CompletionException.class,
+          () -> messagePersister.persistQueue(DESTINATION_ACCOUNT_UUID, DESTINATION_DEVICE_ID).join());
+
+      assertInstanceOf(MessagePersistenceException.class, completionException.getCause());
+    });
+  }
+
+  @Test
+  void testPersistQueueFailureDoesNotBlockOtherQueues() {
+    final int slot = 7;
+    final int messagesPerQueue = 10;
+    final Instant now = Instant.now();
+
+    final String failingQueueName = generateRandomQueueNameForSlot(slot);
+    final UUID failingAccountUuid = MessagesCache.getAccountUuidFromQueueName(failingQueueName);
+    final long failingDeviceId = MessagesCache.getDeviceIdFromQueueName(failingQueueName);
+
+    final String succeedingQueueName = generateRandomQueueNameForSlot(slot);
+    final UUID succeedingAccountUuid = MessagesCache.getAccountUuidFromQueueName(succeedingQueueName);
+    final long succeedingDeviceId = MessagesCache.getDeviceIdFromQueueName(succeedingQueueName);
+
+    for (final UUID accountUuid : List.of(failingAccountUuid, succeedingAccountUuid)) {
+      when(accountsManager.getByAccountIdentifierAsync(accountUuid))
+          .thenReturn(CompletableFuture.completedFuture(Optional.of(mock(Account.class))));
+    }
+
+    insertMessages(failingAccountUuid, failingDeviceId, messagesPerQueue, now);
+    insertMessages(succeedingAccountUuid, succeedingDeviceId, messagesPerQueue, now);
+
+    when(messagesDynamoDb.storeAsync(any(), eq(failingAccountUuid), eq(failingDeviceId)))
+        .thenReturn(CompletableFuture.failedFuture(new RuntimeException("OH NO.")));
+
+    setNextSlotToPersist(slot);
+
+    assertEquals(2, messagePersister.persistNextQueues(now.plus(messagePersister.getPersistDelay())));
 
-    assertTimeoutPreemptively(Duration.ofSeconds(1), () ->
-        assertThrows(MessagePersistenceException.class,
-            () -> messagePersister.persistQueue(DESTINATION_ACCOUNT_UUID, DESTINATION_DEVICE_ID)));
+    verify(messagesDynamoDb).storeAsync(anyList(), eq(succeedingAccountUuid), eq(succeedingDeviceId));
+    assertEquals(List.of(failingQueueName),
+        messagesCache.getQueuesToPersist(slot, Instant.now().plus(messagePersister.getPersistDelay()), 2));
   }
 
   @SuppressWarnings("SameParameterValue")
@@ -36,9 +36,11 @@ import java.util.Collections;
 import java.util.Deque;
 import java.util.List;
 import java.util.Optional;
+import java.util.OptionalDouble;
 import java.util.Random;
 import java.util.UUID;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.ScheduledExecutorService;
@@ -124,6 +126,16 @@ class MessagesCacheTest {
           generateRandomMessage(messageGuid, sealedSender)) > 0);
     }
 
+    @ParameterizedTest
+    @ValueSource(booleans = {true, false})
+    void testInsertAsync(final boolean sealedSender) {
+      final UUID messageGuid = UUID.randomUUID();
+      assertTrue(messagesCache.insertAsync(messageGuid, DESTINATION_UUID, DESTINATION_DEVICE_ID,
+          generateRandomMessage(messageGuid, sealedSender)).join() > 0);
+
+      assertTrue(messagesCache.hasMessages(DESTINATION_UUID, DESTINATION_DEVICE_ID));
+    }
+
     @Test
     void testDoubleInsertGuid() {
       final UUID duplicateGuid = UUID.randomUUID();
@@ -187,7 +199,7 @@ class MessagesCacheTest {
 
       assertEquals(messagesToRemove, removedMessages);
       assertEquals(messagesToPreserve,
-          messagesCache.getMessagesToPersist(DESTINATION_UUID, DESTINATION_DEVICE_ID, messageCount));
+          messagesCache.getMessagesToPersist(DESTINATION_UUID, DESTINATION_DEVICE_ID, messageCount).join());
     }
 
     @Test
@@ -387,6 +399,37 @@ class MessagesCacheTest {
       assertEquals(DESTINATION_DEVICE_ID, MessagesCache.getDeviceIdFromQueueName(queues.get(0)));
     }
 
+    @Test
+    void testGetQueuesToPersistCountAndOldestTimestamp() {
+      final int slot = SlotHash.getSlot(DESTINATION_UUID + "::" + DESTINATION_DEVICE_ID);
+
+      assertEquals(0, messagesCache.getQueuesToPersistCount(slot).join());
+      assertTrue(messagesCache.getOldestQueueToPersistTimestamp(slot).isEmpty());
+
+      final Instant start = Instant.ofEpochMilli(System.currentTimeMillis());
+      final UUID messageGuid = UUID.randomUUID();
+      messagesCache.insert(messageGuid, DESTINATION_UUID, DESTINATION_DEVICE_ID,
+          generateRandomMessage(messageGuid, true));
+
+      assertEquals(1, messagesCache.getQueuesToPersistCount(slot).join());
+      assertEquals(0, messagesCache.getQueuesToPersistCount(slot + 1).join());
+
+      final Instant oldestQueueTimestamp = messagesCache.getOldestQueueToPersistTimestamp(slot).orElseThrow();
+      assertFalse(oldestQueueTimestamp.isBefore(start));
+      assertFalse(oldestQueueTimestamp.isAfter(Instant.now()));
+    }
+
+    @Test
+    void testGetMemoryUtilization() {
+      assertEquals(OptionalDouble.of(0.25), MessagesCache.getMemoryUtilization(
+          "# Memory\r\nused_memory:1024\r\nused_memory_human:1.00K\r\nmaxmemory:4096\r\nmaxmemory_human:4.00K\r\n"));
+
+      assertEquals(OptionalDouble.empty(), MessagesCache.getMemoryUtilization(
+          "# Memory\r\nused_memory:1024\r\nmaxmemory:0\r\n"));
+
+      assertEquals(OptionalDouble.empty(), MessagesCache.getMemoryUtilization(""));
+    }
+
     @Test
     void testNotifyListenerNewMessage() {
       final AtomicBoolean notified = new AtomicBoolean(false);
@@ -448,8 +491,8 @@ class MessagesCacheTest {
       assertTimeoutPreemptively(Duration.ofSeconds(5), () -> {
         messagesCache.addMessageAvailabilityListener(DESTINATION_UUID, DESTINATION_DEVICE_ID, listener);
 
-        messagesCache.lockQueueForPersistence(DESTINATION_UUID, DESTINATION_DEVICE_ID);
-        messagesCache.unlockQueueForPersistence(DESTINATION_UUID, DESTINATION_DEVICE_ID);
+        messagesCache.lockQueueForPersistence(DESTINATION_UUID, DESTINATION_DEVICE_ID).join();
+        messagesCache.unlockQueueForPersistence(DESTINATION_UUID, DESTINATION_DEVICE_ID).join();
 
         synchronized (notified) {
           while (!notified.get()) {
@@ -462,6 +505,112 @@ class MessagesCacheTest {
     }
 
 
+    @Test
+    void testCoalesceNewMessageNotifications() {
+      final AtomicInteger notificationCount = new AtomicInteger();
+
+      final MessageAvailabilityListener listener = new MessageAvailabilityListener() {
+        @Override
+        public boolean handleNewMessagesAvailable() {
+          notificationCount.incrementAndGet();
+          return true;
+        }
+
+        @Override
+        public boolean handleMessagesPersisted() {
+          return true;
+        }
+      };
+
+      assertTimeoutPreemptively(Duration.ofSeconds(5), () -> {
+        messagesCache.addMessageAvailabilityListener(DESTINATION_UUID, DESTINATION_DEVICE_ID, listener);
+
+        final String channel = "__keyspace@0__:user_queue::{"
+            + MessagesCache.getQueueName(DESTINATION_UUID, DESTINATION_DEVICE_ID) + "}";
+
+        // Block the notification executor while several notifications arrive
+        final CountDownLatch notificationExecutorBlockedLatch = new CountDownLatch(1);
+        sharedExecutorService.execute(() -> {
+          try {
+            notificationExecutorBlockedLatch.await();
+          } catch (final InterruptedException e) {
+            throw new RuntimeException(e);
+          }
+        });
+
+        for (int i = 0; i < 10; i++) {
+          messagesCache.message(null, channel, "zadd");
+        }
+
+        notificationExecutorBlockedLatch.countDown();
+        sharedExecutorService.submit(() -> {}).get();
+
+        assertEquals(1, notificationCount.get());
+
+        // Once the pending notification has been delivered, new messages should trigger a new notification
+        messagesCache.message(null, channel, "zadd");
+        sharedExecutorService.submit(() -> {}).get();
+
+        assertEquals(2, notificationCount.get());
+      });
+    }
+
+    @Test
+    void testNotifyManyListeners() {
+      // Add more listeners than fit in a single subscription batch, and add them concurrently so that subscription
+      // requests are coalesced
+      final int listenerCount = MessagesCache.MAX_SUBSCRIPTION_BATCH_SIZE + 1;
+      final List<UUID> accountIdentifiers = new ArrayList<>(listenerCount);
+      final CountDownLatch notificationLatch = new CountDownLatch(listenerCount);
+
+      final ExecutorService listenerExecutor = Executors.newFixedThreadPool(16);
+
+      try {
+        assertTimeoutPreemptively(Duration.ofSeconds(30), () -> {
+          final List<CompletableFuture<Void>> addListenerFutures = new ArrayList<>(listenerCount);
+
+          for (int i = 0; i < listenerCount; i++) {
+            final UUID accountIdentifier = UUID.randomUUID();
+            accountIdentifiers.add(accountIdentifier);
+
+            final MessageAvailabilityListener listener = new MessageAvailabilityListener() {
+              private final AtomicBoolean notified = new AtomicBoolean(false);
+
+              @Override
+              public boolean handleNewMessagesAvailable() {
+                if (notified.compareAndSet(false, true)) {
+                  notificationLatch.countDown();
+                }
+
+                return true;
+              }
+
+              @Override
+              public boolean handleMessagesPersisted() {
+                return true;
+              }
+            };
+
+            addListenerFutures.add(CompletableFuture.runAsync(() ->
+                messagesCache.addMessageAvailabilityListener(accountIdentifier, DESTINATION_DEVICE_ID, listener),
+                listenerExecutor));
+          }
+
+          CompletableFuture.allOf(addListenerFutures.toArray(new CompletableFuture[0])).join();
+
+          for (final UUID accountIdentifier : accountIdentifiers) {
+            final UUID messageGuid = UUID.randomUUID();
+            messagesCache.insert(messageGuid, accountIdentifier, DESTINATION_DEVICE_ID,
+                generateRandomMessage(messageGuid, true));
+          }
+
+          notificationLatch.await();
+        });
+      } finally {
+        listenerExecutor.shutdown();
+      }
+    }
+
     /**
      * Helper class that implements {@link MessageAvailabilityListener#handleNewMessagesAvailable()} by always returning
      * {@code false}. Its {@code counter} field tracks how many times {@code handleNewMessagesAvailable} has been
@@ -11,6 +11,7 @@ import com.google.protobuf.ByteString;
 import java.time.Duration;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 import java.util.Random;
 import java.util.UUID;
@@ -18,6 +19,7 @@ import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
 import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
@@ -288,6 +290,31 @@ class MessagesDynamoDbTest {
         .isEmpty();
   }
 
+  @Test
+  void testDeleteMessages() throws Exception {
+    final UUID destinationUuid = UUID.randomUUID();
+    final int messageCount = AbstractDynamoDbStore.DYNAMO_DB_MAX_BATCH_SIZE * 2 + 1;
+
+    final List<MessageProtos.Envelope> messages = new ArrayList<>(messageCount);
+    for (int i = 0; i < messageCount; i++) {
+      messages.add(MessageHelper.createMessage(UUID.randomUUID(), 1, destinationUuid, (i + 1L) * 1000, "message " + i));
+    }
+
+    messagesDynamoDb.store(messages, destinationUuid, 1);
+    messagesDynamoDb.store(List.of(MESSAGE3), destinationUuid, 2);
+
+    final Map<UUID, Long> serverTimestampsByGuid = messages.subList(1, messageCount).stream()
+        .collect(Collectors.toMap(message -> UUID.fromString(message.getServerGuid()),
+            MessageProtos.Envelope::getServerTimestamp));
+
+    messagesDynamoDb.deleteMessages(destinationUuid, 1, serverTimestampsByGuid).get(5, TimeUnit.SECONDS);
+
+    assertThat(load(destinationUuid, 1, MessagesDynamoDb.RESULT_SET_CHUNK_SIZE)).isNotNull().hasSize(1)
+        .element(0).isEqualTo(messages.get(0));
+    assertThat(load(destinationUuid, 2, MessagesDynamoDb.RESULT_SET_CHUNK_SIZE)).isNotNull().hasSize(1)
+        .element(0).isEqualTo(MESSAGE3);
+  }
+
   private List<MessageProtos.Envelope> load(final UUID destinationUuid, final long destinationDeviceId,
       final int count) {
     return Flux.from(messagesDynamoDb.load(destinationUuid, destinationDeviceId, count))
@@ -6,13 +6,21 @@
 package org.whispersystems.textsecuregcm.storage;
 
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.argThat;
 import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.verifyNoMoreInteractions;
+import static org.mockito.Mockito.when;
 
+import java.util.List;
+import java.util.Map;
 import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
 import org.junit.jupiter.api.Test;
 import org.whispersystems.textsecuregcm.entities.MessageProtos.Envelope;
 
@@ -46,4 +54,29 @@ class MessagesManagerTest {
 
     verifyNoMoreInteractions(reportMessageManager);
   }
+
+  @Test
+  void deleteBatch() throws Exception {
+    final UUID destinationUuid = UUID.randomUUID();
+    final long destinationDeviceId = 1L;
+
+    final UUID cachedGuid = UUID.randomUUID();
+    final UUID persistedGuid = UUID.randomUUID();
+
+    final Map<UUID, Long> serverTimestampsByGuid = Map.of(cachedGuid, 1L, persistedGuid, 2L);
+
+    when(messagesCache.remove(eq(destinationUuid), eq(destinationDeviceId), anyList()))
+        .thenReturn(CompletableFuture.completedFuture(List.of(Envelope.newBuilder()
+            .setServerGuid(cachedGuid.toString())
+            .build())));
+
+    when(messagesDynamoDb.deleteMessages(any(), anyLong(), any()))
+        .thenReturn(CompletableFuture.completedFuture(null));
+
+    messagesManager.delete(destinationUuid, destinationDeviceId, serverTimestampsByGuid).get(1, TimeUnit.SECONDS);
+
+    verify(messagesCache).remove(eq(destinationUuid), eq(destinationDeviceId),
+        argThat((List<UUID> guids) -> guids.size() == 2 && guids.containsAll(serverTimestampsByGuid.keySet())));
+    verify(messagesDynamoDb).deleteMessages(destinationUuid, destinationDeviceId, Map.of(persistedGuid, 2L));
+  }
 }
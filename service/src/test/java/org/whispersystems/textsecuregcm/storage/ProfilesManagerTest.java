@@ -30,6 +30,7 @@ import org.junit.jupiter.api.Timeout;
 import org.signal.libsignal.protocol.ServiceId;
 import org.signal.libsignal.zkgroup.InvalidInputException;
 import org.signal.libsignal.zkgroup.profiles.ProfileKey;
+import org.whispersystems.textsecuregcm.redis.ClusterClientSideCache;
 import org.whispersystems.textsecuregcm.redis.FaultTolerantRedisCluster;
 import org.whispersystems.textsecuregcm.tests.util.MockRedisFuture;
 import org.whispersystems.textsecuregcm.tests.util.ProfileTestHelper;
@@ -41,6 +42,7 @@ public class ProfilesManagerTest {
   private Profiles profiles;
   private RedisAdvancedClusterCommands<String, String> commands;
   private RedisAdvancedClusterAsyncCommands<String, String> asyncCommands;
+  private FaultTolerantRedisCluster cacheCluster;
 
   private ProfilesManager profilesManager;
 
@@ -49,7 +51,7 @@ public class ProfilesManagerTest {
     //noinspection unchecked
     commands = mock(RedisAdvancedClusterCommands.class);
     asyncCommands = mock(RedisAdvancedClusterAsyncCommands.class);
-    final FaultTolerantRedisCluster cacheCluster = RedisClusterHelper.builder()
+    cacheCluster = RedisClusterHelper.builder()
         .stringCommands(commands)
         .stringAsyncCommands(asyncCommands)
         .build();
@@ -214,6 +216,33 @@ public class ProfilesManagerTest {
     verifyNoMoreInteractions(profiles);
   }
 
+  @Test
+  public void testClientSideCache() {
+    final ClusterClientSideCache clientSideCache = mock(ClusterClientSideCache.class);
+    final ProfilesManager clientSideCachingProfilesManager =
+        new ProfilesManager(profiles, cacheCluster, clientSideCache);
+
+    final UUID uuid = UUID.randomUUID();
+    final byte[] name = ProfileTestHelper.generateRandomByteArray(81);
+    final VersionedProfile profile = new VersionedProfile("someversion", name, "someavatar", null, null,
+        null, "somecommitment".getBytes());
+
+    when(clientSideCache.get(eq("profiles::" + uuid), eq("someversion"), any())).thenReturn(String.format(
+        "{\"version\": \"someversion\", \"name\": \"%s\", \"avatar\": \"someavatar\"}",
+        ProfileTestHelper.encodeToBase64(name)));
+
+    final Optional<VersionedProfile> retrieved = clientSideCachingProfilesManager.get(uuid, "someversion");
+
+    assertTrue(retrieved.isPresent());
+    assertArrayEquals(name, retrieved.get().name());
+    verifyNoMoreInteractions(commands);
+
+    clientSideCachingProfilesManager.set(uuid, profile);
+
+    verify(commands).hset(eq("profiles::" + uuid), eq("someversion"), any());
+    verify(clientSideCache).invalidate("profiles::" + uuid);
+  }
+
   @Test
   public void testSetAsync() {
     final UUID uuid = UUID.randomUUID();
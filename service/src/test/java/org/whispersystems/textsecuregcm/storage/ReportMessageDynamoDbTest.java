@@ -10,7 +10,9 @@ import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
 import java.time.Duration;
+import java.util.List;
 import java.util.UUID;
+import java.util.stream.IntStream;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.RegisterExtension;
@@ -44,8 +46,7 @@ class ReportMessageDynamoDbTest {
         () -> assertFalse(reportMessageDynamoDb.remove(hash2))
     );
 
-    reportMessageDynamoDb.store(hash1);
-    reportMessageDynamoDb.store(hash2);
+    reportMessageDynamoDb.store(List.of(hash1, hash2));
 
     assertAll("both hashes should be found",
         () -> assertTrue(reportMessageDynamoDb.remove(hash1)),
@@ -58,4 +59,17 @@ class ReportMessageDynamoDbTest {
     );
   }
 
+  @Test
+  void testStoreMultipleBatches() {
+    final List<byte[]> hashes = IntStream.range(0, AbstractDynamoDbStore.DYNAMO_DB_MAX_BATCH_SIZE * 2 + 1)
+        .mapToObj(i -> UUIDUtil.toBytes(UUID.randomUUID()))
+        .toList();
+
+    reportMessageDynamoDb.store(hashes);
+
+    for (final byte[] hash : hashes) {
+      assertTrue(reportMessageDynamoDb.remove(hash));
+    }
+  }
+
 }
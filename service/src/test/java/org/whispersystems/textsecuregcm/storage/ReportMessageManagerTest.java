@@ -9,8 +9,10 @@ import static org.junit.jupiter.api.Assertions.assertDoesNotThrow;
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.argThat;
 import static org.mockito.Mockito.doThrow;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.verifyNoInteractions;
 import static org.mockito.Mockito.when;
@@ -59,19 +61,74 @@ class ReportMessageManagerTest {
   }
 
   @Test
-  void testStore() {
+  void testStore() throws InterruptedException {
     assertDoesNotThrow(() -> reportMessageManager.store(null, messageGuid));
+    assertEquals(0, reportMessageManager.writeNextBatch(0));
 
     verifyNoInteractions(reportMessageDynamoDb);
 
     reportMessageManager.store(sourceAci.toString(), messageGuid);
+    assertEquals(1, reportMessageManager.writeNextBatch(0));
 
-    verify(reportMessageDynamoDb).store(any());
+    verify(reportMessageDynamoDb).store(argThat(hashes -> hashes.size() == 1));
 
     doThrow(RuntimeException.class)
         .when(reportMessageDynamoDb).store(any());
 
-    assertDoesNotThrow(() -> reportMessageManager.store(sourceAci.toString(), messageGuid));
+    reportMessageManager.store(sourceAci.toString(), UUID.randomUUID());
+    assertDoesNotThrow(() -> reportMessageManager.writeNextBatch(0));
+  }
+
+  @Test
+  void testStoreBatched() throws InterruptedException {
+    for (int i = 0; i < AbstractDynamoDbStore.DYNAMO_DB_MAX_BATCH_SIZE + 1; i++) {
+      reportMessageManager.store(sourceAci.toString(), UUID.randomUUID());
+    }
+
+    assertEquals(AbstractDynamoDbStore.DYNAMO_DB_MAX_BATCH_SIZE, reportMessageManager.writeNextBatch(0));
+    assertEquals(1, reportMessageManager.writeNextBatch(0));
+    assertEquals(0, reportMessageManager.writeNextBatch(0));
+
+    verify(reportMessageDynamoDb)
+        .store(argThat(hashes -> hashes.size() == AbstractDynamoDbStore.DYNAMO_DB_MAX_BATCH_SIZE));
+    verify(reportMessageDynamoDb).store(argThat(hashes -> hashes.size() == 1));
+  }
+
+  @Test
+  void testStoreQueueFull() throws InterruptedException {
+    reportMessageManager = new ReportMessageManager(reportMessageDynamoDb,
+        RATE_LIMIT_CLUSTER_EXTENSION.getRedisCluster(), Duration.ofDays(1), 1);
+
+    reportMessageManager.store(sourceAci.toString(), messageGuid);
+    reportMessageManager.store(sourceAci.toString(), UUID.randomUUID());
+
+    assertEquals(1, reportMessageManager.writeNextBatch(0));
+    assertEquals(0, reportMessageManager.writeNextBatch(0));
+  }
+
+  @Test
+  void testReportPending() throws InterruptedException {
+    reportMessageManager.store(sourceAci.toString(), messageGuid);
+
+    reportMessageManager.report(Optional.of(sourceNumber), Optional.of(sourceAci), Optional.of(sourcePni), messageGuid,
+        reporterUuid, Optional.empty(), "user-agent");
+
+    assertEquals(1, reportMessageManager.getRecentReportCount(sourceAccount));
+    verify(reportMessageDynamoDb, never()).remove(any());
+
+    // The hash was reported before it was written, so the writer should clean up after itself
+    assertEquals(1, reportMessageManager.writeNextBatch(0));
+    verify(reportMessageDynamoDb).store(any());
+    verify(reportMessageDynamoDb).remove(any());
+  }
+
+  @Test
+  void testStartStop() {
+    reportMessageManager.start();
+    reportMessageManager.store(sourceAci.toString(), messageGuid);
+    reportMessageManager.stop();
+
+    verify(reportMessageDynamoDb).store(argThat(hashes -> hashes.size() == 1));
   }
 
   @Test
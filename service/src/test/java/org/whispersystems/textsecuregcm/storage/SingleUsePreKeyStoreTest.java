@@ -53,6 +53,64 @@ abstract class SingleUsePreKeyStoreTest<K extends PreKey<?>> {
     assertEquals(Optional.of(preKeys.get(1)), preKeyStore.take(accountIdentifier, deviceId).join());
   }
 
+  @Test
+  void storeReplacesExistingKeys() {
+    final SingleUsePreKeyStore<K> preKeyStore = getPreKeyStore();
+
+    final UUID accountIdentifier = UUID.randomUUID();
+    final long deviceId = 1;
+
+    final List<K> originalPreKeys = new ArrayList<>(KEY_COUNT);
+
+    for (int i = 0; i < KEY_COUNT; i++) {
+      originalPreKeys.add(generatePreKey(i));
+    }
+
+    preKeyStore.store(accountIdentifier, deviceId, originalPreKeys).join();
+
+    // Use a number of keys that doesn't evenly fill batches to make sure partial batches get written, too
+    final int replacementKeyCount = KEY_COUNT + 37;
+    final List<K> replacementPreKeys = new ArrayList<>(replacementKeyCount);
+
+    for (int i = 0; i < replacementKeyCount; i++) {
+      replacementPreKeys.add(generatePreKey(KEY_COUNT / 2 + i));
+    }
+
+    preKeyStore.store(accountIdentifier, deviceId, replacementPreKeys).join();
+
+    assertEquals(replacementKeyCount, preKeyStore.getCount(accountIdentifier, deviceId).join());
+
+    // Keys are taken in ascending order by key ID
+    final List<K> storedPreKeys = new ArrayList<>(replacementKeyCount);
+    Optional<K> maybePreKey;
+
+    while ((maybePreKey = preKeyStore.take(accountIdentifier, deviceId).join()).isPresent()) {
+      storedPreKeys.add(maybePreKey.get());
+    }
+
+    assertEquals(replacementPreKeys, storedPreKeys);
+  }
+
+  @Test
+  void storeDuplicateKeyIds() {
+    final SingleUsePreKeyStore<K> preKeyStore = getPreKeyStore();
+
+    final UUID accountIdentifier = UUID.randomUUID();
+    final long deviceId = 1;
+
+    final K duplicatedPreKey = generatePreKey(1);
+    final K replacementPreKey = generatePreKey(1);
+
+    // Batch writes reject duplicate items, so the store must keep only the last key with a given ID
+    preKeyStore.store(accountIdentifier, deviceId, List.of(generatePreKey(0), duplicatedPreKey, generatePreKey(2),
+        replacementPreKey)).join();
+
+    assertEquals(3, preKeyStore.getCount(accountIdentifier, deviceId).join());
+
+    assertEquals(0, preKeyStore.take(accountIdentifier, deviceId).join().orElseThrow().keyId());
+    assertEquals(Optional.of(replacementPreKey), preKeyStore.take(accountIdentifier, deviceId).join());
+  }
+
   @Test
   void getCount() {
     final SingleUsePreKeyStore<K> preKeyStore = getPreKeyStore();
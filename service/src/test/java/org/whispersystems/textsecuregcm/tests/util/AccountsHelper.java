@@ -14,13 +14,18 @@ import static org.mockito.Mockito.when;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
 import java.io.IOException;
+import java.util.Collection;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
 import java.util.function.Consumer;
 import org.mockito.MockingDetails;
 import org.mockito.stubbing.Stubbing;
 import org.whispersystems.textsecuregcm.auth.SaltedTokenHash;
+import org.whispersystems.textsecuregcm.identity.ServiceIdentifier;
 import org.whispersystems.textsecuregcm.storage.Account;
 import org.whispersystems.textsecuregcm.storage.AccountsManager;
 import org.whispersystems.textsecuregcm.storage.Device;
@@ -98,6 +103,24 @@ public class AccountsHelper {
     });
   }
 
+  /**
+   * Configures a mock {@link AccountsManager} to answer bulk lookups by service identifier by delegating to whatever
+   * single-identifier lookups have been stubbed via {@link AccountsManager#getByServiceIdentifier(ServiceIdentifier)}.
+   */
+  public static void setupMockGetByServiceIdentifiers(final AccountsManager mockAccountsManager) {
+    when(mockAccountsManager.getByServiceIdentifiersAsync(any())).thenAnswer(answer -> {
+      final Collection<ServiceIdentifier> serviceIdentifiers = answer.getArgument(0);
+      final Map<ServiceIdentifier, Account> accountsByServiceIdentifier = new HashMap<>();
+
+      for (final ServiceIdentifier serviceIdentifier : serviceIdentifiers) {
+        mockAccountsManager.getByServiceIdentifier(serviceIdentifier)
+            .ifPresent(account -> accountsByServiceIdentifier.put(serviceIdentifier, account));
+      }
+
+      return CompletableFuture.completedFuture(accountsByServiceIdentifier);
+    });
+  }
+
   private static Account copyAndMarkStale(Account account) throws IOException {
     MockingDetails mockingDetails = mockingDetails(account);
 
@@ -17,6 +17,7 @@ import io.lettuce.core.cluster.api.sync.RedisAdvancedClusterCommands;
 import java.util.function.Consumer;
 import java.util.function.Function;
 import org.whispersystems.textsecuregcm.redis.FaultTolerantRedisCluster;
+import org.whispersystems.textsecuregcm.redis.RedisWorkload;
 
 public class RedisClusterHelper {
 
@@ -77,6 +78,14 @@ public class RedisClusterHelper {
       return null;
     }).when(cluster).useBinaryCluster(any(Consumer.class));
 
+    when(cluster.withCluster(any(RedisWorkload.class), any(), any(Function.class))).thenAnswer(invocation -> {
+      return invocation.getArgument(2, Function.class).apply(stringConnection);
+    });
+
+    when(cluster.withBinaryCluster(any(RedisWorkload.class), any(), any(Function.class))).thenAnswer(invocation -> {
+      return invocation.getArgument(2, Function.class).apply(binaryConnection);
+    });
+
     return cluster;
   }
 
@@ -6,10 +6,12 @@
 package org.whispersystems.textsecuregcm.util.ua;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
 import static org.junit.jupiter.api.Assertions.assertThrows;
 
 import com.vdurmont.semver4j.Semver;
 import java.util.stream.Stream;
+import org.junit.jupiter.api.Test;
 import org.junit.jupiter.params.ParameterizedTest;
 import org.junit.jupiter.params.provider.Arguments;
 import org.junit.jupiter.params.provider.MethodSource;
@@ -31,6 +33,29 @@ class UserAgentUtilTest {
     );
   }
 
+  @Test
+  void testParseUserAgentStringCached() throws UnrecognizedUserAgentException {
+    final String userAgentString = "Signal-Android/4.68.3 Android/25";
+    final UserAgent userAgent = UserAgentUtil.parseUserAgentString(userAgentString);
+
+    assertEquals(new UserAgent(ClientPlatform.ANDROID, new Semver("4.68.3"), "Android/25"), userAgent);
+    assertSame(userAgent, UserAgentUtil.parseUserAgentString(userAgentString));
+
+    // Unrecognized strings are cached, too, but should still be rejected every time
+    final String bogusUserAgentString = "Signal-Android/4.6-8.3.unreasonableversionstring-17";
+
+    assertThrows(UnrecognizedUserAgentException.class, () -> UserAgentUtil.parseUserAgentString(bogusUserAgentString));
+    assertThrows(UnrecognizedUserAgentException.class, () -> UserAgentUtil.parseUserAgentString(bogusUserAgentString));
+  }
+
+  @Test
+  void testParseLongUserAgentString() throws UnrecognizedUserAgentException {
+    final String additionalSpecifiers = "a".repeat(1024);
+
+    assertEquals(new UserAgent(ClientPlatform.DESKTOP, new Semver("1.2.3"), additionalSpecifiers),
+        UserAgentUtil.parseUserAgentString("Signal-Desktop/1.2.3 " + additionalSpecifiers));
+  }
+
   @ParameterizedTest
   @MethodSource("argumentsForTestParseStandardUserAgentString")
   void testParseStandardUserAgentString(final String userAgentString, final UserAgent expectedUserAgent) {
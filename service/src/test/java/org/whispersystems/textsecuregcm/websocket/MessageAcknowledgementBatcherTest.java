@@ -0,0 +1,117 @@
+/*
+ * Copyright 2023 Signal Messenger, LLC
+ * SPDX-License-Identifier: AGPL-3.0-only
+ */
+
+package org.whispersystems.textsecuregcm.websocket;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyMap;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.whispersystems.textsecuregcm.auth.AuthenticatedAccount;
+import org.whispersystems.textsecuregcm.storage.Account;
+import org.whispersystems.textsecuregcm.storage.Device;
+import org.whispersystems.textsecuregcm.storage.MessagesManager;
+import org.whispersystems.textsecuregcm.util.Pair;
+
+class MessageAcknowledgementBatcherTest {
+
+  private MessagesManager messagesManager;
+  private List<Runnable> delayedFlushes;
+  private MessageAcknowledgementBatcher batcher;
+
+  private static final UUID ACCOUNT_UUID = UUID.randomUUID();
+  private static final long DEVICE_ID = 2L;
+  private static final int MAX_BATCH_SIZE = 3;
+
+  @BeforeEach
+  void setUp() {
+    messagesManager = mock(MessagesManager.class);
+    delayedFlushes = new ArrayList<>();
+
+    final Account account = mock(Account.class);
+    final Device device = mock(Device.class);
+
+    when(account.getUuid()).thenReturn(ACCOUNT_UUID);
+    when(device.getId()).thenReturn(DEVICE_ID);
+
+    batcher = new MessageAcknowledgementBatcher(messagesManager,
+        new AuthenticatedAccount(() -> new Pair<>(account, device)),
+        device,
+        MAX_BATCH_SIZE,
+        delayedFlushes::add);
+  }
+
+  @Test
+  void testFlushAfterWindow() {
+    final CompletableFuture<Void> deleteFuture = new CompletableFuture<>();
+    when(messagesManager.delete(any(), anyLong(), anyMap())).thenReturn(deleteFuture);
+
+    final UUID firstGuid = UUID.randomUUID();
+    final UUID secondGuid = UUID.randomUUID();
+
+    final CompletableFuture<Void> firstAcknowledgement = batcher.acknowledge(firstGuid, 1);
+    final CompletableFuture<Void> secondAcknowledgement = batcher.acknowledge(secondGuid, 2);
+
+    assertSame(firstAcknowledgement, secondAcknowledgement);
+    assertEquals(1, delayedFlushes.size());
+    verify(messagesManager, never()).delete(any(), anyLong(), anyMap());
+
+    delayedFlushes.get(0).run();
+
+    verify(messagesManager).delete(ACCOUNT_UUID, DEVICE_ID, Map.of(firstGuid, 1L, secondGuid, 2L));
+    assertFalse(firstAcknowledgement.isDone());
+
+    deleteFuture.complete(null);
+    assertTrue(firstAcknowledgement.isDone());
+    assertFalse(firstAcknowledgement.isCompletedExceptionally());
+  }
+
+  @Test
+  void testFlushAtMaxBatchSize() {
+    when(messagesManager.delete(any(), anyLong(), anyMap())).thenReturn(CompletableFuture.completedFuture(null));
+
+    final CompletableFuture<Void> batchFuture = batcher.acknowledge(UUID.randomUUID(), 1);
+    batcher.acknowledge(UUID.randomUUID(), 2);
+    batcher.acknowledge(UUID.randomUUID(), 3);
+
+    assertTrue(batchFuture.isDone());
+    verify(messagesManager).delete(any(), anyLong(), anyMap());
+
+    // The delayed flush for the batch that has already been deleted should do nothing
+    delayedFlushes.forEach(Runnable::run);
+    verify(messagesManager).delete(any(), anyLong(), anyMap());
+
+    // ...and a new batch should start a new window
+    final CompletableFuture<Void> nextBatchFuture = batcher.acknowledge(UUID.randomUUID(), 4);
+    assertFalse(nextBatchFuture.isDone());
+    assertEquals(2, delayedFlushes.size());
+  }
+
+  @Test
+  void testFlushFailure() {
+    when(messagesManager.delete(any(), anyLong(), anyMap()))
+        .thenReturn(CompletableFuture.failedFuture(new RuntimeException("OH NO")));
+
+    final CompletableFuture<Void> batchFuture = batcher.acknowledge(UUID.randomUUID(), 1);
+    delayedFlushes.forEach(Runnable::run);
+
+    assertTrue(batchFuture.isCompletedExceptionally());
+  }
+}
@@ -5,11 +5,13 @@
 
 package org.whispersystems.textsecuregcm.websocket;
 
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertTimeoutPreemptively;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.mockito.ArgumentMatchers.anyBoolean;
+import static org.mockito.ArgumentMatchers.anyMap;
 import static org.mockito.ArgumentMatchers.argThat;
 import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.ArgumentMatchers.nullable;
@@ -19,6 +21,7 @@ import static org.mockito.Mockito.anyLong;
 import static org.mockito.Mockito.anyString;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.timeout;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.verifyNoMoreInteractions;
@@ -178,8 +181,7 @@ class WebSocketConnectionTest {
     when(accountsManager.getByE164("sender1")).thenReturn(Optional.of(sender1));
     when(accountsManager.getByE164("sender2")).thenReturn(Optional.empty());
 
-    when(messagesManager.delete(any(), anyLong(), any(), any())).thenReturn(
-        CompletableFuture.completedFuture(Optional.empty()));
+    when(messagesManager.delete(any(), anyLong(), anyMap())).thenReturn(CompletableFuture.completedFuture(null));
 
     String userAgent = HttpHeaders.USER_AGENT;
 
@@ -213,8 +215,8 @@ class WebSocketConnectionTest {
     futures.get(0).completeExceptionally(new IOException());
     futures.get(2).completeExceptionally(new IOException());
 
-    verify(messagesManager, times(1)).delete(eq(accountUuid), eq(deviceId),
-        eq(UUID.fromString(outgoingMessages.get(1).getServerGuid())), eq(outgoingMessages.get(1).getServerTimestamp()));
+    verify(messagesManager, timeout(1_000)).delete(eq(accountUuid), eq(deviceId),
+        eq(Map.of(UUID.fromString(outgoingMessages.get(1).getServerGuid()), outgoingMessages.get(1).getServerTimestamp())));
     verify(receiptSender, times(1)).sendReceipt(eq(new AciServiceIdentifier(accountUuid)), eq(deviceId), eq(new AciServiceIdentifier(senderOneUuid)),
         eq(2222L));
 
@@ -326,8 +328,7 @@ class WebSocketConnectionTest {
     when(accountsManager.getByE164("sender1")).thenReturn(Optional.of(sender1));
     when(accountsManager.getByE164("sender2")).thenReturn(Optional.empty());
 
-    when(messagesManager.delete(any(), anyLong(), any(), any())).thenReturn(
-        CompletableFuture.completedFuture(Optional.empty()));
+    when(messagesManager.delete(any(), anyLong(), anyMap())).thenReturn(CompletableFuture.completedFuture(null));
 
     String userAgent = HttpHeaders.USER_AGENT;
 
@@ -453,7 +454,7 @@ class WebSocketConnectionTest {
     when(messagesManager.getMessagesForDeviceReactive(eq(accountUuid), eq(1L), eq(false)))
         .thenReturn(Flux.fromStream(Stream.concat(firstPageMessages.stream(), secondPageMessages.stream())));
 
-    when(messagesManager.delete(eq(accountUuid), eq(1L), any(), any()))
+    when(messagesManager.delete(eq(accountUuid), eq(1L), anyMap()))
         .thenReturn(CompletableFuture.completedFuture(null));
 
     final WebSocketResponseMessage successResponse = mock(WebSocketResponseMessage.class);
@@ -503,7 +504,7 @@ class WebSocketConnectionTest {
         .thenReturn(Flux.fromIterable(messages))
         .thenReturn(Flux.empty());
 
-    when(messagesManager.delete(eq(accountUuid), eq(1L), any(UUID.class), any()))
+    when(messagesManager.delete(eq(accountUuid), eq(1L), anyMap()))
         .thenReturn(CompletableFuture.completedFuture(null));
 
     final WebSocketResponseMessage successResponse = mock(WebSocketResponseMessage.class);
@@ -598,7 +599,7 @@ class WebSocketConnectionTest {
         .thenReturn(Flux.fromIterable(secondPageMessages))
         .thenReturn(Flux.empty());
 
-    when(messagesManager.delete(eq(accountUuid), eq(1L), any(), any()))
+    when(messagesManager.delete(eq(accountUuid), eq(1L), anyMap()))
         .thenReturn(CompletableFuture.completedFuture(null));
 
     final WebSocketResponseMessage successResponse = mock(WebSocketResponseMessage.class);
@@ -767,8 +768,7 @@ class WebSocketConnectionTest {
     final WebSocketResponseMessage successResponse = mock(WebSocketResponseMessage.class);
     when(successResponse.getStatus()).thenReturn(200);
     when(client.sendRequest(any(), any(), any(), any())).thenReturn(CompletableFuture.completedFuture(successResponse));
-    when(messagesManager.delete(any(), anyLong(), any(), any())).thenReturn(
-        CompletableFuture.completedFuture(Optional.empty()));
+    when(messagesManager.delete(any(), anyLong(), anyMap())).thenReturn(CompletableFuture.completedFuture(null));
 
     WebSocketConnection connection = new WebSocketConnection(receiptSender, messagesManager, auth, device, client,
         retrySchedulingExecutor, messageDeliveryScheduler, clientReleaseManager);
@@ -824,8 +824,7 @@ class WebSocketConnectionTest {
     final WebSocketResponseMessage successResponse = mock(WebSocketResponseMessage.class);
     when(successResponse.getStatus()).thenReturn(200);
     when(client.sendRequest(any(), any(), any(), any())).thenReturn(CompletableFuture.completedFuture(successResponse));
-    when(messagesManager.delete(any(), anyLong(), any(), any())).thenReturn(
-        CompletableFuture.completedFuture(Optional.empty()));
+    when(messagesManager.delete(any(), anyLong(), anyMap())).thenReturn(CompletableFuture.completedFuture(null));
 
     WebSocketConnection connection = new WebSocketConnection(receiptSender, messagesManager, auth, device, client,
         retrySchedulingExecutor, Schedulers.immediate(), clientReleaseManager);
@@ -849,6 +848,19 @@ class WebSocketConnectionTest {
         .verify();
   }
 
+  @Test
+  void testSerializeForDelivery() throws InvalidProtocolBufferException {
+    final Envelope message = createMessage(UUID.randomUUID(), UUID.randomUUID(), 1111L, "message");
+
+    assertArrayEquals(message.toByteArray(), WebSocketConnection.serializeForDelivery(message));
+
+    final Envelope ephemeralMessage = message.toBuilder().setEphemeral(true).build();
+    final Envelope deliveredMessage = Envelope.parseFrom(WebSocketConnection.serializeForDelivery(ephemeralMessage));
+
+    assertFalse(deliveredMessage.hasEphemeral());
+    assertEquals(message, deliveredMessage);
+  }
+
   private Envelope createMessage(UUID senderUuid, UUID destinationUuid, long timestamp, String content) {
     return Envelope.newBuilder()
         .setServerGuid(UUID.randomUUID().toString())
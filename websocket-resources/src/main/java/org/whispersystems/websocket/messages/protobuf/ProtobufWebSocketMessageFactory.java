@@ -4,7 +4,7 @@
  */
 package org.whispersystems.websocket.messages.protobuf;
 
-import com.google.protobuf.ByteString;
+import com.google.protobuf.UnsafeByteOperations;
 import org.whispersystems.websocket.messages.InvalidMessageException;
 import org.whispersystems.websocket.messages.WebSocketMessage;
 import org.whispersystems.websocket.messages.WebSocketMessageFactory;
@@ -12,6 +12,10 @@ import org.whispersystems.websocket.messages.WebSocketMessageFactory;
 import java.util.List;
 import java.util.Optional;
 
+/**
+ * Creates protobuf-encoded WebSocket messages. Request and response bodies are wrapped rather than copied into the
+ * outgoing message, so callers must not modify a body array after passing it to this factory.
+ */
 public class ProtobufWebSocketMessageFactory implements WebSocketMessageFactory {
 
   @Override
@@ -37,7 +41,7 @@ public class ProtobufWebSocketMessageFactory implements WebSocketMessageFactory
     }
 
     if (body.isPresent()) {
-      requestMessage.setBody(ByteString.copyFrom(body.get()));
+      requestMessage.setBody(UnsafeByteOperations.unsafeWrap(body.get()));
     }
 
     if (headers != null) {
@@ -62,7 +66,7 @@ public class ProtobufWebSocketMessageFactory implements WebSocketMessageFactory
                                             .setMessage(messageString);
 
     if (body.isPresent()) {
-      responseMessage.setBody(ByteString.copyFrom(body.get()));
+      responseMessage.setBody(UnsafeByteOperations.unsafeWrap(body.get()));
     }
 
     if (headers != null) {